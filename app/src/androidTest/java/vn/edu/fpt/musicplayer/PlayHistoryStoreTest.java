@@ -0,0 +1,71 @@
+package vn.edu.fpt.musicplayer;
+
+import android.database.Cursor;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+@RunWith(AndroidJUnit4.class)
+public class PlayHistoryStoreTest {
+    private PlayHistoryStore store;
+
+    @Before
+    public void setUp() {
+        store = new PlayHistoryStore(InstrumentationRegistry.getInstrumentation().getTargetContext(), null);
+        PlayEventBuffer buffer = new PlayEventBuffer(64);
+        // Bài 1 nghe 3 lần, bài 2 và 3 mỗi bài 2 lần (bài 3 gần hơn), bài 4 chỉ bị bỏ qua
+        buffer.add(1, PlayEventBuffer.TYPE_PLAY, 1000, 0);
+        buffer.add(1, PlayEventBuffer.TYPE_PLAY, 2000, 0);
+        buffer.add(1, PlayEventBuffer.TYPE_PLAY, 3000, 0);
+        buffer.add(2, PlayEventBuffer.TYPE_PLAY, 1500, 0);
+        buffer.add(2, PlayEventBuffer.TYPE_PLAY, 4000, 0);
+        buffer.add(3, PlayEventBuffer.TYPE_PLAY, 2500, 0);
+        buffer.add(3, PlayEventBuffer.TYPE_PLAY, 5000, 0);
+        buffer.add(4, PlayEventBuffer.TYPE_SKIP, 0, 1200);
+        PlayEventBuffer.Batch batch = new PlayEventBuffer.Batch(64);
+        buffer.drainTo(batch);
+        store.apply(batch);
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    @Test
+    public void topPlayedOrdersByCountThenRecency() {
+        assertArrayEquals(new long[]{1, 3, 2}, store.topPlayed(10));
+        assertArrayEquals(new long[]{1, 3}, store.topPlayed(2));
+    }
+
+    @Test
+    public void recentlyPlayedSkipsUnplayed() {
+        assertArrayEquals(new long[]{3, 2, 1}, store.recentlyPlayed(10));
+        assertArrayEquals(new long[]{3}, store.recentlyPlayed(1));
+    }
+
+    @Test
+    public void queriesReadIndexInsteadOfSorting() {
+        assertTrue(plan("play_count > 0", "play_count DESC, last_played DESC").contains("play_stats_play_count"));
+        assertTrue(plan("last_played > 0", "last_played DESC").contains("play_stats_last_played"));
+    }
+
+    private String plan(String selection, String orderBy) {
+        StringBuilder out = new StringBuilder();
+        try (Cursor cursor = store.getReadableDatabase().rawQuery("EXPLAIN QUERY PLAN SELECT song_id FROM play_stats"
+                + " WHERE " + selection + " ORDER BY " + orderBy + " LIMIT 25", null)) {
+            while (cursor.moveToNext()) {
+                out.append(cursor.getString(cursor.getColumnCount() - 1)).append('\n');
+            }
+        }
+        assertFalse(out.toString(), out.toString().contains("TEMP B-TREE"));
+        return out.toString();
+    }
+}
@@ -0,0 +1,271 @@
+package vn.edu.fpt.musicplayer;
+
+import android.content.ContentUris;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ghi nhớ album nào có ảnh bìa, để không phải mở stream ảnh trên luồng UI mỗi lần chuyển bài.
+ * Kết quả được giữ trong một LRU có giới hạn và lưu lại giữa các lần mở app.
+ * Album không có ảnh sẽ được kiểm tra lại sau {@link #MISSING_TTL_MS}.
+ * Album mà MediaStore không có ảnh nhưng file nhạc có ảnh nhúng thì dùng ảnh do
+ * {@link MetadataEnricher} trích ra thư mục {@link #EMBEDDED_DIR}; xem {@link #artModel(long)}.
+ */
+public class AlbumArtResolver {
+    private static final String TAG = "AlbumArt";
+    private static final Uri ALBUM_ART_URI = Uri.parse("content://media/external/audio/albumart");
+    private static final String FILE_NAME = "album_art_presence.bin";
+    private static final String EMBEDDED_DIR = "embedded_art";
+    private static final int FILE_VERSION = 1;
+    private static final int MAX_ENTRIES = 4096;
+    private static final long MISSING_TTL_MS = TimeUnit.DAYS.toMillis(1);
+    private static final long SAVE_DELAY_MS = 2000;
+
+    public interface Callback {
+        void onResolved(long albumId, boolean hasArt);
+    }
+
+    private static final class Entry {
+        final boolean present;
+        final long checkedAt;
+
+        Entry(boolean present, long checkedAt) {
+            this.present = present;
+            this.checkedAt = checkedAt;
+        }
+    }
+
+    private static AlbumArtResolver instance;
+
+    private final Context context;
+    private final File file;
+    private final File embeddedDir;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Map<Long, Entry> entries = new LinkedHashMap<Long, Entry>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    // Các album đã có ảnh trích từ thẻ, khoá cùng entries
+    private final Set<Long> embedded = new HashSet<>();
+    private boolean loaded;
+    private boolean saveScheduled;
+
+    public static synchronized AlbumArtResolver get(Context context) {
+        if (instance == null) {
+            instance = new AlbumArtResolver(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private AlbumArtResolver(Context context) {
+        this.context = context;
+        this.file = new File(context.getFilesDir(), FILE_NAME);
+        this.embeddedDir = new File(context.getFilesDir(), EMBEDDED_DIR);
+        executor.execute(this::ensureLoaded);
+    }
+
+    public static Uri albumArtUri(long albumId) {
+        return ContentUris.withAppendedId(ALBUM_ART_URI, albumId);
+    }
+
+    /**
+     * Nguồn ảnh bìa cho Glide: ảnh trích từ thẻ khi MediaStore không có (hoặc chưa biết có) ảnh
+     * cho album này, còn lại là uri của MediaStore. Mọi nơi tải ảnh bìa đều đi qua đây để dùng
+     * chung bộ nhớ đệm của Glide.
+     */
+    public Object artModel(long albumId) {
+        synchronized (entries) {
+            if (embedded.contains(albumId) && !Boolean.TRUE.equals(peekStore(albumId))) {
+                return embeddedArtFile(albumId);
+            }
+        }
+        return albumArtUri(albumId);
+    }
+
+    /**
+     * Trả lời ngay (đồng bộ) nếu đã biết, còn không thì kiểm tra ở luồng nền
+     * và gọi callback trên luồng UI.
+     */
+    public void resolve(long albumId, Callback callback) {
+        Boolean known = peek(albumId);
+        if (known != null) {
+            callback.onResolved(albumId, known);
+            return;
+        }
+        executor.execute(() -> {
+            ensureLoaded();
+            Boolean cached = peek(albumId);
+            boolean present = cached != null ? cached : probe(albumId);
+            mainHandler.post(() -> callback.onResolved(albumId, present));
+        });
+    }
+
+    // Gọi khi tải ảnh từ artModel thất bại dù trước đó được đánh dấu là có
+    public void markMissing(long albumId) {
+        synchronized (entries) {
+            // Ảnh trích ra bị hỏng thì bỏ, lần sau thử lại uri của MediaStore
+            if (embedded.contains(albumId) && !Boolean.TRUE.equals(peekStore(albumId))) {
+                embedded.remove(albumId);
+                return;
+            }
+        }
+        put(albumId, false);
+    }
+
+    // Có ảnh hay không (kể cả ảnh trích từ thẻ) nếu đã biết và còn hiệu lực, null nếu chưa biết
+    public Boolean peek(long albumId) {
+        synchronized (entries) {
+            if (embedded.contains(albumId)) return true;
+            return peekStore(albumId);
+        }
+    }
+
+    /**
+     * MediaStore có ảnh cho album này không; hỏi thẳng MediaStore nếu chưa biết. Chặn luồng gọi,
+     * chỉ dùng ở luồng nền.
+     */
+    public boolean hasStoreArt(long albumId) {
+        Boolean known;
+        synchronized (entries) {
+            known = peekStore(albumId);
+        }
+        return known != null ? known : probe(albumId);
+    }
+
+    public boolean hasEmbedded(long albumId) {
+        synchronized (entries) {
+            return embedded.contains(albumId);
+        }
+    }
+
+    // Nơi MetadataEnricher ghi ảnh trích từ thẻ của album
+    public File embeddedArtFile(long albumId) {
+        return new File(embeddedDir, Long.toString(albumId));
+    }
+
+    // Gọi sau khi đã ghi xong embeddedArtFile(albumId)
+    public void putEmbedded(long albumId) {
+        synchronized (entries) {
+            embedded.add(albumId);
+        }
+    }
+
+    // Chỉ theo MediaStore; gọi khi đang giữ khoá entries
+    private Boolean peekStore(long albumId) {
+        Entry entry = entries.get(albumId);
+        if (entry == null) return null;
+        if (!entry.present && System.currentTimeMillis() - entry.checkedAt > MISSING_TTL_MS) return null;
+        return entry.present;
+    }
+
+    private boolean probe(long albumId) {
+        boolean present;
+        try (InputStream is = context.getContentResolver().openInputStream(albumArtUri(albumId))) {
+            present = is != null;
+        } catch (Exception e) {
+            present = false;
+        }
+        put(albumId, present);
+        return present;
+    }
+
+    private void put(long albumId, boolean present) {
+        synchronized (entries) {
+            entries.put(albumId, new Entry(present, System.currentTimeMillis()));
+            if (saveScheduled) return;
+            saveScheduled = true;
+        }
+        mainHandler.postDelayed(() -> executor.execute(this::save), SAVE_DELAY_MS);
+    }
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        loaded = true;
+        String[] names = embeddedDir.list();
+        if (names != null) {
+            synchronized (entries) {
+                for (String name : names) {
+                    try {
+                        embedded.add(Long.parseLong(name));
+                    } catch (NumberFormatException ignored) {
+                        // file tạm đang ghi dở
+                    }
+                }
+            }
+        }
+        if (!file.exists()) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_VERSION) return;
+            int count = in.readInt();
+            synchronized (entries) {
+                for (int i = 0; i < count; i++) {
+                    long albumId = in.readLong();
+                    boolean present = in.readBoolean();
+                    long checkedAt = in.readLong();
+                    // Không ghi đè kết quả mới hơn đã có trong bộ nhớ
+                    if (!entries.containsKey(albumId)) {
+                        entries.put(albumId, new Entry(present, checkedAt));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot read album art cache", e);
+        }
+    }
+
+    private void save() {
+        long[] albumIds;
+        boolean[] present;
+        long[] checkedAt;
+        synchronized (entries) {
+            saveScheduled = false;
+            albumIds = new long[entries.size()];
+            present = new boolean[albumIds.length];
+            checkedAt = new long[albumIds.length];
+            int i = 0;
+            for (Map.Entry<Long, Entry> e : entries.entrySet()) {
+                albumIds[i] = e.getKey();
+                present[i] = e.getValue().present;
+                checkedAt[i] = e.getValue().checkedAt;
+                i++;
+            }
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(FILE_VERSION);
+            out.writeInt(albumIds.length);
+            for (int i = 0; i < albumIds.length; i++) {
+                out.writeLong(albumIds[i]);
+                out.writeBoolean(present[i]);
+                out.writeLong(checkedAt[i]);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot write album art cache", e);
+            return;
+        }
+        if (!tmp.renameTo(file)) tmp.delete();
+    }
+}
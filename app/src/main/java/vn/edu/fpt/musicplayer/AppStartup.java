@@ -0,0 +1,235 @@
+package vn.edu.fpt.musicplayer;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.media.MediaCodec;
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestManager;
+import com.google.android.exoplayer2.mediacodec.MediaCodecInfo;
+import com.google.android.exoplayer2.mediacodec.MediaCodecUtil;
+import com.google.android.exoplayer2.util.MimeTypes;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Các việc khởi động không cần quyền đọc nhạc, chạy song song ngay khi tiến trình được tạo
+ * (xem {@link MusicPlayerApp}) trong lúc màn hình chào đang hiện:
+ * <pre>
+ * index.open ── library.preload ──┬── library.grouping
+ *                                 └── thumbnails.first_page
+ * glide.init ─────────────────────┘
+ * player.codecs
+ * </pre>
+ * {@link MainActivity} lấy thư viện đã đọc sẵn thay vì đọc lại chỉ mục. Việc nào lỗi thì nơi dùng
+ * tự làm như thường. Dòng thời gian ở {@link #timeline(StringBuilder)}.
+ */
+public final class AppStartup {
+    private static final String TAG = "Startup";
+
+    public static final String INDEX_OPEN = "index.open";
+    public static final String LIBRARY = "library.preload";
+    public static final String GROUPING = "library.grouping";
+    public static final String GLIDE = "glide.init";
+    public static final String THUMBNAILS = "thumbnails.first_page";
+    public static final String CODECS = "player.codecs";
+
+    public static final String MARK_APP_CREATED = "app.created";
+    public static final String MARK_SPLASH_CREATED = "splash.created";
+    public static final String MARK_MAIN_CREATED = "main.created";
+    public static final String MARK_LIST_SHOWN = "main.list_shown";
+
+    // Khoảng số dòng thấy được trên màn hình đầu tiên
+    private static final int FIRST_PAGE_ROWS = 12;
+    private static final int THREADS = 3;
+    // Các định dạng hay gặp trong thư viện; ExoPlayer giữ kết quả tra cứu bộ giải mã trong bộ nhớ
+    private static final String[] AUDIO_MIME_TYPES = {
+            MimeTypes.AUDIO_MPEG, MimeTypes.AUDIO_AAC, MimeTypes.AUDIO_FLAC, MimeTypes.AUDIO_OPUS,
+            MimeTypes.AUDIO_VORBIS};
+
+    public interface LibraryCallback {
+        void onLibrary(@Nullable WarmLibrary library);
+    }
+
+    // Thư viện đọc từ chỉ mục lúc khởi động, cùng chỉ mục tìm kiếm và (khi xong) các cách nhóm
+    public static final class WarmLibrary {
+        public final LibraryStore store;
+        public final SearchIndex searchIndex;
+        private volatile LibraryGrouping grouping;
+
+        WarmLibrary(LibraryStore store, SearchIndex searchIndex) {
+            this.store = store;
+            this.searchIndex = searchIndex;
+        }
+
+        // null nếu chưa tính xong hoặc tính lỗi
+        @Nullable
+        public LibraryGrouping grouping() {
+            return grouping;
+        }
+    }
+
+    private static AppStartup instance;
+
+    private final Context context;
+    private final StartupPipeline pipeline;
+    private volatile WarmLibrary preloaded;
+    private boolean libraryTaken;
+    private boolean started;
+
+    public static synchronized AppStartup get(Context context) {
+        if (instance == null) {
+            instance = new AppStartup(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private AppStartup(Context context) {
+        this.context = context;
+        long originNanos = System.nanoTime()
+                - (SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime()) * 1_000_000L;
+        pipeline = new StartupPipeline.Builder(originNanos)
+                .add(INDEX_OPEN, this::openIndex)
+                .add(LIBRARY, this::preloadLibrary, INDEX_OPEN)
+                .add(GROUPING, this::buildGrouping, LIBRARY)
+                .add(GLIDE, () -> Glide.get(context))
+                .add(THUMBNAILS, this::decodeFirstPage, LIBRARY, GLIDE)
+                .add(CODECS, AppStartup::warmCodecs)
+                .build();
+    }
+
+    public synchronized void start() {
+        if (started) return;
+        started = true;
+        // Luồng tự dừng sau khi hết việc
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(THREADS, THREADS, 1, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> new Thread(r, "startup-" + count.incrementAndGet()));
+        executor.allowCoreThreadTimeOut(true);
+        pipeline.start(executor, ContextCompat.getMainExecutor(context));
+    }
+
+    public StartupPipeline pipeline() {
+        return pipeline;
+    }
+
+    public void timeline(StringBuilder out) {
+        pipeline.timeline(out);
+    }
+
+    public void logTimeline() {
+        StringBuilder text = new StringBuilder();
+        timeline(text);
+        Log.i(TAG, text.toString());
+    }
+
+    /**
+     * Trả thư viện đọc sẵn (gọi trên {@code executor}) khi việc đọc kết thúc. Chỉ lần gọi đầu tiên
+     * nhận được; các lần sau, hoặc khi chỉ mục trống hay đọc lỗi, nhận null.
+     */
+    public void takeLibrary(Executor executor, LibraryCallback callback) {
+        pipeline.whenDone(LIBRARY, executor, () -> callback.onLibrary(takePreloaded()));
+    }
+
+    // action chạy khi các cách nhóm của thư viện đọc sẵn đã tính xong (hoặc không tính được)
+    public void whenGroupingReady(Executor executor, Runnable action) {
+        pipeline.whenDone(GROUPING, executor, action);
+    }
+
+    private synchronized WarmLibrary takePreloaded() {
+        if (libraryTaken) return null;
+        libraryTaken = true;
+        WarmLibrary library = preloaded;
+        // Sau khi đã giao đi và các việc còn đọc nó xong thì không giữ thư viện cũ trong bộ nhớ nữa
+        pipeline.whenDone(GROUPING, Runnable::run,
+                () -> pipeline.whenDone(THUMBNAILS, Runnable::run, () -> preloaded = null));
+        return library;
+    }
+
+    public static String audioPermission() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                ? Manifest.permission.READ_MEDIA_AUDIO
+                : Manifest.permission.READ_EXTERNAL_STORAGE;
+    }
+
+    // Mở cơ sở dữ liệu (và nâng cấp schema nếu cần) trước khi ai đó phải chờ nó
+    private void openIndex() {
+        LibraryIndex.get(context).getReadableDatabase();
+    }
+
+    private void preloadLibrary() throws Exception {
+        LibraryIndex index = LibraryIndex.get(context);
+        if (index.isEmpty()) return; // lần đầu: MainActivity quét MediaStore sau khi có quyền
+        LibraryStore.Builder builder = new LibraryStore.Builder();
+        SearchIndex searchIndex = new SearchIndex();
+        try (SongCursor cursor = index.openSongs()) {
+            while (cursor.moveToNext()) {
+                Song song = Song.from(cursor);
+                builder.add(song);
+                searchIndex.add(song.title, song.artist);
+            }
+        }
+        LibraryStore store = builder.trimToSize().build();
+        // Dịch vụ phát (ví dụ khi tiếp tục nghe) tra được bài ngay mà không phải đọc từng dòng
+        MusicLibrary library = MusicLibrary.get(context);
+        if (library.getStore() == LibraryStore.EMPTY) library.setStore(store);
+        preloaded = new WarmLibrary(store, searchIndex);
+    }
+
+    private void buildGrouping() {
+        WarmLibrary library = preloaded;
+        if (library == null) return;
+        library.grouping = LibraryGrouping.build(library.store, System.currentTimeMillis() / 1000);
+    }
+
+    // Giải mã ảnh bìa của các dòng đầu tiên vào bộ nhớ đệm của Glide; cần quyền đọc nhạc nên chỉ
+    // làm khi quyền đã có từ lần trước
+    private void decodeFirstPage() {
+        WarmLibrary library = preloaded;
+        if (library == null
+                || ContextCompat.checkSelfPermission(context, audioPermission()) != PackageManager.PERMISSION_GRANTED) {
+            return;
+        }
+        RequestManager glide = Glide.with(context);
+        AlbumArtResolver resolver = AlbumArtResolver.get(context);
+        int size = context.getResources().getDimensionPixelSize(R.dimen.song_thumbnail_size);
+        Set<Long> albums = new HashSet<>();
+        for (int row = 0; row < library.store.size() && albums.size() < FIRST_PAGE_ROWS; row++) {
+            long albumId = library.store.albumId(row);
+            if (albums.add(albumId)) SongAdapter.thumbnail(glide, resolver, albumId, size).preload();
+        }
+    }
+
+    /**
+     * Tra cứu bộ giải mã cho các định dạng hay gặp (ExoPlayer giữ kết quả, nên lần phát đầu không
+     * phải hỏi lại MediaCodecList) và tạo thử một bộ giải mã MP3 để nạp sẵn thư viện codec.
+     */
+    private static void warmCodecs() throws Exception {
+        String mp3Decoder = null;
+        for (String mimeType : AUDIO_MIME_TYPES) {
+            List<MediaCodecInfo> decoders = MediaCodecUtil.getDecoderInfos(mimeType, false, false);
+            if (mp3Decoder == null && MimeTypes.AUDIO_MPEG.equals(mimeType) && !decoders.isEmpty()) {
+                mp3Decoder = decoders.get(0).name;
+            }
+        }
+        if (mp3Decoder != null) {
+            MediaCodec codec = MediaCodec.createByCodecName(mp3Decoder);
+            codec.release();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package vn.edu.fpt.musicplayer;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * Cài đặt hiệu ứng âm thanh người dùng chọn: mức từng dải của {@link Equalizer} và độ dài crossfade.
+ */
+public class AudioEffectsSettings {
+    private static final String PREFS_NAME = "audio_effects";
+    private static final String KEY_BAND = "band_";
+    private static final String KEY_CROSSFADE_MS = "crossfade_ms";
+    public static final int MAX_CROSSFADE_MS = 10_000;
+
+    private static AudioEffectsSettings instance;
+
+    private final SharedPreferences prefs;
+
+    public static synchronized AudioEffectsSettings get(Context context) {
+        if (instance == null) {
+            instance = new AudioEffectsSettings(context.getApplicationContext()
+                    .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE));
+        }
+        return instance;
+    }
+
+    private AudioEffectsSettings(SharedPreferences prefs) {
+        this.prefs = prefs;
+    }
+
+    public float getBandGain(int band) {
+        return prefs.getFloat(KEY_BAND + band, 0f);
+    }
+
+    public void setBandGain(int band, float db) {
+        prefs.edit().putFloat(KEY_BAND + band, db).apply();
+    }
+
+    // 0 là tắt crossfade
+    public int getCrossfadeMs() {
+        return prefs.getInt(KEY_CROSSFADE_MS, 0);
+    }
+
+    public void setCrossfadeMs(int ms) {
+        prefs.edit().putInt(KEY_CROSSFADE_MS, Math.max(0, Math.min(MAX_CROSSFADE_MS, ms))).apply();
+    }
+}
@@ -0,0 +1,131 @@
+package vn.edu.fpt.musicplayer;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.resource.bitmap.CenterCrop;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import jp.wasabeef.glide.transformations.BlurTransformation;
+
+/**
+ * Ảnh bìa đã làm mờ cho nền màn hình phát nhạc, theo albumId và kích thước màn hình.
+ * Ảnh được thu nhỏ trước khi làm mờ (rẻ hơn nhiều và nhìn gần như nhau khi phóng to lại),
+ * tính sẵn cho các bài sắp phát trên một luồng ưu tiên thấp, nên chuyển bài chỉ là một lần tra cache.
+ */
+public class BlurredArtCache {
+    private static final String TAG = "BlurredArt";
+    private static final int DOWNSCALE = 8;
+    private static final int BLUR_RADIUS = 10;
+    private static final int MEMORY_BYTES = 4 * 1024 * 1024;
+
+    public interface Callback {
+        void onBlurred(long albumId, Bitmap bitmap);
+    }
+
+    private static BlurredArtCache instance;
+
+    private final Context context;
+    private final AlbumArtResolver albumArtResolver;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(() -> {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_LOWEST);
+        r.run();
+    }, "blurred-art"));
+    private final LruCache<String, Bitmap> memory = new LruCache<String, Bitmap>(MEMORY_BYTES) {
+        @Override
+        protected int sizeOf(String key, Bitmap value) {
+            return value.getAllocationByteCount();
+        }
+    };
+    private final Set<String> pending = new HashSet<>();
+
+    public static synchronized BlurredArtCache get(Context context) {
+        if (instance == null) {
+            instance = new BlurredArtCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private BlurredArtCache(Context context) {
+        this.context = context;
+        this.albumArtResolver = AlbumArtResolver.get(context);
+    }
+
+    public Bitmap peek(long albumId) {
+        return memory.get(key(albumId));
+    }
+
+    // Callback được gọi trên luồng UI, chỉ khi album có ảnh bìa
+    public void load(long albumId, Callback callback) {
+        Bitmap cached = peek(albumId);
+        if (cached != null) {
+            callback.onBlurred(albumId, cached);
+            return;
+        }
+        request(albumId, callback);
+    }
+
+    public void prefetch(long albumId) {
+        if (peek(albumId) == null && !Boolean.FALSE.equals(albumArtResolver.peek(albumId))) {
+            request(albumId, null);
+        }
+    }
+
+    private void request(long albumId, Callback callback) {
+        String key = key(albumId);
+        synchronized (pending) {
+            // Yêu cầu trùng chỉ cần chờ lần tính đang chạy; callback sẽ đọc lại từ cache
+            if (!pending.add(key) && callback == null) return;
+        }
+        executor.execute(() -> {
+            Bitmap bitmap = memory.get(key);
+            if (bitmap == null) {
+                bitmap = compute(albumId);
+                if (bitmap != null) memory.put(key, bitmap);
+            }
+            synchronized (pending) {
+                pending.remove(key);
+            }
+            Bitmap result = bitmap;
+            if (result != null && callback != null) {
+                mainHandler.post(() -> callback.onBlurred(albumId, result));
+            }
+        });
+    }
+
+    private Bitmap compute(long albumId) {
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        try {
+            return Glide.with(context)
+                    .asBitmap()
+                    .load(albumArtResolver.artModel(albumId))
+                    .override(Math.max(1, metrics.widthPixels / DOWNSCALE),
+                            Math.max(1, metrics.heightPixels / DOWNSCALE))
+                    .transform(new CenterCrop(), new BlurTransformation(BLUR_RADIUS, 1))
+                    .diskCacheStrategy(DiskCacheStrategy.RESOURCE)
+                    .submit()
+                    .get();
+        } catch (Exception e) {
+            Log.d(TAG, "No blurred art for album " + albumId, e);
+            return null;
+        }
+    }
+
+    private String key(long albumId) {
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        return albumId + "@" + metrics.widthPixels + "x" + metrics.heightPixels;
+    }
+}
@@ -0,0 +1,77 @@
+package vn.edu.fpt.musicplayer;
+
+import android.os.SystemClock;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.audio.AudioSink;
+import com.google.android.exoplayer2.audio.ForwardingAudioSink;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Báo cho các bộ xử lý của app biết vị trí trong dòng PCM. Renderer gọi
+ * {@link #handleDiscontinuity()} sau bộ đệm cuối của bài cũ và trước bộ đệm đầu của bài mới khi phát
+ * liền; {@link #flush()} khi tua hay chuyển bài bằng tay. Thời điểm của từng bộ đệm được chuyển cho
+ * {@link DspChain}, còn vị trí đang phát ra loa được giữ lại để luồng chính quy đổi thời điểm hết bài
+ * sang cùng trục thời gian. Mọi lời gọi của renderer đều trên luồng phát.
+ */
+final class BoundaryAudioSink extends ForwardingAudioSink {
+    private final GainProcessor gainProcessor;
+    private final DspChain dsp;
+    private long lastBufferTimeUs = C.TIME_UNSET;
+    // Đọc từ luồng chính
+    private volatile long positionUs = C.TIME_UNSET;
+    private volatile long positionRealtimeMs;
+
+    BoundaryAudioSink(AudioSink sink, GainProcessor gainProcessor, DspChain dsp) {
+        super(sink);
+        this.gainProcessor = gainProcessor;
+        this.dsp = dsp;
+    }
+
+    /**
+     * Vị trí đang phát ra loa (µs, cùng trục thời gian với các bộ đệm), ngoại suy tới lúc gọi;
+     * {@link C#TIME_UNSET} nếu chưa phát gì từ lần flush gần nhất.
+     */
+    long playingPositionUs(boolean playing, float speed) {
+        long position = positionUs;
+        if (position == C.TIME_UNSET || !playing) return position;
+        return position + (long) ((SystemClock.elapsedRealtime() - positionRealtimeMs) * 1000 * speed);
+    }
+
+    @Override
+    public boolean handleBuffer(ByteBuffer buffer, long presentationTimeUs, int encodedAccessUnitCount)
+            throws InitializationException, WriteException {
+        // Bộ đệm chưa ghi hết sẽ được đưa lại với cùng thời điểm
+        if (presentationTimeUs != lastBufferTimeUs) {
+            lastBufferTimeUs = presentationTimeUs;
+            dsp.setStreamTime(presentationTimeUs);
+        }
+        return super.handleBuffer(buffer, presentationTimeUs, encodedAccessUnitCount);
+    }
+
+    @Override
+    public long getCurrentPositionUs(boolean sourceEnded) {
+        long position = super.getCurrentPositionUs(sourceEnded);
+        if (position != CURRENT_POSITION_NOT_SET) {
+            positionRealtimeMs = SystemClock.elapsedRealtime();
+            positionUs = position;
+        }
+        return position;
+    }
+
+    @Override
+    public void handleDiscontinuity() {
+        gainProcessor.streamChanged();
+        super.handleDiscontinuity();
+    }
+
+    @Override
+    public void flush() {
+        gainProcessor.streamReset();
+        lastBufferTimeUs = C.TIME_UNSET;
+        positionUs = C.TIME_UNSET;
+        dsp.clearStreamTime();
+        super.flush();
+    }
+}
@@ -0,0 +1,76 @@
+package vn.edu.fpt.musicplayer;
+
+import android.database.Cursor;
+
+/**
+ * {@link SongCursor} bọc một {@link Cursor} có các cột theo đúng thứ tự:
+ * id, title, artist, data, album id, duration, date modified, album, artist id, date added.
+ * Dùng chung cho truy vấn MediaStore ({@link LibrarySync}) và chỉ mục cục bộ ({@link LibraryIndex}).
+ */
+public class CursorSongCursor implements SongCursor {
+    private final Cursor cursor;
+
+    public CursorSongCursor(Cursor cursor) {
+        this.cursor = cursor;
+    }
+
+    @Override
+    public boolean moveToNext() {
+        return cursor.moveToNext();
+    }
+
+    @Override
+    public long getId() {
+        return cursor.getLong(0);
+    }
+
+    @Override
+    public String getTitle() {
+        return cursor.getString(1);
+    }
+
+    @Override
+    public String getArtist() {
+        return cursor.getString(2);
+    }
+
+    @Override
+    public String getData() {
+        return cursor.getString(3);
+    }
+
+    @Override
+    public long getAlbumId() {
+        return cursor.getLong(4);
+    }
+
+    @Override
+    public long getDuration() {
+        return cursor.getLong(5);
+    }
+
+    @Override
+    public long getDateModified() {
+        return cursor.getLong(6);
+    }
+
+    @Override
+    public String getAlbum() {
+        return cursor.getString(7);
+    }
+
+    @Override
+    public long getArtistId() {
+        return cursor.getLong(8);
+    }
+
+    @Override
+    public long getDateAdded() {
+        return cursor.getLong(9);
+    }
+
+    @Override
+    public void close() {
+        cursor.close();
+    }
+}
@@ -0,0 +1,41 @@
+package vn.edu.fpt.musicplayer;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.audio.BaseAudioProcessor;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Nối {@link DspChain} (equalizer + fade) vào chuỗi xử lý của AudioSink. Bộ đệm ra là
+ * ByteBuffer trực tiếp của {@link BaseAudioProcessor}, được dùng lại giữa các lần gọi.
+ */
+public final class DspAudioProcessor extends BaseAudioProcessor {
+    private final DspChain chain;
+
+    public DspAudioProcessor(DspChain chain) {
+        this.chain = chain;
+    }
+
+    @Override
+    protected AudioFormat onConfigure(AudioFormat inputAudioFormat) throws UnhandledAudioFormatException {
+        if (inputAudioFormat.encoding != C.ENCODING_PCM_16BIT && inputAudioFormat.encoding != C.ENCODING_PCM_FLOAT) {
+            throw new UnhandledAudioFormatException(inputAudioFormat);
+        }
+        return inputAudioFormat;
+    }
+
+    @Override
+    public void queueInput(ByteBuffer inputBuffer) {
+        int remaining = inputBuffer.remaining();
+        if (remaining == 0) return;
+        ByteBuffer output = replaceOutputBuffer(remaining);
+        chain.process(inputBuffer, output, inputAudioFormat.encoding == C.ENCODING_PCM_FLOAT);
+        output.flip();
+    }
+
+    // Định dạng mới chỉ có hiệu lực từ lần flush sau configure, nên cấu hình chuỗi ở đây
+    @Override
+    protected void onFlush() {
+        chain.configure(inputAudioFormat.sampleRate, inputAudioFormat.channelCount);
+    }
+}
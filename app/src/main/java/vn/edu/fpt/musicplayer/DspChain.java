@@ -0,0 +1,93 @@
+package vn.edu.fpt.musicplayer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Phần xử lý thuần Java của chuỗi hiệu ứng: {@link Equalizer} rồi {@link FadeEnvelope}, trên PCM
+ * xen kẽ các kênh (16-bit hoặc float, thứ tự byte của bộ đệm). Không phụ thuộc ExoPlayer nên
+ * chạy và kiểm thử được trên JVM; {@link DspAudioProcessor} chỉ nối nó vào AudioSink.
+ * <p>
+ * Thời điểm của dòng PCM ({@link #setStreamTime(long)}) được đếm tiếp theo số khung đã xử lý, để
+ * {@link FadeEnvelope} hẹn được fade theo khung chứ không theo lúc lệnh tới.
+ */
+public final class DspChain {
+    private static final long TIME_UNKNOWN = Long.MIN_VALUE;
+
+    private final Equalizer equalizer = new Equalizer();
+    private final FadeEnvelope fade = new FadeEnvelope();
+    private int sampleRate = 44100;
+    private int channelCount = 1;
+    // Thời điểm (µs) của bộ đệm vào gần nhất và số khung đã xử lý từ đó; chỉ dùng trên luồng xử lý
+    private long streamTimeUs = TIME_UNKNOWN;
+    private long framesSinceTime;
+
+    public Equalizer equalizer() {
+        return equalizer;
+    }
+
+    public FadeEnvelope fade() {
+        return fade;
+    }
+
+    // Gọi mỗi lần đổi định dạng hoặc tua; trạng thái lọc được xoá
+    public void configure(int sampleRate, int channelCount) {
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+        equalizer.configure(sampleRate, channelCount);
+        fade.configure(sampleRate);
+    }
+
+    // Thời điểm (µs) của khung đầu tiên trong dữ liệu sắp đưa vào process
+    public void setStreamTime(long timeUs) {
+        streamTimeUs = timeUs;
+        framesSinceTime = 0;
+    }
+
+    // Sau khi tua: chưa biết thời điểm cho tới bộ đệm tiếp theo, và fade đã hẹn theo trục cũ bị bỏ
+    public void clearStreamTime() {
+        streamTimeUs = TIME_UNKNOWN;
+        fade.cancelScheduled();
+    }
+
+    /**
+     * Xử lý mọi khung trọn vẹn của {@code input} và ghi vào {@code output} (đủ chỗ cho cùng số byte).
+     * Không lật {@code output}; phần lẻ không đủ một khung được chép nguyên.
+     */
+    public void process(ByteBuffer input, ByteBuffer output, boolean floatPcm) {
+        int channels = channelCount;
+        int frames = input.remaining() / ((floatPcm ? 4 : 2) * channels);
+        if (streamTimeUs != TIME_UNKNOWN) {
+            fade.sync(streamTimeUs + framesSinceTime * 1_000_000 / sampleRate);
+            framesSinceTime += frames;
+        }
+        boolean flat = equalizer.update();
+        if (flat && fade.unityFrames() >= frames) {
+            fade.skip(frames);
+            output.put(input);
+            return;
+        }
+        if (floatPcm) {
+            while (input.remaining() >= 4 * channels) {
+                float gain = fade.next();
+                for (int c = 0; c < channels; c++) {
+                    float sample = input.getFloat();
+                    if (!flat) sample = equalizer.process(c, sample);
+                    output.putFloat(sample * gain);
+                }
+            }
+        } else {
+            while (input.remaining() >= 2 * channels) {
+                float gain = fade.next();
+                for (int c = 0; c < channels; c++) {
+                    float sample = input.getShort();
+                    if (!flat) sample = equalizer.process(c, sample);
+                    int value = Math.round(sample * gain);
+                    if (value > Short.MAX_VALUE) value = Short.MAX_VALUE;
+                    else if (value < Short.MIN_VALUE) value = Short.MIN_VALUE;
+                    output.putShort((short) value);
+                }
+            }
+        }
+        output.put(input);
+    }
+}
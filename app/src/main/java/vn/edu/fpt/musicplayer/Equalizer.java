@@ -0,0 +1,105 @@
+package vn.edu.fpt.musicplayer;
+
+import java.util.Arrays;
+
+/**
+ * Bộ cân bằng nhiều dải: mỗi dải là một bộ lọc peaking biquad (RBJ Audio EQ Cookbook) mắc nối tiếp,
+ * dải ở 0 dB được bỏ qua. Mức của từng dải đặt được từ bất kỳ luồng nào; hệ số chỉ được tính lại
+ * trên luồng xử lý âm thanh khi có thay đổi, không cấp phát khi đang xử lý.
+ */
+public final class Equalizer {
+    public static final float[] BAND_FREQUENCIES = {60, 230, 910, 3600, 14000};
+    public static final int BAND_COUNT = BAND_FREQUENCIES.length;
+    public static final float MAX_GAIN_DB = 12;
+    private static final double Q = 1.0;
+
+    // Mức mong muốn (dB), ghi từ luồng giao diện; version báo cho luồng xử lý biết đã đổi
+    private final float[] requestedDb = new float[BAND_COUNT];
+    private volatile int version;
+    private int appliedVersion = -1;
+
+    private int sampleRate;
+    // Hệ số các dải đang bật, nối liền: b0 b1 b2 a1 a2
+    private final double[] coefficients = new double[BAND_COUNT * 5];
+    private int activeBands;
+    // Hai giá trị trạng thái cho mỗi (kênh, dải)
+    private double[] state = new double[0];
+
+    public void setGain(int band, float db) {
+        requestedDb[band] = Math.max(-MAX_GAIN_DB, Math.min(MAX_GAIN_DB, db));
+        version++;
+    }
+
+    public float getGain(int band) {
+        return requestedDb[band];
+    }
+
+    public void configure(int sampleRate, int channelCount) {
+        this.sampleRate = sampleRate;
+        int stateSize = channelCount * BAND_COUNT * 2;
+        if (state.length != stateSize) {
+            state = new double[stateSize];
+        } else {
+            Arrays.fill(state, 0);
+        }
+        appliedVersion = -1;
+        update();
+    }
+
+    // Áp dụng mức mới nếu có; trả về true nếu mọi dải đều ở 0 dB
+    public boolean update() {
+        int current = version;
+        if (current != appliedVersion && sampleRate > 0) {
+            appliedVersion = current;
+            int active = 0;
+            for (int band = 0; band < BAND_COUNT; band++) {
+                float db = requestedDb[band];
+                if (db == 0 || BAND_FREQUENCIES[band] >= sampleRate / 2f) continue;
+                peaking(BAND_FREQUENCIES[band], db, sampleRate, coefficients, active * 5);
+                active++;
+            }
+            // Bộ lọc đổi vị trí trong chuỗi thì trạng thái cũ không còn đúng
+            if (active != activeBands) Arrays.fill(state, 0);
+            activeBands = active;
+        }
+        return activeBands == 0;
+    }
+
+    public boolean isFlat() {
+        return activeBands == 0;
+    }
+
+    // Lọc một mẫu của kênh channel qua các dải đang bật
+    public float process(int channel, float sample) {
+        double x = sample;
+        double[] c = coefficients;
+        double[] s = state;
+        int base = channel * BAND_COUNT * 2;
+        for (int band = 0; band < activeBands; band++) {
+            int k = band * 5;
+            int z = base + band * 2;
+            double y = c[k] * x + s[z];
+            s[z] = c[k + 1] * x - c[k + 3] * y + s[z + 1];
+            s[z + 1] = c[k + 2] * x - c[k + 4] * y;
+            x = y;
+        }
+        return (float) x;
+    }
+
+    public void reset() {
+        Arrays.fill(state, 0);
+    }
+
+    private static void peaking(double frequency, double gainDb, int sampleRate, double[] out, int offset) {
+        double a = Math.pow(10, gainDb / 40);
+        double w0 = 2 * Math.PI * frequency / sampleRate;
+        double alpha = Math.sin(w0) / (2 * Q);
+        double cos = Math.cos(w0);
+        double a0 = 1 + alpha / a;
+        out[offset] = (1 + alpha * a) / a0;
+        out[offset + 1] = -2 * cos / a0;
+        out[offset + 2] = (1 - alpha * a) / a0;
+        out[offset + 3] = -2 * cos / a0;
+        out[offset + 4] = (1 - alpha / a) / a0;
+    }
+}
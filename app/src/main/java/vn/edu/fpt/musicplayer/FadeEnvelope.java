@@ -0,0 +1,201 @@
+package vn.edu.fpt.musicplayer;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Đường bao âm lượng cho fade/crossfade, tính theo từng khung trên luồng xử lý âm thanh.
+ * Lệnh (fade tới một mức, hoặc nhỏ dần về 0 rồi to dần lại) được gửi từ luồng khác dưới dạng
+ * một object bất biến, nên luồng xử lý không phải khoá hay cấp phát gì.
+ * Mức được biến thành hệ số theo đường cong equal-power để tổng âm lượng không bị hụt ở giữa.
+ * <p>
+ * Crossfade được hẹn theo thời điểm trong dòng PCM ({@link #fadeOutInAt}) chứ không theo lúc lệnh
+ * tới: bộ xử lý chạy trước phần đang nghe cả bộ đệm AudioTrack, nên chỉ đếm khung ở đây mới chạm 0
+ * đúng điểm nối hai bài.
+ */
+public final class FadeEnvelope {
+    private static final class Command {
+        final float target;
+        final int outMs;
+        // > 0 nghĩa là sau khi nhỏ về 0 thì to dần lại về 1 trong inMs
+        final int inMs;
+        // Bỏ qua chuyển dần, đặt ngay mức target
+        final boolean immediate;
+        // Thời điểm (µs, theo dòng PCM) phải chạm 0, cho lệnh hẹn trước
+        final long atUs;
+
+        Command(float target, int outMs, int inMs, boolean immediate, long atUs) {
+            this.target = target;
+            this.outMs = outMs;
+            this.inMs = inMs;
+            this.immediate = immediate;
+            this.atUs = atUs;
+        }
+    }
+
+    private final AtomicReference<Command> pending = new AtomicReference<>();
+    // Lệnh hẹn trước chờ tới khi biết thời điểm của dòng PCM (sync)
+    private final AtomicReference<Command> scheduled = new AtomicReference<>();
+
+    private int sampleRate = 44100;
+    private float level = 1f;
+    private float target = 1f;
+    private float step;
+    // Số khung còn lại tới khi đạt target
+    private int remaining;
+    private int inFrames;
+    // Lệnh hẹn đã quy ra khung: còn outDelay khung (-1 nếu không có) rồi nhỏ dần trong outFrames
+    private long outDelay = -1;
+    private int outFrames;
+    private int outInFrames;
+
+    // Chuyển dần về level (0..1) trong durationMs
+    public void fadeTo(float level, int durationMs) {
+        send(new Command(clamp(level), Math.max(0, durationMs), 0, false, 0));
+    }
+
+    // Nhỏ dần về 0 trong outMs rồi to dần lại trong inMs, bắt đầu ngay
+    public void fadeOutIn(int outMs, int inMs) {
+        send(new Command(0f, Math.max(0, outMs), Math.max(1, inMs), false, 0));
+    }
+
+    /**
+     * Nhỏ dần về 0 trong outMs sao cho chạm 0 đúng lúc dòng PCM tới {@code boundaryUs} (cùng trục thời
+     * gian với {@link #sync(long)}), rồi to dần lại trong inMs. Nếu đã quá gần điểm nối thì nhỏ dần
+     * trong phần còn lại; nếu đã qua thì bỏ. Fade đang chạy (ví dụ đang to dần ở đầu bài) vẫn chạy tiếp.
+     */
+    public void fadeOutInAt(long boundaryUs, int outMs, int inMs) {
+        scheduled.set(new Command(0f, Math.max(0, outMs), Math.max(1, inMs), false, boundaryUs));
+    }
+
+    // Bỏ fade đã hẹn mà chưa bắt đầu nhỏ dần, ví dụ sau khi tua; gọi trên luồng xử lý
+    public void cancelScheduled() {
+        scheduled.set(null);
+        outDelay = -1;
+    }
+
+    public void set(float level) {
+        send(new Command(clamp(level), 0, 0, true, 0));
+    }
+
+    public void configure(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Gọi ở đầu mỗi bộ đệm với thời điểm (µs) của khung sắp xử lý, để quy lệnh hẹn trước ra số khung.
+     * Lệnh đặt ngay gửi trước đó được áp dụng trước, đúng thứ tự gửi.
+     */
+    public void sync(long timeUs) {
+        Command command = scheduled.getAndSet(null);
+        if (command == null) return;
+        Command now = pending.getAndSet(null);
+        if (now != null) start(now);
+        long framesLeft = (command.atUs - timeUs) * sampleRate / 1_000_000;
+        if (framesLeft <= 0) return;
+        long frames = Math.max(1, (long) command.outMs * sampleRate / 1000);
+        outDelay = Math.max(0, framesLeft - frames);
+        outFrames = (int) Math.min(frames, framesLeft);
+        outInFrames = Math.max(1, (int) ((long) command.inMs * sampleRate / 1000));
+    }
+
+    // Hệ số cho khung tiếp theo
+    public float next() {
+        Command command = pending.getAndSet(null);
+        if (command != null) start(command);
+        if (outDelay >= 0) {
+            if (outDelay == 0) {
+                outDelay = -1;
+                beginOut();
+            } else {
+                outDelay--;
+            }
+        }
+        if (remaining > 0) {
+            if (--remaining == 0) {
+                level = target;
+                arrive();
+            } else {
+                level += step;
+            }
+        }
+        return gain(level);
+    }
+
+    /**
+     * Số khung sắp tới chắc chắn có hệ số 1, để chuỗi xử lý chép thẳng thay vì nhân từng khung;
+     * sau khi chép thì gọi {@link #skip(int)}.
+     */
+    public int unityFrames() {
+        if (pending.get() != null || remaining > 0 || level != 1f) return 0;
+        return outDelay >= 0 ? (int) Math.min(outDelay, Integer.MAX_VALUE) : Integer.MAX_VALUE;
+    }
+
+    // Bỏ qua frames khung (không lớn hơn unityFrames())
+    public void skip(int frames) {
+        if (outDelay > 0) outDelay -= frames;
+    }
+
+    // Không có fade nào đang chạy hay đã hẹn và mức là 1: có thể bỏ qua
+    public boolean isUnity() {
+        return unityFrames() == Integer.MAX_VALUE;
+    }
+
+    public float level() {
+        return level;
+    }
+
+    // Lệnh mới huỷ cả lệnh hẹn trước chưa tới lúc
+    private void send(Command command) {
+        scheduled.set(null);
+        pending.set(command);
+    }
+
+    private void start(Command command) {
+        outDelay = -1;
+        inFrames = command.inMs > 0 ? Math.max(1, (int) ((long) command.inMs * sampleRate / 1000)) : 0;
+        target = command.target;
+        int frames = (int) ((long) command.outMs * sampleRate / 1000);
+        if (command.immediate || frames <= 0 || level == target) {
+            level = target;
+            remaining = 0;
+            arrive();
+            return;
+        }
+        step = (target - level) / frames;
+        remaining = frames;
+    }
+
+    // Tới lúc của lệnh hẹn: nhỏ dần từ mức hiện tại
+    private void beginOut() {
+        inFrames = outInFrames;
+        target = 0f;
+        if (level == 0f) {
+            remaining = 0;
+            arrive();
+            return;
+        }
+        step = -level / outFrames;
+        remaining = outFrames;
+    }
+
+    // Đã nhỏ hẳn sau fadeOutIn: bắt đầu to dần lại
+    private void arrive() {
+        if (inFrames > 0 && target == 0f) {
+            target = 1f;
+            step = 1f / inFrames;
+            remaining = inFrames;
+            inFrames = 0;
+        }
+    }
+
+    // Đường cong equal-power
+    static float gain(float level) {
+        if (level >= 1f) return 1f;
+        if (level <= 0f) return 0f;
+        return (float) Math.sin(level * Math.PI / 2);
+    }
+
+    private static float clamp(float level) {
+        return Math.max(0f, Math.min(1f, level));
+    }
+}
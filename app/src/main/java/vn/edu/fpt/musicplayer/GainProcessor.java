@@ -0,0 +1,134 @@
+package vn.edu.fpt.musicplayer;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.audio.AudioProcessor;
+import com.google.android.exoplayer2.audio.BaseAudioProcessor;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Nhân PCM với hệ số chuẩn hoá âm lượng của bài đang phát, nằm trong chuỗi xử lý của AudioSink.
+ * Khi đổi hệ số, mức nhân đổi dần trong {@link #RAMP_MS} để không bị tiếng "bụp".
+ * <p>
+ * Bộ xử lý chạy trước phần đang phát ra loa cả bộ đệm AudioTrack (hàng trăm ms), nên hệ số của bài
+ * kế tiếp được gửi trước qua {@link #setNextGain(float)} và đổi ngay tại điểm nối hai bài trong dòng
+ * PCM ({@link #streamChanged()}), thay vì chờ sự kiện chuyển bài trên luồng chính.
+ * Không cấp phát khi đang chạy: bộ đệm ra được dùng lại giữa các lần gọi.
+ */
+public final class GainProcessor extends BaseAudioProcessor {
+    private static final int RAMP_MS = 50;
+
+    // Ghi từ luồng chính, đọc từ luồng phát
+    private volatile float targetGain = 1f;
+    // Hệ số của bài sẽ phát tiếp, NaN nếu chưa biết
+    private volatile float nextGain = Float.NaN;
+    // Đặt và đọc trên luồng phát: dữ liệu tới tiếp theo là của bài mới
+    private boolean boundary;
+    private float gain = 1f;
+    private float rampTarget = 1f;
+    private float step;
+    private int rampFrames = 1;
+
+    public void setGain(float gain) {
+        targetGain = gain;
+    }
+
+    // Hệ số dùng từ điểm nối với bài kế tiếp; NaN để giữ nguyên hệ số hiện tại
+    public void setNextGain(float gain) {
+        nextGain = gain;
+    }
+
+    // Gọi trên luồng phát khi AudioSink chuyển sang bài kế tiếp (phát liền, không tua)
+    public void streamChanged() {
+        boundary = true;
+    }
+
+    // Gọi trên luồng phát khi AudioSink bị flush do tua hay chuyển bài bằng tay
+    public void streamReset() {
+        boundary = false;
+    }
+
+    @Override
+    protected AudioFormat onConfigure(AudioFormat inputAudioFormat) throws UnhandledAudioFormatException {
+        if (inputAudioFormat.encoding != C.ENCODING_PCM_16BIT && inputAudioFormat.encoding != C.ENCODING_PCM_FLOAT) {
+            throw new UnhandledAudioFormatException(inputAudioFormat);
+        }
+        rampFrames = Math.max(1, inputAudioFormat.sampleRate * RAMP_MS / 1000);
+        return inputAudioFormat;
+    }
+
+    @Override
+    public void queueInput(ByteBuffer inputBuffer) {
+        int remaining = inputBuffer.remaining();
+        if (remaining == 0) return;
+        ByteBuffer output = replaceOutputBuffer(remaining);
+        if (boundary) {
+            boundary = false;
+            float next = nextGain;
+            nextGain = Float.NaN;
+            if (!Float.isNaN(next)) {
+                // Đổi hẳn ở điểm nối: khung đầu tiên của bài mới đã ở đúng mức
+                targetGain = next;
+                gain = next;
+                rampTarget = next;
+            }
+        }
+        float target = targetGain;
+        if (target != rampTarget) {
+            rampTarget = target;
+            step = (target - gain) / rampFrames;
+        }
+        if (gain == target && target == 1f) {
+            output.put(inputBuffer);
+            output.flip();
+            return;
+        }
+
+        int channels = inputAudioFormat.channelCount;
+        if (inputAudioFormat.encoding == C.ENCODING_PCM_16BIT) {
+            while (inputBuffer.remaining() >= 2 * channels) {
+                // Số thực dấu phẩy tĩnh Q16 cho cả khung
+                int q = Math.round(nextGain(target) * 65536);
+                for (int c = 0; c < channels; c++) {
+                    int sample = (int) ((inputBuffer.getShort() * (long) q + 32768) >> 16);
+                    if (sample > Short.MAX_VALUE) sample = Short.MAX_VALUE;
+                    else if (sample < Short.MIN_VALUE) sample = Short.MIN_VALUE;
+                    output.putShort((short) sample);
+                }
+            }
+        } else {
+            while (inputBuffer.remaining() >= 4 * channels) {
+                float g = nextGain(target);
+                for (int c = 0; c < channels; c++) {
+                    output.putFloat(inputBuffer.getFloat() * g);
+                }
+            }
+        }
+        // Phần lẻ không đủ một khung (không xảy ra với AudioSink) thì chép nguyên
+        output.put(inputBuffer);
+        output.flip();
+    }
+
+    private float nextGain(float target) {
+        if (gain != target) {
+            gain += step;
+            if ((step > 0 && gain > target) || (step < 0 && gain < target) || step == 0) gain = target;
+        }
+        return gain;
+    }
+
+    // Sau khi tua hoặc dừng thì không cần chuyển dần, dùng ngay hệ số mới. AudioSink cũng flush các
+    // bộ xử lý khi cấu hình lại ở điểm nối hai bài, nên không xoá boundary ở đây
+    @Override
+    protected void onFlush() {
+        gain = targetGain;
+        rampTarget = gain;
+    }
+
+    @Override
+    protected void onReset() {
+        gain = targetGain;
+        rampTarget = gain;
+        step = 0;
+    }
+}
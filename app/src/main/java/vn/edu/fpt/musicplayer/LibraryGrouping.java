@@ -0,0 +1,225 @@
+package vn.edu.fpt.musicplayer;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Các cách duyệt thư viện (theo tên bài, nghệ sĩ, album, mới thêm) được tính sẵn một lần ở luồng nền.
+ * Mỗi cách là một {@link Grouping}: thứ tự bài dạng mảng chỉ số dòng trong {@link LibraryStore}, cộng với vị trí
+ * bắt đầu và nhãn của từng nhóm. Đổi cách xem chỉ cần đọc lại mảng, không truy vấn hay sắp xếp lại;
+ * tiêu đề nhóm và chỉ mục cuộn nhanh cũng lấy từ cùng các mảng này.
+ */
+public final class LibraryGrouping {
+    public enum Mode {
+        TITLE, ARTIST, ALBUM, RECENT
+    }
+
+    static final String OTHER_LABEL = "#";
+    static final String UNKNOWN_LABEL = "<unknown>";
+    static final String[] RECENT_LABELS = {"Today", "This week", "This month", "Earlier"};
+    private static final long[] RECENT_LIMITS = {24 * 3600L, 7 * 24 * 3600L, 30 * 24 * 3600L};
+
+    private final LibraryStore store;
+    private final Grouping[] groupings;
+
+    private LibraryGrouping(LibraryStore store, Grouping[] groupings) {
+        this.store = store;
+        this.groupings = groupings;
+    }
+
+    // Thư viện đã dùng để tính; các chỉ số dòng chỉ đúng với chính bản này
+    public LibraryStore store() {
+        return store;
+    }
+
+    public Grouping get(Mode mode) {
+        return groupings[mode.ordinal()];
+    }
+
+    /**
+     * Tính mọi cách xem cho {@code store}. Tốn thời gian với thư viện lớn nên phải chạy ở luồng nền.
+     *
+     * @param nowSeconds thời điểm hiện tại (giây), dùng để chia nhóm "mới thêm"
+     */
+    public static LibraryGrouping build(LibraryStore store, long nowSeconds) {
+        int n = store.size();
+        // Chuẩn hoá khoá sắp xếp một lần cho mỗi bài
+        String[] titles = new String[n];
+        String[] artists = new String[n];
+        String[] albums = new String[n];
+        long[] artistIds = new long[n];
+        long[] albumIds = new long[n];
+        long[] added = new long[n];
+        for (int i = 0; i < n; i++) {
+            titles[i] = foldKey(store.title(i));
+            artists[i] = foldKey(store.artist(i));
+            albums[i] = foldKey(store.album(i));
+            artistIds[i] = store.artistId(i);
+            albumIds[i] = store.albumId(i);
+            added[i] = store.dateAdded(i);
+        }
+        Comparator<Integer> byTitle = (a, b) -> {
+            int c = titles[a].compareTo(titles[b]);
+            return c != 0 ? c : Long.compare(store.id(a), store.id(b));
+        };
+
+        Grouping[] groupings = new Grouping[Mode.values().length];
+
+        int[] order = sort(n, byTitle);
+        GroupBuilder groups = new GroupBuilder(n);
+        for (int p = 0; p < n; p++) {
+            int i = order[p];
+            String label = initial(titles[i]);
+            if (p == 0 || !label.equals(initial(titles[order[p - 1]]))) groups.start(p, label);
+        }
+        groupings[Mode.TITLE.ordinal()] = groups.build(Mode.TITLE, order);
+
+        order = sort(n, (a, b) -> {
+            int c = artists[a].compareTo(artists[b]);
+            if (c == 0) c = Long.compare(artistIds[a], artistIds[b]);
+            return c != 0 ? c : byTitle.compare(a, b);
+        });
+        groups = new GroupBuilder(n);
+        for (int p = 0; p < n; p++) {
+            int i = order[p];
+            if (p == 0 || artistIds[i] != artistIds[order[p - 1]] || !artists[i].equals(artists[order[p - 1]])) {
+                groups.start(p, label(store.artist(i)));
+            }
+        }
+        groupings[Mode.ARTIST.ordinal()] = groups.build(Mode.ARTIST, order);
+
+        order = sort(n, (a, b) -> {
+            int c = albums[a].compareTo(albums[b]);
+            if (c == 0) c = Long.compare(albumIds[a], albumIds[b]);
+            return c != 0 ? c : byTitle.compare(a, b);
+        });
+        groups = new GroupBuilder(n);
+        for (int p = 0; p < n; p++) {
+            int i = order[p];
+            if (p == 0 || albumIds[i] != albumIds[order[p - 1]] || !albums[i].equals(albums[order[p - 1]])) {
+                groups.start(p, label(store.album(i)));
+            }
+        }
+        groupings[Mode.ALBUM.ordinal()] = groups.build(Mode.ALBUM, order);
+
+        order = sort(n, (a, b) -> {
+            int c = Long.compare(added[b], added[a]);
+            return c != 0 ? c : byTitle.compare(a, b);
+        });
+        groups = new GroupBuilder(n);
+        int previousBucket = -1;
+        for (int p = 0; p < n; p++) {
+            int bucket = recentBucket(nowSeconds - added[order[p]]);
+            if (bucket != previousBucket) groups.start(p, RECENT_LABELS[bucket]);
+            previousBucket = bucket;
+        }
+        groupings[Mode.RECENT.ordinal()] = groups.build(Mode.RECENT, order);
+
+        return new LibraryGrouping(store, groupings);
+    }
+
+    private static int[] sort(int n, Comparator<Integer> comparator) {
+        Integer[] boxed = new Integer[n];
+        for (int i = 0; i < n; i++) boxed[i] = i;
+        Arrays.sort(boxed, comparator);
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) order[i] = boxed[i];
+        return order;
+    }
+
+    private static String foldKey(String text) {
+        return text == null ? "" : TextFolder.fold(text);
+    }
+
+    private static String label(String text) {
+        return text == null || text.isEmpty() ? UNKNOWN_LABEL : text;
+    }
+
+    // Chữ cái đầu (đã bỏ dấu, viết hoa); ký tự khác chữ cái gom vào "#"
+    private static String initial(String foldedTitle) {
+        if (foldedTitle.isEmpty() || !Character.isLetter(foldedTitle.charAt(0))) return OTHER_LABEL;
+        return String.valueOf(Character.toUpperCase(foldedTitle.charAt(0)));
+    }
+
+    private static int recentBucket(long age) {
+        for (int b = 0; b < RECENT_LIMITS.length; b++) {
+            if (age < RECENT_LIMITS[b]) return b;
+        }
+        return RECENT_LIMITS.length;
+    }
+
+    /**
+     * Một cách xem: thứ tự bài và các nhóm liên tiếp trong thứ tự đó.
+     * Nhóm g gồm các vị trí [groupStart(g), groupStart(g + 1)).
+     */
+    public static final class Grouping {
+        public final Mode mode;
+        private final int[] order;
+        private final int[] groupStarts;
+        private final String[] labels;
+
+        Grouping(Mode mode, int[] order, int[] groupStarts, String[] labels) {
+            this.mode = mode;
+            this.order = order;
+            this.groupStarts = groupStarts;
+            this.labels = labels;
+        }
+
+        public int size() {
+            return order.length;
+        }
+
+        // Dòng trong LibraryStore của bài ở vị trí position
+        public int rowAt(int position) {
+            return order[position];
+        }
+
+        // Toàn bộ thứ tự (dòng theo vị trí); mảng dùng chung, không được sửa
+        public int[] rows() {
+            return order;
+        }
+
+        public int groupCount() {
+            return labels.length;
+        }
+
+        public int groupStart(int group) {
+            return group < groupStarts.length ? groupStarts[group] : order.length;
+        }
+
+        public String groupLabel(int group) {
+            return labels[group];
+        }
+
+        // Nhóm chứa vị trí position (tìm nhị phân)
+        public int groupOf(int position) {
+            int index = Arrays.binarySearch(groupStarts, position);
+            return index >= 0 ? index : -index - 2;
+        }
+
+        public boolean isGroupStart(int position) {
+            return Arrays.binarySearch(groupStarts, position) >= 0;
+        }
+    }
+
+    private static final class GroupBuilder {
+        private final int[] starts;
+        private final String[] labels;
+        private int count;
+
+        GroupBuilder(int capacity) {
+            starts = new int[capacity];
+            labels = new String[capacity];
+        }
+
+        void start(int position, String label) {
+            starts[count] = position;
+            labels[count] = label;
+            count++;
+        }
+
+        Grouping build(Mode mode, int[] order) {
+            return new Grouping(mode, order, Arrays.copyOf(starts, count), Arrays.copyOf(labels, count));
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package vn.edu.fpt.musicplayer;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Chỉ mục thư viện lưu trên máy. Mở rất nhanh khi khởi động và được đồng bộ
+ * dần với MediaStore bởi {@link LibrarySync}, nên không phải quét lại từ đầu mỗi lần mở app.
+ * Đây chỉ là bộ nhớ đệm: khi đổi schema thì xoá và quét lại.
+ */
+public class LibraryIndex extends SQLiteOpenHelper {
+    private static final String DB_NAME = "library.db";
+    private static final int DB_VERSION = 2;
+
+    static final String TABLE_SONGS = "songs";
+    private static final String TABLE_STATE = "sync_state";
+
+    // Cùng thứ tự cột với CursorSongCursor
+    static final String[] SONG_COLUMNS = {
+            "_id", "title", "artist", "data", "album_id", "duration", "date_modified",
+            "album", "artist_id", "date_added"
+    };
+    private static final String ORDER_BY_TITLE = "title COLLATE NOCASE ASC";
+    // Số lần commit gần nhất còn nhớ id đã đổi
+    private static final int JOURNAL_SIZE = 64;
+    // Phần tử của journal cho lần ghi thay toàn bộ
+    private static final long[] REPLACED_ALL = new long[0];
+
+    private static LibraryIndex instance;
+
+    // Phiên bản (số lần commit từ khi mở tiến trình) và id đã đổi của các lần commit gần nhất;
+    // commit và tăng phiên bản nằm trong cùng khoá nên đọc phiên bản thấy đúng dữ liệu đã commit
+    private final Object versionLock = new Object();
+    private long version;
+    private final ArrayDeque<long[]> journal = new ArrayDeque<>();
+
+    public static synchronized LibraryIndex get(Context context) {
+        if (instance == null) {
+            instance = new LibraryIndex(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private LibraryIndex(Context context) {
+        super(context, DB_NAME, null, DB_VERSION);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.enableWriteAheadLogging();
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_SONGS + " ("
+                + "_id INTEGER PRIMARY KEY, "
+                + "title TEXT, "
+                + "artist TEXT, "
+                + "data TEXT, "
+                + "album_id INTEGER, "
+                + "duration INTEGER, "
+                + "date_modified INTEGER, "
+                + "album TEXT, "
+                + "artist_id INTEGER, "
+                + "date_added INTEGER)");
+        db.execSQL("CREATE INDEX songs_title ON " + TABLE_SONGS + " (title COLLATE NOCASE)");
+        db.execSQL("CREATE TABLE " + TABLE_STATE + " (name TEXT PRIMARY KEY, value TEXT)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_SONGS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_STATE);
+        onCreate(db);
+    }
+
+    public boolean isEmpty() {
+        return count() == 0;
+    }
+
+    public long count() {
+        return DatabaseUtils.queryNumEntries(getReadableDatabase(), TABLE_SONGS);
+    }
+
+    public SongCursor openSongs() {
+        Cursor cursor = getReadableDatabase().query(TABLE_SONGS, SONG_COLUMNS,
+                null, null, null, null, ORDER_BY_TITLE);
+        return new CursorSongCursor(cursor);
+    }
+
+    @Nullable
+    public Song findSong(long id) {
+        try (Cursor cursor = getReadableDatabase().query(TABLE_SONGS, SONG_COLUMNS,
+                "_id = ?", new String[]{String.valueOf(id)}, null, null, null);
+             SongCursor row = new CursorSongCursor(cursor)) {
+            if (!row.moveToNext()) return null;
+            return Song.from(row);
+        }
+    }
+
+    // Danh sách id đã sắp xếp tăng dần, dùng để phát hiện bài bị xoá
+    public long[] queryIds() {
+        try (Cursor cursor = getReadableDatabase().query(TABLE_SONGS, new String[]{"_id"},
+                null, null, null, null, "_id ASC")) {
+            long[] ids = new long[cursor.getCount()];
+            int i = 0;
+            while (cursor.moveToNext()) {
+                ids[i++] = cursor.getLong(0);
+            }
+            return ids;
+        }
+    }
+
+    public String getState(String name) {
+        try (Cursor cursor = getReadableDatabase().query(TABLE_STATE, new String[]{"value"},
+                "name = ?", new String[]{name}, null, null, null)) {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        }
+    }
+
+    public Writer beginWrite(boolean replaceAll) {
+        return new Writer(this, getWritableDatabase(), replaceAll);
+    }
+
+    /**
+     * Phiên bản hiện tại. Danh sách đọc từ chỉ mục chứa mọi thay đổi tới phiên bản đọc ngay trước khi
+     * truy vấn, và không chứa thay đổi nào sau phiên bản đọc khi đã đọc xong.
+     */
+    public long version() {
+        synchronized (versionLock) {
+            return version;
+        }
+    }
+
+    /**
+     * Id (tăng dần) các bài được ghi hay xoá sau phiên bản {@code from} tới hết phiên bản {@code to};
+     * null nếu không biết: có lần ghi thay toàn bộ, hoặc {@code from} đã quá cũ.
+     */
+    @Nullable
+    public long[] changedIds(long from, long to) {
+        synchronized (versionLock) {
+            if (from < 0 || from > to || to > version || version - from > journal.size()) return null;
+            long[] ids = new long[0];
+            long entryVersion = version - journal.size();
+            for (long[] entry : journal) {
+                entryVersion++;
+                if (entryVersion <= from) continue;
+                if (entryVersion > to) break;
+                if (entry == REPLACED_ALL) return null;
+                int start = ids.length;
+                ids = Arrays.copyOf(ids, start + entry.length);
+                System.arraycopy(entry, 0, ids, start, entry.length);
+            }
+            Arrays.sort(ids);
+            return ids;
+        }
+    }
+
+    /**
+     * Ghi nhiều thay đổi trong một transaction. Chỉ những gì đã {@link #commit()} mới được lưu;
+     * {@link #close()} mà chưa commit sẽ huỷ toàn bộ.
+     */
+    public static class Writer implements AutoCloseable {
+        private final LibraryIndex owner;
+        private final SQLiteDatabase db;
+        private final SQLiteStatement upsert;
+        private final SQLiteStatement delete;
+        private final boolean replaceAll;
+        // Id đã ghi hay xoá, cho LibraryIndex#changedIds
+        private long[] changed = new long[16];
+        private int changedCount;
+        private boolean finished;
+
+        Writer(LibraryIndex owner, SQLiteDatabase db, boolean replaceAll) {
+            this.owner = owner;
+            this.db = db;
+            this.replaceAll = replaceAll;
+            db.beginTransaction();
+            if (replaceAll) {
+                db.delete(TABLE_SONGS, null, null);
+            }
+            upsert = db.compileStatement("INSERT OR REPLACE INTO " + TABLE_SONGS
+                    + " (_id, title, artist, data, album_id, duration, date_modified,"
+                    + " album, artist_id, date_added)"
+                    + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+            delete = db.compileStatement("DELETE FROM " + TABLE_SONGS + " WHERE _id = ?");
+        }
+
+        public void put(SongCursor row) {
+            upsert.clearBindings();
+            upsert.bindLong(1, row.getId());
+            bindNullable(upsert, 2, row.getTitle());
+            bindNullable(upsert, 3, row.getArtist());
+            bindNullable(upsert, 4, row.getData());
+            upsert.bindLong(5, row.getAlbumId());
+            upsert.bindLong(6, row.getDuration());
+            upsert.bindLong(7, row.getDateModified());
+            bindNullable(upsert, 8, row.getAlbum());
+            upsert.bindLong(9, row.getArtistId());
+            upsert.bindLong(10, row.getDateAdded());
+            upsert.executeInsert();
+            changed(row.getId());
+        }
+
+        // Ghi đè một dòng bằng bản đã sửa (ví dụ bổ sung từ thẻ nhúng), giữ nguyên date modified
+        public void put(Song song) {
+            upsert.clearBindings();
+            upsert.bindLong(1, song.id);
+            bindNullable(upsert, 2, song.title);
+            bindNullable(upsert, 3, song.artist);
+            bindNullable(upsert, 4, song.data);
+            upsert.bindLong(5, song.albumId);
+            upsert.bindLong(6, song.duration);
+            upsert.bindLong(7, song.dateModified);
+            bindNullable(upsert, 8, song.album);
+            upsert.bindLong(9, song.artistId);
+            upsert.bindLong(10, song.dateAdded);
+            upsert.executeInsert();
+            changed(song.id);
+        }
+
+        public void delete(long id) {
+            delete.bindLong(1, id);
+            delete.executeUpdateDelete();
+            changed(id);
+        }
+
+        public void putState(String name, String value) {
+            ContentValues values = new ContentValues();
+            values.put("name", name);
+            values.put("value", value);
+            db.insertWithOnConflict(TABLE_STATE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+        }
+
+        public void commit() {
+            synchronized (owner.versionLock) {
+                db.setTransactionSuccessful();
+                close();
+                owner.version++;
+                if (owner.journal.size() == JOURNAL_SIZE) owner.journal.removeFirst();
+                owner.journal.addLast(replaceAll ? REPLACED_ALL : Arrays.copyOf(changed, changedCount));
+            }
+        }
+
+        @Override
+        public void close() {
+            if (finished) return;
+            finished = true;
+            upsert.close();
+            delete.close();
+            db.endTransaction();
+        }
+
+        private void changed(long id) {
+            if (replaceAll) return;
+            if (changedCount == changed.length) changed = Arrays.copyOf(changed, changedCount * 2);
+            changed[changedCount++] = id;
+        }
+
+        private static void bindNullable(SQLiteStatement statement, int index, String value) {
+            if (value == null) {
+                statement.bindNull(index);
+            } else {
+                statement.bindString(index, value);
+            }
+        }
+    }
+}
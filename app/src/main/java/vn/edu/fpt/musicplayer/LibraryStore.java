@@ -0,0 +1,324 @@
+package vn.edu.fpt.musicplayer;
+
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Thư viện lưu theo cột thay cho danh sách {@link Song}: id, album, thời lượng... là các mảng
+ * nguyên thuỷ; tên bài và tên tệp nằm liền trong một mảng char; nghệ sĩ, album và thư mục chứa tệp
+ * được gộp trùng vào các bảng chuỗi dùng chung. Mỗi dòng chỉ tốn vài chục byte, không có object riêng.
+ * <p>
+ * Đối tượng này không đổi sau khi tạo nên đọc được từ mọi luồng. {@link Builder} chỉ ghi thêm
+ * vào cuối mảng và chia sẻ mảng với các bản đã tạo trước đó (không sao chép), nên tạo một bản
+ * mới sau mỗi trang tải về gần như không tốn gì.
+ */
+public final class LibraryStore {
+    public static final LibraryStore EMPTY = new Builder().build();
+
+    private final int size;
+    private final long[] ids;
+    private final long[] albumIds;
+    private final long[] artistIds;
+    private final long[] durations;
+    private final long[] datesModified;
+    private final long[] datesAdded;
+    // Dòng r: tên bài ở text[rowStart[r], nameStart[r]), tên tệp ở text[nameStart[r], rowStart[r + 1])
+    private final char[] text;
+    private final int[] rowStart;
+    private final int[] nameStart;
+    // Chỉ số vào các bảng chuỗi, -1 là null
+    private final int[] artistRefs;
+    private final int[] albumRefs;
+    private final int[] dirRefs;
+    private final String[] artists;
+    private final String[] albums;
+    private final String[] dirs;
+
+    // Bảng băm id -> dòng, dựng khi cần lần đầu
+    private volatile int[] idTable;
+
+    private LibraryStore(Builder b) {
+        size = b.size;
+        ids = b.ids;
+        albumIds = b.albumIds;
+        artistIds = b.artistIds;
+        durations = b.durations;
+        datesModified = b.datesModified;
+        datesAdded = b.datesAdded;
+        text = b.text;
+        rowStart = b.rowStart;
+        nameStart = b.nameStart;
+        artistRefs = b.artistRefs;
+        albumRefs = b.albumRefs;
+        dirRefs = b.dirRefs;
+        artists = b.artists.values;
+        albums = b.albums.values;
+        dirs = b.dirs.values;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long id(int row) {
+        return ids[check(row)];
+    }
+
+    public long albumId(int row) {
+        return albumIds[check(row)];
+    }
+
+    public long artistId(int row) {
+        return artistIds[check(row)];
+    }
+
+    public long duration(int row) {
+        return durations[check(row)];
+    }
+
+    public long dateModified(int row) {
+        return datesModified[check(row)];
+    }
+
+    public long dateAdded(int row) {
+        return datesAdded[check(row)];
+    }
+
+    /**
+     * Mảng chứa tên bài, dùng với {@link #titleStart} và {@link #titleLength} (ví dụ
+     * {@code TextView.setText(char[], int, int)}) để hiển thị mà không tạo String.
+     * Các đoạn đã có không bao giờ bị ghi đè.
+     */
+    public char[] text() {
+        return text;
+    }
+
+    public int titleStart(int row) {
+        return rowStart[check(row)];
+    }
+
+    public int titleLength(int row) {
+        return nameStart[check(row)] - rowStart[row];
+    }
+
+    // Tạo String mới; dùng ở chỗ không nằm trên đường cuộn danh sách
+    public String title(int row) {
+        return new String(text, titleStart(row), titleLength(row));
+    }
+
+    // Chuỗi dùng chung, không cấp phát
+    @Nullable
+    public String artist(int row) {
+        int ref = artistRefs[check(row)];
+        return ref < 0 ? null : artists[ref];
+    }
+
+    @Nullable
+    public String album(int row) {
+        int ref = albumRefs[check(row)];
+        return ref < 0 ? null : albums[ref];
+    }
+
+    // Ghép thư mục dùng chung với tên tệp
+    @Nullable
+    public String path(int row) {
+        int ref = dirRefs[check(row)];
+        int start = nameStart[row];
+        int length = rowStart[row + 1] - start;
+        if (ref < 0) return length == 0 ? null : new String(text, start, length);
+        String dir = dirs[ref];
+        return new StringBuilder(dir.length() + 1 + length).append(dir).append('/')
+                .append(text, start, length).toString();
+    }
+
+    public Song toSong(int row) {
+        return new Song(id(row), title(row), artist(row), path(row), albumId(row), duration(row),
+                dateModified(row), album(row), artistId(row), dateAdded(row));
+    }
+
+    // Cùng nội dung hiển thị/phát (dùng khi tính khác biệt giữa hai bản)
+    public boolean sameContent(int row, LibraryStore other, int otherRow) {
+        check(row);
+        other.check(otherRow);
+        return ids[row] == other.ids[otherRow]
+                && albumIds[row] == other.albumIds[otherRow]
+                && durations[row] == other.durations[otherRow]
+                && datesModified[row] == other.datesModified[otherRow]
+                && datesAdded[row] == other.datesAdded[otherRow]
+                && equalRange(text, rowStart[row], rowStart[row + 1],
+                other.text, other.rowStart[otherRow], other.rowStart[otherRow + 1])
+                && nameStart[row] - rowStart[row] == other.nameStart[otherRow] - other.rowStart[otherRow]
+                && equalsNullable(artist(row), other.artist(otherRow))
+                && equalsNullable(album(row), other.album(otherRow))
+                && equalsNullable(dirRefs[row] < 0 ? null : dirs[dirRefs[row]],
+                other.dirRefs[otherRow] < 0 ? null : other.dirs[other.dirRefs[otherRow]]);
+    }
+
+    // Dòng có id cho trước, -1 nếu không có
+    public int indexOf(long id) {
+        int[] table = idTable;
+        if (table == null) {
+            table = buildIdTable();
+            idTable = table;
+        }
+        int mask = table.length - 1;
+        for (int h = mix(id) & mask; ; h = (h + 1) & mask) {
+            int row = table[h] - 1;
+            if (row < 0) return -1;
+            if (ids[row] == id) return row;
+        }
+    }
+
+    private int[] buildIdTable() {
+        int capacity = Integer.highestOneBit(Math.max(4, size * 2 - 1)) << 1;
+        int[] table = new int[capacity];
+        int mask = capacity - 1;
+        for (int row = 0; row < size; row++) {
+            int h = mix(ids[row]) & mask;
+            while (table[h] != 0) h = (h + 1) & mask;
+            table[h] = row + 1;
+        }
+        return table;
+    }
+
+    private int check(int row) {
+        if (row < 0 || row >= size) throw new IndexOutOfBoundsException("row " + row + ", size " + size);
+        return row;
+    }
+
+    private static int mix(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static boolean equalRange(char[] a, int aFrom, int aTo, char[] b, int bFrom, int bTo) {
+        if (aTo - aFrom != bTo - bFrom) return false;
+        for (int i = 0; i < aTo - aFrom; i++) {
+            if (a[aFrom + i] != b[bFrom + i]) return false;
+        }
+        return true;
+    }
+
+    private static boolean equalsNullable(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Ghi thêm từng bài rồi {@link #build()} để lấy bản đọc. Chỉ dùng từ một luồng.
+     */
+    public static final class Builder {
+        private int size;
+        private long[] ids = new long[16];
+        private long[] albumIds = new long[16];
+        private long[] artistIds = new long[16];
+        private long[] durations = new long[16];
+        private long[] datesModified = new long[16];
+        private long[] datesAdded = new long[16];
+        private char[] text = new char[256];
+        private int textLength;
+        private int[] rowStart = new int[17];
+        private int[] nameStart = new int[16];
+        private int[] artistRefs = new int[16];
+        private int[] albumRefs = new int[16];
+        private int[] dirRefs = new int[16];
+        private final StringPool artists = new StringPool();
+        private final StringPool albums = new StringPool();
+        private final StringPool dirs = new StringPool();
+
+        public Builder add(Song song) {
+            ensureRows(size + 1);
+            int row = size;
+            ids[row] = song.id;
+            albumIds[row] = song.albumId;
+            artistIds[row] = song.artistId;
+            durations[row] = song.duration;
+            datesModified[row] = song.dateModified;
+            datesAdded[row] = song.dateAdded;
+            artistRefs[row] = artists.intern(song.artist);
+            albumRefs[row] = albums.intern(song.album);
+
+            String title = song.title != null ? song.title : "";
+            String path = song.data;
+            int slash = path != null ? path.lastIndexOf('/') : -1;
+            String name = path == null ? "" : path.substring(slash + 1);
+            dirRefs[row] = slash < 0 ? -1 : dirs.intern(path.substring(0, slash));
+
+            ensureText(textLength + title.length() + name.length());
+            rowStart[row] = textLength;
+            title.getChars(0, title.length(), text, textLength);
+            textLength += title.length();
+            nameStart[row] = textLength;
+            name.getChars(0, name.length(), text, textLength);
+            textLength += name.length();
+            rowStart[row + 1] = textLength;
+            size++;
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        // Bản đọc gồm các dòng đã thêm tới lúc này; các lần add sau không ảnh hưởng tới nó
+        public LibraryStore build() {
+            artists.publish();
+            albums.publish();
+            dirs.publish();
+            return new LibraryStore(this);
+        }
+
+        // Bỏ phần dư của các mảng khi đã tải xong; các bản đã tạo trước vẫn giữ mảng cũ của chúng
+        public Builder trimToSize() {
+            resizeRows(size);
+            if (text.length > textLength) text = Arrays.copyOf(text, textLength);
+            return this;
+        }
+
+        private void ensureRows(int capacity) {
+            if (capacity > ids.length) resizeRows(Math.max(capacity, ids.length * 2));
+        }
+
+        private void resizeRows(int grown) {
+            ids = Arrays.copyOf(ids, grown);
+            albumIds = Arrays.copyOf(albumIds, grown);
+            artistIds = Arrays.copyOf(artistIds, grown);
+            durations = Arrays.copyOf(durations, grown);
+            datesModified = Arrays.copyOf(datesModified, grown);
+            datesAdded = Arrays.copyOf(datesAdded, grown);
+            rowStart = Arrays.copyOf(rowStart, grown + 1);
+            nameStart = Arrays.copyOf(nameStart, grown);
+            artistRefs = Arrays.copyOf(artistRefs, grown);
+            albumRefs = Arrays.copyOf(albumRefs, grown);
+            dirRefs = Arrays.copyOf(dirRefs, grown);
+        }
+
+        private void ensureText(int capacity) {
+            if (capacity > text.length) text = Arrays.copyOf(text, Math.max(capacity, text.length * 2));
+        }
+    }
+
+    // Bảng chuỗi gộp trùng; values chỉ được ghi thêm nên chia sẻ được với các bản đã tạo
+    private static final class StringPool {
+        private final Map<String, Integer> refs = new HashMap<>();
+        private String[] pending = new String[16];
+        private int count;
+        String[] values = new String[0];
+
+        int intern(@Nullable String value) {
+            if (value == null) return -1;
+            Integer ref = refs.get(value);
+            if (ref != null) return ref;
+            if (count == pending.length) pending = Arrays.copyOf(pending, count * 2);
+            pending[count] = value;
+            refs.put(value, count);
+            return count++;
+        }
+
+        void publish() {
+            values = pending;
+        }
+    }
+}
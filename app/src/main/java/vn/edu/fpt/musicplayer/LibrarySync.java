@@ -0,0 +1,358 @@
+package vn.edu.fpt.musicplayer;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.provider.MediaStore;
+
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Đồng bộ {@link LibraryIndex} với MediaStore. Chỉ đọc lại những dòng đã thay đổi kể từ lần
+ * đồng bộ trước (theo GENERATION_MODIFIED trên Android 11+, DATE_MODIFIED/DATE_ADDED trên máy cũ hơn),
+ * rồi đối chiếu cột _ID hai chiều để bắt các bài bị xoá hay bị bỏ sót.
+ */
+public class LibrarySync {
+    static final Uri URI = MediaStore.Audio.Media.EXTERNAL_CONTENT_URI;
+    static final String SELECTION = MediaStore.Audio.Media.IS_MUSIC + "!= 0";
+    static final String SORT_ORDER = MediaStore.Audio.Media.TITLE + " ASC";
+    // Cùng thứ tự cột với CursorSongCursor
+    static final String[] PROJECTION = {
+            MediaStore.Audio.Media._ID,
+            MediaStore.Audio.Media.TITLE,
+            MediaStore.Audio.Media.ARTIST,
+            MediaStore.Audio.Media.DATA,
+            MediaStore.Audio.Media.ALBUM_ID,
+            MediaStore.Audio.Media.DURATION,
+            MediaStore.Audio.Media.DATE_MODIFIED,
+            MediaStore.Audio.Media.ALBUM,
+            MediaStore.Audio.Media.ARTIST_ID,
+            MediaStore.Audio.Media.DATE_ADDED
+    };
+
+    private static final String STATE_VERSION = "mediastore_version";
+    private static final String STATE_GENERATION = "generation";
+    private static final String STATE_DATE_MODIFIED = "date_modified";
+    private static final String STATE_SYNC_TIME = "sync_time";
+    // SQLite giới hạn 999 tham số mỗi câu lệnh
+    private static final int ID_BATCH = 500;
+
+    private final Context context;
+    private final LibraryIndex index;
+
+    public LibrarySync(Context context, LibraryIndex index) {
+        this.context = context.getApplicationContext();
+        this.index = index;
+    }
+
+    /**
+     * Quét toàn bộ MediaStore. Mỗi dòng được đọc qua con trỏ trả về cũng được ghi vào chỉ mục;
+     * chỉ mục chỉ được thay thế khi đã đọc hết và đóng con trỏ.
+     */
+    @Nullable
+    public SongCursor openFullScan() {
+        String version = currentVersion();
+        long generation = currentGeneration();
+        long nowSeconds = System.currentTimeMillis() / 1000;
+        Cursor cursor = resolver().query(URI, PROJECTION, SELECTION, null, SORT_ORDER);
+        if (cursor == null) return null;
+        return new IndexingCursor(new CursorSongCursor(cursor), index.beginWrite(true), version, generation,
+                nowSeconds);
+    }
+
+    /**
+     * Đưa chỉ mục về trạng thái mới nhất. Chạy trên luồng nền.
+     *
+     * @return true nếu chỉ mục có thay đổi
+     */
+    public boolean sync() {
+        String version = currentVersion();
+        if (index.isEmpty() || !equals(version, index.getState(STATE_VERSION))) {
+            return fullRescan();
+        }
+
+        boolean changed = false;
+        long generation = currentGeneration();
+        long nowSeconds = System.currentTimeMillis() / 1000;
+        long watermark = parseLong(index.getState(STATE_DATE_MODIFIED));
+        long lastSync = parseLong(index.getState(STATE_SYNC_TIME));
+        String selection;
+        String[] args;
+        if (generation >= 0) {
+            selection = SELECTION + " AND " + MediaStore.MediaColumns.GENERATION_MODIFIED + " > ?";
+            args = new String[]{String.valueOf(parseLong(index.getState(STATE_GENERATION)))};
+        } else {
+            // DATE_MODIFIED tính theo giây, dùng >= để không bỏ sót các dòng cùng giây. File chép vào
+            // giữ nguyên mtime cũ (cp -p, adb push, giải nén) chỉ có DATE_ADDED mới
+            selection = SELECTION + " AND (" + MediaStore.Audio.Media.DATE_MODIFIED + " >= ? OR "
+                    + MediaStore.Audio.Media.DATE_ADDED + " >= ?)";
+            args = new String[]{String.valueOf(watermark), String.valueOf(lastSync)};
+        }
+
+        long[] indexIds = index.queryIds();
+        long[] readIds = new long[16];
+        int readCount = 0;
+        long maxDateModified = watermark;
+        try (LibraryIndex.Writer writer = index.beginWrite(false)) {
+            Cursor cursor = resolver().query(URI, PROJECTION, selection, args, null);
+            if (cursor != null) {
+                try (SongCursor rows = new CursorSongCursor(cursor)) {
+                    while (rows.moveToNext()) {
+                        writer.put(rows);
+                        long id = rows.getId();
+                        if (readCount == readIds.length) readIds = Arrays.copyOf(readIds, readCount * 2);
+                        readIds[readCount++] = id;
+                        long dateModified = rows.getDateModified();
+                        maxDateModified = Math.max(maxDateModified, Math.min(dateModified, nowSeconds));
+                        // Các dòng đã có và đúng ở mốc cũ được ghi lại nhưng không tính là thay đổi;
+                        // mtime ở tương lai bị đọc lại mỗi lần nên cũng không tính
+                        changed |= generation >= 0 || Arrays.binarySearch(indexIds, id) < 0
+                                || (dateModified > watermark && dateModified <= nowSeconds);
+                    }
+                }
+            }
+            readIds = Arrays.copyOf(readIds, readCount);
+            Arrays.sort(readIds);
+            changed |= reconcile(writer, indexIds, readIds);
+            writer.putState(STATE_GENERATION, String.valueOf(generation));
+            // Kẹp về hiện tại: một file mtime ở tương lai không được đẩy mốc đi quá mọi thay đổi sau này
+            writer.putState(STATE_DATE_MODIFIED, String.valueOf(maxDateModified));
+            writer.putState(STATE_SYNC_TIME, String.valueOf(nowSeconds));
+            writer.commit();
+        }
+        return changed;
+    }
+
+    private boolean fullRescan() {
+        boolean wasEmpty = index.isEmpty();
+        SongCursor cursor = openFullScan();
+        if (cursor == null) return false;
+        int rows = 0;
+        try (SongCursor scan = cursor) {
+            // IndexingCursor tự ghi từng dòng vào chỉ mục
+            while (scan.moveToNext()) rows++;
+        }
+        return rows > 0 || !wasEmpty;
+    }
+
+    /**
+     * So cột _ID của MediaStore với chỉ mục theo cả hai chiều: xoá bài không còn trong MediaStore và
+     * đọc bài có trong MediaStore mà chỉ mục không có (cũng không vừa đọc ở {@code readIds}).
+     * Không dựa vào số lượng, vì một bài bị sót cộng một bài bị xoá vẫn cho số lượng bằng nhau.
+     *
+     * @param indexIds id trong chỉ mục trước lần đồng bộ này, tăng dần
+     * @param readIds  id vừa đọc qua truy vấn thay đổi, tăng dần
+     */
+    private boolean reconcile(LibraryIndex.Writer writer, long[] indexIds, long[] readIds) {
+        long[] storeIds;
+        try (Cursor cursor = resolver().query(URI, new String[]{MediaStore.Audio.Media._ID},
+                SELECTION, null, MediaStore.Audio.Media._ID + " ASC")) {
+            if (cursor == null) return false;
+            storeIds = new long[cursor.getCount()];
+            int i = 0;
+            while (cursor.moveToNext()) {
+                storeIds[i++] = cursor.getLong(0);
+            }
+        }
+
+        boolean changed = false;
+        long[] missing = new long[16];
+        int missingCount = 0;
+        int i = 0;
+        int j = 0;
+        while (i < indexIds.length || j < storeIds.length) {
+            if (j >= storeIds.length || (i < indexIds.length && indexIds[i] < storeIds[j])) {
+                writer.delete(indexIds[i++]);
+                changed = true;
+            } else if (i >= indexIds.length || storeIds[j] < indexIds[i]) {
+                long id = storeIds[j++];
+                if (Arrays.binarySearch(readIds, id) < 0) {
+                    if (missingCount == missing.length) missing = Arrays.copyOf(missing, missingCount * 2);
+                    missing[missingCount++] = id;
+                }
+            } else {
+                i++;
+                j++;
+            }
+        }
+        for (int start = 0; start < missingCount; start += ID_BATCH) {
+            changed |= importRows(writer, missing, start, Math.min(missingCount, start + ID_BATCH));
+        }
+        return changed;
+    }
+
+    private boolean importRows(LibraryIndex.Writer writer, long[] ids, int from, int to) {
+        StringBuilder selection = new StringBuilder(SELECTION).append(" AND ")
+                .append(MediaStore.Audio.Media._ID).append(" IN (");
+        String[] args = new String[to - from];
+        for (int k = from; k < to; k++) {
+            selection.append(k == from ? "?" : ",?");
+            args[k - from] = String.valueOf(ids[k]);
+        }
+        selection.append(')');
+        boolean imported = false;
+        Cursor cursor = resolver().query(URI, PROJECTION, selection.toString(), args, null);
+        if (cursor == null) return false;
+        try (SongCursor rows = new CursorSongCursor(cursor)) {
+            while (rows.moveToNext()) {
+                writer.put(rows);
+                imported = true;
+            }
+        }
+        return imported;
+    }
+
+    /**
+     * Đăng ký lắng nghe thay đổi của MediaStore. {@code onChange} được gọi sau khi
+     * các thay đổi liên tiếp lắng xuống, để không đồng bộ lại cho từng file một.
+     */
+    public static ContentObserver observe(Context context, Handler handler, long debounceMs, Runnable onChange) {
+        ContentObserver observer = new ContentObserver(handler) {
+            @Override
+            public void onChange(boolean selfChange) {
+                handler.removeCallbacks(onChange);
+                handler.postDelayed(onChange, debounceMs);
+            }
+        };
+        context.getContentResolver().registerContentObserver(URI, true, observer);
+        return observer;
+    }
+
+    private ContentResolver resolver() {
+        return context.getContentResolver();
+    }
+
+    private String currentVersion() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            return MediaStore.getVersion(context, MediaStore.VOLUME_EXTERNAL);
+        }
+        return null;
+    }
+
+    // -1 khi hệ điều hành không hỗ trợ generation
+    private long currentGeneration() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            return MediaStore.getGeneration(context, MediaStore.VOLUME_EXTERNAL);
+        }
+        return -1;
+    }
+
+    private static long parseLong(String value) {
+        if (value == null) return 0;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Vừa trả dòng cho người đọc vừa ghi vào chỉ mục. Khi đọc hết thì commit,
+     * nếu bị đóng giữa chừng (huỷ, lỗi) thì chỉ mục cũ được giữ nguyên.
+     */
+    private static class IndexingCursor implements SongCursor {
+        private final SongCursor source;
+        private final LibraryIndex.Writer writer;
+        private final String version;
+        private final long generation;
+        private final long nowSeconds;
+        private long maxDateModified;
+        private boolean exhausted;
+
+        IndexingCursor(SongCursor source, LibraryIndex.Writer writer, String version, long generation,
+                       long nowSeconds) {
+            this.source = source;
+            this.writer = writer;
+            this.version = version;
+            this.generation = generation;
+            this.nowSeconds = nowSeconds;
+        }
+
+        @Override
+        public boolean moveToNext() {
+            if (!source.moveToNext()) {
+                exhausted = true;
+                return false;
+            }
+            writer.put(source);
+            maxDateModified = Math.max(maxDateModified, Math.min(source.getDateModified(), nowSeconds));
+            return true;
+        }
+
+        @Override
+        public long getId() {
+            return source.getId();
+        }
+
+        @Override
+        public String getTitle() {
+            return source.getTitle();
+        }
+
+        @Override
+        public String getArtist() {
+            return source.getArtist();
+        }
+
+        @Override
+        public String getData() {
+            return source.getData();
+        }
+
+        @Override
+        public long getAlbumId() {
+            return source.getAlbumId();
+        }
+
+        @Override
+        public long getDuration() {
+            return source.getDuration();
+        }
+
+        @Override
+        public long getDateModified() {
+            return source.getDateModified();
+        }
+
+        @Override
+        public String getAlbum() {
+            return source.getAlbum();
+        }
+
+        @Override
+        public long getArtistId() {
+            return source.getArtistId();
+        }
+
+        @Override
+        public long getDateAdded() {
+            return source.getDateAdded();
+        }
+
+        @Override
+        public void close() {
+            try {
+                source.close();
+                if (exhausted) {
+                    if (version != null) writer.putState(STATE_VERSION, version);
+                    writer.putState(STATE_GENERATION, String.valueOf(generation));
+                    writer.putState(STATE_DATE_MODIFIED, String.valueOf(maxDateModified));
+                    writer.putState(STATE_SYNC_TIME, String.valueOf(nowSeconds));
+                    writer.commit();
+                }
+            } finally {
+                writer.close();
+            }
+        }
+    }
+}
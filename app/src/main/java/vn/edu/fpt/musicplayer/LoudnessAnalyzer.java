@@ -0,0 +1,185 @@
+package vn.edu.fpt.musicplayer;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Đo độ to các bài ở nền và cung cấp hệ số chuẩn hoá âm lượng cho {@link PlaybackService}.
+ * <p>
+ * Cả thư viện được đo bởi một nhóm luồng cố định (ít hơn số nhân, ưu tiên thấp nhất) cùng lấy bài
+ * từ một con trỏ chung, nên không phải xếp hàng trăm nghìn tác vụ và không tranh CPU với luồng phát.
+ * Bài sắp phát mà chưa có kết quả thì được đo riêng trên một luồng khác, không chờ cả thư viện.
+ */
+public class LoudnessAnalyzer {
+    private static final String TAG = "Loudness";
+    private static final int MAX_WORKERS = 3;
+    private static final int BATCH_SIZE = 32;
+    private static final int MEMORY_ENTRIES = 256;
+
+    public interface Callback {
+        void onGain(long songId, float gain);
+    }
+
+    private static LoudnessAnalyzer instance;
+
+    private final LoudnessStore store;
+    private final int workers = Math.max(1, Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors() - 1));
+    private final ExecutorService pool = Executors.newFixedThreadPool(workers,
+            threadFactory("loudness", Process.THREAD_PRIORITY_LOWEST));
+    private final ExecutorService urgent = Executors.newSingleThreadExecutor(
+            threadFactory("loudness-now", Process.THREAD_PRIORITY_BACKGROUND));
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final LruCache<Long, Float> gains = new LruCache<>(MEMORY_ENTRIES);
+    // Tăng mỗi lần bắt đầu đo lại thư viện; các luồng của lượt cũ tự dừng
+    private final AtomicInteger pass = new AtomicInteger();
+
+    public static synchronized LoudnessAnalyzer get(Context context) {
+        if (instance == null) {
+            instance = new LoudnessAnalyzer(new LoudnessStore(context));
+        }
+        return instance;
+    }
+
+    private LoudnessAnalyzer(LoudnessStore store) {
+        this.store = store;
+    }
+
+    private static ThreadFactory threadFactory(String name, int priority) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> new Thread(() -> {
+            Process.setThreadPriority(priority);
+            r.run();
+        }, name + "-" + count.incrementAndGet());
+    }
+
+    // Hệ số đã có trong bộ nhớ, null nếu chưa biết
+    @Nullable
+    public Float peekGain(long songId) {
+        return gains.get(songId);
+    }
+
+    // Đọc hoặc đo ngay hệ số của một bài; callback (nếu có) được gọi trên luồng UI
+    public void requestGain(Song song, @Nullable Callback callback) {
+        Float cached = gains.get(song.id);
+        if (cached != null) {
+            if (callback != null) callback.onGain(song.id, cached);
+            return;
+        }
+        urgent.execute(() -> {
+            Float gain = gains.get(song.id);
+            if (gain == null) {
+                LoudnessStore.Result result = store.get(song.id, song.dateModified);
+                if (result == null) {
+                    result = measure(song.id, song.dateModified, song.data, new LoudnessMeter());
+                    store.putAll(Collections.singletonList(result));
+                }
+                gain = result.gain();
+                gains.put(song.id, gain);
+            }
+            if (callback != null) {
+                float value = gain;
+                mainHandler.post(() -> callback.onGain(song.id, value));
+            }
+        });
+    }
+
+    /**
+     * Đo các bài trong {@code library} chưa có kết quả hoặc đã đổi file từ lần đo trước.
+     * Gọi lại với thư viện mới sẽ huỷ lượt đang chạy.
+     */
+    public void analyzeLibrary(LibraryStore library) {
+        int current = pass.incrementAndGet();
+        urgent.execute(() -> {
+            LoudnessStore.Versions versions = store.queryVersions();
+            int[] rows = new int[library.size()];
+            int count = 0;
+            for (int row = 0; row < library.size(); row++) {
+                if (!versions.isCurrent(library.id(row), library.dateModified(row))) rows[count++] = row;
+            }
+            start(current, library, rows, count);
+        });
+    }
+
+    /**
+     * Chỉ đo các bài mới hoặc đã đổi file trong {@code library} so với {@code previous} (ví dụ sau
+     * một lần đồng bộ), không huỷ lượt đo thư viện đang chạy.
+     */
+    public void analyzeChanges(LibraryStore previous, LibraryStore library) {
+        int current = pass.get();
+        urgent.execute(() -> {
+            int[] rows = new int[library.size()];
+            int changed = 0;
+            for (int row = 0; row < library.size(); row++) {
+                int old = previous.indexOf(library.id(row));
+                if (old < 0 || previous.dateModified(old) != library.dateModified(row)) rows[changed++] = row;
+            }
+            if (changed == 0) return;
+            LoudnessStore.Versions versions = store.queryVersions();
+            int count = 0;
+            for (int i = 0; i < changed; i++) {
+                int row = rows[i];
+                if (!versions.isCurrent(library.id(row), library.dateModified(row))) rows[count++] = row;
+            }
+            start(current, library, rows, count);
+        });
+    }
+
+    private void start(int current, LibraryStore library, int[] rows, int count) {
+        if (count == 0 || pass.get() != current) return;
+        Log.d(TAG, "Analyzing " + count + " tracks on " + workers + " threads");
+        AtomicInteger next = new AtomicInteger();
+        for (int i = 0; i < workers; i++) {
+            pool.execute(() -> work(current, library, rows, count, next));
+        }
+    }
+
+    // Mỗi luồng dùng lại một LoudnessMeter và ghi kết quả theo lô
+    private void work(int current, LibraryStore library, int[] rows, int count, AtomicInteger next) {
+        LoudnessMeter meter = new LoudnessMeter();
+        List<LoudnessStore.Result> batch = new ArrayList<>(BATCH_SIZE);
+        int i;
+        while (pass.get() == current && (i = next.getAndIncrement()) < count) {
+            int row = rows[i];
+            long id = library.id(row);
+            if (gains.get(id) != null) continue; // đã được đo gấp khi phát
+            batch.add(measure(id, library.dateModified(row), library.path(row), meter));
+            if (batch.size() == BATCH_SIZE) {
+                store.putAll(batch);
+                batch.clear();
+            }
+        }
+        store.putAll(batch);
+    }
+
+    // Bài không giải mã được vẫn được lưu (không có độ to) để không thử lại mỗi lần mở app
+    private static LoudnessStore.Result measure(long songId, long dateModified, @Nullable String path,
+                                                LoudnessMeter meter) {
+        double loudness = Double.NEGATIVE_INFINITY;
+        float peak = 0;
+        if (path != null) {
+            meter.reset();
+            try {
+                PcmDecoder.decode(path, meter);
+                loudness = meter.integratedLoudness();
+                peak = meter.peak();
+            } catch (Exception e) {
+                Log.w(TAG, "Cannot decode " + path, e);
+            }
+        }
+        return new LoudnessStore.Result(songId, dateModified, loudness, peak);
+    }
+}
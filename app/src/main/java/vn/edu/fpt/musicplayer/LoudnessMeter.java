@@ -0,0 +1,191 @@
+package vn.edu.fpt.musicplayer;
+
+import java.util.Arrays;
+
+/**
+ * Đo độ to tích hợp (LUFS) và đỉnh mẫu của một bài theo ITU-R BS.1770 / EBU R128: lọc K-weighting,
+ * khối 400 ms chồng 75%, cổng tuyệt đối -70 LUFS và cổng tương đối -10 LU.
+ * <p>
+ * Bộ nhớ cố định dù bài dài bao nhiêu: thay vì giữ độ to của từng khối, mỗi khối được cộng vào một
+ * histogram 0.1 dB (tổng năng lượng và số khối mỗi ô), đủ để tính cả hai cổng ở cuối bài.
+ * Một đối tượng dùng lại được cho nhiều bài, mỗi bài bắt đầu bằng {@link #onFormat}.
+ */
+public class LoudnessMeter implements PcmSink {
+    public static final double ABSOLUTE_GATE_LUFS = -70;
+    public static final double RELATIVE_GATE_LU = -10;
+    // Mức tham chiếu của ReplayGain 2.0
+    public static final double TARGET_LUFS = -18;
+    public static final double MAX_BOOST_DB = 12;
+
+    private static final double HISTOGRAM_MAX_LUFS = 30;
+    private static final double HISTOGRAM_STEP = 0.1;
+    private static final int HISTOGRAM_BINS = (int) Math.round((HISTOGRAM_MAX_LUFS - ABSOLUTE_GATE_LUFS) / HISTOGRAM_STEP);
+    private static final int SUB_BLOCKS = 4; // 4 x 100 ms = một khối 400 ms
+
+    private final double[] binEnergy = new double[HISTOGRAM_BINS];
+    private final long[] binCount = new long[HISTOGRAM_BINS];
+    private final double[] subBlocks = new double[SUB_BLOCKS];
+
+    private int channelCount;
+    private double[] weights = new double[0];
+    // Hệ số hai tầng lọc: b0 b1 b2 a1 a2
+    private final double[] shelf = new double[5];
+    private final double[] highPass = new double[5];
+    // Trạng thái lọc của từng kênh: 2 giá trị cho mỗi tầng
+    private double[] state = new double[0];
+
+    private int subBlockFrames;
+    private int frameInSubBlock;
+    private double subBlockSum;
+    private int subBlockCount;
+    private int channel;
+    private int peak;
+
+    @Override
+    public void onFormat(int sampleRate, int channelCount, long totalFrames) {
+        if (sampleRate <= 0) throw new IllegalArgumentException("sampleRate must be positive");
+        this.channelCount = Math.max(1, channelCount);
+        weights = channelWeights(this.channelCount);
+        state = new double[this.channelCount * 4];
+        kWeighting(sampleRate, shelf, highPass);
+        subBlockFrames = Math.max(1, sampleRate / 10);
+        reset();
+    }
+
+    // Xoá kết quả đo, giữ định dạng hiện tại
+    public void reset() {
+        Arrays.fill(state, 0);
+        frameInSubBlock = 0;
+        subBlockSum = 0;
+        subBlockCount = 0;
+        channel = 0;
+        peak = 0;
+        Arrays.fill(binEnergy, 0);
+        Arrays.fill(binCount, 0);
+        Arrays.fill(subBlocks, 0);
+    }
+
+    @Override
+    public void onSamples(short[] samples, int count) {
+        if (weights.length == 0) throw new IllegalStateException("onFormat was not called");
+        double[] s = state;
+        for (int i = 0; i < count; i++) {
+            int sample = samples[i];
+            int magnitude = sample < 0 ? -sample : sample;
+            if (magnitude > peak) peak = magnitude;
+
+            // Hai biquad nối tiếp, dạng chuyển vị II
+            int base = channel * 4;
+            double x = sample / 32768.0;
+            double y = shelf[0] * x + s[base];
+            s[base] = shelf[1] * x - shelf[3] * y + s[base + 1];
+            s[base + 1] = shelf[2] * x - shelf[4] * y;
+            double z = highPass[0] * y + s[base + 2];
+            s[base + 2] = highPass[1] * y - highPass[3] * z + s[base + 3];
+            s[base + 3] = highPass[2] * y - highPass[4] * z;
+            subBlockSum += weights[channel] * z * z;
+
+            if (++channel == channelCount) {
+                channel = 0;
+                if (++frameInSubBlock == subBlockFrames) endSubBlock();
+            }
+        }
+    }
+
+    private void endSubBlock() {
+        subBlocks[subBlockCount % SUB_BLOCKS] = subBlockSum;
+        subBlockCount++;
+        subBlockSum = 0;
+        frameInSubBlock = 0;
+        if (subBlockCount < SUB_BLOCKS) return;
+
+        double energy = 0;
+        for (double sub : subBlocks) energy += sub;
+        energy /= (double) SUB_BLOCKS * subBlockFrames;
+        double loudness = loudness(energy);
+        if (loudness < ABSOLUTE_GATE_LUFS) return;
+        int bin = Math.min(HISTOGRAM_BINS - 1, (int) ((loudness - ABSOLUTE_GATE_LUFS) / HISTOGRAM_STEP));
+        binEnergy[bin] += energy;
+        binCount[bin]++;
+    }
+
+    // Độ to tích hợp của phần đã đo, -Infinity nếu không khối nào qua được cổng (im lặng hoặc quá ngắn)
+    public double integratedLoudness() {
+        double energy = 0;
+        long blocks = 0;
+        for (int i = 0; i < HISTOGRAM_BINS; i++) {
+            energy += binEnergy[i];
+            blocks += binCount[i];
+        }
+        if (blocks == 0) return Double.NEGATIVE_INFINITY;
+
+        double gate = loudness(energy / blocks) + RELATIVE_GATE_LU;
+        int first = (int) Math.ceil((gate - ABSOLUTE_GATE_LUFS) / HISTOGRAM_STEP);
+        energy = 0;
+        blocks = 0;
+        for (int i = Math.max(0, first); i < HISTOGRAM_BINS; i++) {
+            energy += binEnergy[i];
+            blocks += binCount[i];
+        }
+        return blocks == 0 ? Double.NEGATIVE_INFINITY : loudness(energy / blocks);
+    }
+
+    // Đỉnh mẫu tuyệt đối, 0..1
+    public float peak() {
+        return peak / 32768f;
+    }
+
+    /**
+     * Hệ số nhân đưa bài về {@link #TARGET_LUFS}, không tăng quá {@link #MAX_BOOST_DB} và không để
+     * đỉnh vượt 0 dBFS. Bài im lặng hoặc chưa đo được thì giữ nguyên (1).
+     */
+    public static float normalizationGain(double loudness, float peak) {
+        if (Double.isNaN(loudness) || Double.isInfinite(loudness)) return 1f;
+        double gainDb = Math.min(TARGET_LUFS - loudness, MAX_BOOST_DB);
+        double gain = Math.pow(10, gainDb / 20);
+        if (peak > 0 && gain * peak > 1) gain = 1 / peak;
+        return (float) gain;
+    }
+
+    private static double loudness(double energy) {
+        return -0.691 + 10 * Math.log10(energy);
+    }
+
+    // Kênh vòm được nhân 1.41, kênh LFE bỏ qua (bố cục 5.1: L R C LFE Ls Rs)
+    private static double[] channelWeights(int channelCount) {
+        double[] weights = new double[channelCount];
+        Arrays.fill(weights, 1);
+        if (channelCount == 6) {
+            weights[3] = 0;
+            weights[4] = 1.41;
+            weights[5] = 1.41;
+        }
+        return weights;
+    }
+
+    // Hệ số K-weighting cho tần số lấy mẫu bất kỳ (cùng công thức với libebur128)
+    private static void kWeighting(int sampleRate, double[] shelf, double[] highPass) {
+        double f0 = 1681.974450955533;
+        double gainDb = 3.999843853973347;
+        double q = 0.7071752369554196;
+        double k = Math.tan(Math.PI * f0 / sampleRate);
+        double vh = Math.pow(10, gainDb / 20);
+        double vb = Math.pow(vh, 0.4996667741545416);
+        double a0 = 1 + k / q + k * k;
+        shelf[0] = (vh + vb * k / q + k * k) / a0;
+        shelf[1] = 2 * (k * k - vh) / a0;
+        shelf[2] = (vh - vb * k / q + k * k) / a0;
+        shelf[3] = 2 * (k * k - 1) / a0;
+        shelf[4] = (1 - k / q + k * k) / a0;
+
+        f0 = 38.13547087602444;
+        q = 0.5003270373238773;
+        k = Math.tan(Math.PI * f0 / sampleRate);
+        a0 = 1 + k / q + k * k;
+        highPass[0] = 1;
+        highPass[1] = -2;
+        highPass[2] = 1;
+        highPass[3] = 2 * (k * k - 1) / a0;
+        highPass[4] = (1 - k / q + k * k) / a0;
+    }
+}
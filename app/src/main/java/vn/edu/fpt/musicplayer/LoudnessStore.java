@@ -0,0 +1,132 @@
+package vn.edu.fpt.musicplayer;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Kết quả đo độ to theo {@link Song#id}, kèm date modified của file lúc đo để biết khi nào phải đo lại.
+ * Tách khỏi {@link LibraryIndex} vì chỉ mục có thể bị xoá dựng lại bất cứ lúc nào, còn phép đo thì tốn kém.
+ * Chỉ gọi từ luồng nền.
+ */
+public class LoudnessStore extends SQLiteOpenHelper {
+    private static final String DB_NAME = "loudness.db";
+    private static final int DB_VERSION = 1;
+    private static final String TABLE_LOUDNESS = "track_loudness";
+
+    public static final class Result {
+        public final long songId;
+        public final long dateModified;
+        // LUFS, -Infinity nếu không đo được (im lặng, quá ngắn hoặc không giải mã được)
+        public final double loudness;
+        public final float peak;
+
+        public Result(long songId, long dateModified, double loudness, float peak) {
+            this.songId = songId;
+            this.dateModified = dateModified;
+            this.loudness = loudness;
+            this.peak = peak;
+        }
+
+        public float gain() {
+            return LoudnessMeter.normalizationGain(loudness, peak);
+        }
+    }
+
+    // Các bài đã đo, sắp theo id
+    public static final class Versions {
+        private final long[] ids;
+        private final long[] dates;
+
+        Versions(long[] ids, long[] dates) {
+            this.ids = ids;
+            this.dates = dates;
+        }
+
+        public boolean isCurrent(long songId, long dateModified) {
+            int i = Arrays.binarySearch(ids, songId);
+            return i >= 0 && dates[i] == dateModified;
+        }
+    }
+
+    public LoudnessStore(Context context) {
+        super(context.getApplicationContext(), DB_NAME, null, DB_VERSION);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.enableWriteAheadLogging();
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_LOUDNESS + " ("
+                + "song_id INTEGER PRIMARY KEY, "
+                + "date_modified INTEGER NOT NULL, "
+                + "loudness REAL, "
+                + "peak REAL NOT NULL)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_LOUDNESS);
+        onCreate(db);
+    }
+
+    // Ghi cả lô trong một transaction
+    public void putAll(List<Result> results) {
+        if (results.isEmpty()) return;
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try (SQLiteStatement upsert = db.compileStatement("INSERT OR REPLACE INTO " + TABLE_LOUDNESS
+                + " (song_id, date_modified, loudness, peak) VALUES (?, ?, ?, ?)")) {
+            for (Result result : results) {
+                upsert.bindLong(1, result.songId);
+                upsert.bindLong(2, result.dateModified);
+                if (Double.isInfinite(result.loudness) || Double.isNaN(result.loudness)) {
+                    upsert.bindNull(3);
+                } else {
+                    upsert.bindDouble(3, result.loudness);
+                }
+                upsert.bindDouble(4, result.peak);
+                upsert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // Kết quả còn dùng được cho bài này, null nếu chưa đo hoặc file đã đổi
+    @Nullable
+    public Result get(long songId, long dateModified) {
+        try (Cursor cursor = getReadableDatabase().query(TABLE_LOUDNESS,
+                new String[]{"loudness", "peak"}, "song_id = ? AND date_modified = ?",
+                new String[]{String.valueOf(songId), String.valueOf(dateModified)}, null, null, null)) {
+            if (!cursor.moveToFirst()) return null;
+            double loudness = cursor.isNull(0) ? Double.NEGATIVE_INFINITY : cursor.getDouble(0);
+            return new Result(songId, dateModified, loudness, cursor.getFloat(1));
+        }
+    }
+
+    public Versions queryVersions() {
+        try (Cursor cursor = getReadableDatabase().query(TABLE_LOUDNESS,
+                new String[]{"song_id", "date_modified"}, null, null, null, null, "song_id ASC")) {
+            long[] ids = new long[cursor.getCount()];
+            long[] dates = new long[ids.length];
+            int i = 0;
+            while (cursor.moveToNext()) {
+                ids[i] = cursor.getLong(0);
+                dates[i++] = cursor.getLong(1);
+            }
+            return new Versions(ids, dates);
+        }
+    }
+}
@@ -2,30 +2,91 @@ package vn.edu.fpt.musicplayer;
 
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.ContextCompat;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
-import android.Manifest;
 import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.database.Cursor;
-import android.net.Uri;
+import android.database.ContentObserver;
 import android.os.Build;
 import android.os.Bundle;
-import android.provider.MediaStore;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.util.Log;
+import android.view.Display;
+import android.view.FrameMetrics;
+import android.view.View;
+import android.view.Window;
 import android.widget.Toast;
 
-import java.util.ArrayList;
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.integration.recyclerview.RecyclerViewPreloader;
+import com.bumptech.glide.util.FixedPreloadSizeProvider;
+import com.google.android.material.tabs.TabLayout;
+
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import vn.edu.fpt.musicplayer.databinding.ActivityMainBinding;
+import vn.edu.fpt.musicplayer.databinding.DialogSmartPlaylistBinding;
 
 public class MainActivity extends AppCompatActivity implements SongAdapter.OnItemClickerListerner {
+    private static final int THUMBNAIL_PRELOAD_COUNT = 20;
+    private static final long SECTION_HIDE_DELAY_MS = 800;
+    private static final Metrics.Histogram INDEX_LOAD = Metrics.get().histogram("library.index_load", "us");
+    private static final Metrics.Histogram FULL_SCAN = Metrics.get().histogram("library.full_scan", "us");
+    private static final Metrics.Histogram LOAD_RATE = Metrics.get().histogram("library.load_rate", "rows/s");
+    private static final Metrics.Histogram SYNC = Metrics.get().histogram("library.sync", "us");
+    private static final Metrics.Histogram LIST_FRAME = Metrics.get().histogram("ui.list_frame", "us");
+    private static final Metrics.Counter LIST_FRAMES_DROPPED = Metrics.get().counter("ui.list_frames_dropped");
+    private static final Metrics.Histogram MAIN_TO_LIST = Metrics.get().histogram("startup.main_to_list", "us");
+
     private ActivityMainBinding binding;
     private SongAdapter adapter;
-    private List<Song> songList;
+    private final ExecutorService loaderExecutor = Executors.newSingleThreadExecutor();
+    private SongLoader songLoader;
+    private LibraryIndex libraryIndex;
+    private LibrarySync librarySync;
+    private ContentObserver mediaObserver;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    // Toàn bộ thư viện; dòng trong store chính là id tài liệu trong searchIndex
+    private LibraryStore store = LibraryStore.EMPTY;
+    // Phiên bản chỉ mục trước và sau khi đọc store (xem LibraryIndex#version), -1 nếu không biết
+    private long storeReadFrom = -1;
+    private long storeReadTo = -1;
+    private SearchIndex searchIndex = new SearchIndex();
+    private int[] searchResults = new int[0];
+    // Các cách xem tính sẵn cho store; null khi đang tính
+    private LibraryGrouping grouping;
+    private LibraryGrouping.Mode browseMode = LibraryGrouping.Mode.TITLE;
+    // Tab cuối là danh sách phát theo luật; kết quả giữ lại tới khi thư viện hay luật đổi
+    private boolean smartTab;
+    private SmartPlaylists smartPlaylists;
+    private int smartIndex;
+    private SmartPlaylist smartPlaylist;
+    private LibraryStore smartStore;
+    private int[] smartRows;
+    private SmartPlaylist smartPending;
+    private LibraryStore smartPendingStore;
+    private final Runnable hideSection = () -> binding.textSection.setVisibility(View.GONE);
+    // Đo thời gian vẽ từng khung khi danh sách đang cuộn, trên một luồng riêng
+    private HandlerThread frameMetricsThread;
+    private Window.OnFrameMetricsAvailableListener frameMetricsListener;
+    private volatile boolean listScrolling;
+    private AppStartup startup;
+    private long createdNanos;
+    private boolean listShown;
 
     // Yêu cầu quyền truy cập
     private final ActivityResultLauncher<String> requestPermissionLauncher =
@@ -40,22 +101,79 @@ public class MainActivity extends AppCompatActivity implements SongAdapter.OnIte
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        createdNanos = System.nanoTime();
+        startup = AppStartup.get(this);
+        startup.pipeline().mark(AppStartup.MARK_MAIN_CREATED);
         binding = ActivityMainBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
 
         EdgeToEdgeHelper.enable(this);
         binding.recyclerViewSongs.setLayoutManager(new LinearLayoutManager(this));
+        binding.recyclerViewSongs.setHasFixedSize(true);
+        RequestManager glide = Glide.with(this);
+        adapter = new SongAdapter(this, glide, this);
+        binding.recyclerViewSongs.setAdapter(adapter);
+        // Tải trước ảnh bìa cho các dòng sắp cuộn tới
+        binding.recyclerViewSongs.addOnScrollListener(new RecyclerViewPreloader<>(glide, adapter,
+                new FixedPreloadSizeProvider<>(adapter.getThumbnailSize(), adapter.getThumbnailSize()),
+                THUMBNAIL_PRELOAD_COUNT));
+        binding.searchInput.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                applyFilter();
+            }
+        });
+        binding.tabBrowseMode.addOnTabSelectedListener(new TabLayout.OnTabSelectedListener() {
+            @Override
+            public void onTabSelected(TabLayout.Tab tab) {
+                LibraryGrouping.Mode[] modes = LibraryGrouping.Mode.values();
+                smartTab = tab.getPosition() >= modes.length;
+                if (!smartTab) {
+                    browseMode = modes[tab.getPosition()];
+                } else if (smartPlaylists.list().isEmpty()) {
+                    showSmartPlaylistEditor(-1);
+                }
+                applyFilter();
+            }
+
+            @Override
+            public void onTabUnselected(TabLayout.Tab tab) {
+            }
+
+            @Override
+            public void onTabReselected(TabLayout.Tab tab) {
+                if (smartTab) showSmartPlaylistChooser();
+            }
+        });
+        // Khi cuộn, hiện tên nhóm của dòng đầu tiên đang thấy
+        binding.recyclerViewSongs.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (dy != 0) showSection();
+            }
+
+            @Override
+            public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+                listScrolling = newState != RecyclerView.SCROLL_STATE_IDLE;
+            }
+        });
+        songLoader = new SongLoader(loaderExecutor, ContextCompat.getMainExecutor(this));
+        libraryIndex = LibraryIndex.get(this);
+        smartPlaylists = SmartPlaylists.get(this);
+        librarySync = new LibrarySync(this, libraryIndex);
         checkPermissionAndLoadSongs();
     }
 
     private void checkPermissionAndLoadSongs() {
-        String permission;
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
-            permission = Manifest.permission.READ_MEDIA_AUDIO;
-        } else {
-            permission = Manifest.permission.READ_EXTERNAL_STORAGE;
-        }
-
+        String permission = AppStartup.audioPermission();
         if (ContextCompat.checkSelfPermission(this, permission) == PackageManager.PERMISSION_GRANTED) {
             loadSongs();
         } else {
@@ -63,52 +181,369 @@ public class MainActivity extends AppCompatActivity implements SongAdapter.OnIte
         }
     }
 
+    // Dùng thư viện đã đọc sẵn lúc khởi động nếu có, không thì đọc như thường
     private void loadSongs() {
-        songList = getSongs();
+        startup.takeLibrary(ContextCompat.getMainExecutor(this), warm -> {
+            if (isDestroyed()) return;
+            if (warm != null) {
+                showWarmLibrary(warm);
+            } else {
+                loadSongs(false, this::onLibraryLoaded);
+            }
+        });
+    }
 
-        if (songList.isEmpty()) {
-            Toast.makeText(this, "No songs found!", Toast.LENGTH_SHORT).show();
+    private void showWarmLibrary(AppStartup.WarmLibrary warm) {
+        store = warm.store;
+        storeReadFrom = -1;
+        storeReadTo = -1;
+        searchIndex = warm.searchIndex;
+        grouping = null;
+        MusicLibrary.get(this).setStore(store);
+        applyFilter();
+        markListShown();
+        startup.whenGroupingReady(ContextCompat.getMainExecutor(this), () -> {
+            if (isDestroyed() || store != warm.store) return;
+            LibraryGrouping built = warm.grouping();
+            if (built != null) {
+                grouping = built;
+                applyFilter();
+            } else {
+                buildGrouping(store);
+            }
+        });
+        onLibraryLoaded();
+    }
+
+    /**
+     * Tải danh sách từ chỉ mục. Lần đầu thì hiển thị dần theo từng trang; khi làm mới sau đồng bộ
+     * thì gửi cả danh sách một lần để adapter chỉ cập nhật những dòng thay đổi.
+     * {@code onLoaded} (nếu có) chạy khi đã có đủ danh sách mới.
+     */
+    private void loadSongs(boolean refresh, @Nullable Runnable onLoaded) {
+        // Bài được chép vào store theo cột; các Song của từng trang bị bỏ ngay sau đó
+        LibraryStore.Builder loaded = new LibraryStore.Builder();
+        // Lần đầu thêm dần vào chỉ mục đang dùng; khi làm mới thì dựng chỉ mục mới rồi thay thế
+        SearchIndex index = refresh ? new SearchIndex() : searchIndex;
+        if (!refresh) {
+            index.clear();
+            store = LibraryStore.EMPTY;
+            storeReadFrom = -1;
+            storeReadTo = -1;
+            grouping = null;
         }
+        // Hiển thị ngay từ chỉ mục đã lưu; lần đầu thì quét MediaStore và ghi chỉ mục cùng lúc
+        long loadStart = System.nanoTime();
+        boolean[] fullScan = new boolean[1];
+        long[] readFrom = new long[1];
+        SongLoader.Source source = () -> {
+            readFrom[0] = libraryIndex.version();
+            fullScan[0] = libraryIndex.isEmpty();
+            return fullScan[0] ? librarySync.openFullScan() : libraryIndex.openSongs();
+        };
+        songLoader.load(source, new SongLoader.Callback() {
+            @Override
+            public void onPage(List<Song> page) {
+                for (Song song : page) {
+                    loaded.add(song);
+                    index.add(song.title, song.artist);
+                }
+                if (!refresh) {
+                    store = loaded.build();
+                    MusicLibrary.get(MainActivity.this).setStore(store);
+                    applyFilter();
+                    markListShown();
+                }
+            }
 
-        adapter = new SongAdapter(songList, this);
-        binding.recyclerViewSongs.setAdapter(adapter);
+            @Override
+            public void onComplete(int total) {
+                store = loaded.trimToSize().build();
+                storeReadFrom = readFrom[0];
+                storeReadTo = libraryIndex.version();
+                MusicLibrary.get(MainActivity.this).setStore(store);
+                if (refresh) {
+                    searchIndex = index;
+                    grouping = null;
+                }
+                applyFilter();
+                buildGrouping(store);
+                if (total == 0) {
+                    Toast.makeText(MainActivity.this, "No songs found!", Toast.LENGTH_SHORT).show();
+                }
+                long elapsed = System.nanoTime() - loadStart;
+                (fullScan[0] ? FULL_SCAN : INDEX_LOAD).recordNanos(elapsed);
+                if (total > 0) LOAD_RATE.record(total * 1_000_000_000L / Math.max(1, elapsed));
+                Log.d("SONG_LIST", "Loaded songs: " + total + " in " + elapsed / 1_000_000 + " ms");
+                if (onLoaded != null) onLoaded.run();
+            }
 
-        Log.d("SONG_LIST", "Loaded songs: " + songList.size());
+            @Override
+            public void onError(Exception e) {
+                Toast.makeText(MainActivity.this, "Cannot load songs", Toast.LENGTH_SHORT).show();
+                Log.e("SONG_LIST", "Failed to load songs", e);
+            }
+        });
+    }
+
+    // Lần đầu thư viện đã đầy đủ: đo độ to ở nền, rồi đối chiếu với MediaStore (xong thì bổ sung từ thẻ) và theo dõi thay đổi
+    private void onLibraryLoaded() {
+        LoudnessAnalyzer.get(this).analyzeLibrary(store);
+        syncLibrary();
+        if (mediaObserver == null) {
+            mediaObserver = LibrarySync.observe(this, handler, 1000, this::syncLibrary);
+        }
     }
 
-    private List<Song> getSongs() {
-        List<Song> songs = new ArrayList<>();
-        Uri uri = MediaStore.Audio.Media.EXTERNAL_CONTENT_URI;
-        String selection = MediaStore.Audio.Media.IS_MUSIC + "!= 0";
-        String sortOrder = MediaStore.Audio.Media.TITLE + " ASC";
+    // Lần đầu danh sách có bài: ghi thời gian từ lúc mở màn hình (và từ lúc tạo tiến trình)
+    private void markListShown() {
+        if (listShown || store.size() == 0) return;
+        listShown = true;
+        MAIN_TO_LIST.recordNanos(System.nanoTime() - createdNanos);
+        if (startup.pipeline().mark(AppStartup.MARK_LIST_SHOWN) >= 0) startup.logTimeline();
+    }
 
-        try (Cursor cursor = getContentResolver().query(uri, null, selection, null, sortOrder)) {
-            if (cursor != null) {
-                int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Audio.Media._ID);
-                int titleColumn = cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.TITLE);
-                int artistColumn = cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.ARTIST);
-                int dataColumn = cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.DATA);
-                int albumColumn = cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.ALBUM_ID);
+    // Tính sẵn mọi cách xem ở luồng nền, bỏ kết quả nếu danh sách đã bị thay trong lúc tính
+    private void buildGrouping(LibraryStore snapshot) {
+        long now = System.currentTimeMillis() / 1000;
+        loaderExecutor.execute(() -> {
+            LibraryGrouping built = LibraryGrouping.build(snapshot, now);
+            handler.post(() -> {
+                if (store != snapshot) return;
+                grouping = built;
+                applyFilter();
+            });
+        });
+    }
 
-                while (cursor.moveToNext()) {
-                    long id = cursor.getLong(idColumn);
-                    String title = cursor.getString(titleColumn);
-                    String artist = cursor.getString(artistColumn);
-                    String data = cursor.getString(dataColumn);
-                    long albumID = cursor.getLong(albumColumn);
+    private void showSection() {
+        LibraryGrouping.Grouping sections = adapter.getSections();
+        LinearLayoutManager layoutManager = (LinearLayoutManager) binding.recyclerViewSongs.getLayoutManager();
+        int position = layoutManager != null ? layoutManager.findFirstVisibleItemPosition() : RecyclerView.NO_POSITION;
+        if (sections == null || position == RecyclerView.NO_POSITION || position >= sections.size()) return;
+        binding.textSection.setText(sections.groupLabel(sections.groupOf(position)));
+        binding.textSection.setVisibility(View.VISIBLE);
+        handler.removeCallbacks(hideSection);
+        handler.postDelayed(hideSection, SECTION_HIDE_DELAY_MS);
+    }
 
-                    songs.add(new Song(id, title, artist, data, albumID));
-                }
+    // Lọc danh sách theo ô tìm kiếm hoặc hiện theo cách xem đang chọn; adapter tự tính khác biệt ở luồng nền
+    private void applyFilter() {
+        String query = binding.searchInput.getText().toString();
+        if (query.trim().isEmpty()) {
+            if (smartTab) {
+                showSmartPlaylist();
+                return;
             }
+            LibraryGrouping.Grouping sections = grouping != null ? grouping.get(browseMode) : null;
+            // Dùng thẳng thứ tự đã tính sẵn, không sắp xếp lại cũng không sao chép
+            adapter.submit(store, sections != null ? sections.rows() : null, sections);
+            return;
         }
-        return songs;
+        if (searchResults.length < store.size()) {
+            searchResults = new int[store.size()];
+        }
+        int count = searchIndex.search(query, searchResults);
+        adapter.submit(store, Arrays.copyOf(searchResults, count), null);
+    }
+
+    // Hiện danh sách theo luật đang chọn; chỉ lọc lại khi thư viện hoặc luật đổi từ lần trước
+    private void showSmartPlaylist() {
+        List<SmartPlaylists.Entry> entries = smartPlaylists.list();
+        if (entries.isEmpty()) {
+            adapter.submit(store, new int[0], null);
+            return;
+        }
+        if (smartIndex >= entries.size()) smartIndex = 0;
+        SmartPlaylist playlist = entries.get(smartIndex).playlist;
+        if (smartRows != null && smartStore == store && playlist.equals(smartPlaylist)) {
+            adapter.submit(store, smartRows, null);
+            return;
+        }
+        // Thư viện tải theo trang gọi applyFilter liên tục, không xếp hàng lại cùng một lần lọc
+        if (smartPendingStore == store && playlist.equals(smartPending)) return;
+        smartPending = playlist;
+        smartPendingStore = store;
+        smartPlaylists.evaluate(playlist, store, storeReadFrom, storeReadTo, grouping, (evaluated, library, rows) -> {
+            if (isDestroyed()) return;
+            if (smartPending == evaluated && smartPendingStore == library) {
+                smartPending = null;
+                smartPendingStore = null;
+            }
+            if (library != store) return;
+            smartPlaylist = evaluated;
+            smartStore = library;
+            smartRows = rows;
+            applyFilter();
+        });
+    }
+
+    private void showSmartPlaylistChooser() {
+        List<SmartPlaylists.Entry> entries = smartPlaylists.list();
+        if (entries.isEmpty()) {
+            showSmartPlaylistEditor(-1);
+            return;
+        }
+        String[] items = new String[entries.size() + 1];
+        for (int i = 0; i < entries.size(); i++) items[i] = entries.get(i).name;
+        items[entries.size()] = getString(R.string.smart_playlist_new);
+        new AlertDialog.Builder(this)
+                .setItems(items, (dialog, which) -> {
+                    if (which == entries.size()) {
+                        showSmartPlaylistEditor(-1);
+                    } else {
+                        smartIndex = which;
+                        applyFilter();
+                    }
+                })
+                .setNeutralButton(R.string.smart_playlist_edit, (dialog, which) -> showSmartPlaylistEditor(smartIndex))
+                .show();
+    }
+
+    // index ngoài danh sách nghĩa là tạo mới
+    private void showSmartPlaylistEditor(int index) {
+        List<SmartPlaylists.Entry> entries = smartPlaylists.list();
+        boolean editing = index >= 0 && index < entries.size();
+        DialogSmartPlaylistBinding dialogBinding = DialogSmartPlaylistBinding.inflate(getLayoutInflater());
+        if (editing) {
+            dialogBinding.editName.setText(entries.get(index).name);
+            dialogBinding.editRule.setText(entries.get(index).playlist.toString());
+        }
+        AlertDialog.Builder builder = new AlertDialog.Builder(this)
+                .setTitle(editing ? R.string.smart_playlist_edit : R.string.smart_playlist_new)
+                .setView(dialogBinding.getRoot())
+                .setPositiveButton(android.R.string.ok, null)
+                .setNegativeButton(android.R.string.cancel, null);
+        if (editing) {
+            builder.setNeutralButton(R.string.smart_playlist_delete, (dialog, which) -> {
+                smartPlaylists.remove(index);
+                smartIndex = 0;
+                applyFilter();
+            });
+        }
+        AlertDialog dialog = builder.show();
+        // Kiểm tra luật trước khi đóng, để lỗi hiện ngay tại ô nhập
+        dialog.getButton(AlertDialog.BUTTON_POSITIVE).setOnClickListener(v -> {
+            SmartPlaylist playlist;
+            try {
+                playlist = SmartPlaylist.parse(dialogBinding.editRule.getText().toString());
+            } catch (IllegalArgumentException e) {
+                dialogBinding.editRule.setError(e.getMessage());
+                return;
+            }
+            String name = dialogBinding.editName.getText().toString().trim();
+            if (name.isEmpty()) name = playlist.toString();
+            if (name.isEmpty()) name = getString(R.string.browse_smart);
+            smartIndex = smartPlaylists.put(index, name, playlist);
+            dialog.dismiss();
+            applyFilter();
+        });
+    }
+
+    /**
+     * Đối chiếu chỉ mục với MediaStore ở luồng nền. Có thay đổi thì tải lại danh sách và chỉ đo độ to
+     * các bài mới hoặc đã đổi; sau đó bổ sung từ thẻ nhúng.
+     */
+    private void syncLibrary() {
+        loaderExecutor.execute(() -> {
+            try {
+                long start = System.nanoTime();
+                boolean changed = librarySync.sync();
+                SYNC.recordNanos(System.nanoTime() - start);
+                if (changed) {
+                    handler.post(this::reloadAfterSync);
+                } else {
+                    handler.post(this::enrichLibrary);
+                }
+            } catch (Exception e) {
+                Log.e("SONG_LIST", "Library sync failed", e);
+            }
+        });
+    }
+
+    private void reloadAfterSync() {
+        if (isDestroyed()) return;
+        LibraryStore previous = store;
+        loadSongs(true, () -> {
+            LoudnessAnalyzer.get(this).analyzeChanges(previous, store);
+            enrichLibrary();
+        });
+    }
+
+    /**
+     * Khi chỉ mục đã khớp MediaStore: bổ sung thông tin còn thiếu từ thẻ nhúng trong file. Bổ sung
+     * không đổi file nên chỉ cần tải lại danh sách, không đồng bộ hay đo lại.
+     */
+    private void enrichLibrary() {
+        if (isDestroyed()) return;
+        MetadataEnricher.get(this).enrich(store, (songsChanged, artAdded) -> {
+            if (isDestroyed()) return;
+            if (songsChanged) loadSongs(true, null);
+            // Ảnh mới không làm đổi nội dung dòng nên phải tự vẽ lại ảnh bìa
+            if (artAdded) adapter.notifyItemRangeChanged(0, adapter.getItemCount());
+        });
     }
 
     @Override
     public void OnClick(int position) {
+        PlaybackService.TAP_TO_READY.start();
+        long[] ids = adapter.getIds();
         Intent intent = new Intent(this, PlayerActivity.class);
-        intent.putParcelableArrayListExtra("songList", new ArrayList<>(songList));
-        intent.putExtra("position", position);
+        intent.putExtra(PlayerActivity.EXTRA_QUEUE, PlaybackQueueRepository.get().create(ids));
+        intent.putExtra(PlayerActivity.EXTRA_POSITION, position);
         startActivity(intent);
     }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        frameMetricsThread = new HandlerThread("frame-metrics");
+        frameMetricsThread.start();
+        long frameBudgetNanos = (long) (1_000_000_000L / refreshRate());
+        frameMetricsListener = (window, frameMetrics, dropCountSinceLastInvocation) -> {
+            if (!listScrolling) return;
+            long duration = frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION);
+            LIST_FRAME.recordNanos(duration);
+            if (duration > frameBudgetNanos) LIST_FRAMES_DROPPED.add(duration / frameBudgetNanos);
+        };
+        getWindow().addOnFrameMetricsAvailableListener(frameMetricsListener,
+                new Handler(frameMetricsThread.getLooper()));
+        // Lịch sử nghe có thể đã đổi khi ở màn hình khác; evaluator chỉ lọc lại các bài bị ảnh hưởng
+        if (smartTab) {
+            smartRows = null;
+            applyFilter();
+        }
+    }
+
+    // Activity.getDisplay() có từ API 30; máy cũ hơn chỉ có getDefaultDisplay()
+    @SuppressWarnings("deprecation")
+    private float refreshRate() {
+        Display display = Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                ? getDisplay() : getWindowManager().getDefaultDisplay();
+        return display.getRefreshRate();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        getWindow().removeOnFrameMetricsAvailableListener(frameMetricsListener);
+        frameMetricsThread.quitSafely();
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        MetricsExport.save(this);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        songLoader.cancel();
+        loaderExecutor.shutdownNow();
+        handler.removeCallbacksAndMessages(null);
+        if (mediaObserver != null) {
+            getContentResolver().unregisterContentObserver(mediaObserver);
+        }
+    }
 }
@@ -0,0 +1,220 @@
+package vn.edu.fpt.musicplayer;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bổ sung thông tin còn thiếu của thư viện từ thẻ nhúng trong file nhạc: tên bài, nghệ sĩ, album và
+ * độ dài mà MediaStore để trống hoặc "&lt;unknown&gt;", cùng ảnh bìa của các album MediaStore
+ * không có ảnh.
+ * <p>
+ * Chỉ đọc các bài cần sửa và một bài cho mỗi album chưa biết có ảnh; thẻ đã đọc được lưu trong
+ * {@link TagCache} theo đường dẫn và date modified, nên sau khi quét lại MediaStore (chỉ mục bị ghi
+ * đè) các bản sửa được áp lại mà không phải mở file. Các file chưa có trong cache được đọc song song
+ * bởi {@link TagScan} trên một {@link ForkJoinPool} riêng, ít luồng hơn số nhân và ưu tiên thấp.
+ */
+public class MetadataEnricher {
+    private static final String TAG = "Tags";
+    private static final int MAX_WORKERS = 4;
+    private static final Metrics.Histogram PARSE = Metrics.get().histogram("tags.parse", "us");
+    private static final Metrics.Histogram PASS_RATE = Metrics.get().histogram("tags.pass_rate", "files/s");
+
+    public interface Callback {
+        /**
+         * Gọi trên luồng UI khi lượt đọc có thay đổi.
+         *
+         * @param songsChanged chỉ mục có dòng được sửa, cần tải lại danh sách
+         * @param artAdded có album mới được gán ảnh trích từ thẻ
+         */
+        void onEnriched(boolean songsChanged, boolean artAdded);
+    }
+
+    private static MetadataEnricher instance;
+
+    private final LibraryIndex index;
+    private final TagCache cache;
+    private final AlbumArtResolver artResolver;
+    private final ForkJoinPool pool;
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor(r -> new Thread(() -> {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        r.run();
+    }, "tags"));
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Tăng mỗi lần bắt đầu lượt mới; lượt cũ bỏ kết quả
+    private final AtomicInteger pass = new AtomicInteger();
+
+    public static synchronized MetadataEnricher get(Context context) {
+        if (instance == null) {
+            instance = new MetadataEnricher(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private MetadataEnricher(Context context) {
+        index = LibraryIndex.get(context);
+        cache = new TagCache(context);
+        artResolver = AlbumArtResolver.get(context);
+        int workers = Math.max(1, Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors() - 1));
+        AtomicInteger count = new AtomicInteger();
+        pool = new ForkJoinPool(workers, p -> {
+            ForkJoinWorkerThread thread = new ForkJoinWorkerThread(p) {
+                @Override
+                protected void onStart() {
+                    super.onStart();
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                }
+            };
+            thread.setName("tags-" + count.incrementAndGet());
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Đọc thẻ cho các bài của {@code library} cần bổ sung rồi ghi bản sửa vào chỉ mục.
+     * Gọi lại với thư viện mới sẽ huỷ lượt đang chạy.
+     */
+    public void enrich(LibraryStore library, Callback callback) {
+        int current = pass.incrementAndGet();
+        coordinator.execute(() -> {
+            try {
+                run(current, library, callback);
+            } catch (Exception e) {
+                Log.e(TAG, "Tag pass failed", e);
+            }
+        });
+    }
+
+    private void run(int current, LibraryStore library, Callback callback) {
+        int[] rows = candidates(library);
+        int count = rows.length;
+        if (count == 0 || pass.get() != current) return;
+
+        String[] paths = new String[count];
+        long[] dates = new long[count];
+        for (int i = 0; i < count; i++) {
+            paths[i] = library.path(rows[i]);
+            dates[i] = library.dateModified(rows[i]);
+        }
+        Map<String, TagReader.Tags> cached = cache.getAll(paths, dates, count);
+        TagReader.Tags[] tags = new TagReader.Tags[count];
+        int[] misses = new int[count];
+        int missCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (paths[i] == null) continue;
+            TagReader.Tags hit = cached.get(paths[i]);
+            if (hit != null) {
+                tags[i] = hit.format != null ? hit : null;
+            } else {
+                misses[missCount++] = i;
+            }
+        }
+
+        if (missCount > 0) {
+            String[] missPaths = new String[missCount];
+            long[] missDates = new long[missCount];
+            for (int i = 0; i < missCount; i++) {
+                missPaths[i] = paths[misses[i]];
+                missDates[i] = dates[misses[i]];
+            }
+            long start = System.nanoTime();
+            TagReader.Tags[] read = TagScan.run(pool, missPaths);
+            long elapsed = System.nanoTime() - start;
+            PARSE.recordNanos(elapsed / missCount);
+            PASS_RATE.record(missCount * 1_000_000_000L / Math.max(1, elapsed));
+            Log.d(TAG, "Read tags of " + missCount + " files in " + elapsed / 1_000_000 + " ms on "
+                    + pool.getParallelism() + " threads");
+            cache.putAll(missPaths, missDates, read);
+            for (int i = 0; i < missCount; i++) tags[misses[i]] = read[i];
+        }
+        if (pass.get() != current) return;
+
+        boolean songsChanged = writeRepairs(library, rows, tags);
+        boolean artAdded = extractArt(library, rows, paths, tags);
+        if (songsChanged || artAdded) {
+            mainHandler.post(() -> callback.onEnriched(songsChanged, artAdded));
+        }
+    }
+
+    // Bài thiếu thông tin, cộng một bài cho mỗi album chưa có ảnh trích ra mà MediaStore không chắc có ảnh
+    private int[] candidates(LibraryStore library) {
+        int[] rows = new int[library.size()];
+        int count = 0;
+        Set<Long> albums = new HashSet<>();
+        for (int row = 0; row < library.size(); row++) {
+            boolean incomplete = library.duration(row) <= 0
+                    || TagReader.Tags.missing(library.artist(row))
+                    || TagReader.Tags.missing(library.album(row))
+                    || library.titleLength(row) == 0;
+            long albumId = library.albumId(row);
+            boolean artProbe = albums.add(albumId) && !artResolver.hasEmbedded(albumId)
+                    && !Boolean.TRUE.equals(artResolver.peek(albumId));
+            if (incomplete || artProbe) rows[count++] = row;
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    private boolean writeRepairs(LibraryStore library, int[] rows, TagReader.Tags[] tags) {
+        List<Song> repaired = new ArrayList<>();
+        for (int i = 0; i < rows.length; i++) {
+            if (tags[i] == null) continue;
+            Song fixed = tags[i].repair(library.toSong(rows[i]));
+            if (fixed != null) repaired.add(fixed);
+        }
+        if (repaired.isEmpty()) return false;
+        try (LibraryIndex.Writer writer = index.beginWrite(false)) {
+            for (Song song : repaired) writer.put(song);
+            writer.commit();
+        }
+        Log.d(TAG, "Repaired " + repaired.size() + " tracks from tags");
+        return true;
+    }
+
+    // Chép ảnh nhúng ra file riêng cho các album MediaStore không có ảnh (đọc đúng đoạn ảnh trong file nhạc)
+    private boolean extractArt(LibraryStore library, int[] rows, String[] paths, TagReader.Tags[] tags) {
+        boolean added = false;
+        for (int i = 0; i < rows.length; i++) {
+            TagReader.Tags t = tags[i];
+            long albumId = library.albumId(rows[i]);
+            if (t == null || !t.hasArtwork() || artResolver.hasEmbedded(albumId)) continue;
+            if (artResolver.hasStoreArt(albumId)) continue;
+            File target = artResolver.embeddedArtFile(albumId);
+            File tmp = new File(target.getPath() + ".tmp");
+            try {
+                File dir = target.getParentFile();
+                if (dir != null && !dir.isDirectory() && !dir.mkdirs()) return added;
+                try (FileChannel in = FileChannel.open(new File(paths[i]).toPath(), StandardOpenOption.READ);
+                     FileOutputStream out = new FileOutputStream(tmp)) {
+                    long copied = in.transferTo(t.artworkOffset, t.artworkLength, out.getChannel());
+                    if (copied != t.artworkLength) throw new IOException("Short read");
+                }
+                if (!tmp.renameTo(target)) throw new IOException("Cannot rename " + tmp);
+                artResolver.putEmbedded(albumId);
+                added = true;
+            } catch (IOException e) {
+                Log.w(TAG, "Cannot extract art from " + paths[i], e);
+                tmp.delete();
+            }
+        }
+        return added;
+    }
+}
@@ -0,0 +1,215 @@
+package vn.edu.fpt.musicplayer;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Số đo hiệu năng trong app: bộ đếm, histogram và vài mẫu gần nhất của mỗi histogram.
+ * Ghi một giá trị chỉ là vài phép toán nguyên tử, không khoá, không cấp phát, nên gọi được từ
+ * luồng UI và luồng phát. Chỉ số được lấy một lần rồi giữ trong trường static của nơi dùng.
+ * Kết quả đọc bằng {@link #dump(StringBuilder)} (dumpsys, tệp xuất ra bởi {@link MetricsExport}).
+ */
+public final class Metrics {
+    private static final Metrics INSTANCE = new Metrics();
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, Span> spans = new ConcurrentHashMap<>();
+    private final long createdNanos = System.nanoTime();
+
+    public static Metrics get() {
+        return INSTANCE;
+    }
+
+    public Counter counter(String name) {
+        Counter counter = counters.get(name);
+        if (counter != null) return counter;
+        counters.putIfAbsent(name, new Counter());
+        return counters.get(name);
+    }
+
+    // unit chỉ dùng khi in ra
+    public Histogram histogram(String name, String unit) {
+        Histogram histogram = histograms.get(name);
+        if (histogram != null) return histogram;
+        histograms.putIfAbsent(name, new Histogram(unit));
+        return histograms.get(name);
+    }
+
+    // Khoảng thời gian có thể bắt đầu ở một nơi và kết thúc ở nơi khác, ghi vào histogram micro giây
+    public Span span(String name) {
+        Span span = spans.get(name);
+        if (span != null) return span;
+        spans.putIfAbsent(name, new Span(histogram(name, "us")));
+        return spans.get(name);
+    }
+
+    // Bản in dạng văn bản, mỗi dòng một chỉ số, sắp theo tên
+    public void dump(StringBuilder out) {
+        out.append("# uptime ").append((System.nanoTime() - createdNanos) / 1_000_000_000L).append(" s\n");
+        for (Map.Entry<String, Counter> entry : new TreeMap<>(counters).entrySet()) {
+            out.append("counter ").append(entry.getKey()).append(' ').append(entry.getValue().get()).append('\n');
+        }
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(histograms).entrySet()) {
+            out.append("histogram ").append(entry.getKey()).append(' ');
+            entry.getValue().describe(out);
+            out.append('\n');
+        }
+    }
+
+    public static final class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long delta) {
+            value.add(delta);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    /**
+     * Histogram theo thang log: mỗi luỹ thừa của 2 chia thành {@link #SUB_BUCKETS} ô, sai số mỗi ô
+     * dưới 7%. Kèm một vòng đệm {@link #RECENT} giá trị gần nhất để xem thô.
+     */
+    public static final class Histogram {
+        private static final int SUB_BITS = 3;
+        static final int SUB_BUCKETS = 1 << SUB_BITS;
+        private static final int BUCKETS = 64 * SUB_BUCKETS;
+        static final int RECENT = 64;
+
+        private final String unit;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+        private final AtomicLongArray recent = new AtomicLongArray(RECENT);
+        private final AtomicLong recentCursor = new AtomicLong();
+
+        Histogram(String unit) {
+            this.unit = unit;
+        }
+
+        // Giá trị âm được tính là 0
+        public void record(long value) {
+            if (value < 0) value = 0;
+            buckets.incrementAndGet(bucketOf(value));
+            count.increment();
+            sum.add(value);
+            long current;
+            while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+                // thử lại
+            }
+            recent.set((int) (recentCursor.getAndIncrement() & (RECENT - 1)), value);
+        }
+
+        public void recordNanos(long nanos) {
+            record(nanos / 1000);
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public double mean() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+
+        public long max() {
+            return count.sum() == 0 ? 0 : max.get();
+        }
+
+        // Giá trị ở phân vị p (0..1), lấy giữa ô chứa nó
+        public long percentile(double p) {
+            long n = count.sum();
+            if (n == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(p * n));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) return Math.min(midpoint(i), max());
+            }
+            return max();
+        }
+
+        // Các giá trị gần nhất, cũ trước mới sau
+        public long[] recent() {
+            long end = recentCursor.get();
+            int size = (int) Math.min(end, RECENT);
+            long[] values = new long[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = recent.get((int) ((end - size + i) & (RECENT - 1)));
+            }
+            return values;
+        }
+
+        void describe(StringBuilder out) {
+            out.append(String.format(Locale.US, "count=%d mean=%.1f p50=%d p90=%d p99=%d max=%d %s recent=",
+                    count(), mean(), percentile(0.5), percentile(0.9), percentile(0.99), max(), unit));
+            long[] values = recent();
+            out.append('[');
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) out.append(',');
+                out.append(values[i]);
+            }
+            out.append(']');
+        }
+
+        static int bucketOf(long value) {
+            if (value < SUB_BUCKETS) return (int) value;
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+            return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+        }
+
+        static long midpoint(int bucket) {
+            if (bucket < SUB_BUCKETS) return bucket;
+            int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+            int sub = bucket % SUB_BUCKETS;
+            long width = 1L << (exponent - SUB_BITS);
+            long low = (1L << exponent) + sub * width;
+            return low + width / 2;
+        }
+    }
+
+    // Bắt đầu và kết thúc có thể ở hai luồng khác nhau; kết thúc khi chưa bắt đầu thì bỏ qua
+    public static final class Span {
+        private final Histogram histogram;
+        private final AtomicLong startNanos = new AtomicLong();
+
+        Span(Histogram histogram) {
+            this.histogram = histogram;
+        }
+
+        public void start() {
+            startNanos.set(System.nanoTime());
+        }
+
+        public boolean isRunning() {
+            return startNanos.get() != 0;
+        }
+
+        public void cancel() {
+            startNanos.set(0);
+        }
+
+        // Ghi khoảng thời gian từ start(); trả về false nếu chưa start
+        public boolean stop() {
+            long start = startNanos.getAndSet(0);
+            if (start == 0) return false;
+            histogram.recordNanos(System.nanoTime() - start);
+            return true;
+        }
+    }
+}
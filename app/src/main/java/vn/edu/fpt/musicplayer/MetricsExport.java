@@ -0,0 +1,51 @@
+package vn.edu.fpt.musicplayer;
+
+import android.content.Context;
+import android.os.Process;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Ghi {@link Metrics} ra {@code Android/data/<package>/files/metrics.txt} để lấy về bằng
+ * {@code adb pull} hoặc trình quản lý tệp, cả ở bản release. Xem trực tiếp thì dùng
+ * {@code adb shell dumpsys activity service .PlaybackService}.
+ */
+public final class MetricsExport {
+    private static final String FILE_NAME = "metrics.txt";
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> new Thread(() -> {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        r.run();
+    }, "metrics-export"));
+
+    private MetricsExport() {
+    }
+
+    public static void save(Context context) {
+        File dir = context.getApplicationContext().getExternalFilesDir(null);
+        if (dir == null) return; // bộ nhớ ngoài chưa sẵn sàng
+        AppStartup startup = AppStartup.get(context);
+        EXECUTOR.execute(() -> write(new AtomicFile(new File(dir, FILE_NAME)), startup));
+    }
+
+    private static void write(AtomicFile file, AppStartup startup) {
+        StringBuilder text = new StringBuilder();
+        Metrics.get().dump(text);
+        startup.timeline(text);
+        FileOutputStream out = null;
+        try {
+            out = file.startWrite();
+            out.write(text.toString().getBytes(StandardCharsets.UTF_8));
+            file.finishWrite(out);
+        } catch (IOException e) {
+            if (out != null) file.failWrite(out);
+            Log.w("Metrics", "Cannot export metrics", e);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package vn.edu.fpt.musicplayer;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tra cứu {@link Song} theo id trong tiến trình. Đọc từ {@link LibraryStore} mà màn hình danh sách
+ * đã tải (tạo {@link Song} khi được hỏi, không giữ lại); nếu không có thì đọc dòng đó từ
+ * {@link LibraryIndex} ở luồng nền. Chỉ những bài lấy từ chỉ mục hoặc được thêm riêng mới được giữ
+ * trong map. {@link #getSong(long)} không bao giờ truy vấn SQLite nên gọi được trên luồng UI.
+ */
+public class MusicLibrary {
+    private static MusicLibrary instance;
+
+    private final LibraryIndex index;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<Long, Song> songs = new HashMap<>();
+    // Các id đang chờ đọc từ chỉ mục
+    private final Set<Long> loading = new HashSet<>();
+    private volatile LibraryStore store = LibraryStore.EMPTY;
+
+    public static synchronized MusicLibrary get(Context context) {
+        if (instance == null) {
+            instance = new MusicLibrary(LibraryIndex.get(context));
+        }
+        return instance;
+    }
+
+    private MusicLibrary(LibraryIndex index) {
+        this.index = index;
+    }
+
+    public void setStore(LibraryStore store) {
+        this.store = store;
+    }
+
+    public LibraryStore getStore() {
+        return store;
+    }
+
+    public synchronized void putAll(List<Song> page) {
+        for (Song song : page) {
+            songs.put(song.id, song);
+        }
+    }
+
+    /**
+     * Bài có sẵn trong store hoặc đã đọc từ chỉ mục. Nếu chưa có thì trả về null và đọc dòng đó ở
+     * luồng nền; dùng {@link #resolve} khi cần chờ.
+     */
+    @Nullable
+    public Song getSong(long id) {
+        Song song = peek(id);
+        if (song == null) load(new long[]{id}, null);
+        return song;
+    }
+
+    /**
+     * Đảm bảo các bài {@code ids} tra được bằng {@link #getSong(long)} rồi chạy {@code onResolved} trên
+     * luồng UI. Chạy ngay nếu mọi bài đã có; bài không còn trong chỉ mục vẫn trả về null sau đó.
+     */
+    public void resolve(long[] ids, Runnable onResolved) {
+        for (long id : ids) {
+            if (peek(id) == null) {
+                load(ids, onResolved);
+                return;
+            }
+        }
+        onResolved.run();
+    }
+
+    @Nullable
+    private Song peek(long id) {
+        LibraryStore current = store;
+        int row = current.indexOf(id);
+        if (row >= 0) return current.toSong(row);
+        synchronized (this) {
+            return songs.get(id);
+        }
+    }
+
+    private void load(long[] ids, @Nullable Runnable onLoaded) {
+        synchronized (this) {
+            boolean pending = true;
+            for (long id : ids) pending &= loading.contains(id);
+            if (pending && onLoaded == null) return;
+            for (long id : ids) loading.add(id);
+        }
+        executor.execute(() -> {
+            for (long id : ids) {
+                Song song = peek(id) == null ? index.findSong(id) : null;
+                synchronized (this) {
+                    if (song != null) songs.put(id, song);
+                    loading.remove(id);
+                }
+            }
+            if (onLoaded != null) mainHandler.post(onLoaded);
+        });
+    }
+}
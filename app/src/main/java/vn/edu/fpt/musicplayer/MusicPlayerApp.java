@@ -0,0 +1,17 @@
+package vn.edu.fpt.musicplayer;
+
+import android.app.Application;
+
+/**
+ * Bắt đầu các việc khởi động ({@link AppStartup}) ngay khi tiến trình được tạo, trước cả
+ * màn hình đầu tiên.
+ */
+public class MusicPlayerApp extends Application {
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        AppStartup startup = AppStartup.get(this);
+        startup.pipeline().mark(AppStartup.MARK_APP_CREATED);
+        startup.start();
+    }
+}
@@ -0,0 +1,123 @@
+package vn.edu.fpt.musicplayer;
+
+import android.media.AudioFormat;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+/**
+ * Giải mã một file âm thanh thành PCM 16-bit bằng MediaExtractor/MediaCodec và đẩy vào {@link PcmSink}.
+ * File WAV được đọc thẳng bằng {@link WavDecoder}. Chạy đồng bộ, chỉ gọi từ luồng nền.
+ */
+public final class PcmDecoder {
+    private static final long TIMEOUT_US = 10_000;
+
+    private PcmDecoder() {
+    }
+
+    public static void decode(String path, PcmSink sink) throws IOException {
+        if (path.regionMatches(true, path.length() - 4, ".wav", 0, 4)) {
+            try (InputStream in = new FileInputStream(path)) {
+                WavDecoder.decode(in, sink);
+                return;
+            } catch (IOException e) {
+                // WAV không phải PCM 16-bit: để MediaCodec xử lý
+            }
+        }
+
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec codec = null;
+        try {
+            extractor.setDataSource(path);
+            int track = selectAudioTrack(extractor);
+            if (track < 0) throw new IOException("No audio track: " + path);
+            extractor.selectTrack(track);
+            MediaFormat format = extractor.getTrackFormat(track);
+
+            codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            codec.configure(format, null, null, 0);
+            codec.start();
+            drain(extractor, codec, format, sink);
+        } finally {
+            if (codec != null) {
+                codec.release();
+            }
+            extractor.release();
+        }
+    }
+
+    private static int selectAudioTrack(MediaExtractor extractor) {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            String mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith("audio/")) return i;
+        }
+        return -1;
+    }
+
+    private static void drain(MediaExtractor extractor, MediaCodec codec, MediaFormat inputFormat,
+                              PcmSink sink) {
+        MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+        long durationUs = inputFormat.containsKey(MediaFormat.KEY_DURATION)
+                ? inputFormat.getLong(MediaFormat.KEY_DURATION) : 0;
+        short[] samples = new short[0];
+        boolean inputDone = false;
+        boolean formatKnown = false;
+
+        while (true) {
+            if (!inputDone) {
+                int inIndex = codec.dequeueInputBuffer(TIMEOUT_US);
+                if (inIndex >= 0) {
+                    ByteBuffer buffer = codec.getInputBuffer(inIndex);
+                    int size = buffer != null ? extractor.readSampleData(buffer, 0) : -1;
+                    if (size < 0) {
+                        codec.queueInputBuffer(inIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                        inputDone = true;
+                    } else {
+                        codec.queueInputBuffer(inIndex, 0, size, extractor.getSampleTime(), 0);
+                        extractor.advance();
+                    }
+                }
+            }
+
+            int outIndex = codec.dequeueOutputBuffer(info, TIMEOUT_US);
+            if (outIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                MediaFormat format = codec.getOutputFormat();
+                int encoding = format.containsKey(MediaFormat.KEY_PCM_ENCODING)
+                        ? format.getInteger(MediaFormat.KEY_PCM_ENCODING) : AudioFormat.ENCODING_PCM_16BIT;
+                if (encoding != AudioFormat.ENCODING_PCM_16BIT) {
+                    throw new IllegalStateException("Unsupported PCM encoding " + encoding);
+                }
+                int sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+                sink.onFormat(sampleRate, format.getInteger(MediaFormat.KEY_CHANNEL_COUNT),
+                        durationUs * sampleRate / 1_000_000);
+                formatKnown = true;
+            } else if (outIndex >= 0) {
+                ByteBuffer output = codec.getOutputBuffer(outIndex);
+                if (output != null && info.size > 0) {
+                    if (!formatKnown) {
+                        MediaFormat format = codec.getOutputFormat();
+                        int sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+                        sink.onFormat(sampleRate, format.getInteger(MediaFormat.KEY_CHANNEL_COUNT),
+                                durationUs * sampleRate / 1_000_000);
+                        formatKnown = true;
+                    }
+                    output.position(info.offset).limit(info.offset + info.size);
+                    ShortBuffer shorts = output.order(ByteOrder.nativeOrder()).asShortBuffer();
+                    int count = shorts.remaining();
+                    if (samples.length < count) samples = new short[count];
+                    shorts.get(samples, 0, count);
+                    sink.onSamples(samples, count);
+                }
+                codec.releaseOutputBuffer(outIndex, false);
+                if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) return;
+            }
+        }
+    }
+}
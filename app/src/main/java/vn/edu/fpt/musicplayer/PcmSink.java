@@ -0,0 +1,12 @@
+package vn.edu.fpt.musicplayer;
+
+/**
+ * Nhận PCM 16-bit xen kẽ các kênh từ bộ giải mã. Bộ đệm {@code samples} được dùng lại
+ * giữa các lần gọi, không được giữ tham chiếu sau khi hàm trả về.
+ */
+public interface PcmSink {
+    // totalFrames <= 0 nếu không biết trước độ dài
+    void onFormat(int sampleRate, int channelCount, long totalFrames);
+
+    void onSamples(short[] samples, int count);
+}
@@ -0,0 +1,118 @@
+package vn.edu.fpt.musicplayer;
+
+/**
+ * Bộ đệm vòng cho sự kiện nghe nhạc, lưu trong các mảng nguyên thuỷ nên ghi vào không cấp phát.
+ * Luồng phát chỉ ghi vào đây; luồng nền lấy ra theo lô để ghi xuống đĩa.
+ * Khi đầy thì sự kiện cũ nhất bị ghi đè (và được đếm lại) để luồng phát không bao giờ phải chờ.
+ */
+public final class PlayEventBuffer {
+    // Bắt đầu phát một bài
+    public static final byte TYPE_PLAY = 1;
+    // Rời khỏi bài (hết bài, chuyển bài, dừng); value là số ms đã nghe
+    public static final byte TYPE_END = 2;
+    // Như TYPE_END nhưng người dùng chuyển bài trước khi hết
+    public static final byte TYPE_SKIP = 3;
+
+    private final long[] songIds;
+    private final byte[] types;
+    private final long[] times;
+    private final long[] values;
+    private int head; // vị trí của sự kiện cũ nhất
+    private int size;
+    private long dropped;
+
+    public PlayEventBuffer(int capacity) {
+        songIds = new long[capacity];
+        types = new byte[capacity];
+        times = new long[capacity];
+        values = new long[capacity];
+    }
+
+    /**
+     * @return số sự kiện đang chờ sau khi thêm
+     */
+    public synchronized int add(long songId, byte type, long time, long value) {
+        int capacity = songIds.length;
+        if (size == capacity) {
+            head = (head + 1) % capacity;
+            size--;
+            dropped++;
+        }
+        int tail = (head + size) % capacity;
+        songIds[tail] = songId;
+        types[tail] = type;
+        times[tail] = time;
+        values[tail] = value;
+        return ++size;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // Số sự kiện đã mất do bộ đệm đầy
+    public synchronized long dropped() {
+        return dropped;
+    }
+
+    /**
+     * Chuyển tối đa {@code batch.capacity()} sự kiện cũ nhất sang {@code batch}.
+     *
+     * @return số sự kiện đã chuyển
+     */
+    public synchronized int drainTo(Batch batch) {
+        int count = Math.min(size, batch.capacity());
+        int capacity = songIds.length;
+        for (int i = 0; i < count; i++) {
+            int index = (head + i) % capacity;
+            batch.songIds[i] = songIds[index];
+            batch.types[i] = types[index];
+            batch.times[i] = times[index];
+            batch.values[i] = values[index];
+        }
+        head = (head + count) % capacity;
+        size -= count;
+        batch.size = count;
+        return count;
+    }
+
+    // Một lô sự kiện, được luồng ghi dùng lại giữa các lần
+    public static final class Batch {
+        final long[] songIds;
+        final byte[] types;
+        final long[] times;
+        final long[] values;
+        int size;
+
+        public Batch(int capacity) {
+            songIds = new long[capacity];
+            types = new byte[capacity];
+            times = new long[capacity];
+            values = new long[capacity];
+        }
+
+        public int capacity() {
+            return songIds.length;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long songId(int i) {
+            return songIds[i];
+        }
+
+        public byte type(int i) {
+            return types[i];
+        }
+
+        public long time(int i) {
+            return times[i];
+        }
+
+        public long value(int i) {
+            return values[i];
+        }
+    }
+}
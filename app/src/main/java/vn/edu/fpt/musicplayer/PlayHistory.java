@@ -0,0 +1,96 @@
+package vn.edu.fpt.musicplayer;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Ghi lịch sử nghe nhạc theo kiểu ghi sau: sự kiện vào {@link PlayEventBuffer} trong bộ nhớ,
+ * rồi được ghi xuống {@link PlayHistoryStore} theo lô ở luồng nền — khi đủ lô, sau một khoảng
+ * thời gian, hoặc khi được yêu cầu (tạm dừng, dừng dịch vụ). Luồng phát không bao giờ chờ đĩa.
+ */
+public class PlayHistory {
+    private static final int BUFFER_CAPACITY = 1024;
+    private static final int BATCH_SIZE = 64;
+    private static final long FLUSH_DELAY_MS = 30_000;
+
+    public interface Listener {
+        // Gọi trên luồng ghi sau khi lô đã nằm trong PlayHistoryStore; batch được dùng lại ngay sau đó
+        void onApplied(PlayEventBuffer.Batch batch);
+    }
+
+    private static PlayHistory instance;
+
+    private final PlayHistoryStore store;
+    private final PlayEventBuffer buffer = new PlayEventBuffer(BUFFER_CAPACITY);
+    // Chỉ luồng ghi dùng
+    private final PlayEventBuffer.Batch batch = new PlayEventBuffer.Batch(BATCH_SIZE);
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(() -> {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        r.run();
+    }, "play-history"));
+    private final Runnable flushRunnable = this::flush;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    public static synchronized PlayHistory get(Context context) {
+        if (instance == null) {
+            instance = new PlayHistory(new PlayHistoryStore(context));
+        }
+        return instance;
+    }
+
+    private PlayHistory(PlayHistoryStore store) {
+        this.store = store;
+    }
+
+    public PlayHistoryStore getStore() {
+        return store;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void recordPlay(long songId) {
+        add(songId, PlayEventBuffer.TYPE_PLAY, 0);
+    }
+
+    // Kết thúc một lượt nghe; skipped nếu người dùng chuyển bài trước khi hết
+    public void recordEnd(long songId, long listenedMs, boolean skipped) {
+        add(songId, skipped ? PlayEventBuffer.TYPE_SKIP : PlayEventBuffer.TYPE_END, listenedMs);
+    }
+
+    // Ghi mọi sự kiện đang chờ xuống đĩa ở luồng nền
+    public void flush() {
+        mainHandler.removeCallbacks(flushRunnable);
+        executor.execute(this::drain);
+    }
+
+    private void add(long songId, byte type, long value) {
+        int pending = buffer.add(songId, type, System.currentTimeMillis(), value);
+        if (pending >= BATCH_SIZE) {
+            flush();
+        } else if (pending == 1) {
+            mainHandler.postDelayed(flushRunnable, FLUSH_DELAY_MS);
+        }
+    }
+
+    private void drain() {
+        try {
+            while (buffer.drainTo(batch) > 0) {
+                store.apply(batch);
+                for (Listener listener : listeners) listener.onApplied(batch);
+            }
+        } catch (RuntimeException e) {
+            Log.e("PlayHistory", "Cannot write play history", e);
+        }
+    }
+}
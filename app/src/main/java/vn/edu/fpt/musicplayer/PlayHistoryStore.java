@@ -0,0 +1,181 @@
+package vn.edu.fpt.musicplayer;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Thống kê nghe nhạc theo {@link Song#id}: số lần phát, số lần bỏ qua, tổng thời gian nghe
+ * và lần phát gần nhất. Có index trên số lần phát và thời điểm phát gần nhất nên các truy vấn
+ * "nghe nhiều nhất"/"nghe gần đây" chỉ đọc N dòng đầu của index, không quét cả bảng.
+ * Chỉ gọi từ luồng nền.
+ */
+public class PlayHistoryStore extends SQLiteOpenHelper {
+    private static final String DB_NAME = "history.db";
+    private static final int DB_VERSION = 3;
+    private static final String TABLE_STATS = "play_stats";
+
+    public static final class Stats {
+        public final long songId;
+        public final int playCount;
+        public final int skipCount;
+        public final long listenedMs;
+        public final long lastPlayed;
+
+        Stats(long songId, int playCount, int skipCount, long listenedMs, long lastPlayed) {
+            this.songId = songId;
+            this.playCount = playCount;
+            this.skipCount = skipCount;
+            this.listenedMs = listenedMs;
+            this.lastPlayed = lastPlayed;
+        }
+    }
+
+    // Cộng dồn một lô theo bài trước khi ghi, mỗi bài chỉ một câu UPDATE
+    private static final class Delta {
+        int plays;
+        int skips;
+        long listenedMs;
+        long lastPlayed;
+    }
+
+    public PlayHistoryStore(Context context) {
+        this(context, DB_NAME);
+    }
+
+    // name null là cơ sở dữ liệu trong bộ nhớ, cho test
+    PlayHistoryStore(Context context, @Nullable String name) {
+        super(context.getApplicationContext(), name, null, DB_VERSION);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.enableWriteAheadLogging();
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_STATS + " ("
+                + "song_id INTEGER PRIMARY KEY, "
+                + "play_count INTEGER NOT NULL DEFAULT 0, "
+                + "skip_count INTEGER NOT NULL DEFAULT 0, "
+                + "listened_ms INTEGER NOT NULL DEFAULT 0, "
+                + "last_played INTEGER NOT NULL DEFAULT 0)");
+        createIndexes(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Bản 2 đã bỏ hai index; giữ nguyên số liệu và tạo lại
+        createIndexes(db);
+    }
+
+    private static void createIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS play_stats_play_count ON " + TABLE_STATS
+                + " (play_count DESC, last_played DESC)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS play_stats_last_played ON " + TABLE_STATS + " (last_played DESC)");
+    }
+
+    // Ghi cả lô trong một transaction
+    public void apply(PlayEventBuffer.Batch batch) {
+        if (batch.size() == 0) return;
+        Map<Long, Delta> deltas = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            Delta delta = deltas.get(batch.songId(i));
+            if (delta == null) {
+                delta = new Delta();
+                deltas.put(batch.songId(i), delta);
+            }
+            switch (batch.type(i)) {
+                case PlayEventBuffer.TYPE_PLAY:
+                    delta.plays++;
+                    delta.lastPlayed = Math.max(delta.lastPlayed, batch.time(i));
+                    break;
+                case PlayEventBuffer.TYPE_SKIP:
+                    delta.skips++;
+                    delta.listenedMs += batch.value(i);
+                    break;
+                default:
+                    delta.listenedMs += batch.value(i);
+                    break;
+            }
+        }
+
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try (SQLiteStatement insert = db.compileStatement(
+                "INSERT OR IGNORE INTO " + TABLE_STATS + " (song_id) VALUES (?)");
+             SQLiteStatement update = db.compileStatement("UPDATE " + TABLE_STATS + " SET "
+                     + "play_count = play_count + ?, skip_count = skip_count + ?, "
+                     + "listened_ms = listened_ms + ?, last_played = MAX(last_played, ?) "
+                     + "WHERE song_id = ?")) {
+            for (Map.Entry<Long, Delta> entry : deltas.entrySet()) {
+                Delta delta = entry.getValue();
+                insert.bindLong(1, entry.getKey());
+                insert.executeInsert();
+                update.bindLong(1, delta.plays);
+                update.bindLong(2, delta.skips);
+                update.bindLong(3, delta.listenedMs);
+                update.bindLong(4, delta.lastPlayed);
+                update.bindLong(5, entry.getKey());
+                update.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // Id các bài nghe nhiều nhất
+    public long[] topPlayed(int limit) {
+        return querySongIds("play_count > 0", "play_count DESC, last_played DESC", limit);
+    }
+
+    // Id các bài nghe gần đây nhất
+    public long[] recentlyPlayed(int limit) {
+        return querySongIds("last_played > 0", "last_played DESC", limit);
+    }
+
+    @Nullable
+    public Stats getStats(long songId) {
+        try (Cursor cursor = getReadableDatabase().query(TABLE_STATS,
+                new String[]{"song_id", "play_count", "skip_count", "listened_ms", "last_played"},
+                "song_id = ?", new String[]{String.valueOf(songId)}, null, null, null)) {
+            if (!cursor.moveToFirst()) return null;
+            return new Stats(cursor.getLong(0), cursor.getInt(1), cursor.getInt(2),
+                    cursor.getLong(3), cursor.getLong(4));
+        }
+    }
+
+    // Toàn bộ thống kê vào bộ nhớ, cho việc lọc cả thư viện (SmartPlaylists)
+    public PlayStatsTable loadTable() {
+        PlayStatsTable table = new PlayStatsTable();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_STATS,
+                new String[]{"song_id", "play_count", "skip_count", "last_played"},
+                null, null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                table.put(cursor.getLong(0), cursor.getInt(1), cursor.getInt(2), cursor.getLong(3));
+            }
+        }
+        return table;
+    }
+
+    private long[] querySongIds(String selection, String orderBy, int limit) {
+        try (Cursor cursor = getReadableDatabase().query(TABLE_STATS, new String[]{"song_id"},
+                selection, null, null, null, orderBy, String.valueOf(limit))) {
+            long[] ids = new long[cursor.getCount()];
+            int i = 0;
+            while (cursor.moveToNext()) {
+                ids[i++] = cursor.getLong(0);
+            }
+            return ids;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package vn.edu.fpt.musicplayer;
+
+/**
+ * Bản trong bộ nhớ của số lần nghe, số lần bỏ qua và lần nghe cuối theo id bài, để lọc cả thư viện
+ * mà không phải truy vấn {@link PlayHistoryStore} cho từng bài. Bảng băm địa chỉ mở trên các mảng
+ * nguyên thuỷ. Chỉ dùng từ một luồng.
+ */
+public final class PlayStatsTable {
+    private long[] keys = new long[64];
+    private boolean[] used = new boolean[64];
+    private int[] plays = new int[64];
+    private int[] skips = new int[64];
+    private long[] lastPlayed = new long[64];
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    public void put(long songId, int playCount, int skipCount, long lastPlayedMs) {
+        if ((size + 1) * 2 > keys.length) grow();
+        int slot = slot(songId);
+        if (!used[slot]) {
+            used[slot] = true;
+            keys[slot] = songId;
+            size++;
+        }
+        plays[slot] = playCount;
+        skips[slot] = skipCount;
+        lastPlayed[slot] = lastPlayedMs;
+    }
+
+    public int playCount(long songId) {
+        int slot = slot(songId);
+        return used[slot] ? plays[slot] : 0;
+    }
+
+    public int skipCount(long songId) {
+        int slot = slot(songId);
+        return used[slot] ? skips[slot] : 0;
+    }
+
+    // Thời điểm (ms) bắt đầu nghe lần cuối, 0 nếu chưa nghe bao giờ
+    public long lastPlayed(long songId) {
+        int slot = slot(songId);
+        return used[slot] ? lastPlayed[slot] : 0;
+    }
+
+    private int slot(long songId) {
+        int mask = keys.length - 1;
+        int h = (int) (songId ^ (songId >>> 32)) * 0x9E3779B9;
+        for (int i = (h ^ (h >>> 16)) & mask; ; i = (i + 1) & mask) {
+            if (!used[i] || keys[i] == songId) return i;
+        }
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        boolean[] oldUsed = used;
+        int[] oldPlays = plays;
+        int[] oldSkips = skips;
+        long[] oldLast = lastPlayed;
+        int capacity = keys.length * 2;
+        keys = new long[capacity];
+        used = new boolean[capacity];
+        plays = new int[capacity];
+        skips = new int[capacity];
+        lastPlayed = new long[capacity];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) put(oldKeys[i], oldPlays[i], oldSkips[i], oldLast[i]);
+        }
+    }
+}
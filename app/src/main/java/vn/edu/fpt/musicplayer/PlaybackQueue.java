@@ -0,0 +1,166 @@
+package vn.edu.fpt.musicplayer;
+
+import java.util.Random;
+
+/**
+ * Hàng đợi phát trên mảng id gốc (không sao chép) cộng một hoán vị chỉ số cho chế độ trộn bài.
+ * Hoán vị được trộn dần (Fisher-Yates từng bước) chỉ tới vị trí cần đọc, bài đang phát luôn ở đầu;
+ * mảng nghịch đảo cho biết vị trí phát của một bài trong O(1). Bật/tắt trộn là O(1) cộng số ô đã
+ * bị trộn ở lần trước, không cấp phát lại. Không an toàn đa luồng.
+ */
+public final class PlaybackQueue {
+    private final long[] ids;
+    private final Random random;
+
+    // Lưu giá trị + 1, 0 nghĩa là chưa đổi (perm[i] = i); chỉ cấp phát khi bật trộn lần đầu
+    private int[] perm;
+    private int[] inverse;
+    // Các ô đã bị ghi, để đưa về trạng thái ban đầu mà không phải xoá cả mảng
+    private int[] touched;
+    private int touchedCount;
+    // Các vị trí [0, settled) đã trộn xong
+    private int settled;
+
+    private boolean shuffled;
+    private int position;
+
+    public PlaybackQueue(long[] ids) {
+        this(ids, new Random());
+    }
+
+    public PlaybackQueue(long[] ids, Random random) {
+        this.ids = ids;
+        this.random = random;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    // Mảng id gốc (không sao chép, không được sửa)
+    public long[] ids() {
+        return ids;
+    }
+
+    public boolean isShuffled() {
+        return shuffled;
+    }
+
+    // Vị trí hiện tại theo thứ tự phát
+    public int getPosition() {
+        return position;
+    }
+
+    public long getCurrentId() {
+        return ids[originalIndexAt(position)];
+    }
+
+    public void setPosition(int position) {
+        checkPosition(position);
+        this.position = position;
+    }
+
+    // Id của bài ở vị trí position theo thứ tự phát
+    public long idAt(int position) {
+        return ids[originalIndexAt(position)];
+    }
+
+    // Chỉ số trong mảng id gốc của bài ở vị trí position theo thứ tự phát
+    public int originalIndexAt(int position) {
+        checkPosition(position);
+        if (!shuffled) return position;
+        settleThrough(position);
+        return get(perm, position);
+    }
+
+    /**
+     * Vị trí phát của bài có chỉ số gốc {@code index}. Khi đang trộn, bài chưa tới lượt có thể
+     * còn đổi chỗ khi hàng đợi được trộn tiếp.
+     */
+    public int positionOf(int index) {
+        checkPosition(index);
+        return shuffled ? get(inverse, index) : index;
+    }
+
+    // Chọn bài theo chỉ số gốc; khi đang trộn thì trộn lại với bài đó ở đầu
+    public void playOriginal(int index) {
+        checkPosition(index);
+        if (shuffled) {
+            reshuffle(index);
+        } else {
+            position = index;
+        }
+    }
+
+    /**
+     * Bật/tắt trộn bài, bài đang phát giữ nguyên. Bật trộn đưa bài hiện tại lên đầu thứ tự mới;
+     * tắt trộn quay về đúng vị trí của bài trong danh sách gốc.
+     */
+    public void setShuffled(boolean shuffle) {
+        if (shuffle == shuffled || ids.length == 0) {
+            shuffled = shuffle;
+            return;
+        }
+        int current = originalIndexAt(position);
+        if (shuffle) {
+            shuffled = true;
+            reshuffle(current);
+        } else {
+            shuffled = false;
+            position = current;
+        }
+    }
+
+    private void reshuffle(int head) {
+        if (perm == null) {
+            perm = new int[ids.length];
+            inverse = new int[ids.length];
+            touched = new int[ids.length];
+        }
+        for (int i = 0; i < touchedCount; i++) {
+            int t = touched[i];
+            perm[t] = 0;
+            inverse[t] = 0;
+        }
+        touchedCount = 0;
+        swap(0, head);
+        settled = 1;
+        position = 0;
+    }
+
+    // Fisher-Yates tiến: bước i chọn ngẫu nhiên một bài trong [i, n) cho vị trí i
+    private void settleThrough(int position) {
+        int n = ids.length;
+        while (settled <= position) {
+            int i = settled;
+            swap(i, i + random.nextInt(n - i));
+            settled++;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int a = get(perm, i);
+        int b = get(perm, j);
+        set(perm, i, b);
+        set(perm, j, a);
+        set(inverse, b, i);
+        set(inverse, a, j);
+    }
+
+    private static int get(int[] values, int index) {
+        int value = values[index];
+        return value == 0 ? index : value - 1;
+    }
+
+    // Tập ô đã ghi của perm và inverse luôn trùng nhau nên chỉ cần ghi nhận theo perm
+    private void set(int[] values, int index, int value) {
+        if (values == perm && values[index] == 0) touched[touchedCount++] = index;
+        values[index] = value + 1;
+    }
+
+    private void checkPosition(int position) {
+        if (position < 0 || position >= ids.length) {
+            throw new IndexOutOfBoundsException("position " + position + ", size " + ids.length);
+        }
+    }
+}
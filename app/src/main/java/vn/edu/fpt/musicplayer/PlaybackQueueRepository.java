@@ -0,0 +1,42 @@
+package vn.edu.fpt.musicplayer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Kho hàng đợi phát dùng chung trong tiến trình. Màn hình danh sách đăng ký hàng đợi
+ * (chỉ gồm id bài hát) và chỉ gửi handle qua Intent, nên việc mở trình phát không phụ thuộc
+ * vào kích thước thư viện và không bị giới hạn ~1MB của Binder.
+ */
+public final class PlaybackQueueRepository {
+    public static final int NO_QUEUE = 0;
+    // Chỉ giữ vài hàng đợi gần nhất, đủ cho các màn hình còn trong back stack
+    private static final int MAX_QUEUES = 4;
+
+    private static final PlaybackQueueRepository INSTANCE = new PlaybackQueueRepository();
+
+    private final Map<Integer, long[]> queues = new LinkedHashMap<Integer, long[]>(MAX_QUEUES + 1, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, long[]> eldest) {
+            return size() > MAX_QUEUES;
+        }
+    };
+    private int nextHandle = 1;
+
+    public static PlaybackQueueRepository get() {
+        return INSTANCE;
+    }
+
+    // Mảng ids được giữ nguyên, người gọi không được sửa sau khi đăng ký
+    public synchronized int create(long[] ids) {
+        int handle = nextHandle++;
+        if (nextHandle == NO_QUEUE) nextHandle++;
+        queues.put(handle, ids);
+        return handle;
+    }
+
+    // Trả về null nếu handle không còn (ví dụ tiến trình đã bị huỷ và khởi động lại)
+    public synchronized long[] get(int handle) {
+        return queues.get(handle);
+    }
+}
@@ -0,0 +1,781 @@
+package vn.edu.fpt.musicplayer;
+
+import android.app.Notification;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Binder;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.Process;
+import android.os.ResultReceiver;
+import android.os.SystemClock;
+import android.support.v4.media.session.MediaSessionCompat;
+import android.support.v4.media.session.PlaybackStateCompat;
+import android.util.Log;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.DefaultRenderersFactory;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.PlaybackException;
+import com.google.android.exoplayer2.Player;
+import com.google.android.exoplayer2.audio.AudioAttributes;
+import com.google.android.exoplayer2.audio.AudioCapabilities;
+import com.google.android.exoplayer2.audio.AudioProcessor;
+import com.google.android.exoplayer2.audio.AudioSink;
+import com.google.android.exoplayer2.audio.DefaultAudioSink;
+import com.google.android.exoplayer2.ext.mediasession.MediaSessionConnector;
+import com.google.android.exoplayer2.ui.PlayerNotificationManager;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Dịch vụ phát nhạc chạy nền, giữ một {@link ExoPlayer} duy nhất cùng hàng đợi phát,
+ * media session và thông báo điều khiển. {@link PlayerActivity} chỉ bind vào để hiển thị,
+ * nên thoát màn hình không làm dừng nhạc và mở lại không phải khởi tạo lại trình phát.
+ */
+public class PlaybackService extends Service {
+    // Khôi phục hàng đợi đã lưu và nạp sẵn bài ở vị trí cũ, chưa phát
+    public static final String ACTION_RESTORE = "vn.edu.fpt.musicplayer.action.RESTORE";
+    private static final String CHANNEL_ID = "playback";
+    private static final int NOTIFICATION_ID = 1;
+    // Số bài nạp sẵn vào playlist của ExoPlayer quanh bài đang phát
+    private static final int WINDOW_BEHIND = 1;
+    private static final int WINDOW_AHEAD = 2;
+    private static final long SNAPSHOT_INTERVAL_MS = 10_000;
+    private static final long CROSSFADE_RETRY_MS = 200;
+
+    // Từ lúc chạm vào bài trong danh sách (MainActivity) tới khi sẵn sàng phát
+    static final Metrics.Span TAP_TO_READY = Metrics.get().span("playback.tap_to_ready");
+    private static final Metrics.Span TRACK_SWITCH = Metrics.get().span("playback.track_switch");
+    private static final Metrics.Span REBUFFER = Metrics.get().span("playback.rebuffer");
+    private static final Metrics.Counter REBUFFERS = Metrics.get().counter("playback.rebuffers");
+    private static final Metrics.Histogram FIRST_AUDIO = Metrics.get().histogram("startup.first_audio", "ms");
+    private static final Metrics.Histogram RESTORED_READY = Metrics.get().histogram("startup.restored_ready", "ms");
+
+    // Báo cho giao diện khi bài đang phát thay đổi
+    public interface Callback {
+        void onSongChanged(Song song);
+
+        // Khôi phục không nạp được bài nào (xem isRestoring)
+        void onRestoreFailed();
+    }
+
+    public class LocalBinder extends Binder {
+        public PlaybackService getService() {
+            return PlaybackService.this;
+        }
+    }
+
+    private final IBinder binder = new LocalBinder();
+    private final List<Callback> callbacks = new ArrayList<>();
+
+    private ExoPlayer player;
+    private MediaSessionCompat mediaSession;
+    private MediaSessionConnector sessionConnector;
+    private PlayerNotificationManager notificationManager;
+    private MusicLibrary library;
+    private PlayHistory history;
+    private PlaybackStateStore stateStore;
+    private LoudnessAnalyzer loudness;
+    // Chuẩn hoá âm lượng theo độ to đã đo của bài đang phát
+    private final GainProcessor gainProcessor = new GainProcessor();
+    // Equalizer và fade khi chuyển bài, chạy trên luồng phát
+    private final DspChain dsp = new DspChain();
+    private BoundaryAudioSink audioSink;
+    private AudioEffectsSettings effects;
+    private final Runnable crossfadeRunnable = this::scheduleCrossfade;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable snapshotRunnable = new Runnable() {
+        @Override
+        public void run() {
+            saveSnapshot();
+            handler.postDelayed(this, SNAPSHOT_INTERVAL_MS);
+        }
+    };
+    // Đo thời gian từ lúc tiến trình khởi động tới khi có tiếng / khi bài khôi phục sẵn sàng
+    private boolean firstAudioLogged;
+    private boolean restorePending;
+    // Đã nhận ACTION_RESTORE nhưng chưa nạp xong bài: giao diện chờ onSongChanged thay vì báo không có bài
+    private boolean restoring;
+    private int lastState = Player.STATE_IDLE;
+
+    private PlaybackQueue queue = new PlaybackQueue(new long[0]);
+    private boolean isShuffle = false;
+    private boolean isRepeat = false;
+    private Song currentSong;
+
+    // Lượt nghe đang ghi lịch sử
+    private long historySongId = -1;
+    private long listenedMs;
+    private long playingSince = -1;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        library = MusicLibrary.get(this);
+        history = PlayHistory.get(this);
+        stateStore = PlaybackStateStore.get(this);
+        loudness = LoudnessAnalyzer.get(this);
+        effects = AudioEffectsSettings.get(this);
+        for (int band = 0; band < Equalizer.BAND_COUNT; band++) {
+            dsp.equalizer().setGain(band, effects.getBandGain(band));
+        }
+
+        // Thêm gainProcessor và dsp vào chuỗi xử lý PCM trước AudioTrack
+        DefaultRenderersFactory renderersFactory = new DefaultRenderersFactory(this) {
+            @Override
+            protected AudioSink buildAudioSink(Context context, boolean enableFloatOutput,
+                                               boolean enableAudioTrackPlaybackParams, boolean enableOffload) {
+                audioSink = new BoundaryAudioSink(new DefaultAudioSink.Builder()
+                        .setAudioCapabilities(AudioCapabilities.getCapabilities(context))
+                        .setAudioProcessors(new AudioProcessor[]{gainProcessor, new DspAudioProcessor(dsp)})
+                        .setEnableFloatOutput(enableFloatOutput)
+                        .setEnableAudioTrackPlaybackParams(enableAudioTrackPlaybackParams)
+                        .build(), gainProcessor, dsp);
+                return audioSink;
+            }
+        };
+        player = new ExoPlayer.Builder(this, renderersFactory)
+                .setAudioAttributes(new AudioAttributes.Builder()
+                        .setUsage(C.USAGE_MEDIA)
+                        .setContentType(C.AUDIO_CONTENT_TYPE_MUSIC)
+                        .build(), true)
+                .setHandleAudioBecomingNoisy(true)
+                .setWakeMode(C.WAKE_MODE_LOCAL)
+                .build();
+        player.addListener(new Player.Listener() {
+            @Override
+            public void onMediaItemTransition(@Nullable MediaItem mediaItem, int reason) {
+                if (mediaItem == null || mediaItem.localConfiguration == null) return;
+                Object tag = mediaItem.localConfiguration.tag;
+                if (tag instanceof Integer && reason != Player.MEDIA_ITEM_TRANSITION_REASON_PLAYLIST_CHANGED) {
+                    // Tự hết bài hoặc lặp lại là nghe trọn; chuyển bằng tay (SEEK) là bỏ qua
+                    boolean skipped = reason == Player.MEDIA_ITEM_TRANSITION_REASON_SEEK;
+                    int from = queue.getPosition();
+                    queue.setPosition((Integer) tag);
+                    if (isPlaceholder(mediaItem)) {
+                        // Bài không còn trong thư viện: đi tiếp theo hướng người dùng đang chuyển
+                        boolean backwards = skipped && (Integer) tag == (from - 1 + queue.size()) % queue.size();
+                        updateWindow();
+                        if (backwards && player.hasPreviousMediaItem()) {
+                            player.seekToPreviousMediaItem();
+                        } else {
+                            player.seekToNextMediaItem();
+                        }
+                        return;
+                    }
+                    if (skipped) dsp.fade().set(1f); // chuyển bằng tay thì bỏ fade đang chạy
+                    startHistory(queue.getCurrentId(), skipped);
+                    onCurrentSongChanged();
+                    updateWindow();
+                }
+                // Bài kế đã nạp sẵn thì chuyển xong ngay, không qua BUFFERING
+                if (player.getPlaybackState() == Player.STATE_READY) TRACK_SWITCH.stop();
+                if (reason == Player.MEDIA_ITEM_TRANSITION_REASON_AUTO) {
+                    scheduleCrossfade();
+                } else {
+                    scheduleCrossfadeAfterFlush();
+                }
+            }
+
+            @Override
+            public void onPositionDiscontinuity(@NonNull Player.PositionInfo oldPosition,
+                                                @NonNull Player.PositionInfo newPosition, int reason) {
+                if (reason == Player.DISCONTINUITY_REASON_SEEK) {
+                    // Tua trong lúc đang nhỏ dần thì trả lại âm lượng
+                    dsp.fade().set(1f);
+                    scheduleCrossfadeAfterFlush();
+                }
+            }
+
+            @Override
+            public void onIsPlayingChanged(boolean isPlaying) {
+                if (isPlaying) {
+                    playingSince = SystemClock.elapsedRealtime();
+                    // Bài khôi phục chỉ tính là một lượt nghe khi thật sự được phát
+                    if (historySongId < 0 && queue.size() > 0) {
+                        startHistory(queue.getCurrentId(), false);
+                    }
+                    handler.postDelayed(snapshotRunnable, SNAPSHOT_INTERVAL_MS);
+                    scheduleCrossfade();
+                    if (!firstAudioLogged) {
+                        firstAudioLogged = true;
+                        Log.i("Startup", "Time to first audio: " + sinceProcessStart() + " ms");
+                        FIRST_AUDIO.record(sinceProcessStart());
+                    }
+                } else {
+                    pauseHistory();
+                    history.flush();
+                    MetricsExport.save(PlaybackService.this);
+                    handler.removeCallbacks(snapshotRunnable);
+                    handler.removeCallbacks(crossfadeRunnable);
+                    saveSnapshot();
+                }
+            }
+
+            @Override
+            public void onPlaybackStateChanged(int state) {
+                if (state == Player.STATE_BUFFERING && lastState == Player.STATE_READY
+                        && player.getPlayWhenReady() && !TRACK_SWITCH.isRunning()) {
+                    // Đang phát mà hết dữ liệu, không phải do tua hay chuyển bài
+                    REBUFFERS.increment();
+                    REBUFFER.start();
+                }
+                if (state == Player.STATE_READY) {
+                    REBUFFER.stop();
+                    TAP_TO_READY.stop();
+                    TRACK_SWITCH.stop();
+                    scheduleCrossfade(); // đã biết thời lượng
+                }
+                if (state == Player.STATE_READY && restorePending) {
+                    restorePending = false;
+                    Log.i("Startup", "Restored playback ready: " + sinceProcessStart() + " ms");
+                    RESTORED_READY.record(sinceProcessStart());
+                }
+                lastState = state;
+            }
+
+            @Override
+            public void onPlayerError(@NonNull PlaybackException error) {
+                Toast.makeText(PlaybackService.this, "Playback error: " + error.getMessage(), Toast.LENGTH_SHORT).show();
+            }
+        });
+        Intent openPlayer = new Intent(this, PlayerActivity.class);
+        PendingIntent contentIntent = PendingIntent.getActivity(this, 0, openPlayer,
+                PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT);
+
+        mediaSession = new MediaSessionCompat(this, "MusicPlayer");
+        mediaSession.setSessionActivity(contentIntent);
+        mediaSession.setActive(true);
+        sessionConnector = new MediaSessionConnector(mediaSession);
+        sessionConnector.setQueueNavigator(new QueueNavigator());
+        sessionConnector.setPlayer(player);
+
+        notificationManager = new PlayerNotificationManager.Builder(this, NOTIFICATION_ID, CHANNEL_ID)
+                .setChannelNameResourceId(R.string.playback_channel_name)
+                .setSmallIconResourceId(R.drawable.ic_music_note)
+                .setMediaDescriptionAdapter(new PlayerNotificationManager.MediaDescriptionAdapter() {
+                    @NonNull
+                    @Override
+                    public CharSequence getCurrentContentTitle(@NonNull Player player) {
+                        return currentSong != null && currentSong.title != null ? currentSong.title : "";
+                    }
+
+                    @Nullable
+                    @Override
+                    public PendingIntent createCurrentContentIntent(@NonNull Player player) {
+                        return contentIntent;
+                    }
+
+                    @Nullable
+                    @Override
+                    public CharSequence getCurrentContentText(@NonNull Player player) {
+                        return currentSong != null ? currentSong.artist : null;
+                    }
+
+                    @Nullable
+                    @Override
+                    public Bitmap getCurrentLargeIcon(@NonNull Player player,
+                                                      @NonNull PlayerNotificationManager.BitmapCallback callback) {
+                        return null;
+                    }
+                })
+                .setNotificationListener(new PlayerNotificationManager.NotificationListener() {
+                    @Override
+                    public void onNotificationPosted(int notificationId, @NonNull Notification notification, boolean ongoing) {
+                        if (ongoing) {
+                            startForeground(notificationId, notification);
+                        } else {
+                            stopForeground(STOP_FOREGROUND_DETACH);
+                        }
+                    }
+
+                    @Override
+                    public void onNotificationCancelled(int notificationId, boolean dismissedByUser) {
+                        stopForeground(STOP_FOREGROUND_REMOVE);
+                        stopSelf();
+                    }
+                })
+                .build();
+        notificationManager.setMediaSessionToken(mediaSession.getSessionToken());
+        notificationManager.setPlayer(player);
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent != null && ACTION_RESTORE.equals(intent.getAction())) {
+            restore();
+        }
+        return START_NOT_STICKY;
+    }
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        return binder;
+    }
+
+    @Override
+    public void onTaskRemoved(Intent rootIntent) {
+        if (!player.isPlaying()) {
+            stopSelf();
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        handler.removeCallbacks(snapshotRunnable);
+        handler.removeCallbacks(crossfadeRunnable);
+        saveSnapshot();
+        endHistory(false);
+        history.flush();
+        MetricsExport.save(this);
+        notificationManager.setPlayer(null);
+        sessionConnector.setPlayer(null);
+        mediaSession.release();
+        player.release();
+        super.onDestroy();
+    }
+
+    // adb shell dumpsys activity service vn.edu.fpt.musicplayer/.PlaybackService
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        StringBuilder text = new StringBuilder();
+        Metrics.get().dump(text);
+        AppStartup.get(this).timeline(text);
+        writer.print(text);
+    }
+
+    public Player getPlayer() {
+        return player;
+    }
+
+    public void addCallback(Callback callback) {
+        callbacks.add(callback);
+    }
+
+    public void removeCallback(Callback callback) {
+        callbacks.remove(callback);
+    }
+
+    @Nullable
+    public Song getCurrentSong() {
+        return currentSong;
+    }
+
+    public boolean isRestoring() {
+        return restoring;
+    }
+
+    public boolean isShuffle() {
+        return isShuffle;
+    }
+
+    public boolean isRepeat() {
+        return isRepeat;
+    }
+
+    public float getBandGain(int band) {
+        return dsp.equalizer().getGain(band);
+    }
+
+    public void setBandGain(int band, float db) {
+        dsp.equalizer().setGain(band, db);
+        effects.setBandGain(band, dsp.equalizer().getGain(band));
+    }
+
+    public int getCrossfadeMs() {
+        return effects.getCrossfadeMs();
+    }
+
+    public void setCrossfadeMs(int ms) {
+        effects.setCrossfadeMs(ms);
+        // Tắt crossfade thì bỏ cả fade đã hẹn
+        if (ms <= 0) dsp.fade().set(1f);
+        scheduleCrossfade();
+    }
+
+    /**
+     * Phát hàng đợi đã đăng ký trong {@link PlaybackQueueRepository} từ vị trí cho trước.
+     *
+     * @return false nếu handle không còn hợp lệ
+     */
+    public boolean playQueue(int queueHandle, int position) {
+        long[] ids = PlaybackQueueRepository.get().get(queueHandle);
+        if (ids == null || ids.length == 0) return false;
+
+        queue = new PlaybackQueue(ids);
+        restoring = false;
+        queue.setShuffled(isShuffle);
+        queue.playOriginal(Math.min(position, ids.length - 1));
+        playSongAt(queue.getPosition());
+        return true;
+    }
+
+    /**
+     * Khôi phục trạng thái đã lưu: dựng lại hàng đợi và nạp sẵn bài đang phát ở đúng vị trí,
+     * sẵn sàng phát ngay khi người dùng bấm play. Không chờ quét lại thư viện. Snapshot và các bài
+     * được đọc ở luồng nền; trong lúc đó {@link #isRestoring()} là true.
+     */
+    public void restore() {
+        if (queue.size() > 0 || restoring) return;
+        restoring = true;
+        stateStore.load(snapshot -> {
+            // Người dùng đã chọn hàng đợi khác trong lúc đọc
+            if (!restoring) return;
+            if (snapshot == null) {
+                restoreFailed();
+                return;
+            }
+            PlaybackQueue restored = new PlaybackQueue(snapshot.queue);
+            queue = restored;
+            isShuffle = snapshot.shuffle;
+            isRepeat = snapshot.repeat;
+            queue.setShuffled(isShuffle);
+            queue.playOriginal(snapshot.currentIndex);
+            player.setRepeatMode(isRepeat ? Player.REPEAT_MODE_ONE : Player.REPEAT_MODE_OFF);
+            restorePending = true;
+            // Lúc vừa khởi động thư viện có thể chưa nạp xong: đọc các bài trong cửa sổ ở luồng nền
+            library.resolve(windowIds(queue.getPosition()), () -> {
+                if (queue != restored) return;
+                if (library.getSong(snapshot.currentId()) == null && snapshot.currentPath != null
+                        && new File(snapshot.currentPath).exists()) {
+                    // Chỉ mục chưa có bài này (ví dụ vừa bị xoá dữ liệu) nhưng tệp vẫn còn
+                    String name = new File(snapshot.currentPath).getName();
+                    library.putAll(Collections.singletonList(
+                            new Song(snapshot.currentId(), name, null, snapshot.currentPath, 0)));
+                }
+                restoring = false;
+                if (!loadWindow(queue.getPosition(), snapshot.positionMs, false)) {
+                    restorePending = false;
+                    queue = new PlaybackQueue(new long[0]);
+                    restoreFailed();
+                }
+            });
+        });
+    }
+
+    private void restoreFailed() {
+        restoring = false;
+        for (Callback callback : new ArrayList<>(callbacks)) {
+            callback.onRestoreFailed();
+        }
+    }
+
+    // Id các bài loadWindow sẽ đọc quanh vị trí position
+    private long[] windowIds(int position) {
+        int size = queue.size();
+        long[] ids = new long[WINDOW_BEHIND + 1 + WINDOW_AHEAD];
+        for (int offset = -WINDOW_BEHIND; offset <= WINDOW_AHEAD; offset++) {
+            ids[offset + WINDOW_BEHIND] = queue.idAt(((position + offset) % size + size) % size);
+        }
+        return ids;
+    }
+
+    public void playNext() {
+        if (queue.size() == 0) return;
+        TRACK_SWITCH.start();
+        player.seekToNextMediaItem();
+        player.play();
+    }
+
+    public void playPrevious() {
+        if (queue.size() == 0) return;
+        TRACK_SWITCH.start();
+        player.seekToPreviousMediaItem();
+        player.play();
+    }
+
+    public void togglePlayPause() {
+        if (player.isPlaying()) {
+            player.pause();
+        } else {
+            player.play();
+        }
+    }
+
+    public boolean toggleRepeat() {
+        isRepeat = !isRepeat;
+        player.setRepeatMode(isRepeat ? Player.REPEAT_MODE_ONE : Player.REPEAT_MODE_OFF);
+        queueNextGain();
+        return isRepeat;
+    }
+
+    public boolean toggleShuffle() {
+        isShuffle = !isShuffle;
+        if (queue.size() == 0) return isShuffle;
+        queue.setShuffled(isShuffle); // Giữ đúng bài đang phát
+
+        // Bài đang phát giữ nguyên, chỉ thay các bài xung quanh theo thứ tự mới
+        int current = player.getCurrentMediaItemIndex();
+        if (current + 1 < player.getMediaItemCount()) {
+            player.removeMediaItems(current + 1, player.getMediaItemCount());
+        }
+        if (current > 0) {
+            player.removeMediaItems(0, current);
+        }
+        updateWindow();
+        return isShuffle;
+    }
+
+    // Nạp toàn bộ cửa sổ quanh vị trí index và bắt đầu phát
+    private void playSongAt(int index) {
+        TRACK_SWITCH.start();
+        PlaybackQueue playing = queue;
+        library.resolve(windowIds(index), () -> {
+            if (queue != playing) return;
+            if (!loadWindow(index, 0, true)) {
+                TRACK_SWITCH.cancel();
+                TAP_TO_READY.cancel();
+                Toast.makeText(this, "No song found", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    // Gọi sau khi đã resolve windowIds(index). Mỗi mục ứng đúng một vị trí trong hàng đợi
+    private boolean loadWindow(int index, long positionMs, boolean play) {
+        if (library.getSong(queue.idAt(index)) == null) return false;
+        List<MediaItem> items = new ArrayList<>(WINDOW_BEHIND + 1 + WINDOW_AHEAD);
+        int startIndex = 0;
+        for (int offset = -WINDOW_BEHIND; offset <= WINDOW_AHEAD; offset++) {
+            MediaItem item = createMediaItem(index + offset);
+            if (item == null) continue; // chỉ xảy ra trước đầu thứ tự trộn
+            if (offset == 0) startIndex = items.size();
+            items.add(item);
+        }
+        player.setMediaItems(items, startIndex, positionMs);
+        player.prepare();
+        player.setPlayWhenReady(play);
+        if (play) {
+            startHistory(queue.getCurrentId(), true);
+        } else {
+            endHistory(true);
+        }
+        onCurrentSongChanged();
+        return true;
+    }
+
+    /**
+     * Giữ playlist của ExoPlayer là một cửa sổ trượt quanh bài đang phát: bỏ bớt bài đã qua
+     * và thêm bài kế tiếp, để bài sau luôn được nạp sẵn và chuyển bài không bị ngắt quãng.
+     */
+    private void updateWindow() {
+        int current = player.getCurrentMediaItemIndex();
+        if (current > WINDOW_BEHIND) {
+            player.removeMediaItems(0, current - WINDOW_BEHIND);
+        }
+        // Các bài sắp thêm thường đã được prefetchUpcoming đọc sẵn, khi đó chạy ngay
+        PlaybackQueue playing = queue;
+        int position = queue.getPosition();
+        library.resolve(windowIds(position), () -> {
+            if (queue != playing || queue.getPosition() != position) return;
+            // Mục thứ i của playlist là vị trí position + i - current trong hàng đợi
+            int index = player.getCurrentMediaItemIndex();
+            for (int offset = -index - 1; offset >= -WINDOW_BEHIND; offset--) {
+                MediaItem item = createMediaItem(position + offset);
+                if (item == null) break;
+                player.addMediaItem(0, item);
+            }
+            for (int offset = player.getMediaItemCount() - player.getCurrentMediaItemIndex();
+                 offset <= WINDOW_AHEAD; offset++) {
+                player.addMediaItem(createMediaItem(position + offset));
+            }
+            queueNextGain();
+        });
+    }
+
+    // Vị trí được quay vòng theo độ dài hàng đợi, giống hành vi next/previous trước đây.
+    // Khi trộn bài thì bài đang phát là đầu thứ tự mới nên không quay ngược về cuối: trả về null.
+    // Bài không còn trong thư viện vẫn giữ chỗ bằng một mục trống, listener sẽ bỏ qua mục đó.
+    @Nullable
+    private MediaItem createMediaItem(int position) {
+        int size = queue.size();
+        if (queue.isShuffled() && position < 0) return null;
+        int index = ((position % size) + size) % size;
+        long id = queue.idAt(index);
+        Song song = library.getSong(id);
+        return new MediaItem.Builder()
+                .setUri(song != null ? Uri.parse(song.data) : Uri.EMPTY)
+                .setMediaId(String.valueOf(id))
+                .setTag(index)
+                .build();
+    }
+
+    private static boolean isPlaceholder(MediaItem item) {
+        return item.localConfiguration != null && Uri.EMPTY.equals(item.localConfiguration.uri);
+    }
+
+    // Kết thúc lượt nghe trước (nếu có) và bắt đầu lượt nghe bài songId
+    private void startHistory(long songId, boolean skippedPrevious) {
+        endHistory(skippedPrevious);
+        historySongId = songId;
+        listenedMs = 0;
+        if (player.isPlaying()) playingSince = SystemClock.elapsedRealtime();
+        history.recordPlay(songId);
+    }
+
+    private void endHistory(boolean skipped) {
+        if (historySongId < 0) return;
+        pauseHistory();
+        history.recordEnd(historySongId, listenedMs, skipped);
+        historySongId = -1;
+    }
+
+    // Cộng dồn thời gian đã nghe tới lúc này
+    private void pauseHistory() {
+        if (playingSince < 0) return;
+        listenedMs += SystemClock.elapsedRealtime() - playingSince;
+        playingSince = -1;
+    }
+
+    private void saveSnapshot() {
+        if (queue.size() == 0 || currentSong == null) return;
+        stateStore.save(new PlaybackSnapshot(queue.ids(), queue.originalIndexAt(queue.getPosition()),
+                player.getCurrentPosition(), isShuffle, isRepeat, currentSong.data));
+    }
+
+    private static long sinceProcessStart() {
+        return SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime();
+    }
+
+    private void onCurrentSongChanged() {
+        Song song = library.getSong(queue.getCurrentId());
+        if (song == null) return;
+        currentSong = song;
+        applyGain(song);
+        queueNextGain();
+        saveSnapshot();
+        for (Callback callback : new ArrayList<>(callbacks)) {
+            callback.onSongChanged(song);
+        }
+        prefetchUpcoming();
+    }
+
+    /**
+     * Hẹn crossfade: nhỏ dần trong {@link AudioEffectsSettings#getCrossfadeMs()} và chạm 0 đúng ở điểm
+     * nối, rồi to dần lại ở đầu bài kế tiếp. ExoPlayer phát các bài nối tiếp nhau trên cùng một luồng
+     * âm thanh nên không chồng hai bài lên nhau được; fade ra/vào quanh điểm nối là gần nhất.
+     * <p>
+     * Bộ xử lý chạy trước phần đang nghe cả bộ đệm AudioTrack, nên không hẹn theo getCurrentPosition()
+     * mà đổi thời điểm hết bài sang trục thời gian của dòng PCM (vị trí đang phát ra loa cộng phần còn
+     * lại của bài) và để {@link FadeEnvelope} đếm khung tới đó.
+     */
+    private void scheduleCrossfade() {
+        handler.removeCallbacks(crossfadeRunnable);
+        int crossfadeMs = effects.getCrossfadeMs();
+        long duration = player.getDuration();
+        if (crossfadeMs <= 0 || !player.isPlaying() || duration == C.TIME_UNSET || !player.hasNextMediaItem()) return;
+        long playingUs = audioSink.playingPositionUs(true, player.getPlaybackParameters().speed);
+        if (playingUs == C.TIME_UNSET) {
+            // AudioSink chưa báo vị trí (vừa bắt đầu phát hoặc vừa tua): thử lại sau
+            handler.postDelayed(crossfadeRunnable, CROSSFADE_RETRY_MS);
+            return;
+        }
+        long remainingUs = Math.max(0, duration - player.getCurrentPosition()) * 1000;
+        dsp.fade().fadeOutInAt(playingUs + remainingUs, crossfadeMs, crossfadeMs);
+    }
+
+    // Sau khi tua, AudioSink còn giữ vị trí cũ tới khi luồng phát flush xong; hẹn lại khi đã có vị trí mới
+    private void scheduleCrossfadeAfterFlush() {
+        handler.removeCallbacks(crossfadeRunnable);
+        handler.postDelayed(crossfadeRunnable, CROSSFADE_RETRY_MS);
+    }
+
+    // Bài chưa đo thì phát ở mức gốc cho tới khi đo xong
+    private void applyGain(Song song) {
+        Float gain = loudness.peekGain(song.id);
+        gainProcessor.setGain(gain != null ? gain : 1f);
+        if (gain == null) {
+            loudness.requestGain(song, (songId, value) -> {
+                if (currentSong != null && currentSong.id == songId) gainProcessor.setGain(value);
+            });
+        }
+    }
+
+    /**
+     * Gửi trước hệ số của bài ExoPlayer sẽ phát tiếp cho {@link GainProcessor}, để nó đổi đúng ở
+     * điểm nối trong dòng PCM. onMediaItemTransition tới muộn cả bộ đệm AudioTrack, khi đầu bài mới
+     * đã đi qua bộ xử lý với hệ số của bài cũ.
+     */
+    private void queueNextGain() {
+        int next = player.getNextMediaItemIndex();
+        if (next == C.INDEX_UNSET) {
+            gainProcessor.setNextGain(Float.NaN);
+            return;
+        }
+        Float gain = loudness.peekGain(Long.parseLong(player.getMediaItemAt(next).mediaId));
+        gainProcessor.setNextGain(gain != null ? gain : 1f);
+    }
+
+    // Chuẩn bị trước dữ liệu hiển thị và hệ số âm lượng cho các bài sắp phát. Đi xa hơn cửa sổ một
+    // bài để bài mà updateWindow sẽ thêm ở lần chuyển sau đã được MusicLibrary đọc sẵn
+    private void prefetchUpcoming() {
+        int size = queue.size();
+        for (int offset = 1; offset <= WINDOW_AHEAD + 1 && offset < size; offset++) {
+            Song next = library.getSong(queue.idAt((queue.getPosition() + offset) % size));
+            if (next != null) {
+                WaveformRepository.get(this).prefetch(next);
+                // Đo xong bài kế tiếp thì gửi lại hệ số cho điểm nối
+                loudness.requestGain(next, (songId, value) -> queueNextGain());
+                BlurredArtCache.get(this).prefetch(next.albumId);
+            }
+        }
+    }
+
+    // Cho phép media session (tai nghe, màn hình khoá) chuyển bài theo hàng đợi của dịch vụ
+    private class QueueNavigator implements MediaSessionConnector.QueueNavigator {
+        @Override
+        public long getSupportedQueueNavigatorActions(@NonNull Player player) {
+            return PlaybackStateCompat.ACTION_SKIP_TO_NEXT | PlaybackStateCompat.ACTION_SKIP_TO_PREVIOUS;
+        }
+
+        @Override
+        public void onTimelineChanged(@NonNull Player player) {
+        }
+
+        @Override
+        public void onCurrentMediaItemIndexChanged(@NonNull Player player) {
+        }
+
+        @Override
+        public long getActiveQueueItemId(@Nullable Player player) {
+            return MediaSessionCompat.QueueItem.UNKNOWN_ID;
+        }
+
+        @Override
+        public void onSkipToPrevious(@NonNull Player player) {
+            playPrevious();
+        }
+
+        @Override
+        public void onSkipToQueueItem(@NonNull Player player, long id) {
+        }
+
+        @Override
+        public void onSkipToNext(@NonNull Player player) {
+            playNext();
+        }
+
+        @Override
+        public boolean onCommand(@NonNull Player player, @NonNull String command,
+                                 @Nullable Bundle extras, @Nullable ResultReceiver cb) {
+            return false;
+        }
+    }
+}
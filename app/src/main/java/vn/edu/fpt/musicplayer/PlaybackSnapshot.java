@@ -0,0 +1,134 @@
+package vn.edu.fpt.musicplayer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Trạng thái phát tối thiểu để tiếp tục ngay sau khi app bị tắt: hàng đợi (id gốc), bài đang phát,
+ * chế độ trộn/lặp và vị trí trong bài. Lưu dạng nhị phân gọn: id được ghi dưới dạng hiệu số
+ * varint (zigzag) với id trước đó, nên hàng đợi hàng nghìn bài chỉ vài KB.
+ * Thứ tự trộn không được lưu; khi khôi phục sẽ trộn lại với bài đang phát ở đầu.
+ */
+public final class PlaybackSnapshot {
+    private static final int MAGIC = 0x50425331; // "PBS1"
+    private static final int VERSION = 1;
+    private static final int FLAG_SHUFFLE = 1;
+    private static final int FLAG_REPEAT = 1 << 1;
+    // Magic, phiên bản và cờ
+    private static final int HEADER_SIZE = 6;
+    // Sau hàng đợi còn ít nhất chỉ số, vị trí (mỗi varint 1 byte) và độ dài đường dẫn (2 byte)
+    private static final int TRAILER_MIN_SIZE = 4;
+    // Gấp nhiều lần thư viện lớn nhất thường gặp; chặn cấp phát khổng lồ khi tệp hỏng
+    static final int MAX_QUEUE_SIZE = 1 << 20;
+
+    public final long[] queue;
+    // Chỉ số trong queue của bài đang phát
+    public final int currentIndex;
+    public final long positionMs;
+    public final boolean shuffle;
+    public final boolean repeat;
+    // Đường dẫn bài đang phát, để nạp bài ngay cả khi chưa mở chỉ mục thư viện
+    public final String currentPath;
+
+    public PlaybackSnapshot(long[] queue, int currentIndex, long positionMs,
+                            boolean shuffle, boolean repeat, String currentPath) {
+        this.queue = queue;
+        this.currentIndex = currentIndex;
+        this.positionMs = positionMs;
+        this.shuffle = shuffle;
+        this.repeat = repeat;
+        this.currentPath = currentPath;
+    }
+
+    public long currentId() {
+        return queue[currentIndex];
+    }
+
+    public void writeTo(OutputStream stream) throws IOException {
+        // Ghi vào bộ đệm trước để chỉ một lần ghi xuống đĩa
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + queue.length * 2);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte((shuffle ? FLAG_SHUFFLE : 0) | (repeat ? FLAG_REPEAT : 0));
+        writeVarLong(out, queue.length);
+        long previous = 0;
+        for (long id : queue) {
+            long delta = id - previous;
+            writeVarLong(out, (delta << 1) ^ (delta >> 63));
+            previous = id;
+        }
+        writeVarLong(out, currentIndex);
+        writeVarLong(out, Math.max(0, positionMs));
+        out.writeUTF(currentPath != null ? currentPath : "");
+        out.flush();
+        bytes.writeTo(stream);
+    }
+
+    public static PlaybackSnapshot readFrom(InputStream stream) throws IOException {
+        return readFrom(stream, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param length số byte của cả bản ghi (kích thước tệp); số bài trong hàng đợi được đối chiếu với
+     *               số byte còn lại trước khi cấp phát, mỗi id chiếm ít nhất một byte
+     */
+    public static PlaybackSnapshot readFrom(InputStream stream, long length) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != MAGIC) throw new IOException("Not a playback snapshot");
+        int version = in.readUnsignedByte();
+        if (version != VERSION) throw new IOException("Unsupported snapshot version " + version);
+        int flags = in.readUnsignedByte();
+        long count = readVarLong(in);
+        long remaining = length - HEADER_SIZE - varLongSize(count) - TRAILER_MIN_SIZE;
+        if (count <= 0 || count > MAX_QUEUE_SIZE || count > remaining) {
+            throw new IOException("Bad queue size " + count);
+        }
+        long[] queue = new long[(int) count];
+        long previous = 0;
+        for (int i = 0; i < queue.length; i++) {
+            long zigzag = readVarLong(in);
+            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+            queue[i] = previous;
+        }
+        long currentIndex = readVarLong(in);
+        if (currentIndex >= queue.length) throw new IOException("Bad index " + currentIndex);
+        long positionMs = readVarLong(in);
+        String path = in.readUTF();
+        return new PlaybackSnapshot(queue, (int) currentIndex, positionMs,
+                (flags & FLAG_SHUFFLE) != 0, (flags & FLAG_REPEAT) != 0, path.isEmpty() ? null : path);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static int varLongSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) throw new EOFException();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Varint too long");
+    }
+}
@@ -0,0 +1,86 @@
+package vn.edu.fpt.musicplayer;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Lưu {@link PlaybackSnapshot} vào filesDir bằng {@link AtomicFile}, nên app bị tắt giữa chừng
+ * cũng không để lại tệp hỏng. Đọc và ghi trên cùng một luồng nền, nên lần đọc luôn thấy các lần
+ * ghi đã gửi trước đó.
+ */
+public class PlaybackStateStore {
+    private static final String FILE_NAME = "playback_state.bin";
+
+    public interface Callback {
+        // Gọi trên luồng UI; null nếu chưa lưu hoặc tệp hỏng
+        void onLoaded(@Nullable PlaybackSnapshot snapshot);
+    }
+
+    private static PlaybackStateStore instance;
+
+    private final AtomicFile file;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public static synchronized PlaybackStateStore get(Context context) {
+        if (instance == null) {
+            instance = new PlaybackStateStore(new File(context.getApplicationContext().getFilesDir(), FILE_NAME));
+        }
+        return instance;
+    }
+
+    private PlaybackStateStore(File file) {
+        this.file = new AtomicFile(file);
+    }
+
+    public boolean exists() {
+        return file.getBaseFile().exists();
+    }
+
+    public void load(Callback callback) {
+        executor.execute(() -> {
+            PlaybackSnapshot snapshot = read();
+            mainHandler.post(() -> callback.onLoaded(snapshot));
+        });
+    }
+
+    @Nullable
+    private PlaybackSnapshot read() {
+        if (!exists()) return null;
+        try (BufferedInputStream in = new BufferedInputStream(file.openRead())) {
+            return PlaybackSnapshot.readFrom(in, file.getBaseFile().length());
+        } catch (IOException e) {
+            Log.w("PlaybackState", "Discarding unreadable snapshot", e);
+            file.delete();
+            return null;
+        }
+    }
+
+    public void save(PlaybackSnapshot snapshot) {
+        executor.execute(() -> write(snapshot));
+    }
+
+    private void write(PlaybackSnapshot snapshot) {
+        FileOutputStream out = null;
+        try {
+            out = file.startWrite();
+            snapshot.writeTo(out);
+            file.finishWrite(out);
+        } catch (IOException e) {
+            if (out != null) file.failWrite(out);
+            Log.w("PlaybackState", "Cannot save snapshot", e);
+        }
+    }
+}
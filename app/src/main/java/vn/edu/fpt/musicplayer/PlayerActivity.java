@@ -1,55 +1,121 @@
 package vn.edu.fpt.musicplayer;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
-
-import android.content.ContentUris;
-import android.net.Uri;
+import androidx.core.content.ContextCompat;
+
+import android.Manifest;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
 import android.os.Bundle;
-import android.os.Handler;
+import android.os.IBinder;
+import android.widget.SeekBar;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
 import com.frolo.waveformseekbar.WaveformSeekBar;
-import com.google.android.exoplayer2.ExoPlayer;
-import com.google.android.exoplayer2.MediaItem;
 import com.google.android.exoplayer2.PlaybackException;
 import com.google.android.exoplayer2.Player;
 
-import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.Random;
+import java.util.Arrays;
 
-import static com.bumptech.glide.request.RequestOptions.bitmapTransform;
-import jp.wasabeef.glide.transformations.BlurTransformation;
 import vn.edu.fpt.musicplayer.databinding.ActivityPlayerBinding;
+import vn.edu.fpt.musicplayer.databinding.DialogAudioEffectsBinding;
+
+public class PlayerActivity extends AppCompatActivity implements PlaybackService.Callback {
+    public static final String EXTRA_QUEUE = "queue";
+    public static final String EXTRA_POSITION = "position";
 
-public class PlayerActivity extends AppCompatActivity {
     private ActivityPlayerBinding binding;
-    private ExoPlayer player;
-    private Handler handler = new Handler();
+    private PlaybackService service;
+    private Player player;
+    private ProgressDriver progressDriver;
+    private boolean startQueue;
+    private AlbumArtResolver albumArtResolver;
+    private BlurredArtCache blurredArtCache;
+
+    // Cần quyền thông báo (Android 13+) để hiện điều khiển phát nhạc; từ chối thì nhạc vẫn phát
+    private final ActivityResultLauncher<String> notificationPermissionLauncher =
+            registerForActivityResult(new ActivityResultContracts.RequestPermission(), isGranted -> { });
+
+    private final Player.Listener playerListener = new Player.Listener() {
+        @Override
+        public void onPlaybackStateChanged(int state) {
+            updatePlayerPauseButtonIcon();
+            if (state == Player.STATE_READY) {
+                progressDriver.refresh();
+            }
+        }
 
-    private List<Song> songList = new ArrayList<>();
-    private List<Song> shuffledList = new ArrayList<>();
-    private int currentIndex = 0;
-    private boolean isShuffle = false;
-    private boolean isRepeat = false;
+        @Override
+        public void onIsPlayingChanged(boolean isPlaying) {
+            updatePlayerPauseButtonIcon();
+            progressDriver.refresh();
+        }
+
+        @Override
+        public void onPlayerError(@NonNull PlaybackException error) {
+            Toast.makeText(PlayerActivity.this, "Playback error: " + error.getMessage(), Toast.LENGTH_SHORT).show();
+        }
+    };
 
-    private final Runnable updateRunnable = new Runnable() {
+    private final ServiceConnection connection = new ServiceConnection() {
         @Override
-        public void run() {
-            if (player != null && player.isPlaying()) {
-                long currentPosition = player.getCurrentPosition();
-                long duration = player.getDuration();
-                if (duration > 0) {
-                    float progressPercent = (float) currentPosition / duration;
-                    binding.waveformSeekBar.setProgressInPercentage(progressPercent);
-                    binding.textElapsed.setText(formatTime((int) (currentPosition / 1000)));
-                    binding.textDuration.setText(formatTime((int) (duration / 1000)));
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            service = ((PlaybackService.LocalBinder) binder).getService();
+            player = service.getPlayer();
+            player.addListener(playerListener);
+            service.addCallback(PlayerActivity.this);
+
+            // Chỉ bắt đầu hàng đợi mới khi được mở từ danh sách, không phải khi xoay màn hình
+            // hay quay lại từ thông báo
+            if (startQueue) {
+                startQueue = false;
+                int handle = getIntent().getIntExtra(EXTRA_QUEUE, PlaybackQueueRepository.NO_QUEUE);
+                if (!service.playQueue(handle, getIntent().getIntExtra(EXTRA_POSITION, 0))) {
+                    Toast.makeText(PlayerActivity.this, "No song found", Toast.LENGTH_SHORT).show();
+                    finish();
+                    return;
                 }
-                handler.postDelayed(this, 1000);
+            } else if (service.getCurrentSong() != null) {
+                onSongChanged(service.getCurrentSong());
+            } else if (!service.isRestoring()) {
+                Toast.makeText(PlayerActivity.this, "No song found", Toast.LENGTH_SHORT).show();
+                finish();
+                return;
             }
+            // Đang khôi phục (mở từ "Tiếp tục nghe"): bài sẽ tới qua onSongChanged
+
+            binding.BtnRepeat.setColorFilter(service.isRepeat() ? getColor(R.color.purple) : null);
+            if (service.isShuffle()) {
+                binding.BtnShuffle.setColorFilter(getColor(R.color.purple));
+            } else {
+                binding.BtnShuffle.clearColorFilter();
+            }
+            updatePlayerPauseButtonIcon();
+            progressDriver.setPlayer(player);
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            progressDriver.setPlayer(null);
+            service = null;
+            player = null;
         }
     };
 
@@ -60,31 +126,38 @@ public class PlayerActivity extends AppCompatActivity {
         setContentView(binding.getRoot());
         EdgeToEdgeHelper.enable(this);
 
-        songList = getIntent().getParcelableArrayListExtra("songList");
-        currentIndex = getIntent().getIntExtra("position", 0);
+        albumArtResolver = AlbumArtResolver.get(this);
+        blurredArtCache = BlurredArtCache.get(this);
+        startQueue = savedInstanceState == null && getIntent().hasExtra(EXTRA_QUEUE);
+        binding.waveformSeekBar.setWaveform(createFlatWaveForm(), false);
+        progressDriver = new ProgressDriver(binding.waveformSeekBar, binding.textElapsed, binding.textDuration);
+        setupControls();
 
-        if (songList == null || songList.isEmpty()) {
-            Toast.makeText(this, "No song found", Toast.LENGTH_SHORT).show();
-            finish();
-            return;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                && ContextCompat.checkSelfPermission(this, Manifest.permission.POST_NOTIFICATIONS)
+                != PackageManager.PERMISSION_GRANTED) {
+            notificationPermissionLauncher.launch(Manifest.permission.POST_NOTIFICATIONS);
         }
 
-        shuffledList = new ArrayList<>(songList);
-        binding.waveformSeekBar.setWaveform(createWaveForm(), true);
-
-        initPlayer();
-        playSongAt(currentIndex);
-        setupControls();
+        // Dịch vụ được start để tiếp tục phát sau khi màn hình này bị đóng
+        Intent serviceIntent = new Intent(this, PlaybackService.class);
+        startService(serviceIntent);
+        bindService(serviceIntent, connection, Context.BIND_AUTO_CREATE);
 
         binding.backBtn.setOnClickListener(v -> finish());
     }
 
     private void setupControls() {
         binding.BtnPlayPause.setOnClickListener(v -> togglePlayPause());
-        binding.BtnNext.setOnClickListener(v -> playNext());
-        binding.BtnPreV.setOnClickListener(v -> playPrevious());
+        binding.BtnNext.setOnClickListener(v -> {
+            if (service != null) service.playNext();
+        });
+        binding.BtnPreV.setOnClickListener(v -> {
+            if (service != null) service.playPrevious();
+        });
         binding.BtnShuffle.setOnClickListener(v -> toggleShuffle());
         binding.BtnRepeat.setOnClickListener(v -> toggleRepeat());
+        binding.effectsBtn.setOnClickListener(v -> showAudioEffects());
 
         binding.waveformSeekBar.setCallback(new WaveformSeekBar.Callback() {
             @Override
@@ -93,103 +166,120 @@ public class PlayerActivity extends AppCompatActivity {
                     long duration = player.getDuration();
                     long seekPos = (long) (percent * duration);
                     player.seekTo(seekPos);
-                    binding.textElapsed.setText(formatTime((int) (seekPos / 1000)));
+                    progressDriver.showPosition(seekPos);
                 }
             }
 
             @Override
             public void onStartTrackingTouch(WaveformSeekBar seekBar) {
-                handler.removeCallbacks(updateRunnable);
+                progressDriver.setTracking(true);
             }
 
             @Override
             public void onStopTrackingTouch(WaveformSeekBar seekBar) {
-                handler.postDelayed(updateRunnable, 0);
+                progressDriver.setTracking(false);
             }
         });
     }
 
-    private void toggleRepeat() {
-        isRepeat = !isRepeat;
-        player.setRepeatMode(isRepeat ? Player.REPEAT_MODE_ONE : Player.REPEAT_MODE_OFF);
-        binding.BtnRepeat.setColorFilter(isRepeat ? getColor(R.color.purple) : null);
-    }
+    // Mức các dải equalizer và độ dài crossfade; thay đổi có hiệu lực ngay khi kéo
+    private void showAudioEffects() {
+        if (service == null) return;
+        DialogAudioEffectsBinding dialog = DialogAudioEffectsBinding.inflate(getLayoutInflater());
+        int maxDb = (int) Equalizer.MAX_GAIN_DB;
+        for (int band = 0; band < Equalizer.BAND_COUNT; band++) {
+            int index = band;
+            float frequency = Equalizer.BAND_FREQUENCIES[band];
+            String name = frequency < 1000 ? (int) frequency + " Hz"
+                    : frequency % 1000 == 0 ? (int) (frequency / 1000) + " kHz" : (frequency / 1000) + " kHz";
+            TextView label = new TextView(this);
+            SeekBar seekBar = new SeekBar(this);
+            seekBar.setMax(2 * maxDb);
+            seekBar.setProgress(Math.round(service.getBandGain(band)) + maxDb);
+            label.setText(getString(R.string.equalizer_band, name, (float) (seekBar.getProgress() - maxDb)));
+            seekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+                @Override
+                public void onProgressChanged(SeekBar bar, int progress, boolean fromUser) {
+                    label.setText(getString(R.string.equalizer_band, name, (float) (progress - maxDb)));
+                    if (fromUser && service != null) service.setBandGain(index, progress - maxDb);
+                }
 
-    private void toggleShuffle() {
-        isShuffle = !isShuffle;
-        Song currentSong = getCurrentSong();
-        if (isShuffle) {
-            Collections.shuffle(shuffledList);
-            binding.BtnShuffle.setColorFilter(getColor(R.color.purple));
-        } else {
-            shuffledList = new ArrayList<>(songList);
-            binding.BtnShuffle.clearColorFilter();
-        }
-        currentIndex = getCurrentList().indexOf(currentSong); // Giữ đúng bài đang phát
-    }
+                @Override
+                public void onStartTrackingTouch(SeekBar bar) {
+                }
 
-    private void togglePlayPause() {
-        if (player.isPlaying()) {
-            player.pause();
-            handler.removeCallbacks(updateRunnable);
-        } else {
-            player.play();
-            handler.postDelayed(updateRunnable, 0);
+                @Override
+                public void onStopTrackingTouch(SeekBar bar) {
+                }
+            });
+            dialog.bandContainer.addView(label);
+            dialog.bandContainer.addView(seekBar);
         }
-        updatePlayerPauseButtonIcon();
-    }
 
-    private void playNext() {
-        List<Song> list = getCurrentList();
-        currentIndex = (currentIndex + 1) % list.size();
-        playSongAt(currentIndex);
-    }
-
-    private void playPrevious() {
-        List<Song> list = getCurrentList();
-        currentIndex = (currentIndex - 1 + list.size()) % list.size();
-        playSongAt(currentIndex);
-    }
-
-    private void initPlayer() {
-        player = new ExoPlayer.Builder(this).build();
-        player.setRepeatMode(isRepeat ? Player.REPEAT_MODE_ONE : Player.REPEAT_MODE_OFF);
+        dialog.seekCrossfade.setMax(AudioEffectsSettings.MAX_CROSSFADE_MS / 1000);
+        dialog.seekCrossfade.setProgress(service.getCrossfadeMs() / 1000);
+        showCrossfade(dialog.textCrossfade, dialog.seekCrossfade.getProgress());
+        dialog.seekCrossfade.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+            @Override
+            public void onProgressChanged(SeekBar bar, int progress, boolean fromUser) {
+                showCrossfade(dialog.textCrossfade, progress);
+                if (fromUser && service != null) service.setCrossfadeMs(progress * 1000);
+            }
 
-        player.addListener(new Player.Listener() {
             @Override
-            public void onPlaybackStateChanged(int state) {
-                updatePlayerPauseButtonIcon();
-                if (state == Player.STATE_READY) {
-                    binding.textDuration.setText(formatTime((int) (player.getDuration() / 1000)));
-                    handler.postDelayed(updateRunnable, 0);
-                } else if (state == Player.STATE_ENDED) {
-                    playNext();
-                }
+            public void onStartTrackingTouch(SeekBar bar) {
             }
 
             @Override
-            public void onPlayerError(PlaybackException error) {
-                Toast.makeText(PlayerActivity.this, "Playback error: " + error.getMessage(), Toast.LENGTH_SHORT).show();
+            public void onStopTrackingTouch(SeekBar bar) {
             }
         });
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.audio_effects)
+                .setView(dialog.getRoot())
+                .setPositiveButton(android.R.string.ok, null)
+                .show();
     }
 
-    private void playSongAt(int index) {
-        Song song = getCurrentList().get(index);
-        player.setMediaItem(MediaItem.fromUri(song.data));
-        player.prepare();
-        player.play();
+    private void showCrossfade(TextView text, int seconds) {
+        text.setText(seconds == 0 ? getString(R.string.crossfade_off) : getString(R.string.crossfade_seconds, seconds));
+    }
 
+    private void toggleRepeat() {
+        if (service == null) return;
+        boolean isRepeat = service.toggleRepeat();
+        binding.BtnRepeat.setColorFilter(isRepeat ? getColor(R.color.purple) : null);
+    }
+
+    private void toggleShuffle() {
+        if (service == null) return;
+        if (service.toggleShuffle()) {
+            binding.BtnShuffle.setColorFilter(getColor(R.color.purple));
+        } else {
+            binding.BtnShuffle.clearColorFilter();
+        }
+    }
+
+    private void togglePlayPause() {
+        if (service == null) return;
+        service.togglePlayPause();
         updatePlayerPauseButtonIcon();
-        updateUI(song);
     }
 
-    private List<Song> getCurrentList() {
-        return isShuffle ? shuffledList : songList;
+    @Override
+    public void onSongChanged(Song song) {
+        updatePlayerPauseButtonIcon();
+        updateUI(song);
+        binding.waveformSeekBar.setWaveform(createFlatWaveForm(), false);
+        loadWaveform(song);
+        progressDriver.refresh();
     }
 
-    private Song getCurrentSong() {
-        return getCurrentList().get(currentIndex);
+    @Override
+    public void onRestoreFailed() {
+        Toast.makeText(this, "No song found", Toast.LENGTH_SHORT).show();
+        finish();
     }
 
     private void updateUI(Song song) {
@@ -197,51 +287,80 @@ public class PlayerActivity extends AppCompatActivity {
         binding.textArtist.setText(song.artist != null ? song.artist : "");
         setTitle(song.title);
 
-        Uri albumArtUri = ContentUris.withAppendedId(
-                Uri.parse("content://media/external/audio/albumart"), song.albumId);
-        if (hasAlbumArt(albumArtUri)) {
-            Glide.with(this)
-                    .asBitmap()
-                    .load(albumArtUri)
-                    .circleCrop()
-                    .placeholder(R.drawable.ic_music_note)
-                    .error(R.drawable.ic_music_note)
-                    .into(binding.ImageAlbumArtPlayer);
-
-            Glide.with(this)
-                    .asBitmap()
-                    .load(albumArtUri)
-                    .apply(bitmapTransform(new BlurTransformation(25, 3)))
-                    .placeholder(R.drawable.ic_music_note)
-                    .error(R.drawable.ic_music_note)
-                    .into(binding.bgAlbumArt);
-        } else {
-            binding.ImageAlbumArtPlayer.setImageResource(R.drawable.ic_music_note);
-            binding.bgAlbumArt.setImageResource(R.drawable.ic_music_note);
-        }
+        // Kiểm tra ảnh bìa ở luồng nền (có ghi nhớ), không mở stream trên luồng UI
+        albumArtResolver.resolve(song.albumId, (albumId, hasArt) -> {
+            Song current = service != null ? service.getCurrentSong() : null;
+            if (current == null || current.albumId != albumId) return;
+            if (hasArt) {
+                loadAlbumArt(albumId);
+            } else {
+                showDefaultAlbumArt();
+            }
+        });
     }
 
-    private boolean hasAlbumArt(Uri uri) {
-        try (InputStream is = getContentResolver().openInputStream(uri)) {
-            return is != null;
-        } catch (Exception e) {
-            return false;
+    private void loadAlbumArt(long albumId) {
+        long start = System.nanoTime();
+        Glide.with(this)
+                .load(albumArtResolver.artModel(albumId))
+                .circleCrop()
+                .placeholder(R.drawable.ic_music_note)
+                .listener(new RequestListener<Drawable>() {
+                    @Override
+                    public boolean onLoadFailed(@Nullable GlideException e, Object model,
+                                                Target<Drawable> target, boolean isFirstResource) {
+                        albumArtResolver.markMissing(albumId);
+                        return false;
+                    }
+
+                    @Override
+                    public boolean onResourceReady(Drawable resource, Object model, Target<Drawable> target,
+                                                   DataSource dataSource, boolean isFirstResource) {
+                        if (dataSource != DataSource.MEMORY_CACHE) {
+                            SongAdapter.ALBUM_ART_LOAD.recordNanos(System.nanoTime() - start);
+                        }
+                        return false;
+                    }
+                })
+                .error(R.drawable.ic_music_note)
+                .into(binding.ImageAlbumArtPlayer);
+
+        // Nền làm mờ lấy từ cache; thường đã được tính sẵn khi bài này còn nằm trong hàng đợi
+        Bitmap blurred = blurredArtCache.peek(albumId);
+        if (blurred != null) {
+            binding.bgAlbumArt.setImageBitmap(blurred);
+            return;
         }
+        blurredArtCache.load(albumId, (id, bitmap) -> {
+            Song current = service != null ? service.getCurrentSong() : null;
+            if (current != null && current.albumId == id) {
+                binding.bgAlbumArt.setImageBitmap(bitmap);
+            }
+        });
     }
 
-    private String formatTime(int seconds) {
-        return String.format("%02d:%02d", seconds / 60, seconds % 60);
+    private void showDefaultAlbumArt() {
+        Glide.with(this).clear(binding.ImageAlbumArtPlayer);
+        binding.ImageAlbumArtPlayer.setImageResource(R.drawable.ic_music_note);
+        binding.bgAlbumArt.setImageResource(R.drawable.ic_music_note);
     }
 
-    private int[] createWaveForm() {
-        Random random = new Random(System.currentTimeMillis());
-        int[] values = new int[50];
-        for (int i = 0; i < values.length; i++) {
-            values[i] = 5 + random.nextInt(50);
-        }
+    // Hiển thị tạm trong lúc dạng sóng thật đang được tính
+    private int[] createFlatWaveForm() {
+        int[] values = new int[WaveformRepository.BARS];
+        Arrays.fill(values, 5);
         return values;
     }
 
+    private void loadWaveform(Song song) {
+        WaveformRepository.get(this).load(song, (loaded, heights) -> {
+            Song current = service != null ? service.getCurrentSong() : null;
+            if (current != null && current.id == loaded.id) {
+                binding.waveformSeekBar.setWaveform(heights, true);
+            }
+        });
+    }
+
     private void updatePlayerPauseButtonIcon() {
         binding.BtnPlayPause.setImageResource(
                 player != null && player.isPlaying()
@@ -250,13 +369,29 @@ public class PlayerActivity extends AppCompatActivity {
         );
     }
 
+    // Chỉ cập nhật tiến trình khi màn hình đang hiện
+    @Override
+    protected void onStart() {
+        super.onStart();
+        progressDriver.setVisible(true);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        progressDriver.setVisible(false);
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        handler.removeCallbacks(updateRunnable);
-        if (player != null) {
-            player.release();
+        progressDriver.setPlayer(null);
+        if (service != null) {
+            player.removeListener(playerListener);
+            service.removeCallback(this);
+            service = null;
             player = null;
         }
+        unbindService(connection);
     }
 }
@@ -0,0 +1,112 @@
+package vn.edu.fpt.musicplayer;
+
+import android.view.Choreographer;
+import android.widget.TextView;
+
+import androidx.annotation.Nullable;
+
+import com.frolo.waveformseekbar.WaveformSeekBar;
+import com.google.android.exoplayer2.Player;
+
+/**
+ * Cập nhật thanh tiến trình và thời gian theo từng khung hình ({@link Choreographer}) khi màn hình
+ * đang hiện và nhạc đang phát; dừng hẳn khi màn hình bị ẩn hoặc tạm dừng phát.
+ * Chỉ gọi setText/vẽ lại khi giá trị hiển thị thật sự đổi, và không cấp phát trong mỗi khung hình.
+ */
+public class ProgressDriver implements Choreographer.FrameCallback {
+    private final Choreographer choreographer = Choreographer.getInstance();
+    private final WaveformSeekBar seekBar;
+    private final TextView elapsedView;
+    private final TextView durationView;
+    private final TimeFormatter elapsed = new TimeFormatter();
+    private final TimeFormatter duration = new TimeFormatter();
+
+    private Player player;
+    private boolean visible;
+    private boolean tracking;
+    private boolean scheduled;
+    private float lastProgress = -1;
+
+    public ProgressDriver(WaveformSeekBar seekBar, TextView elapsedView, TextView durationView) {
+        this.seekBar = seekBar;
+        this.elapsedView = elapsedView;
+        this.durationView = durationView;
+    }
+
+    public void setPlayer(@Nullable Player player) {
+        this.player = player;
+        refresh();
+    }
+
+    public void setVisible(boolean visible) {
+        this.visible = visible;
+        refresh();
+    }
+
+    // Trong lúc người dùng kéo thanh tiến trình thì không ghi đè vị trí của thanh
+    public void setTracking(boolean tracking) {
+        this.tracking = tracking;
+        refresh();
+    }
+
+    // Hiện thời gian tại vị trí đang kéo tới
+    public void showPosition(long positionMs) {
+        if (elapsed.update(positionMs / 1000)) {
+            elapsedView.setText(elapsed.chars(), 0, elapsed.length());
+        }
+    }
+
+    /**
+     * Cập nhật ngay một lần, rồi chạy theo khung hình nếu đang phát.
+     * Gọi lại khi trạng thái phát, bài hát hoặc thời lượng thay đổi.
+     */
+    public void refresh() {
+        if (!visible || player == null) {
+            stop();
+            return;
+        }
+        update();
+        scheduleIfPlaying();
+    }
+
+    public void stop() {
+        if (scheduled) {
+            choreographer.removeFrameCallback(this);
+            scheduled = false;
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        scheduled = false;
+        if (!visible || player == null) return;
+        update();
+        scheduleIfPlaying();
+    }
+
+    private void scheduleIfPlaying() {
+        if (!scheduled && player.isPlaying()) {
+            choreographer.postFrameCallback(this);
+            scheduled = true;
+        }
+    }
+
+    private void update() {
+        long durationMs = player.getDuration();
+        if (durationMs <= 0) return; // Chưa biết thời lượng (C.TIME_UNSET)
+        if (duration.update(durationMs / 1000)) {
+            durationView.setText(duration.chars(), 0, duration.length());
+        }
+        if (tracking) return;
+
+        long positionMs = player.getCurrentPosition();
+        showPosition(positionMs);
+        // Chỉ vẽ lại thanh khi vị trí dịch đi ít nhất một điểm ảnh
+        float progress = Math.min(1f, (float) positionMs / durationMs);
+        float minStep = 1f / Math.max(1, seekBar.getWidth());
+        if (Math.abs(progress - lastProgress) >= minStep) {
+            lastProgress = progress;
+            seekBar.setProgressInPercentage(progress);
+        }
+    }
+}
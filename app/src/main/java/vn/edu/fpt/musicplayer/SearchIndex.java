@@ -0,0 +1,257 @@
+package vn.edu.fpt.musicplayer;
+
+import java.util.Arrays;
+
+/**
+ * Chỉ mục tìm kiếm trong bộ nhớ trên tên bài và nghệ sĩ, dựng dần khi thư viện được tải.
+ * Văn bản đã chuẩn hoá ({@link TextFolder}) được lưu liền trong một mảng char; mỗi trigram và
+ * mỗi tiền tố 1-2 ký tự của từng từ có một danh sách id tài liệu dạng mảng int. Một truy vấn khớp
+ * khi mọi từ trong truy vấn đều xuất hiện trong tài liệu: từ từ 3 ký tự trở lên là chuỗi con bất kỳ,
+ * từ ngắn hơn phải là đầu một từ. Danh sách ngắn nhất cho ra tập ứng viên, sau đó từng ứng viên
+ * được kiểm tra lại trên văn bản. Mỗi lần tìm không cấp phát bộ nhớ.
+ * Không an toàn đa luồng.
+ */
+public class SearchIndex {
+    private static final char FIELD_SEPARATOR = '\u0001';
+    private static final int MAX_QUERY_TOKENS = 16;
+    private static final int INITIAL_POSTING_CAPACITY = 4;
+    private static final int MIN_GRAM = 3;
+    private static final long PREFIX_FLAG = 1L << 48;
+
+    // Văn bản của tài liệu d nằm trong text[starts[d], starts[d + 1])
+    private char[] text = new char[1024];
+    private int textLength;
+    private int[] starts = new int[257];
+    private int size;
+
+    // Bảng băm địa chỉ mở: trigram -> vị trí trong postings
+    private long[] keys = new long[1024];
+    private int[] slots = new int[1024];
+    private int keyCount;
+    private int[][] postings = new int[512][];
+    private int[] postingSizes = new int[512];
+
+    // Bộ đệm dùng lại giữa các lần tìm
+    private char[] query = new char[64];
+    private final int[] tokenStart = new int[MAX_QUERY_TOKENS];
+    private final int[] tokenEnd = new int[MAX_QUERY_TOKENS];
+
+    public SearchIndex() {
+        Arrays.fill(slots, -1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        textLength = 0;
+        size = 0;
+        keyCount = 0;
+        Arrays.fill(slots, -1);
+    }
+
+    /**
+     * Thêm một tài liệu; id là số thứ tự thêm vào (0, 1, 2, ...), trùng với vị trí trong danh sách bài.
+     */
+    public int add(CharSequence title, CharSequence artist) {
+        int doc = size;
+        int titleLength = title != null ? title.length() : 0;
+        int artistLength = artist != null ? artist.length() : 0;
+        ensureText(textLength + titleLength + artistLength + 1);
+        int start = textLength;
+        if (title != null) textLength = TextFolder.fold(title, text, textLength);
+        text[textLength++] = FIELD_SEPARATOR;
+        if (artist != null) textLength = TextFolder.fold(artist, text, textLength);
+
+        if (doc + 2 > starts.length) starts = Arrays.copyOf(starts, starts.length * 2);
+        starts[doc] = start;
+        starts[doc + 1] = textLength;
+        size++;
+
+        for (int i = start; i < textLength; i++) {
+            if (!isWordStart(i, start)) continue;
+            addPosting(prefixKey(i, i + 1), doc);
+            if (i + 1 < textLength && isWordChar(text[i + 1])) {
+                addPosting(prefixKey(i, i + 2), doc);
+            }
+        }
+        for (int i = start; i + MIN_GRAM <= textLength; i++) {
+            char a = text[i], b = text[i + 1], c = text[i + 2];
+            if (a == FIELD_SEPARATOR || b == FIELD_SEPARATOR || c == FIELD_SEPARATOR) continue;
+            addPosting(key(a, b, c), doc);
+        }
+        return doc;
+    }
+
+    /**
+     * Tìm các tài liệu khớp với {@code rawQuery}, ghi id vào {@code results} theo thứ tự tăng dần.
+     *
+     * @return số kết quả đã ghi (tối đa {@code results.length})
+     */
+    public int search(CharSequence rawQuery, int[] results) {
+        if (query.length < rawQuery.length()) query = new char[rawQuery.length() * 2];
+        int length = TextFolder.fold(rawQuery, query, 0);
+
+        int tokens = 0;
+        int i = 0;
+        while (i < length && tokens < MAX_QUERY_TOKENS) {
+            while (i < length && Character.isWhitespace(query[i])) i++;
+            int begin = i;
+            while (i < length && !Character.isWhitespace(query[i])) i++;
+            if (i > begin) {
+                tokenStart[tokens] = begin;
+                tokenEnd[tokens] = i;
+                tokens++;
+            }
+        }
+        if (tokens == 0) return 0;
+
+        // Chọn danh sách trigram ngắn nhất làm tập ứng viên
+        int[] candidates = null;
+        int candidateCount = size;
+        for (int t = 0; t < tokens; t++) {
+            if (tokenEnd[t] - tokenStart[t] < MIN_GRAM) {
+                int slot = find(queryPrefixKey(t));
+                if (slot < 0) return 0;
+                if (postingSizes[slot] < candidateCount || candidates == null) {
+                    candidates = postings[slot];
+                    candidateCount = postingSizes[slot];
+                }
+                continue;
+            }
+            for (int p = tokenStart[t]; p + MIN_GRAM <= tokenEnd[t]; p++) {
+                int slot = find(key(query[p], query[p + 1], query[p + 2]));
+                if (slot < 0) return 0;
+                if (postingSizes[slot] < candidateCount || candidates == null) {
+                    candidates = postings[slot];
+                    candidateCount = postingSizes[slot];
+                }
+            }
+        }
+
+        int found = 0;
+        for (int c = 0; c < candidateCount && found < results.length; c++) {
+            int doc = candidates != null ? candidates[c] : c;
+            if (matchesAll(doc, tokens)) results[found++] = doc;
+        }
+        return found;
+    }
+
+    private boolean matchesAll(int doc, int tokens) {
+        for (int t = 0; t < tokens; t++) {
+            boolean wordStartOnly = tokenEnd[t] - tokenStart[t] < MIN_GRAM;
+            if (!contains(starts[doc], starts[doc + 1], tokenStart[t], tokenEnd[t], wordStartOnly)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean contains(int from, int to, int qFrom, int qTo, boolean wordStartOnly) {
+        int qLength = qTo - qFrom;
+        char first = query[qFrom];
+        for (int i = from; i + qLength <= to; i++) {
+            if (text[i] != first) continue;
+            if (wordStartOnly && !isWordStart(i, from)) continue;
+            int k = 1;
+            while (k < qLength && text[i + k] == query[qFrom + k]) k++;
+            if (k == qLength) return true;
+        }
+        return false;
+    }
+
+    private boolean isWordStart(int i, int docStart) {
+        return isWordChar(text[i]) && (i == docStart || !isWordChar(text[i - 1]));
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c);
+    }
+
+    // Khoá tiền tố của từ bắt đầu tại text[i], dài 1 hoặc 2 ký tự (end = i + 2)
+    private long prefixKey(int i, int end) {
+        char second = end == i + 2 ? text[i + 1] : 0;
+        return PREFIX_FLAG | key(text[i], second, (char) 0);
+    }
+
+    private long queryPrefixKey(int token) {
+        int p = tokenStart[token];
+        char second = tokenEnd[token] - p == 2 ? query[p + 1] : 0;
+        return PREFIX_FLAG | key(query[p], second, (char) 0);
+    }
+
+    private void addPosting(long key, int doc) {
+        int slot = find(key);
+        if (slot < 0) {
+            slot = insertKey(key);
+        }
+        int[] list = postings[slot];
+        int n = postingSizes[slot];
+        if (n > 0 && list[n - 1] == doc) return; // trigram lặp lại trong cùng tài liệu
+        if (list == null) {
+            list = new int[INITIAL_POSTING_CAPACITY];
+        } else if (n == list.length) {
+            list = Arrays.copyOf(list, n * 2);
+        }
+        list[n] = doc;
+        postings[slot] = list;
+        postingSizes[slot] = n + 1;
+    }
+
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int h = hash(key) & mask;
+        while (slots[h] >= 0) {
+            if (keys[h] == key) return slots[h];
+            h = (h + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int insertKey(long key) {
+        if ((keyCount + 1) * 2 > keys.length) rehash();
+        int mask = keys.length - 1;
+        int h = hash(key) & mask;
+        while (slots[h] >= 0) h = (h + 1) & mask;
+        int slot = keyCount++;
+        keys[h] = key;
+        slots[h] = slot;
+        if (slot >= postings.length) {
+            postings = Arrays.copyOf(postings, postings.length * 2);
+            postingSizes = Arrays.copyOf(postingSizes, postingSizes.length * 2);
+        }
+        postings[slot] = null;
+        postingSizes[slot] = 0;
+        return slot;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldSlots = slots;
+        keys = new long[oldKeys.length * 2];
+        slots = new int[oldSlots.length * 2];
+        Arrays.fill(slots, -1);
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldSlots[i] < 0) continue;
+            int h = hash(oldKeys[i]) & mask;
+            while (slots[h] >= 0) h = (h + 1) & mask;
+            keys[h] = oldKeys[i];
+            slots[h] = oldSlots[i];
+        }
+    }
+
+    private void ensureText(int capacity) {
+        if (capacity > text.length) text = Arrays.copyOf(text, Math.max(capacity, text.length * 2));
+    }
+
+    private static long key(char a, char b, char c) {
+        return ((long) a << 32) | ((long) b << 16) | c;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,444 @@
+package vn.edu.fpt.musicplayer;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Danh sách phát theo luật, ví dụ
+ * <pre>
+ * artist contains "Sơn Tùng" and added within 30d and not played within 7d sort added desc limit 200
+ * </pre>
+ * Luật là các điều kiện nối bằng {@code and} (mỗi điều kiện có thể có {@code not} đứng trước), rồi
+ * tuỳ chọn {@code sort <trường> [asc|desc]} và {@code limit <n>}:
+ * <ul>
+ * <li>{@code title}, {@code artist}, {@code album}, {@code path}: {@code contains}, {@code is},
+ * {@code starts [with]}; so sánh không phân biệt hoa thường và dấu (như ô tìm kiếm).</li>
+ * <li>{@code duration}: {@code < <= > >= = !=} với độ dài như {@code 3m}, {@code 1m30s}.</li>
+ * <li>{@code plays}, {@code skips}: {@code < <= > >= = !=} với số lần.</li>
+ * <li>{@code added}, {@code modified}, {@code played}: so tuổi (thời gian từ lúc đó tới giờ) bằng
+ * {@code within} (tức {@code <=}) hoặc {@code < <= > >=}, đơn vị {@code s m h d w}. Bài chưa nghe
+ * bao giờ coi như nghe từ vô hạn lâu.</li>
+ * </ul>
+ * Đối tượng đã phân tích là bất biến; việc lọc do {@link SmartPlaylistEvaluator} làm.
+ */
+public final class SmartPlaylist {
+    public enum Field {
+        TITLE(Kind.TEXT, 3), ARTIST(Kind.TEXT, 2), ALBUM(Kind.TEXT, 2), PATH(Kind.TEXT, 4),
+        DURATION(Kind.LENGTH, 0), ADDED(Kind.AGE, 0), MODIFIED(Kind.AGE, 0),
+        PLAYED(Kind.AGE, 1), PLAYS(Kind.COUNT, 1), SKIPS(Kind.COUNT, 1);
+
+        final Kind kind;
+        // Chi phí kiểm tra tương đối: cột số < tra lịch sử < chuỗi dùng chung < tên bài < đường dẫn
+        final int cost;
+
+        Field(Kind kind, int cost) {
+            this.kind = kind;
+            this.cost = cost;
+        }
+
+        String keyword() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    enum Kind {
+        TEXT, LENGTH, AGE, COUNT
+    }
+
+    public enum Op {
+        CONTAINS("contains"), IS("is"), STARTS("starts"),
+        LT("<"), LE("<="), GT(">"), GE(">="), EQ("="), NE("!=");
+
+        final String symbol;
+
+        Op(String symbol) {
+            this.symbol = symbol;
+        }
+    }
+
+    static final class Condition {
+        final Field field;
+        final Op op;
+        final boolean negated;
+        // Chuỗi đã gập (TextFolder) cho trường chữ, chuỗi gốc để in lại luật
+        final String text;
+        final String folded;
+        // ms cho độ dài và tuổi, số lần cho plays/skips
+        final long value;
+
+        Condition(Field field, Op op, boolean negated, String text, long value) {
+            this.field = field;
+            this.op = op;
+            this.negated = negated;
+            this.text = text;
+            this.folded = text != null ? TextFolder.fold(text) : null;
+            this.value = value;
+        }
+
+        // Kết quả so sánh số trước khi áp not
+        boolean compare(long actual) {
+            switch (op) {
+                case LT:
+                    return actual < value;
+                case LE:
+                    return actual <= value;
+                case GT:
+                    return actual > value;
+                case GE:
+                    return actual >= value;
+                case EQ:
+                    return actual == value;
+                default:
+                    return actual != value;
+            }
+        }
+
+        void appendTo(StringBuilder out) {
+            if (negated) out.append("not ");
+            out.append(field.keyword()).append(' ');
+            if (field.kind == Kind.AGE && op == Op.LE) {
+                out.append("within");
+            } else {
+                out.append(op.symbol);
+            }
+            out.append(' ');
+            switch (field.kind) {
+                case TEXT:
+                    out.append('"').append(text).append('"');
+                    break;
+                case COUNT:
+                    out.append(value);
+                    break;
+                default:
+                    appendSpan(out, value / 1000);
+                    break;
+            }
+        }
+    }
+
+    private static final String[] UNITS = {"w", "d", "h", "m", "s"};
+    private static final long[] UNIT_SECONDS = {7 * 24 * 3600L, 24 * 3600L, 3600L, 60L, 1L};
+
+    // Theo thứ tự kiểm tra: điều kiện rẻ trước để các điều kiện đắt ít phải chạy
+    private final Condition[] conditions;
+    // Theo thứ tự người dùng viết, để in lại
+    private final Condition[] written;
+    private final Field sortField;
+    private final boolean descending;
+    private final int limit;
+
+    private SmartPlaylist(Condition[] written, Field sortField, boolean descending, int limit) {
+        this.written = written;
+        this.conditions = written.clone();
+        // Sắp xếp ổn định theo chi phí
+        Arrays.sort(conditions, (a, b) -> Integer.compare(a.field.cost, b.field.cost));
+        this.sortField = sortField;
+        this.descending = descending;
+        this.limit = limit;
+    }
+
+    /**
+     * Phân tích luật. Luật rỗng là cả thư viện.
+     *
+     * @throws IllegalArgumentException kèm vị trí và lý do nếu luật sai cú pháp
+     */
+    public static SmartPlaylist parse(String rule) {
+        return new Parser(rule).parse();
+    }
+
+    Condition[] conditions() {
+        return conditions;
+    }
+
+    public Field sortField() {
+        return sortField;
+    }
+
+    public boolean descending() {
+        return descending;
+    }
+
+    // 0 là không giới hạn
+    public int limit() {
+        return limit;
+    }
+
+    /**
+     * Cách xem tính sẵn trong {@link LibraryGrouping} có cùng thứ tự với luật (đi xuôi hoặc ngược,
+     * xem {@link #reversesGrouping()}), null nếu phải tự sắp xếp.
+     */
+    @Nullable
+    LibraryGrouping.Mode groupingMode() {
+        switch (sortField) {
+            case TITLE:
+                return LibraryGrouping.Mode.TITLE;
+            case ARTIST:
+                return LibraryGrouping.Mode.ARTIST;
+            case ALBUM:
+                return LibraryGrouping.Mode.ALBUM;
+            case ADDED:
+                return LibraryGrouping.Mode.RECENT;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Luật không có điều kiện, chỉ {@code sort plays desc} hoặc {@code sort played desc} kèm
+     * {@code limit}: trả về trường đó để đọc thẳng N dòng đầu của index trong {@link PlayHistoryStore}
+     * thay vì lọc cả thư viện; null với các luật khác.
+     */
+    @Nullable
+    Field historyTop() {
+        if (written.length > 0 || limit == 0 || !descending) return null;
+        return sortField == Field.PLAYS || sortField == Field.PLAYED ? sortField : null;
+    }
+
+    // RECENT xếp mới nhất trước, các cách xem khác xếp tăng dần
+    boolean reversesGrouping() {
+        return sortField == Field.ADDED ? !descending : descending;
+    }
+
+    // Dạng chuẩn của luật; phân tích lại cho ra luật tương đương
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        for (int i = 0; i < written.length; i++) {
+            if (i > 0) out.append(" and ");
+            written[i].appendTo(out);
+        }
+        if (sortField != Field.TITLE || descending) {
+            if (out.length() > 0) out.append(' ');
+            out.append("sort ").append(sortField.keyword()).append(descending ? " desc" : " asc");
+        }
+        if (limit > 0) {
+            if (out.length() > 0) out.append(' ');
+            out.append("limit ").append(limit);
+        }
+        return out.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof SmartPlaylist && toString().equals(o.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    // Một số với đơn vị lớn nhất chia hết: 30d, 1w, 90s
+    private static void appendSpan(StringBuilder out, long seconds) {
+        int u = 0;
+        while (u < UNITS.length - 1 && seconds % UNIT_SECONDS[u] != 0) u++;
+        out.append(seconds / UNIT_SECONDS[u]).append(UNITS[u]);
+    }
+
+    private static final class Parser {
+        private final String source;
+        private final List<String> tokens = new ArrayList<>();
+        private final List<Integer> positions = new ArrayList<>();
+        // Token trong ngoặc kép không bao giờ là từ khoá
+        private final List<Boolean> quoted = new ArrayList<>();
+        private int next;
+
+        Parser(String source) {
+            this.source = source;
+            tokenize();
+        }
+
+        SmartPlaylist parse() {
+            List<Condition> conditions = new ArrayList<>();
+            Field sortField = Field.TITLE;
+            boolean descending = false;
+            int limit = 0;
+            if (!atEnd() && !isKeyword("sort") && !isKeyword("limit")) {
+                conditions.add(condition());
+                while (isKeyword("and")) {
+                    next++;
+                    conditions.add(condition());
+                }
+            }
+            if (isKeyword("sort")) {
+                next++;
+                if (isKeyword("by")) next++;
+                sortField = field();
+                if (isKeyword("asc") || isKeyword("desc")) {
+                    descending = isKeyword("desc");
+                    next++;
+                }
+            }
+            if (isKeyword("limit")) {
+                next++;
+                long value = count();
+                if (value <= 0 || value > Integer.MAX_VALUE) throw error("limit must be positive");
+                limit = (int) value;
+            }
+            if (!atEnd()) throw error("unexpected '" + peek() + "'");
+            return new SmartPlaylist(conditions.toArray(new Condition[0]), sortField, descending, limit);
+        }
+
+        private Condition condition() {
+            boolean negated = false;
+            if (isKeyword("not")) {
+                negated = true;
+                next++;
+            }
+            Field field = field();
+            switch (field.kind) {
+                case TEXT: {
+                    Op op;
+                    if (isKeyword("contains")) {
+                        op = Op.CONTAINS;
+                    } else if (isKeyword("is") || isKeyword("=")) {
+                        op = Op.IS;
+                    } else if (isKeyword("starts")) {
+                        op = Op.STARTS;
+                    } else {
+                        throw error("expected contains, is or starts");
+                    }
+                    next++;
+                    if (op == Op.STARTS && isKeyword("with")) next++;
+                    return new Condition(field, op, negated, text(), 0);
+                }
+                case COUNT:
+                    return new Condition(field, comparison(false), negated, null, count());
+                case LENGTH:
+                    return new Condition(field, comparison(false), negated, null, span() * 1000);
+                default:
+                    return new Condition(field, comparison(true), negated, null, span() * 1000);
+            }
+        }
+
+        private Field field() {
+            if (atEnd()) throw error("expected a field");
+            for (Field field : Field.values()) {
+                if (isKeyword(field.keyword())) {
+                    next++;
+                    return field;
+                }
+            }
+            throw error("unknown field '" + peek() + "'");
+        }
+
+        private Op comparison(boolean age) {
+            if (age && isKeyword("within")) {
+                next++;
+                return Op.LE;
+            }
+            if (!atEnd() && !quoted.get(next)) {
+                for (Op op : Op.values()) {
+                    if (op.ordinal() >= Op.LT.ordinal() && (!age || op.ordinal() <= Op.GE.ordinal())
+                            && op.symbol.equals(peek())) {
+                        next++;
+                        return op;
+                    }
+                }
+            }
+            throw error(age ? "expected within, <, <=, > or >=" : "expected a comparison");
+        }
+
+        // Chuỗi trong ngoặc kép, hoặc các từ liền nhau tới từ khoá and/sort/limit
+        private String text() {
+            if (atEnd()) throw error("expected text");
+            if (quoted.get(next)) return tokens.get(next++);
+            StringBuilder words = new StringBuilder();
+            while (!atEnd() && !quoted.get(next) && !isKeyword("and") && !isKeyword("sort")
+                    && !isKeyword("limit")) {
+                if (words.length() > 0) words.append(' ');
+                words.append(tokens.get(next++));
+            }
+            if (words.length() == 0) throw error("expected text");
+            return words.toString();
+        }
+
+        private long count() {
+            if (atEnd() || quoted.get(next)) throw error("expected a number");
+            try {
+                long value = Long.parseLong(peek());
+                if (value < 0) throw error("expected a number");
+                next++;
+                return value;
+            } catch (NumberFormatException e) {
+                throw error("expected a number");
+            }
+        }
+
+        // Độ dài như "90s", "3m", "1m30s", "2w"; trả về số giây
+        private long span() {
+            if (atEnd() || quoted.get(next)) throw error("expected a time span such as 30d");
+            String token = peek().toLowerCase(Locale.ROOT);
+            long total = 0;
+            int i = 0;
+            while (i < token.length()) {
+                int start = i;
+                while (i < token.length() && Character.isDigit(token.charAt(i))) i++;
+                if (i == start || i == token.length() || i - start > 9) {
+                    throw error("expected a time span such as 30d");
+                }
+                long amount = Long.parseLong(token.substring(start, i));
+                int unit = Arrays.asList(UNITS).indexOf(String.valueOf(token.charAt(i)));
+                if (unit < 0) throw error("unknown unit '" + token.charAt(i) + "'");
+                total += amount * UNIT_SECONDS[unit];
+                i++;
+            }
+            next++;
+            return total;
+        }
+
+        private boolean isKeyword(String keyword) {
+            return !atEnd() && !quoted.get(next) && tokens.get(next).equalsIgnoreCase(keyword);
+        }
+
+        private boolean atEnd() {
+            return next >= tokens.size();
+        }
+
+        private String peek() {
+            return tokens.get(next);
+        }
+
+        private IllegalArgumentException error(String message) {
+            int position = atEnd() ? source.length() : positions.get(next);
+            return new IllegalArgumentException(message + " at position " + (position + 1));
+        }
+
+        private void tokenize() {
+            int i = 0;
+            int n = source.length();
+            while (i < n) {
+                char c = source.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '"') {
+                    int end = source.indexOf('"', i + 1);
+                    if (end < 0) throw new IllegalArgumentException("unterminated quote at position " + (i + 1));
+                    add(source.substring(i + 1, end), i, true);
+                    i = end + 1;
+                } else if (c == '<' || c == '>' || c == '=' || c == '!') {
+                    int end = i + 1;
+                    if (end < n && source.charAt(end) == '=') end++;
+                    add(source.substring(i, end), i, false);
+                    i = end;
+                } else {
+                    int start = i;
+                    while (i < n && !Character.isWhitespace(source.charAt(i)) && "\"<>=!".indexOf(source.charAt(i)) < 0) {
+                        i++;
+                    }
+                    add(source.substring(start, i), start, false);
+                }
+            }
+        }
+
+        private void add(String token, int position, boolean isQuoted) {
+            tokens.add(token);
+            positions.add(position);
+            quoted.add(isQuoted);
+        }
+    }
+}
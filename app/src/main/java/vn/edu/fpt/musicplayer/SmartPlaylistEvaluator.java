@@ -0,0 +1,479 @@
+package vn.edu.fpt.musicplayer;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Giữ kết quả lọc của một {@link SmartPlaylist} trên thư viện và chỉ tính lại phần bị ảnh hưởng:
+ * <ul>
+ * <li>thư viện mới: chỉ các bài được báo là đã đổi (hoặc, nếu không biết, các dòng khác nội dung với
+ * bản trước) được tính lại, các dòng khác giữ kết quả cũ;</li>
+ * <li>lịch sử nghe đổi: chỉ các bài được báo qua {@link #historyChanged(long)};</li>
+ * <li>thời gian trôi: điều kiện theo tuổi (added/played/modified) đổi kết quả ở một thời điểm biết
+ * trước, nên mỗi bài hẹn giờ (mốc gần nhất) trong một hàng đợi ưu tiên và chỉ các bài tới hạn được
+ * tính lại.</li>
+ * </ul>
+ * Thứ tự kết quả lấy từ các cách xem tính sẵn của {@link LibraryGrouping} khi có thể, nên mở danh
+ * sách chỉ là một lần đi qua mảng thứ tự và dừng khi đủ {@link SmartPlaylist#limit()}.
+ * Không an toàn đa luồng.
+ */
+public final class SmartPlaylistEvaluator {
+    private final SmartPlaylist playlist;
+    private final SmartPlaylist.Condition[] conditions;
+    private final char[][] needles;
+    // Kết quả theo chuỗi nghệ sĩ/album (dùng chung giữa nhiều bài), mỗi điều kiện một bảng
+    private final List<Map<String, Boolean>> memo;
+    private final Deadlines deadlines = new Deadlines();
+    private LibraryStore store;
+    private PlayStatsTable stats = new PlayStatsTable();
+    private boolean[] matches = new boolean[0];
+    private int matchCount;
+    private long[] dirty = new long[16];
+    private int dirtyCount;
+    private long now;
+    // Mốc gần nhất mà các điều kiện tuổi của dòng đang kiểm tra sẽ đổi kết quả
+    private long nextDeadline;
+    private int evaluated;
+    private char[] buffer = new char[64];
+
+    public SmartPlaylistEvaluator(SmartPlaylist playlist) {
+        this.playlist = playlist;
+        this.conditions = playlist.conditions();
+        needles = new char[conditions.length][];
+        memo = new ArrayList<>(conditions.length);
+        for (int i = 0; i < conditions.length; i++) {
+            SmartPlaylist.Condition condition = conditions[i];
+            if (condition.folded != null) needles[i] = condition.folded.toCharArray();
+            boolean shared = condition.field == SmartPlaylist.Field.ARTIST || condition.field == SmartPlaylist.Field.ALBUM;
+            memo.add(shared ? new HashMap<>() : null);
+        }
+    }
+
+    public SmartPlaylist playlist() {
+        return playlist;
+    }
+
+    // Lịch sử của bài này đã đổi; được tính lại ở lần update sau
+    public void historyChanged(long songId) {
+        if (dirtyCount == dirty.length) dirty = Arrays.copyOf(dirty, dirtyCount * 2);
+        dirty[dirtyCount++] = songId;
+    }
+
+    public void update(LibraryStore library, PlayStatsTable stats, long nowMillis) {
+        update(library, null, stats, nowMillis);
+    }
+
+    /**
+     * Đưa kết quả về đúng với {@code library}, {@code stats} và thời điểm {@code nowMillis}.
+     * {@code stats} phải là bảng đã phản ánh các thay đổi được báo qua {@link #historyChanged(long)}.
+     *
+     * @param changedIds id (tăng dần) mọi bài được thêm hay sửa từ thư viện của lần update trước tới
+     *                   {@code library}, thường lấy từ {@link LibraryIndex#changedIds}; null nếu không
+     *                   biết, khi đó từng dòng được so nội dung với bản trước
+     */
+    public void update(LibraryStore library, @Nullable long[] changedIds, PlayStatsTable stats, long nowMillis) {
+        this.stats = stats;
+        this.now = nowMillis;
+        evaluated = 0;
+        if (store == null) {
+            evaluateAll(library);
+        } else if (library != store) {
+            remap(library, changedIds);
+        }
+        for (int i = 0; i < dirtyCount; i++) {
+            reevaluate(dirty[i]);
+        }
+        dirtyCount = 0;
+        // Hạn mới được đặt khi tính lại luôn lớn hơn now nên vòng lặp dừng
+        while (deadlines.hasDue(now)) {
+            reevaluate(deadlines.poll());
+        }
+    }
+
+    public int matchCount() {
+        return matchCount;
+    }
+
+    // Số dòng phải kiểm tra trong lần update gần nhất
+    public int lastEvaluated() {
+        return evaluated;
+    }
+
+    public boolean matches(int row) {
+        return matches[row];
+    }
+
+    /**
+     * Các dòng khớp theo thứ tự của luật, tối đa {@link SmartPlaylist#limit()} dòng.
+     *
+     * @param grouping các cách xem của thư viện đã truyền cho {@link #update}, null nếu chưa có; cách
+     *                 xem của một bản thư viện khác bị bỏ qua
+     */
+    public int[] rows(@Nullable LibraryGrouping grouping) {
+        int limit = playlist.limit() > 0 ? Math.min(playlist.limit(), matchCount) : matchCount;
+        int[] out = new int[limit];
+        LibraryGrouping.Mode mode = playlist.groupingMode();
+        if (grouping != null && mode != null && grouping.store() == store) {
+            int[] order = grouping.get(mode).rows();
+            boolean reverse = playlist.reversesGrouping();
+            int n = 0;
+            for (int p = 0; p < order.length && n < limit; p++) {
+                int row = order[reverse ? order.length - 1 - p : p];
+                if (matches[row]) out[n++] = row;
+            }
+            return out;
+        }
+        Integer[] matched = new Integer[matchCount];
+        int n = 0;
+        for (int row = 0; row < matches.length; row++) {
+            if (matches[row]) matched[n++] = row;
+        }
+        Arrays.sort(matched, comparator());
+        for (int i = 0; i < limit; i++) out[i] = matched[i];
+        return out;
+    }
+
+    // Sắp theo trường của luật; bằng nhau thì giữ thứ tự trong thư viện
+    private Comparator<Integer> comparator() {
+        LibraryStore s = store;
+        Comparator<Integer> byKey;
+        switch (playlist.sortField()) {
+            case TITLE:
+                byKey = Comparator.comparing(row -> TextFolder.fold(s.title(row)));
+                break;
+            case ARTIST:
+                byKey = Comparator.comparing(row -> fold(s.artist(row)));
+                break;
+            case ALBUM:
+                byKey = Comparator.comparing(row -> fold(s.album(row)));
+                break;
+            case PATH:
+                byKey = Comparator.comparing(row -> fold(s.path(row)));
+                break;
+            case DURATION:
+                byKey = Comparator.comparingLong(s::duration);
+                break;
+            case ADDED:
+                byKey = Comparator.comparingLong(s::dateAdded);
+                break;
+            case MODIFIED:
+                byKey = Comparator.comparingLong(s::dateModified);
+                break;
+            case PLAYED:
+                byKey = Comparator.comparingLong(row -> stats.lastPlayed(s.id(row)));
+                break;
+            case PLAYS:
+                // Cùng số lần thì theo lần nghe cuối, như index của PlayHistoryStore
+                byKey = Comparator.<Integer>comparingInt(row -> stats.playCount(s.id(row)))
+                        .thenComparingLong(row -> stats.lastPlayed(s.id(row)));
+                break;
+            default:
+                byKey = Comparator.comparingInt(row -> stats.skipCount(s.id(row)));
+                break;
+        }
+        if (playlist.descending()) byKey = byKey.reversed();
+        return byKey.thenComparingInt(row -> row);
+    }
+
+    private void evaluateAll(LibraryStore library) {
+        store = library;
+        deadlines.clear();
+        matches = new boolean[library.size()];
+        matchCount = 0;
+        for (int row = 0; row < matches.length; row++) {
+            if (test(row)) {
+                matches[row] = true;
+                matchCount++;
+            }
+        }
+    }
+
+    // Giữ kết quả của các dòng không đổi (theo id ở vị trí mới), tính lại dòng mới hoặc đã sửa
+    private void remap(LibraryStore library, @Nullable long[] changedIds) {
+        LibraryStore previous = store;
+        boolean[] previousMatches = matches;
+        store = library;
+        matches = new boolean[library.size()];
+        matchCount = 0;
+        for (int row = 0; row < matches.length; row++) {
+            long id = library.id(row);
+            int old = previous.indexOf(id);
+            boolean same = old >= 0 && (changedIds != null
+                    ? Arrays.binarySearch(changedIds, id) < 0
+                    : library.sameContent(row, previous, old));
+            boolean match = same ? previousMatches[old] : test(row);
+            if (match) {
+                matches[row] = true;
+                matchCount++;
+            }
+        }
+    }
+
+    private void reevaluate(long songId) {
+        int row = store.indexOf(songId);
+        if (row < 0) return;
+        boolean match = test(row);
+        if (match != matches[row]) {
+            matches[row] = match;
+            matchCount += match ? 1 : -1;
+        }
+    }
+
+    // Mọi điều kiện, rẻ trước; điều kiện tuổi còn có thể đổi kết quả thì hẹn giờ tính lại
+    private boolean test(int row) {
+        evaluated++;
+        nextDeadline = Deadlines.NONE;
+        boolean match = testConditions(row);
+        deadlines.schedule(store.id(row), nextDeadline);
+        return match;
+    }
+
+    private boolean testConditions(int row) {
+        for (int i = 0; i < conditions.length; i++) {
+            SmartPlaylist.Condition condition = conditions[i];
+            boolean result;
+            switch (condition.field.kind) {
+                case TEXT:
+                    result = testText(i, condition, row);
+                    break;
+                case COUNT:
+                    long id = store.id(row);
+                    result = condition.compare(condition.field == SmartPlaylist.Field.PLAYS
+                            ? stats.playCount(id) : stats.skipCount(id));
+                    break;
+                case LENGTH:
+                    result = condition.compare(store.duration(row));
+                    break;
+                default:
+                    result = testAge(condition, row);
+                    break;
+            }
+            if (result == condition.negated) return false;
+        }
+        return true;
+    }
+
+    private boolean testAge(SmartPlaylist.Condition condition, int row) {
+        long time;
+        switch (condition.field) {
+            case ADDED:
+                time = store.dateAdded(row) * 1000;
+                break;
+            case MODIFIED:
+                time = store.dateModified(row) * 1000;
+                break;
+            default:
+                time = stats.lastPlayed(store.id(row));
+                // Chưa nghe bao giờ: tuổi vô hạn, kết quả không bao giờ đổi theo thời gian
+                if (time <= 0) return condition.op == SmartPlaylist.Op.GT || condition.op == SmartPlaylist.Op.GE;
+                break;
+        }
+        // Tuổi now - time so với value; kết quả đổi đúng một lần, khi now chạm mốc này
+        long flip = time + condition.value
+                + (condition.op == SmartPlaylist.Op.LE || condition.op == SmartPlaylist.Op.GT ? 1 : 0);
+        if (flip > now && (nextDeadline == Deadlines.NONE || flip < nextDeadline)) nextDeadline = flip;
+        return condition.compare(now - time);
+    }
+
+    private boolean testText(int index, SmartPlaylist.Condition condition, int row) {
+        switch (condition.field) {
+            case TITLE: {
+                // Gập thẳng từ mảng chữ của store, không tạo String
+                char[] text = store.text();
+                int start = store.titleStart(row);
+                int length = store.titleLength(row);
+                if (buffer.length < length) buffer = new char[Math.max(length, buffer.length * 2)];
+                int n = 0;
+                for (int i = 0; i < length; i++) {
+                    char folded = TextFolder.fold(text[start + i]);
+                    if (folded != TextFolder.SKIP) buffer[n++] = folded;
+                }
+                return matchText(condition.op, buffer, n, needles[index]);
+            }
+            case PATH: {
+                char[] folded = fold(store.path(row)).toCharArray();
+                return matchText(condition.op, folded, folded.length, needles[index]);
+            }
+            default: {
+                String value = condition.field == SmartPlaylist.Field.ARTIST ? store.artist(row) : store.album(row);
+                String key = value != null ? value : "";
+                Map<String, Boolean> results = memo.get(index);
+                Boolean known = results.get(key);
+                if (known == null) {
+                    char[] folded = TextFolder.fold(key).toCharArray();
+                    known = matchText(condition.op, folded, folded.length, needles[index]);
+                    results.put(key, known);
+                }
+                return known;
+            }
+        }
+    }
+
+    static boolean matchText(SmartPlaylist.Op op, char[] text, int length, char[] needle) {
+        switch (op) {
+            case IS:
+                return length == needle.length && regionMatches(text, 0, needle);
+            case STARTS:
+                return length >= needle.length && regionMatches(text, 0, needle);
+            default:
+                for (int i = 0; i + needle.length <= length; i++) {
+                    if (regionMatches(text, i, needle)) return true;
+                }
+                return false;
+        }
+    }
+
+    private static boolean regionMatches(char[] text, int offset, char[] needle) {
+        for (int j = 0; j < needle.length; j++) {
+            if (text[offset + j] != needle[j]) return false;
+        }
+        return true;
+    }
+
+    private static String fold(@Nullable String text) {
+        return text == null ? "" : TextFolder.fold(text);
+    }
+
+    /**
+     * Hạn tính lại của từng bài: bảng băm địa chỉ mở id -> hạn hiện tại, cùng một hàng đợi ưu tiên
+     * (min-heap) các cặp (hạn, id), tất cả trên mảng nguyên thuỷ. Đổi hạn chỉ thêm cặp mới; cặp cũ
+     * không còn khớp bảng băm bị bỏ qua khi lên đầu, và heap được dựng lại khi cặp cũ nhiều hơn số
+     * hạn còn hiệu lực.
+     */
+    private static final class Deadlines {
+        static final long NONE = Long.MIN_VALUE;
+
+        private long[] times = new long[16];
+        private long[] ids = new long[16];
+        private int size;
+        private long[] keys = new long[16];
+        private boolean[] used = new boolean[16];
+        private long[] current = new long[16];
+        private int keyCount;
+        // Số bài đang có hạn
+        private int active;
+
+        void clear() {
+            size = 0;
+            Arrays.fill(used, false);
+            keyCount = 0;
+            active = 0;
+        }
+
+        // Đặt hạn của bài id thành time, hoặc bỏ hạn nếu time là NONE
+        void schedule(long id, long time) {
+            if ((keyCount + 1) * 2 > keys.length) grow();
+            int slot = slot(id);
+            if (!used[slot]) {
+                if (time == NONE) return;
+                used[slot] = true;
+                keys[slot] = id;
+                current[slot] = NONE;
+                keyCount++;
+            }
+            long previous = current[slot];
+            if (previous == time) return;
+            current[slot] = time;
+            if (time == NONE) {
+                active--;
+                return;
+            }
+            if (previous == NONE) active++;
+            if (size >= 2 * active + 16) {
+                rebuild();
+            } else {
+                push(time, id);
+            }
+        }
+
+        // Bỏ các cặp cũ ở đầu heap; true nếu hạn sớm nhất còn hiệu lực đã tới
+        boolean hasDue(long now) {
+            while (size > 0) {
+                int slot = slot(ids[0]);
+                if (used[slot] && current[slot] == times[0]) return times[0] <= now;
+                removeFirst();
+            }
+            return false;
+        }
+
+        // Lấy bài có hạn sớm nhất (sau hasDue) và bỏ hạn của nó
+        long poll() {
+            long id = ids[0];
+            removeFirst();
+            schedule(id, NONE);
+            return id;
+        }
+
+        private void push(long time, long id) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (times[parent] <= time) break;
+                times[i] = times[parent];
+                ids[i] = ids[parent];
+                i = parent;
+            }
+            times[i] = time;
+            ids[i] = id;
+        }
+
+        private void removeFirst() {
+            long lastTime = times[--size];
+            long lastId = ids[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) break;
+                if (child + 1 < size && times[child + 1] < times[child]) child++;
+                if (times[child] >= lastTime) break;
+                times[i] = times[child];
+                ids[i] = ids[child];
+                i = child;
+            }
+            times[i] = lastTime;
+            ids[i] = lastId;
+        }
+
+        private void rebuild() {
+            size = 0;
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (used[slot] && current[slot] != NONE) push(current[slot], keys[slot]);
+            }
+        }
+
+        private int slot(long id) {
+            int mask = keys.length - 1;
+            int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+            for (int i = (h ^ (h >>> 16)) & mask; ; i = (i + 1) & mask) {
+                if (!used[i] || keys[i] == id) return i;
+            }
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            boolean[] oldUsed = used;
+            long[] oldCurrent = current;
+            int capacity = keys.length * 2;
+            keys = new long[capacity];
+            used = new boolean[capacity];
+            current = new long[capacity];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (!oldUsed[i]) continue;
+                int slot = slot(oldKeys[i]);
+                used[slot] = true;
+                keys[slot] = oldKeys[i];
+                current[slot] = oldCurrent[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package vn.edu.fpt.musicplayer;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Các danh sách phát theo luật người dùng tạo (tên và luật lưu trong SharedPreferences), và việc
+ * lọc chúng trên thư viện ở luồng nền.
+ * <p>
+ * Mỗi luật có một {@link SmartPlaylistEvaluator} giữ kết quả giữa các lần mở; thống kê nghe được
+ * đọc vào bộ nhớ một lần rồi cập nhật theo từng lô {@link PlayHistory} ghi xuống, và chỉ các bài
+ * trong lô được lọc lại. Thống kê và các evaluator chỉ được dùng trên {@link #executor}.
+ */
+public class SmartPlaylists {
+    private static final String TAG = "SmartPlaylists";
+    private static final String PREFS_NAME = "smart_playlists";
+    private static final String KEY_COUNT = "count";
+    private static final String KEY_NAME = "name_";
+    private static final String KEY_RULE = "rule_";
+    private static final Metrics.Histogram EVALUATE = Metrics.get().histogram("playlist.evaluate", "us");
+    private static final Metrics.Histogram EVALUATED_ROWS = Metrics.get().histogram("playlist.evaluated_rows", "rows");
+
+    public static final class Entry {
+        public final String name;
+        public final SmartPlaylist playlist;
+
+        Entry(String name, SmartPlaylist playlist) {
+            this.name = name;
+            this.playlist = playlist;
+        }
+    }
+
+    public interface Callback {
+        // Gọi trên luồng UI; rows là các dòng của library theo thứ tự của luật
+        void onRows(SmartPlaylist playlist, LibraryStore library, int[] rows);
+    }
+
+    private static SmartPlaylists instance;
+
+    private final SharedPreferences prefs;
+    private final PlayHistoryStore historyStore;
+    private final LibraryIndex index;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(() -> {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        r.run();
+    }, "smart-playlists"));
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Entry> entries = new ArrayList<>();
+    // Chỉ dùng trên executor; null tới lần lọc đầu tiên
+    private PlayStatsTable stats;
+    private final Map<SmartPlaylist, SmartPlaylistEvaluator> evaluators = new HashMap<>();
+    // Phiên bản chỉ mục lúc bắt đầu đọc thư viện mà evaluator đã lọc lần gần nhất (nếu biết)
+    private final Map<SmartPlaylist, Long> evaluatedVersions = new HashMap<>();
+
+    public static synchronized SmartPlaylists get(Context context) {
+        if (instance == null) {
+            instance = new SmartPlaylists(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private SmartPlaylists(Context context) {
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        PlayHistory history = PlayHistory.get(context);
+        historyStore = history.getStore();
+        index = LibraryIndex.get(context);
+        history.addListener(this::onHistoryApplied);
+        int count = prefs.getInt(KEY_COUNT, 0);
+        for (int i = 0; i < count; i++) {
+            String rule = prefs.getString(KEY_RULE + i, "");
+            try {
+                entries.add(new Entry(prefs.getString(KEY_NAME + i, rule), SmartPlaylist.parse(rule)));
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, "Dropping unreadable rule " + rule, e);
+            }
+        }
+    }
+
+    public synchronized List<Entry> list() {
+        return new ArrayList<>(entries);
+    }
+
+    // Thay danh sách ở vị trí index, hoặc thêm vào cuối nếu index nằm ngoài
+    public synchronized int put(int index, String name, SmartPlaylist playlist) {
+        Entry entry = new Entry(name, playlist);
+        if (index >= 0 && index < entries.size()) {
+            entries.set(index, entry);
+        } else {
+            entries.add(entry);
+            index = entries.size() - 1;
+        }
+        save();
+        return index;
+    }
+
+    public synchronized void remove(int index) {
+        if (index < 0 || index >= entries.size()) return;
+        entries.remove(index);
+        save();
+    }
+
+    /**
+     * Lọc {@code library} theo {@code playlist} ở luồng nền; lần đầu duyệt cả thư viện, các lần sau
+     * chỉ các dòng đổi từ lần trước.
+     *
+     * @param readFrom phiên bản {@link LibraryIndex#version()} ngay trước khi đọc {@code library},
+     *                 -1 nếu không biết
+     * @param readTo   phiên bản khi đã đọc xong {@code library}, -1 nếu không biết; cùng với readFrom
+     *                 của lần trước cho biết những bài nào có thể đã đổi
+     * @param grouping các cách xem của chính {@code library}, null nếu chưa tính xong
+     */
+    public void evaluate(SmartPlaylist playlist, LibraryStore library, long readFrom, long readTo,
+                         @Nullable LibraryGrouping grouping, Callback callback) {
+        executor.execute(() -> {
+            long start = System.nanoTime();
+            int[] top = historyTop(playlist, library);
+            if (top != null) {
+                EVALUATE.recordNanos(System.nanoTime() - start);
+                mainHandler.post(() -> callback.onRows(playlist, library, top));
+                return;
+            }
+            if (stats == null) stats = historyStore.loadTable();
+            SmartPlaylistEvaluator evaluator = evaluators.get(playlist);
+            if (evaluator == null) {
+                evaluator = new SmartPlaylistEvaluator(playlist);
+                evaluators.put(playlist, evaluator);
+            }
+            Long from = evaluatedVersions.get(playlist);
+            long[] changedIds = from != null && readTo >= 0 ? index.changedIds(from, readTo) : null;
+            evaluator.update(library, changedIds, stats, System.currentTimeMillis());
+            if (readFrom >= 0) {
+                evaluatedVersions.put(playlist, readFrom);
+            } else {
+                evaluatedVersions.remove(playlist);
+            }
+            int[] rows = evaluator.rows(grouping);
+            EVALUATE.recordNanos(System.nanoTime() - start);
+            EVALUATED_ROWS.record(evaluator.lastEvaluated());
+            mainHandler.post(() -> callback.onRows(playlist, library, rows));
+        });
+    }
+
+    /**
+     * "Nghe nhiều nhất"/"nghe gần đây" đọc N dòng đầu index của {@link PlayHistoryStore}. Null nếu
+     * luật có điều kiện khác, nếu chưa đủ N bài đã nghe (danh sách còn các bài chưa nghe xếp sau) hoặc
+     * có bài đã bị xoá khỏi thư viện: khi đó để evaluator lọc như thường.
+     */
+    @Nullable
+    private int[] historyTop(SmartPlaylist playlist, LibraryStore library) {
+        SmartPlaylist.Field field = playlist.historyTop();
+        if (field == null) return null;
+        long[] ids = field == SmartPlaylist.Field.PLAYS
+                ? historyStore.topPlayed(playlist.limit())
+                : historyStore.recentlyPlayed(playlist.limit());
+        if (ids.length < playlist.limit()) return null;
+        int[] rows = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            rows[i] = library.indexOf(ids[i]);
+            if (rows[i] < 0) return null;
+        }
+        return rows;
+    }
+
+    private void save() {
+        SharedPreferences.Editor editor = prefs.edit().clear().putInt(KEY_COUNT, entries.size());
+        Set<SmartPlaylist> current = new HashSet<>();
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            editor.putString(KEY_NAME + i, entry.name).putString(KEY_RULE + i, entry.playlist.toString());
+            current.add(entry.playlist);
+        }
+        editor.apply();
+        // Bỏ evaluator của các luật không còn dùng
+        executor.execute(() -> {
+            evaluators.keySet().retainAll(current);
+            evaluatedVersions.keySet().retainAll(current);
+        });
+    }
+
+    // Chạy trên luồng ghi lịch sử: chỉ lấy id các bài có số lần nghe/bỏ qua hay lần nghe cuối đổi
+    private void onHistoryApplied(PlayEventBuffer.Batch batch) {
+        Set<Long> changed = new HashSet<>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.type(i) != PlayEventBuffer.TYPE_END) changed.add(batch.songId(i));
+        }
+        if (changed.isEmpty()) return;
+        executor.execute(() -> {
+            if (stats == null) return; // lần lọc đầu sẽ đọc cả bảng
+            // Đọc lại từ đĩa thay vì cộng dồn, nên lô đã có trong bảng lúc đọc cũng không bị tính hai lần
+            for (long songId : changed) {
+                PlayHistoryStore.Stats row = historyStore.getStats(songId);
+                if (row != null) stats.put(songId, row.playCount, row.skipCount, row.lastPlayed);
+                for (SmartPlaylistEvaluator evaluator : evaluators.values()) evaluator.historyChanged(songId);
+            }
+        });
+    }
+}
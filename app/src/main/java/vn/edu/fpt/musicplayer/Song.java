@@ -11,13 +11,40 @@ public class Song implements Parcelable {
     public String artist;
     public String data;
     public long albumId;
+    public long duration;
+    public long dateModified;
+    public String album;
+    public long artistId;
+    public long dateAdded;
 
     public Song(long id, String title, String artist, String data, long albumId) {
+        this(id, title, artist, data, albumId, 0, 0);
+    }
+
+    public Song(long id, String title, String artist, String data, long albumId,
+                long duration, long dateModified) {
+        this(id, title, artist, data, albumId, duration, dateModified, null, 0, 0);
+    }
+
+    public Song(long id, String title, String artist, String data, long albumId,
+                long duration, long dateModified, String album, long artistId, long dateAdded) {
         this.id = id;
         this.title = title;
         this.artist = artist;
         this.data = data;
         this.albumId = albumId;
+        this.duration = duration;
+        this.dateModified = dateModified;
+        this.album = album;
+        this.artistId = artistId;
+        this.dateAdded = dateAdded;
+    }
+
+    // Đọc dòng hiện tại của con trỏ
+    public static Song from(SongCursor row) {
+        return new Song(row.getId(), row.getTitle(), row.getArtist(), row.getData(),
+                row.getAlbumId(), row.getDuration(), row.getDateModified(),
+                row.getAlbum(), row.getArtistId(), row.getDateAdded());
     }
 
     protected Song(Parcel in) {
@@ -26,6 +53,11 @@ public class Song implements Parcelable {
         artist = in.readString();
         data = in.readString();
         albumId = in.readLong();
+        duration = in.readLong();
+        dateModified = in.readLong();
+        album = in.readString();
+        artistId = in.readLong();
+        dateAdded = in.readLong();
     }
 
     public static final Creator<Song> CREATOR = new Creator<Song>() {
@@ -52,5 +84,10 @@ public class Song implements Parcelable {
         parcel.writeString(artist);
         parcel.writeString(data);
         parcel.writeLong(albumId);
+        parcel.writeLong(duration);
+        parcel.writeLong(dateModified);
+        parcel.writeString(album);
+        parcel.writeLong(artistId);
+        parcel.writeLong(dateAdded);
     }
 }
@@ -1,24 +1,55 @@
 package vn.edu.fpt.musicplayer;
 
-import android.content.ContentUris;
-import android.net.Uri;
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.bumptech.glide.Glide;
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 import vn.edu.fpt.musicplayer.databinding.ItemSongBinding;
 
-public class SongAdapter extends RecyclerView.Adapter<SongAdapter.SongViewholder> { // Adapter cho RecyclerView để hiển thị danh sách bài hát
+public class SongAdapter extends RecyclerView.Adapter<SongAdapter.SongViewholder>
+        implements ListPreloader.PreloadModelProvider<Long> { // Adapter cho RecyclerView để hiển thị danh sách bài hát
 
-    private final List<Song> songs; // Danh sách các bài hát
+    // Khác biệt giữa hai lần cập nhật được tính ở luồng nền
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Danh sách đang hiển thị: vị trí i là dòng rows[i] của store (rows null nghĩa là dòng i)
+    private LibraryStore store = LibraryStore.EMPTY;
+    @Nullable
+    private int[] rows;
+    private int count;
+    private int generation;
+    private final RequestManager glide;
+    private final AlbumArtResolver albumArtResolver;
+    private final int thumbnailSize; // Kích thước ảnh bìa trong mỗi dòng (px)
     private final OnItemClickerListerner listerner;
+    // Nhóm của danh sách đang hiển thị (tiêu đề nhóm, cuộn nhanh); null khi không chia nhóm
+    @Nullable
+    private LibraryGrouping.Grouping sections;
+    private static final Object PAYLOAD_HEADER = new Object();
+    // Thời gian tải ảnh bìa không có sẵn trong bộ nhớ đệm của Glide
+    static final Metrics.Histogram ALBUM_ART_LOAD = Metrics.get().histogram("ui.album_art_load", "us");
 
     // Interface để xử lý sự kiện khi người dùng click vào một bài hát
     public interface OnItemClickerListerner{
@@ -26,12 +57,125 @@ public class SongAdapter extends RecyclerView.Adapter<SongAdapter.SongViewholder
     }
 
     // Constructor khởi tạo Adapter với danh sách bài hát và listener
-    public SongAdapter(List<Song> songs, OnItemClickerListerner listerner) {
+    public SongAdapter(Context context, RequestManager glide, OnItemClickerListerner listerner) {
 
-        this.songs = songs;
+        setHasStableIds(true);
+        this.glide = glide;
+        this.albumArtResolver = AlbumArtResolver.get(context);
+        this.thumbnailSize = context.getResources().getDimensionPixelSize(R.dimen.song_thumbnail_size);
         this.listerner = listerner;
     }
 
+    public int getThumbnailSize() {
+        return thumbnailSize;
+    }
+
+    /**
+     * Hiển thị các dòng {@code rows} của {@code store} theo thứ tự (null là toàn bộ store theo thứ tự dòng).
+     * {@code rows} không được sửa sau khi gửi vào; {@code sections} nếu có phải được tạo cùng với rows.
+     * Chỉ các dòng thay đổi mới được vẽ lại, trừ khi đổi sang cách xem khác.
+     */
+    public void submit(LibraryStore store, @Nullable int[] rows, @Nullable LibraryGrouping.Grouping sections) {
+        int submitted = ++generation;
+        LibraryStore oldStore = this.store;
+        int[] oldRows = this.rows;
+        int oldCount = count;
+        int newCount = rows != null ? rows.length : store.size();
+        boolean modeChanged = sections != null && this.sections != null && sections.mode != this.sections.mode;
+        if (oldCount == 0 || newCount == 0 || modeChanged) {
+            // Sắp xếp lại toàn bộ thì tính khác biệt chỉ tốn thời gian; id ổn định giữ lại các view
+            apply(store, rows, newCount, sections);
+            notifyDataSetChanged();
+            return;
+        }
+        DIFF_EXECUTOR.execute(() -> {
+            DiffUtil.DiffResult result = DiffUtil.calculateDiff(
+                    new RowDiff(oldStore, oldRows, oldCount, store, rows, newCount));
+            mainHandler.post(() -> {
+                if (submitted != generation) return; // đã có danh sách mới hơn
+                boolean sectionsChanged = this.sections != sections;
+                apply(store, rows, newCount, sections);
+                result.dispatchUpdatesTo(this);
+                if (sectionsChanged) {
+                    // Chỉ vẽ lại tiêu đề nhóm, không bind lại cả dòng
+                    notifyItemRangeChanged(0, count, PAYLOAD_HEADER);
+                }
+            });
+        });
+    }
+
+    private void apply(LibraryStore store, @Nullable int[] rows, int count, @Nullable LibraryGrouping.Grouping sections) {
+        this.store = store;
+        this.rows = rows;
+        this.count = count;
+        this.sections = sections;
+    }
+
+    // Dòng trong store của vị trí position
+    private int rowAt(int position) {
+        return rows != null ? rows[position] : position;
+    }
+    @Nullable
+    public LibraryGrouping.Grouping getSections() {
+        return sections;
+    }
+
+    // Id các bài đang hiển thị, vị trí khớp với vị trí trong RecyclerView
+    public long[] getIds() {
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = store.id(rowAt(i));
+        }
+        return ids;
+    }
+
+    // Hai bài là một nếu cùng id (MediaStore _ID); nội dung đổi thì chỉ bind lại dòng đó
+    private static final class RowDiff extends DiffUtil.Callback {
+        private final LibraryStore oldStore;
+        private final int[] oldRows;
+        private final int oldCount;
+        private final LibraryStore newStore;
+        private final int[] newRows;
+        private final int newCount;
+
+        RowDiff(LibraryStore oldStore, int[] oldRows, int oldCount, LibraryStore newStore, int[] newRows, int newCount) {
+            this.oldStore = oldStore;
+            this.oldRows = oldRows;
+            this.oldCount = oldCount;
+            this.newStore = newStore;
+            this.newRows = newRows;
+            this.newCount = newCount;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldCount;
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newCount;
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldPosition, int newPosition) {
+            return oldStore.id(oldRow(oldPosition)) == newStore.id(newRow(newPosition));
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldPosition, int newPosition) {
+            return oldStore.sameContent(oldRow(oldPosition), newStore, newRow(newPosition));
+        }
+
+        private int oldRow(int position) {
+            return oldRows != null ? oldRows[position] : position;
+        }
+
+        private int newRow(int position) {
+            return newRows != null ? newRows[position] : position;
+        }
+    }
+
     // Hàm tạo ViewHolder, được gọi khi cần tạo một item view mới
     @NonNull
     @Override
@@ -44,30 +188,110 @@ public class SongAdapter extends RecyclerView.Adapter<SongAdapter.SongViewholder
     // Hàm gán dữ liệu cho ViewHolder tại vị trí được chỉ định
     @Override
     public void onBindViewHolder(@NonNull SongAdapter.SongViewholder holder, int position) {
-        Song song = songs.get(position); // Lấy bài hát tại vị trí
+        int row = rowAt(position); // Dòng của bài hát tại vị trí
+        long albumId = store.albumId(row);
 
-        // Gán tiêu đề bài nhạc và tên nghệ sĩ vào TextView
-        holder.binding.textTitle.setText(song.title);
-        holder.binding.textArtist.setText(song.artist);
+        bindHeader(holder, position);
+        // Gán tiêu đề bài nhạc và tên nghệ sĩ vào TextView, đọc thẳng từ store không tạo String
+        holder.binding.textTitle.setText(store.text(), store.titleStart(row), store.titleLength(row));
+        holder.binding.textArtist.setText(store.artist(row));
+
+        // Album đã biết là không có ảnh thì khỏi tải, tránh một lần tải lỗi cho mỗi dòng
+        if (Boolean.FALSE.equals(albumArtResolver.peek(albumId))) {
+            glide.clear(holder.binding.imageAlbumArt);
+            holder.binding.imageAlbumArt.setImageResource(R.drawable.ic_music_note);
+            return;
+        }
 
-        // Tạo URI để lấy ảnh album từ MediaStore
-        Uri albumArtUri = ContentUris.withAppendedId(Uri.parse("conent://media/external/audio/albumart"), song.albumId);
+        // Dùng Glide để load ảnh album vào ImageView, giải mã đúng kích thước của dòng
+        thumbnailRequest(albumId).into(holder.binding.imageAlbumArt);
+    }
 
-        // Dùng Glide để load ảnh album vào ImageView
-        Glide.with(holder.binding.getRoot().getContext())
-                .load(albumArtUri)
-                .circleCrop()
+    @Override
+    public void onBindViewHolder(@NonNull SongViewholder holder, int position, @NonNull List<Object> payloads) {
+        if (!payloads.isEmpty() && payloads.stream().allMatch(p -> p == PAYLOAD_HEADER)) {
+            bindHeader(holder, position);
+        } else {
+            super.onBindViewHolder(holder, position, payloads);
+        }
+    }
+
+    // Hiện tên nhóm ở dòng đầu tiên của mỗi nhóm
+    private void bindHeader(SongViewholder holder, int position) {
+        if (sections != null && position < sections.size() && sections.isGroupStart(position)) {
+            holder.binding.textHeader.setText(sections.groupLabel(sections.groupOf(position)));
+            holder.binding.textHeader.setVisibility(View.VISIBLE);
+        } else {
+            holder.binding.textHeader.setVisibility(View.GONE);
+        }
+    }
+
+    /**
+     * Phần quyết định khoá bộ nhớ đệm của ảnh bìa; mọi nơi tải trước ảnh cho danh sách
+     * (preload khi cuộn, {@link AppStartup} khi khởi động) đều phải đi qua đây để trúng đệm.
+     */
+    static RequestBuilder<Drawable> thumbnail(RequestManager glide, AlbumArtResolver resolver, long albumId,
+                                              int size) {
+        return glide.load(resolver.artModel(albumId))
+                .override(size)
+                .circleCrop();
+    }
+
+    // Yêu cầu dùng chung cho bind và preload, để ảnh preload trúng bộ nhớ đệm của Glide
+    private RequestBuilder<Drawable> thumbnailRequest(long albumId) {
+        long start = System.nanoTime();
+        return thumbnail(glide, albumArtResolver, albumId, thumbnailSize)
                 .placeholder(R.drawable.ic_music_note)
                 .error(R.drawable.ic_music_note)
-                .into(holder.binding.imageAlbumArt);
+                .listener(new RequestListener<Drawable>() {
+                    @Override
+                    public boolean onLoadFailed(@Nullable GlideException e, Object model,
+                                                Target<Drawable> target, boolean isFirstResource) {
+                        albumArtResolver.markMissing(albumId);
+                        return false;
+                    }
 
+                    @Override
+                    public boolean onResourceReady(Drawable resource, Object model, Target<Drawable> target,
+                                                   DataSource dataSource, boolean isFirstResource) {
+                        if (dataSource != DataSource.MEMORY_CACHE) {
+                            ALBUM_ART_LOAD.recordNanos(System.nanoTime() - start);
+                        }
+                        return false;
+                    }
+                });
+    }
+
+    // Các bài sắp cuộn tới, để RecyclerViewPreloader tải trước ảnh bìa
+    @NonNull
+    @Override
+    public List<Long> getPreloadItems(int position) {
+        if (position >= count) return Collections.emptyList();
+        long albumId = store.albumId(rowAt(position));
+        if (Boolean.FALSE.equals(albumArtResolver.peek(albumId))) return Collections.emptyList();
+        return Collections.singletonList(albumId);
+    }
 
+    @Nullable
+    @Override
+    public RequestBuilder<?> getPreloadRequestBuilder(@NonNull Long albumId) {
+        return thumbnailRequest(albumId);
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull SongViewholder holder) {
+        glide.clear(holder.binding.imageAlbumArt);
     }
 
     // Trả về số lượng bài hát trong danh sách
     @Override
     public int getItemCount() {
-        return songs.size();
+        return count;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return store.id(rowAt(position));
     }
 
     // ViewHolder để giữ view của từng item trong RecyclerView
@@ -80,8 +304,8 @@ public class SongAdapter extends RecyclerView.Adapter<SongAdapter.SongViewholder
             this.binding=binding;
             this.listener=listerner;
 
-            // Thiết lập sự kiện click cho toàn bộ item
-            binding.getRoot().setOnClickListener(new View.OnClickListener() {
+            // Thiết lập sự kiện click cho dòng bài hát (không tính tiêu đề nhóm)
+            binding.row.setOnClickListener(new View.OnClickListener() {
                 @Override
                 public void onClick(View view) {
                     if (listerner != null){
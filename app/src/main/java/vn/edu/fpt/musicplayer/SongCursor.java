@@ -0,0 +1,34 @@
+package vn.edu.fpt.musicplayer;
+
+import java.io.Closeable;
+
+/**
+ * Con trỏ đọc từng dòng bài hát. Chỉ chứa đúng các cột mà {@link Song} cần,
+ * để {@link SongLoader} có thể chạy và kiểm thử trên JVM mà không cần Android.
+ */
+public interface SongCursor extends Closeable {
+    boolean moveToNext();
+
+    long getId();
+
+    String getTitle();
+
+    String getArtist();
+
+    String getData();
+
+    long getAlbumId();
+
+    long getDuration();
+
+    long getDateModified();
+
+    String getAlbum();
+
+    long getArtistId();
+
+    long getDateAdded();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,112 @@
+package vn.edu.fpt.musicplayer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Đọc thư viện nhạc trên luồng nền và gửi kết quả về theo từng trang,
+ * để danh sách có thể hiển thị ngay sau trang đầu tiên thay vì chờ quét xong.
+ */
+public class SongLoader {
+    public static final int FIRST_PAGE_SIZE = 30;
+    public static final int PAGE_SIZE = 500;
+
+    // Mở con trỏ trên luồng nền; trả về null nếu không có dữ liệu
+    public interface Source {
+        SongCursor open() throws Exception;
+    }
+
+    // Mọi callback đều được gọi trên callbackExecutor (thường là luồng UI)
+    public interface Callback {
+        void onPage(List<Song> page);
+
+        void onComplete(int total);
+
+        void onError(Exception e);
+    }
+
+    private final Executor worker;
+    private final Executor callbackExecutor;
+    private final int firstPageSize;
+    private final int pageSize;
+    private Task current;
+
+    public SongLoader(Executor worker, Executor callbackExecutor) {
+        this(worker, callbackExecutor, FIRST_PAGE_SIZE, PAGE_SIZE);
+    }
+
+    public SongLoader(Executor worker, Executor callbackExecutor, int firstPageSize, int pageSize) {
+        if (firstPageSize <= 0 || pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        this.worker = worker;
+        this.callbackExecutor = callbackExecutor;
+        this.firstPageSize = firstPageSize;
+        this.pageSize = pageSize;
+    }
+
+    // Bắt đầu tải; lần tải trước (nếu còn chạy) sẽ bị huỷ
+    public synchronized void load(Source source, Callback callback) {
+        cancel();
+        current = new Task(source, callback);
+        worker.execute(current);
+    }
+
+    public synchronized void cancel() {
+        if (current != null) {
+            current.cancelled = true;
+            current = null;
+        }
+    }
+
+    private class Task implements Runnable {
+        private final Source source;
+        private final Callback callback;
+        private volatile boolean cancelled;
+
+        Task(Source source, Callback callback) {
+            this.source = source;
+            this.callback = callback;
+        }
+
+        @Override
+        public void run() {
+            int total = 0;
+            try (SongCursor cursor = source.open()) {
+                if (cursor != null) {
+                    List<Song> page = new ArrayList<>(firstPageSize);
+                    int limit = firstPageSize;
+                    while (!cancelled && cursor.moveToNext()) {
+                        page.add(Song.from(cursor));
+                        if (page.size() == limit) {
+                            deliver(page);
+                            total += page.size();
+                            limit = pageSize;
+                            page = new ArrayList<>(limit);
+                        }
+                    }
+                    if (!page.isEmpty()) {
+                        deliver(page);
+                        total += page.size();
+                    }
+                }
+            } catch (Exception e) {
+                callbackExecutor.execute(() -> {
+                    if (!cancelled) callback.onError(e);
+                });
+                return;
+            }
+            int count = total;
+            callbackExecutor.execute(() -> {
+                if (!cancelled) callback.onComplete(count);
+            });
+        }
+
+        private void deliver(List<Song> page) {
+            callbackExecutor.execute(() -> {
+                if (!cancelled) callback.onPage(page);
+            });
+        }
+    }
+}
@@ -25,7 +25,18 @@ public class SplashActivity extends AppCompatActivity {
         setContentView(binding.getRoot());
 
         EdgeToEdgeHelper.enable(this);
-
+        AppStartup.get(this).pipeline().mark(AppStartup.MARK_SPLASH_CREATED);
+
+        // Có phiên nghe trước đó: nạp sẵn ngay trong dịch vụ, song song với màn hình chào,
+        // để "Tiếp tục nghe" mở thẳng trình phát mà không chờ quét thư viện
+        if (PlaybackStateStore.get(this).exists()) {
+            Intent restore = new Intent(this, PlaybackService.class);
+            restore.setAction(PlaybackService.ACTION_RESTORE);
+            startService(restore);
+            binding.resumeBtn.setVisibility(View.VISIBLE);
+            binding.resumeBtn.setOnClickListener(v ->
+                    startActivity(new Intent(SplashActivity.this, PlayerActivity.class)));
+        }
 
         binding.startBtn.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -0,0 +1,264 @@
+package vn.edu.fpt.musicplayer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chạy các việc khởi động song song theo đồ thị phụ thuộc khai báo trước: mỗi việc bắt đầu ngay
+ * khi mọi việc nó phụ thuộc đã xong, trên luồng nền hoặc luồng UI tuỳ lúc khai báo.
+ * Việc lỗi không làm hỏng khởi động: các việc phụ thuộc vào nó bị bỏ qua, nơi dùng kết quả tự
+ * quay về cách làm thường. Thời điểm bắt đầu/kết thúc của từng việc và các mốc ({@link #mark})
+ * được giữ lại thành dòng thời gian, tính từ {@code originNanos} (thường là lúc tạo tiến trình),
+ * và ghi vào {@link Metrics} dưới tên {@code startup.*}.
+ */
+public final class StartupPipeline {
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    private enum State {PENDING, RUNNING, SUCCEEDED, FAILED, SKIPPED}
+
+    private static final class Node {
+        final String name;
+        final Task task;
+        final boolean onMain;
+        final String[] dependsOn;
+        final List<Node> dependents = new ArrayList<>();
+        final AtomicInteger waitingFor = new AtomicInteger();
+        // Có việc phụ thuộc bị lỗi hoặc bị bỏ qua
+        volatile boolean blocked;
+        State state = State.PENDING;
+        long startNanos;
+        long endNanos;
+        String thread;
+        Throwable error;
+        List<Runnable> waiters = new ArrayList<>();
+
+        Node(String name, Task task, boolean onMain, String[] dependsOn) {
+            this.name = name;
+            this.task = task;
+            this.onMain = onMain;
+            this.dependsOn = dependsOn;
+        }
+    }
+
+    private final long originNanos;
+    // Theo thứ tự khai báo
+    private final Map<String, Node> nodes;
+    private final Map<String, Long> marks = new LinkedHashMap<>();
+    private Executor background;
+    private Executor main;
+    private boolean started;
+
+    private StartupPipeline(long originNanos, Map<String, Node> nodes) {
+        this.originNanos = originNanos;
+        this.nodes = nodes;
+    }
+
+    public synchronized void start(Executor background, Executor main) {
+        if (started) throw new IllegalStateException("Already started");
+        started = true;
+        this.background = background;
+        this.main = main;
+        // Lấy danh sách gốc trước: executor chạy ngay có thể làm các việc khác về 0 trong lúc duyệt
+        List<Node> roots = new ArrayList<>();
+        for (Node node : nodes.values()) {
+            if (node.dependsOn.length == 0) roots.add(node);
+        }
+        for (Node node : roots) schedule(node);
+    }
+
+    public boolean isDone(String name) {
+        Node node = node(name);
+        synchronized (node) {
+            return node.state != State.PENDING && node.state != State.RUNNING;
+        }
+    }
+
+    public boolean succeeded(String name) {
+        Node node = node(name);
+        synchronized (node) {
+            return node.state == State.SUCCEEDED;
+        }
+    }
+
+    /**
+     * Chạy {@code action} trên {@code executor} khi việc {@code name} kết thúc (thành công, lỗi hay
+     * bị bỏ qua); nếu đã kết thúc thì chạy ngay. Dùng {@link #succeeded} để biết kết quả.
+     */
+    public void whenDone(String name, Executor executor, Runnable action) {
+        Node node = node(name);
+        synchronized (node) {
+            if (node.waiters != null) {
+                node.waiters.add(() -> executor.execute(action));
+                return;
+            }
+        }
+        executor.execute(action);
+    }
+
+    /**
+     * Ghi mốc {@code name} ở thời điểm hiện tại, chỉ lần đầu.
+     *
+     * @return thời gian từ gốc tới mốc (ns), hoặc -1 nếu mốc đã có từ trước
+     */
+    public long mark(String name) {
+        long offset = System.nanoTime() - originNanos;
+        synchronized (marks) {
+            if (marks.containsKey(name)) return -1;
+            marks.put(name, offset);
+        }
+        Metrics.get().histogram("startup.at." + name, "us").recordNanos(offset);
+        return offset;
+    }
+
+    // Dòng thời gian dạng văn bản: các việc theo thứ tự khai báo, rồi các mốc
+    public void timeline(StringBuilder out) {
+        out.append("# startup timeline (ms since process start)\n");
+        for (Node node : nodes.values()) {
+            synchronized (node) {
+                out.append(String.format(Locale.US, "task %-20s %-9s", node.name, node.state.name().toLowerCase(Locale.US)));
+                if (node.startNanos != 0) {
+                    out.append(String.format(Locale.US, " %8.1f", millis(node.startNanos - originNanos)));
+                    if (node.endNanos != 0) {
+                        out.append(String.format(Locale.US, " .. %8.1f (%.1f ms) on %s",
+                                millis(node.endNanos - originNanos), millis(node.endNanos - node.startNanos),
+                                node.thread));
+                    }
+                }
+                if (node.error != null) out.append(" error=").append(node.error);
+            }
+            out.append('\n');
+        }
+        synchronized (marks) {
+            for (Map.Entry<String, Long> entry : marks.entrySet()) {
+                out.append(String.format(Locale.US, "mark %-20s %8.1f\n", entry.getKey(), millis(entry.getValue())));
+            }
+        }
+    }
+
+    private Node node(String name) {
+        Node node = nodes.get(name);
+        if (node == null) throw new IllegalArgumentException("Unknown startup task: " + name);
+        return node;
+    }
+
+    private void schedule(Node node) {
+        if (node.blocked) {
+            finish(node, State.SKIPPED, null);
+            return;
+        }
+        (node.onMain ? main : background).execute(() -> run(node));
+    }
+
+    private void run(Node node) {
+        synchronized (node) {
+            node.state = State.RUNNING;
+            node.thread = Thread.currentThread().getName();
+            node.startNanos = System.nanoTime();
+        }
+        try {
+            node.task.run();
+            finish(node, State.SUCCEEDED, null);
+        } catch (Throwable e) {
+            finish(node, State.FAILED, e);
+        }
+    }
+
+    private void finish(Node node, State state, Throwable error) {
+        List<Runnable> waiters;
+        synchronized (node) {
+            node.state = state;
+            node.error = error;
+            if (node.startNanos != 0) node.endNanos = System.nanoTime();
+            waiters = node.waiters;
+            node.waiters = null;
+        }
+        if (state == State.SUCCEEDED) {
+            Metrics.get().histogram("startup." + node.name, "us").recordNanos(node.endNanos - node.startNanos);
+        }
+        for (Node dependent : node.dependents) {
+            if (state != State.SUCCEEDED) dependent.blocked = true;
+            if (dependent.waitingFor.decrementAndGet() == 0) schedule(dependent);
+        }
+        for (Runnable waiter : waiters) waiter.run();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    public static final class Builder {
+        private final long originNanos;
+        private final Map<String, Node> nodes = new LinkedHashMap<>();
+
+        public Builder(long originNanos) {
+            this.originNanos = originNanos;
+        }
+
+        // Việc chạy trên luồng nền
+        public Builder add(String name, Task task, String... dependsOn) {
+            return add(name, task, false, dependsOn);
+        }
+
+        // Việc phải chạy trên luồng UI
+        public Builder addOnMain(String name, Task task, String... dependsOn) {
+            return add(name, task, true, dependsOn);
+        }
+
+        private Builder add(String name, Task task, boolean onMain, String[] dependsOn) {
+            if (nodes.containsKey(name)) throw new IllegalArgumentException("Duplicate startup task: " + name);
+            nodes.put(name, new Node(name, task, onMain, dependsOn));
+            return this;
+        }
+
+        // Việc phụ thuộc phải được khai báo và đồ thị không được có vòng
+        public StartupPipeline build() {
+            for (Node node : nodes.values()) {
+                for (String dependency : node.dependsOn) {
+                    Node parent = nodes.get(dependency);
+                    if (parent == null) {
+                        throw new IllegalArgumentException(node.name + " depends on unknown task " + dependency);
+                    }
+                    parent.dependents.add(node);
+                    node.waitingFor.incrementAndGet();
+                }
+            }
+            checkAcyclic();
+            return new StartupPipeline(originNanos, nodes);
+        }
+
+        // Sắp xếp topo (Kahn); còn việc nào không xếp được thì nằm trên một vòng
+        private void checkAcyclic() {
+            Map<Node, Integer> remaining = new HashMap<>();
+            List<Node> ready = new ArrayList<>();
+            for (Node node : nodes.values()) {
+                remaining.put(node, node.dependsOn.length);
+                if (node.dependsOn.length == 0) ready.add(node);
+            }
+            int visited = 0;
+            while (!ready.isEmpty()) {
+                Node node = ready.remove(ready.size() - 1);
+                visited++;
+                for (Node dependent : node.dependents) {
+                    int left = remaining.get(dependent) - 1;
+                    remaining.put(dependent, left);
+                    if (left == 0) ready.add(dependent);
+                }
+            }
+            if (visited != nodes.size()) {
+                List<String> cycle = new ArrayList<>();
+                for (Map.Entry<Node, Integer> entry : remaining.entrySet()) {
+                    if (entry.getValue() > 0) cycle.add(entry.getKey().name);
+                }
+                throw new IllegalArgumentException("Startup tasks form a cycle: " + cycle);
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package vn.edu.fpt.musicplayer;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Thẻ đã đọc theo đường dẫn file, kèm date modified lúc đọc để biết khi nào phải đọc lại.
+ * Tách khỏi {@link LibraryIndex} vì chỉ mục bị ghi đè mỗi lần quét lại MediaStore, còn thẻ thì
+ * chỉ đổi khi file đổi. File không đọc được cũng được lưu (format null) để không thử lại mỗi lần.
+ * Chỉ gọi từ luồng nền.
+ */
+public class TagCache extends SQLiteOpenHelper {
+    private static final String DB_NAME = "tags.db";
+    private static final int DB_VERSION = 1;
+    private static final String TABLE_TAGS = "file_tags";
+
+    public TagCache(Context context) {
+        super(context.getApplicationContext(), DB_NAME, null, DB_VERSION);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.enableWriteAheadLogging();
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_TAGS + " ("
+                + "path TEXT PRIMARY KEY, "
+                + "date_modified INTEGER NOT NULL, "
+                + "format TEXT, "
+                + "title TEXT, "
+                + "artist TEXT, "
+                + "album TEXT, "
+                + "album_artist TEXT, "
+                + "duration INTEGER NOT NULL, "
+                + "art_offset INTEGER NOT NULL, "
+                + "art_length INTEGER NOT NULL, "
+                + "art_mime TEXT)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_TAGS);
+        onCreate(db);
+    }
+
+    /**
+     * Thẻ còn dùng được của các file trong {@code paths} (cùng thứ tự với {@code dates}); file chưa
+     * đọc hoặc đã đổi thì không có trong kết quả.
+     */
+    public Map<String, TagReader.Tags> getAll(String[] paths, long[] dates, int count) {
+        Map<String, Long> wanted = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            if (paths[i] != null) wanted.put(paths[i], dates[i]);
+        }
+        Map<String, TagReader.Tags> found = new HashMap<>();
+        if (wanted.isEmpty()) return found;
+        // Bảng chỉ chứa các bài từng cần sửa nên đọc cả bảng rẻ hơn hỏi từng dòng
+        try (Cursor cursor = getReadableDatabase().query(TABLE_TAGS, new String[]{"path", "date_modified",
+                        "format", "title", "artist", "album", "album_artist", "duration", "art_offset",
+                        "art_length", "art_mime"},
+                null, null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                Long date = wanted.get(cursor.getString(0));
+                if (date == null || date != cursor.getLong(1)) continue;
+                TagReader.Tags tags = new TagReader.Tags();
+                tags.format = cursor.getString(2);
+                tags.title = cursor.getString(3);
+                tags.artist = cursor.getString(4);
+                tags.album = cursor.getString(5);
+                tags.albumArtist = cursor.getString(6);
+                tags.durationMs = cursor.getLong(7);
+                tags.artworkOffset = cursor.getLong(8);
+                tags.artworkLength = cursor.getInt(9);
+                tags.artworkMime = cursor.getString(10);
+                found.put(cursor.getString(0), tags);
+            }
+        }
+        return found;
+    }
+
+    // Ghi cả lô trong một transaction; tags[i] null nghĩa là file không đọc được
+    public void putAll(String[] paths, long[] dates, TagReader.Tags[] tags) {
+        if (paths.length == 0) return;
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try (SQLiteStatement upsert = db.compileStatement("INSERT OR REPLACE INTO " + TABLE_TAGS
+                + " (path, date_modified, format, title, artist, album, album_artist, duration,"
+                + " art_offset, art_length, art_mime) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < paths.length; i++) {
+                TagReader.Tags t = tags[i] != null ? tags[i] : new TagReader.Tags();
+                upsert.clearBindings();
+                upsert.bindString(1, paths[i]);
+                upsert.bindLong(2, dates[i]);
+                bindNullable(upsert, 3, t.format);
+                bindNullable(upsert, 4, t.title);
+                bindNullable(upsert, 5, t.artist);
+                bindNullable(upsert, 6, t.album);
+                bindNullable(upsert, 7, t.albumArtist);
+                upsert.bindLong(8, t.durationMs);
+                upsert.bindLong(9, t.artworkOffset);
+                upsert.bindLong(10, t.artworkLength);
+                bindNullable(upsert, 11, t.artworkMime);
+                upsert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+}
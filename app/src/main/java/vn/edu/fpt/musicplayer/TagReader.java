@@ -0,0 +1,852 @@
+package vn.edu.fpt.musicplayer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Đọc thẻ nhúng trong file nhạc: ID3v2.2/2.3/2.4 (kèm ID3v1 và độ dài MP3 từ khung Xing/VBRI hoặc
+ * bitrate), FLAC, Ogg Vorbis/Opus và MP4/M4A. Chỉ đọc vùng đầu file (và vài KB cuối khi cần độ dài)
+ * bằng các lần đọc theo vị trí trên {@link FileChannel}; dữ liệu âm thanh và ảnh bìa không được đọc,
+ * ảnh chỉ được ghi lại vị trí trong file.
+ * Một đối tượng dùng lại bộ đệm giữa các file, nên không an toàn đa luồng; mỗi luồng dùng một cái.
+ */
+public final class TagReader {
+    // Giới hạn vùng đọc cho các khối phải đọc cả (thẻ ID3 bị unsync, gói comment của Ogg)
+    private static final int MAX_BLOCK = 256 * 1024;
+    private static final int MP3_SYNC_SEARCH = 64 * 1024;
+    private static final int OGG_TAIL = 64 * 1024;
+    private static final int MAX_MP4_DEPTH = 8;
+
+    private static final int[][] MPEG_BITRATES = {
+            // MPEG-1 layer I, II, III
+            {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+            {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320},
+            // MPEG-2/2.5 layer I, II & III
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+            {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}};
+    private static final int[] MPEG1_SAMPLE_RATES = {44100, 48000, 32000};
+
+    /**
+     * Thẻ đọc được. Trường nào file không có thì null (hoặc 0 / -1). Ảnh bìa là đoạn
+     * [{@link #artworkOffset}, +{@link #artworkLength}) của file, đọc lại khi cần.
+     */
+    public static final class Tags {
+        public String format;
+        public String title;
+        public String artist;
+        public String album;
+        public String albumArtist;
+        public long durationMs;
+        public long artworkOffset = -1;
+        public int artworkLength;
+        public String artworkMime;
+        // Loại ảnh theo ID3/FLAC (3 là bìa trước), để chọn ảnh tốt nhất khi có nhiều ảnh
+        int artworkType = -1;
+
+        public boolean hasArtwork() {
+            return artworkOffset >= 0 && artworkLength > 0;
+        }
+
+        /**
+         * Bản sửa của {@code song} khi MediaStore thiếu hoặc để "&lt;unknown&gt;" mà thẻ có giá trị;
+         * null nếu không có gì để sửa. {@code song} không bị thay đổi.
+         */
+        public Song repair(Song song) {
+            String newTitle = missing(song.title) && title != null ? title : song.title;
+            String newArtist = song.artist;
+            if (missing(newArtist)) newArtist = artist != null ? artist : albumArtist != null ? albumArtist : newArtist;
+            String newAlbum = missing(song.album) && album != null ? album : song.album;
+            long newDuration = song.duration <= 0 && durationMs > 0 ? durationMs : song.duration;
+            if (same(newTitle, song.title) && same(newArtist, song.artist) && same(newAlbum, song.album)
+                    && newDuration == song.duration) {
+                return null;
+            }
+            return new Song(song.id, newTitle, newArtist, song.data, song.albumId, newDuration,
+                    song.dateModified, newAlbum, song.artistId, song.dateAdded);
+        }
+
+        // Giá trị MediaStore dùng khi không biết
+        static boolean missing(String value) {
+            return value == null || value.trim().isEmpty() || LibraryGrouping.UNKNOWN_LABEL.equals(value);
+        }
+
+        private static boolean same(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+
+    private ByteBuffer buffer = ByteBuffer.allocate(8192);
+
+    // null nếu không nhận ra định dạng
+    public Tags read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return read(channel);
+        }
+    }
+
+    public Tags read(FileChannel channel) throws IOException {
+        long size = channel.size();
+        ByteBuffer head = readAt(channel, 0, 12);
+        if (head.remaining() < 4) return null;
+        Tags tags = new Tags();
+        long start = 0;
+        if (startsWith(head, 0, "ID3")) {
+            start = readId3v2(channel, tags);
+            head = readAt(channel, start, 12);
+        }
+        if (head.remaining() >= 4 && startsWith(head, 0, "fLaC")) {
+            tags.format = "flac";
+            readFlac(channel, start + 4, tags);
+        } else if (head.remaining() >= 4 && startsWith(head, 0, "OggS")) {
+            tags.format = "ogg";
+            readOgg(channel, start, size, tags);
+        } else if (head.remaining() >= 8 && startsWith(head, 4, "ftyp")) {
+            tags.format = "mp4";
+            readMp4(channel, start, size, tags);
+        } else if (start > 0 || (head.remaining() >= 4 && mpegFrameLength(head.getInt(0)) > 0)) {
+            tags.format = "mp3";
+            readMp3(channel, start, size, tags);
+        } else {
+            return null;
+        }
+        return tags;
+    }
+
+    // ---- ID3v2 ----
+
+    // Trả về vị trí ngay sau thẻ
+    private long readId3v2(FileChannel channel, Tags tags) throws IOException {
+        ByteBuffer b = readAt(channel, 0, 10);
+        if (b.remaining() < 10) return 0;
+        int version = b.get(3) & 0xFF;
+        int flags = b.get(5) & 0xFF;
+        int tagSize = syncsafe(b.getInt(6));
+        long end = 10L + tagSize + ((version == 4 && (flags & 0x10) != 0) ? 10 : 0);
+        if (version < 2 || version > 4 || tagSize <= 0) return end;
+        if (version == 2 && (flags & 0x40) != 0) return end; // nén, không có chuẩn
+
+        // Cả thẻ bị unsync (v2.2/2.3): phải đọc hết rồi bỏ các byte chèn; vị trí ảnh không còn đúng
+        if ((flags & 0x80) != 0 && version < 4) {
+            ByteBuffer whole = readAt(channel, 10, Math.min(tagSize, MAX_BLOCK));
+            byte[] data = new byte[whole.remaining()];
+            whole.get(data);
+            int length = removeUnsync(data, data.length);
+            ByteBuffer tag = ByteBuffer.wrap(data, 0, length);
+            int pos = (flags & 0x40) != 0 ? skipExtendedHeader(tag, 0, version) : 0;
+            while (pos >= 0 && pos < length) {
+                pos = readId3Frame(null, tag, pos, -1, version, tags);
+            }
+            return end;
+        }
+
+        long pos = 10;
+        long limit = 10L + tagSize;
+        if ((flags & 0x40) != 0) {
+            ByteBuffer ext = readAt(channel, pos, 4);
+            if (ext.remaining() < 4) return end;
+            pos += version == 3 ? 4L + ext.getInt(0) : syncsafe(ext.getInt(0));
+        }
+        int headerSize = version == 2 ? 6 : 10;
+        while (pos + headerSize <= limit) {
+            ByteBuffer header = readAt(channel, pos, headerSize);
+            if (header.remaining() < headerSize || header.get(0) == 0) break; // phần đệm
+            long next = readId3Frame(channel, header, 0, pos, version, tags);
+            if (next <= 0) break;
+            pos += next;
+        }
+        return end;
+    }
+
+    private static int skipExtendedHeader(ByteBuffer tag, int pos, int version) {
+        if (tag.limit() - pos < 4) return -1;
+        return pos + (version == 3 ? 4 + tag.getInt(pos) : syncsafe(tag.getInt(pos)));
+    }
+
+    /**
+     * Đọc một frame. Khi {@code channel} null thì frame nằm sẵn trong {@code source} ở vị trí pos và
+     * hàm trả về vị trí frame kế tiếp; khi có channel thì {@code source} chỉ chứa phần đầu frame,
+     * thân frame được đọc từ file ở {@code filePos} nếu cần, và hàm trả về độ dài cả frame.
+     * Giá trị âm (hoặc 0) nghĩa là dừng.
+     */
+    private int readId3Frame(FileChannel channel, ByteBuffer source, int pos, long filePos, int version,
+                             Tags tags) throws IOException {
+        int headerSize = version == 2 ? 6 : 10;
+        if (source.limit() - pos < headerSize || source.get(pos) == 0) return -1;
+        String id;
+        int size;
+        int formatFlags = 0;
+        if (version == 2) {
+            id = ascii(source, pos, 3);
+            size = ((source.get(pos + 3) & 0xFF) << 16) | ((source.get(pos + 4) & 0xFF) << 8) | (source.get(pos + 5) & 0xFF);
+        } else {
+            id = ascii(source, pos, 4);
+            int raw = source.getInt(pos + 4);
+            size = version == 4 ? syncsafe(raw) : raw;
+            formatFlags = source.get(pos + 9) & 0xFF;
+        }
+        if (size <= 0 || !isFrameId(id)) return -1;
+        int total = headerSize + size;
+
+        // Bỏ các frame nén hoặc mã hoá; nhóm và độ dài dữ liệu thêm byte vào đầu thân frame
+        int skip = 0;
+        boolean frameUnsync = false;
+        if (version == 3) {
+            if ((formatFlags & 0xC0) != 0) return next(channel, pos, total);
+            if ((formatFlags & 0x20) != 0) skip = 1;
+        } else if (version == 4) {
+            if ((formatFlags & 0x0C) != 0) return next(channel, pos, total);
+            if ((formatFlags & 0x40) != 0) skip += 1;
+            if ((formatFlags & 0x01) != 0) skip += 4;
+            frameUnsync = (formatFlags & 0x02) != 0;
+        }
+        int bodySize = size - skip;
+        if (bodySize <= 0) return next(channel, pos, total);
+
+        boolean picture = id.equals("APIC") || id.equals("PIC");
+        boolean text = id.equals("TIT2") || id.equals("TT2") || id.equals("TPE1") || id.equals("TP1")
+                || id.equals("TALB") || id.equals("TAL") || id.equals("TPE2") || id.equals("TP2")
+                || id.equals("TLEN") || id.equals("TLE");
+        if (!picture && !text) return next(channel, pos, total);
+
+        // Với ảnh chỉ cần phần đầu (kiểu, mô tả) để biết dữ liệu ảnh bắt đầu ở đâu
+        int want = picture ? Math.min(bodySize, 1024) : Math.min(bodySize, MAX_BLOCK);
+        byte[] body;
+        int bodyLength;
+        long bodyFilePos = -1;
+        if (channel == null) {
+            int available = Math.min(want, source.limit() - pos - headerSize - skip);
+            if (available <= 0) return -1;
+            body = new byte[available];
+            for (int i = 0; i < available; i++) body[i] = source.get(pos + headerSize + skip + i);
+            bodyLength = available;
+        } else {
+            bodyFilePos = filePos + headerSize + skip;
+            ByteBuffer data = readAt(channel, bodyFilePos, want);
+            body = new byte[data.remaining()];
+            data.get(body);
+            bodyLength = body.length;
+        }
+        if (frameUnsync) {
+            bodyLength = removeUnsync(body, bodyLength);
+            bodyFilePos = -1; // vị trí trong file không còn khớp
+        }
+
+        if (text) {
+            String value = decodeText(body, bodyLength);
+            switch (id) {
+                case "TIT2":
+                case "TT2":
+                    if (tags.title == null) tags.title = value;
+                    break;
+                case "TPE1":
+                case "TP1":
+                    if (tags.artist == null) tags.artist = value;
+                    break;
+                case "TALB":
+                case "TAL":
+                    if (tags.album == null) tags.album = value;
+                    break;
+                case "TPE2":
+                case "TP2":
+                    if (tags.albumArtist == null) tags.albumArtist = value;
+                    break;
+                default:
+                    if (tags.durationMs <= 0 && value != null) tags.durationMs = parseLong(value);
+                    break;
+            }
+        } else if (bodyFilePos >= 0) {
+            readId3Picture(body, bodyLength, bodyFilePos, bodySize, version == 2, tags);
+        }
+        return next(channel, pos, total);
+    }
+
+    private static int next(FileChannel channel, int pos, int total) {
+        return channel == null ? pos + total : total;
+    }
+
+    private static void readId3Picture(byte[] body, int length, long filePos, int bodySize, boolean v22, Tags tags) {
+        if (length < 4) return;
+        int encoding = body[0] & 0xFF;
+        int pos = 1;
+        String mime;
+        if (v22) {
+            String format = new String(body, 1, 3, StandardCharsets.ISO_8859_1).toLowerCase(Locale.US);
+            mime = format.equals("png") ? "image/png" : "image/jpeg";
+            pos = 4;
+        } else {
+            int end = indexOfZero(body, pos, length, 1);
+            if (end < 0) return;
+            mime = new String(body, pos, end - pos, StandardCharsets.ISO_8859_1);
+            pos = end + 1;
+        }
+        if (pos >= length) return;
+        int type = body[pos++] & 0xFF;
+        int width = encoding == 1 || encoding == 2 ? 2 : 1;
+        int end = indexOfZero(body, pos, length, width);
+        if (end < 0) return;
+        pos = end + width;
+        offerArtwork(tags, type, filePos + pos, bodySize - pos, mime.isEmpty() ? null : mime);
+    }
+
+    private static void offerArtwork(Tags tags, int type, long offset, long length, String mime) {
+        if (length <= 0 || length > Integer.MAX_VALUE) return;
+        // Giữ ảnh bìa trước nếu có, không thì ảnh đầu tiên
+        if (tags.hasArtwork() && (tags.artworkType == 3 || type != 3)) return;
+        tags.artworkOffset = offset;
+        tags.artworkLength = (int) length;
+        tags.artworkMime = mime;
+        tags.artworkType = type;
+    }
+
+    private static String decodeText(byte[] body, int length) {
+        if (length < 1) return null;
+        int encoding = body[0] & 0xFF;
+        Charset charset;
+        int start = 1;
+        int width = 1;
+        switch (encoding) {
+            case 1:
+                width = 2;
+                if (length >= 3 && (body[1] & 0xFF) == 0xFF && (body[2] & 0xFF) == 0xFE) {
+                    charset = StandardCharsets.UTF_16LE;
+                    start = 3;
+                } else if (length >= 3 && (body[1] & 0xFF) == 0xFE && (body[2] & 0xFF) == 0xFF) {
+                    charset = StandardCharsets.UTF_16BE;
+                    start = 3;
+                } else {
+                    charset = StandardCharsets.UTF_16LE;
+                }
+                break;
+            case 2:
+                width = 2;
+                charset = StandardCharsets.UTF_16BE;
+                break;
+            case 3:
+                charset = StandardCharsets.UTF_8;
+                break;
+            default:
+                charset = StandardCharsets.ISO_8859_1;
+                break;
+        }
+        // v2.4 cho phép nhiều giá trị cách nhau bởi ký tự 0; chỉ lấy giá trị đầu
+        int end = indexOfZero(body, start, length, width);
+        if (end < 0) end = length - ((length - start) % width);
+        return clean(new String(body, start, end - start, charset));
+    }
+
+    // Vị trí ký tự 0 đầu tiên (1 hoặc 2 byte, căn theo width), -1 nếu không có
+    private static int indexOfZero(byte[] data, int from, int length, int width) {
+        if (width == 1) {
+            for (int i = from; i < length; i++) {
+                if (data[i] == 0) return i;
+            }
+        } else {
+            for (int i = from; i + 1 < length; i += 2) {
+                if (data[i] == 0 && data[i + 1] == 0) return i;
+            }
+        }
+        return -1;
+    }
+
+    // Bỏ byte 0 được chèn sau mỗi 0xFF; trả về độ dài mới
+    static int removeUnsync(byte[] data, int length) {
+        int out = 0;
+        for (int i = 0; i < length; i++) {
+            data[out++] = data[i];
+            if ((data[i] & 0xFF) == 0xFF && i + 1 < length && data[i + 1] == 0) i++;
+        }
+        return out;
+    }
+
+    private static boolean isFrameId(String id) {
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (!(c >= 'A' && c <= 'Z') && !(c >= '0' && c <= '9')) return false;
+        }
+        return true;
+    }
+
+    private static int syncsafe(int value) {
+        return (value & 0x7F) | ((value >> 8) & 0x7F) << 7 | ((value >> 16) & 0x7F) << 14 | ((value >> 24) & 0x7F) << 21;
+    }
+
+    // ---- MP3 ----
+
+    private void readMp3(FileChannel channel, long audioStart, long size, Tags tags) throws IOException {
+        long audioEnd = size;
+        if (size >= 128) {
+            ByteBuffer v1 = readAt(channel, size - 128, 128);
+            if (v1.remaining() == 128 && startsWith(v1, 0, "TAG")) {
+                audioEnd -= 128;
+                if (tags.title == null) tags.title = latin1(v1, 3, 30);
+                if (tags.artist == null) tags.artist = latin1(v1, 33, 30);
+                if (tags.album == null) tags.album = latin1(v1, 63, 30);
+            }
+        }
+        if (tags.durationMs > 0) return;
+
+        // Tìm khung MPEG đầu tiên, có thể sau vài byte đệm
+        ByteBuffer b = readAt(channel, audioStart, (int) Math.min(MP3_SYNC_SEARCH, Math.max(0, audioEnd - audioStart)));
+        int limit = b.remaining();
+        for (int i = 0; i + 4 <= limit; i++) {
+            if ((b.get(i) & 0xFF) != 0xFF) continue;
+            int header = b.getInt(i);
+            int frameLength = mpegFrameLength(header);
+            if (frameLength <= 0) continue;
+            // Khung kế tiếp cũng phải hợp lệ, tránh nhận nhầm dữ liệu ngẫu nhiên
+            if (i + frameLength + 4 <= limit && mpegFrameLength(b.getInt(i + frameLength)) <= 0) continue;
+            tags.durationMs = mp3Duration(b, i, header, audioEnd - (audioStart + i));
+            return;
+        }
+    }
+
+    private static long mp3Duration(ByteBuffer b, int frame, int header, long audioBytes) {
+        int versionBits = (header >>> 19) & 3; // 3 = MPEG-1, 2 = MPEG-2, 0 = MPEG-2.5
+        int layer = 4 - ((header >>> 17) & 3);
+        int sampleRate = mpegSampleRate(header);
+        boolean mono = ((header >>> 6) & 3) == 3;
+        int samplesPerFrame = layer == 1 ? 384 : (layer == 3 && versionBits != 3) ? 576 : 1152;
+
+        int sideInfo = versionBits == 3 ? (mono ? 17 : 32) : (mono ? 9 : 17);
+        int xing = frame + 4 + sideInfo;
+        if (xing + 12 <= b.limit() && (startsWith(b, xing, "Xing") || startsWith(b, xing, "Info"))) {
+            int flags = b.getInt(xing + 4);
+            if ((flags & 1) != 0) {
+                long frames = b.getInt(xing + 8) & 0xFFFFFFFFL;
+                return frames * samplesPerFrame * 1000 / sampleRate;
+            }
+        }
+        int vbri = frame + 4 + 32;
+        if (vbri + 18 <= b.limit() && startsWith(b, vbri, "VBRI")) {
+            long frames = b.getInt(vbri + 14) & 0xFFFFFFFFL;
+            return frames * samplesPerFrame * 1000 / sampleRate;
+        }
+        int bitrate = mpegBitrate(header);
+        return bitrate > 0 ? audioBytes * 8000 / bitrate : 0;
+    }
+
+    // Độ dài khung (byte) nếu header hợp lệ, 0 nếu không
+    static int mpegFrameLength(int header) {
+        if ((header >>> 21) != 0x7FF) return 0;
+        int versionBits = (header >>> 19) & 3;
+        int layerBits = (header >>> 17) & 3;
+        if (versionBits == 1 || layerBits == 0) return 0;
+        int bitrate = mpegBitrate(header);
+        int sampleRate = mpegSampleRate(header);
+        if (bitrate <= 0 || sampleRate <= 0) return 0;
+        int padding = (header >>> 9) & 1;
+        int layer = 4 - layerBits;
+        if (layer == 1) return (12 * bitrate / sampleRate + padding) * 4;
+        int coefficient = layer == 3 && versionBits != 3 ? 72 : 144;
+        return coefficient * bitrate / sampleRate + padding;
+    }
+
+    // bit/s, 0 nếu không hợp lệ (kể cả "free format")
+    private static int mpegBitrate(int header) {
+        int versionBits = (header >>> 19) & 3;
+        int layer = 4 - ((header >>> 17) & 3);
+        int index = (header >>> 12) & 0xF;
+        if (index == 0 || index == 15 || layer > 3) return 0;
+        int table = versionBits == 3 ? layer - 1 : (layer == 1 ? 3 : 4);
+        return MPEG_BITRATES[table][index] * 1000;
+    }
+
+    private static int mpegSampleRate(int header) {
+        int versionBits = (header >>> 19) & 3;
+        int index = (header >>> 10) & 3;
+        if (index == 3 || versionBits == 1) return 0;
+        int rate = MPEG1_SAMPLE_RATES[index];
+        return versionBits == 3 ? rate : versionBits == 2 ? rate / 2 : rate / 4;
+    }
+
+    // ---- FLAC ----
+
+    private void readFlac(FileChannel channel, long pos, Tags tags) throws IOException {
+        long size = channel.size();
+        boolean last = false;
+        while (!last && pos + 4 <= size) {
+            ByteBuffer header = readAt(channel, pos, 4);
+            if (header.remaining() < 4) return;
+            int type = header.get(0) & 0x7F;
+            last = (header.get(0) & 0x80) != 0;
+            int length = header.getInt(0) & 0xFFFFFF;
+            long body = pos + 4;
+            if (type == 0 && length >= 18) {
+                ByteBuffer info = readAt(channel, body, 18);
+                if (info.remaining() == 18) {
+                    int sampleRate = ((info.get(10) & 0xFF) << 12) | ((info.get(11) & 0xFF) << 4) | ((info.get(12) & 0xFF) >> 4);
+                    long samples = ((long) (info.get(13) & 0x0F) << 32) | (info.getInt(14) & 0xFFFFFFFFL);
+                    if (sampleRate > 0 && samples > 0) tags.durationMs = samples * 1000 / sampleRate;
+                }
+            } else if (type == 4) {
+                ByteBuffer comment = readAt(channel, body, Math.min(length, MAX_BLOCK));
+                readVorbisComment(comment, 0, tags);
+            } else if (type == 6) {
+                readFlacPicture(channel, body, length, tags);
+            }
+            pos = body + length;
+        }
+    }
+
+    private void readFlacPicture(FileChannel channel, long pos, int length, Tags tags) throws IOException {
+        ByteBuffer b = readAt(channel, pos, Math.min(length, 1024));
+        int limit = b.remaining();
+        if (limit < 8) return;
+        int type = b.getInt(0);
+        int mimeLength = b.getInt(4);
+        int at = 8 + mimeLength;
+        if (mimeLength < 0 || at + 4 > limit) return;
+        String mime = ascii(b, 8, mimeLength);
+        int descriptionLength = b.getInt(at);
+        at += 4 + descriptionLength + 16; // mô tả, rộng, cao, độ sâu màu, số màu
+        if (descriptionLength < 0 || at + 4 > limit) return;
+        int dataLength = b.getInt(at);
+        at += 4;
+        if (dataLength <= 0 || at + (long) dataLength > length) return;
+        offerArtwork(tags, type, pos + at, dataLength, mime.isEmpty() ? null : mime);
+    }
+
+    // Vorbis comment (dùng chung cho FLAC, Vorbis, Opus): các số nguyên little-endian
+    private static void readVorbisComment(ByteBuffer b, int pos, Tags tags) {
+        ByteOrder order = b.order();
+        b.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            int limit = b.limit();
+            if (pos + 4 > limit) return;
+            long vendor = b.getInt(pos) & 0xFFFFFFFFL;
+            pos += 4;
+            if (pos + vendor + 4 > limit) return;
+            pos += (int) vendor;
+            long count = b.getInt(pos) & 0xFFFFFFFFL;
+            pos += 4;
+            for (long i = 0; i < count && pos + 4 <= limit; i++) {
+                long length = b.getInt(pos) & 0xFFFFFFFFL;
+                pos += 4;
+                if (pos + length > limit) return; // bị cắt ở giới hạn đọc
+                readComment(b, pos, (int) length, tags);
+                pos += (int) length;
+            }
+        } finally {
+            b.order(order);
+        }
+    }
+
+    private static void readComment(ByteBuffer b, int pos, int length, Tags tags) {
+        int equals = -1;
+        for (int i = 0; i < length && i < 32; i++) {
+            if (b.get(pos + i) == '=') {
+                equals = i;
+                break;
+            }
+        }
+        if (equals <= 0) return;
+        String key = ascii(b, pos, equals).toUpperCase(Locale.US);
+        boolean wanted = key.equals("TITLE") || key.equals("ARTIST") || key.equals("ALBUM")
+                || key.equals("ALBUMARTIST") || key.equals("ALBUM ARTIST");
+        if (!wanted) return;
+        byte[] value = new byte[length - equals - 1];
+        for (int i = 0; i < value.length; i++) value[i] = b.get(pos + equals + 1 + i);
+        String text = clean(new String(value, StandardCharsets.UTF_8));
+        switch (key) {
+            case "TITLE":
+                if (tags.title == null) tags.title = text;
+                break;
+            case "ARTIST":
+                if (tags.artist == null) tags.artist = text;
+                break;
+            case "ALBUM":
+                if (tags.album == null) tags.album = text;
+                break;
+            default:
+                if (tags.albumArtist == null) tags.albumArtist = text;
+                break;
+        }
+    }
+
+    // ---- Ogg ----
+
+    private void readOgg(FileChannel channel, long start, long size, Tags tags) throws IOException {
+        // Gói 1: thông tin luồng; gói 2: comment, có thể trải qua nhiều trang
+        byte[] first = null;
+        ByteBuffer packet = ByteBuffer.allocate(0);
+        int packets = 0;
+        long pos = start;
+        int serial = 0;
+        while (packets < 2 && pos + 27 <= size) {
+            ByteBuffer header = readAt(channel, pos, 27);
+            if (header.remaining() < 27 || !startsWith(header, 0, "OggS")) return;
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            if (pos == start) serial = header.getInt(14);
+            int segments = header.get(26) & 0xFF;
+            ByteBuffer table = readAt(channel, pos + 27, segments);
+            if (table.remaining() < segments) return;
+            int[] lacing = new int[segments];
+            int bodySize = 0;
+            for (int i = 0; i < segments; i++) {
+                lacing[i] = table.get(i) & 0xFF;
+                bodySize += lacing[i];
+            }
+            long bodyPos = pos + 27 + segments;
+            ByteBuffer body = readAt(channel, bodyPos, bodySize);
+            byte[] data = new byte[body.remaining()];
+            body.get(data);
+            int offset = 0;
+            for (int i = 0; i < segments && packets < 2; i++) {
+                int length = Math.min(lacing[i], data.length - offset);
+                if (length > 0 && packet.position() + length <= MAX_BLOCK) {
+                    packet = grow(packet, packet.position() + length);
+                    packet.put(data, offset, length);
+                }
+                offset += lacing[i];
+                if (lacing[i] < 255) { // hết gói
+                    packets++;
+                    byte[] complete = new byte[packet.position()];
+                    packet.flip();
+                    packet.get(complete);
+                    packet.clear();
+                    if (packets == 1) {
+                        first = complete;
+                    } else {
+                        readOggComment(complete, tags);
+                    }
+                }
+            }
+            pos = bodyPos + bodySize;
+        }
+        if (first != null) readOggDuration(channel, size, serial, first, tags);
+    }
+
+    private static ByteBuffer grow(ByteBuffer b, int capacity) {
+        if (b.capacity() >= capacity) return b;
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(capacity, b.capacity() * 2));
+        b.flip();
+        bigger.put(b);
+        return bigger;
+    }
+
+    private static void readOggComment(byte[] packet, Tags tags) {
+        ByteBuffer b = ByteBuffer.wrap(packet);
+        if (packet.length >= 7 && packet[0] == 3 && startsWith(b, 1, "vorbis")) {
+            tags.format = "vorbis";
+            readVorbisComment(b, 7, tags);
+        } else if (packet.length >= 8 && startsWith(b, 0, "OpusTags")) {
+            tags.format = "opus";
+            readVorbisComment(b, 8, tags);
+        }
+    }
+
+    // Độ dài từ granule của trang cuối cùng thuộc luồng này
+    private void readOggDuration(FileChannel channel, long size, int serial, byte[] first, Tags tags) throws IOException {
+        ByteBuffer id = ByteBuffer.wrap(first).order(ByteOrder.LITTLE_ENDIAN);
+        long rate;
+        long preSkip = 0;
+        if (first.length >= 16 && first[0] == 1 && startsWith(id, 1, "vorbis")) {
+            rate = id.getInt(12) & 0xFFFFFFFFL;
+        } else if (first.length >= 19 && startsWith(id, 0, "OpusHead")) {
+            rate = 48000; // granule của Opus luôn theo 48 kHz
+            preSkip = id.getShort(10) & 0xFFFF;
+        } else {
+            return;
+        }
+        if (rate <= 0) return;
+        long tailStart = Math.max(0, size - OGG_TAIL);
+        ByteBuffer tail = readAt(channel, tailStart, (int) (size - tailStart));
+        tail.order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = tail.remaining() - 27; i >= 0; i--) {
+            if (tail.get(i) == 'O' && startsWith(tail, i, "OggS") && tail.getInt(i + 14) == serial) {
+                long granule = tail.getLong(i + 6);
+                if (granule > preSkip) tags.durationMs = (granule - preSkip) * 1000 / rate;
+                return;
+            }
+        }
+    }
+
+    // ---- MP4 ----
+
+    private void readMp4(FileChannel channel, long start, long size, Tags tags) throws IOException {
+        long moov = findAtom(channel, start, size, "moov");
+        if (moov < 0) return;
+        readMp4Container(channel, moov, tags, 0);
+    }
+
+    // Vị trí atom có kiểu type trong [from, to), -1 nếu không có; chỉ đọc phần đầu mỗi atom
+    private long findAtom(FileChannel channel, long from, long to, String type) throws IOException {
+        long pos = from;
+        while (pos + 8 <= to) {
+            long atomSize = atomSize(channel, pos, to);
+            if (atomSize < 8) return -1;
+            if (startsWith(buffer, 4, type)) return pos;
+            pos += atomSize;
+        }
+        return -1;
+    }
+
+    // Kích thước atom ở pos; phần đầu atom nằm trong buffer sau khi gọi
+    private long atomSize(FileChannel channel, long pos, long limit) throws IOException {
+        ByteBuffer b = readAt(channel, pos, 16);
+        if (b.remaining() < 8) return -1;
+        long atomSize = b.getInt(0) & 0xFFFFFFFFL;
+        if (atomSize == 1) {
+            if (b.remaining() < 16) return -1;
+            atomSize = b.getLong(8);
+        } else if (atomSize == 0) {
+            atomSize = limit - pos;
+        }
+        return pos + atomSize > limit ? -1 : atomSize;
+    }
+
+    private void readMp4Container(FileChannel channel, long atom, Tags tags, int depth) throws IOException {
+        if (depth > MAX_MP4_DEPTH) return;
+        long limit = channel.size();
+        long atomSize = atomSize(channel, atom, limit);
+        if (atomSize < 8) return;
+        int headerSize = (buffer.getInt(0) == 1) ? 16 : 8;
+        String type = ascii(buffer, 4, 4);
+        long end = atom + atomSize;
+        long pos = atom + headerSize;
+        if (type.equals("meta")) {
+            // meta là full atom (4 byte version/flags) theo iTunes, nhưng QuickTime thì không
+            ByteBuffer peek = readAt(channel, pos, 8);
+            if (peek.remaining() == 8 && !startsWith(peek, 4, "hdlr")) pos += 4;
+        }
+        while (pos + 8 <= end) {
+            long childSize = atomSize(channel, pos, end);
+            if (childSize < 8) return;
+            String child = ascii(buffer, 4, 4);
+            int childHeader = buffer.getInt(0) == 1 ? 16 : 8;
+            switch (child) {
+                case "mvhd":
+                    readMvhd(channel, pos + childHeader, tags);
+                    break;
+                case "udta":
+                case "meta":
+                case "ilst":
+                    readMp4Container(channel, pos, tags, depth + 1);
+                    break;
+                default:
+                    if (type.equals("ilst")) readIlstItem(channel, pos, childSize, child, tags);
+                    break;
+            }
+            pos += childSize;
+        }
+    }
+
+    private void readMvhd(FileChannel channel, long pos, Tags tags) throws IOException {
+        ByteBuffer b = readAt(channel, pos, 32);
+        if (b.remaining() < 20) return;
+        int version = b.get(0) & 0xFF;
+        long timescale;
+        long duration;
+        if (version == 1) {
+            if (b.remaining() < 32) return;
+            timescale = b.getInt(20) & 0xFFFFFFFFL;
+            duration = b.getLong(24);
+        } else {
+            timescale = b.getInt(12) & 0xFFFFFFFFL;
+            duration = b.getInt(16) & 0xFFFFFFFFL;
+        }
+        if (timescale > 0 && duration > 0 && tags.durationMs <= 0) tags.durationMs = duration * 1000 / timescale;
+    }
+
+    // Mục trong ilst: atom con "data" gồm kiểu (4 byte), locale (4 byte) rồi giá trị
+    private void readIlstItem(FileChannel channel, long item, long itemSize, String key, Tags tags) throws IOException {
+        boolean wanted = key.equals("©nam") || key.equals("©ART") || key.equals("©alb")
+                || key.equals("aART") || key.equals("covr");
+        if (!wanted) return;
+        long data = findAtom(channel, item + 8, item + itemSize, "data");
+        if (data < 0) return;
+        long dataSize = atomSize(channel, data, item + itemSize);
+        if (dataSize < 16) return;
+        int dataType = buffer.getInt(8) & 0xFFFFFF;
+        long valuePos = data + 16;
+        int valueLength = (int) Math.min(dataSize - 16, Integer.MAX_VALUE);
+        if (key.equals("covr")) {
+            String mime = dataType == 14 ? "image/png" : dataType == 13 ? "image/jpeg" : null;
+            offerArtwork(tags, 3, valuePos, valueLength, mime);
+            return;
+        }
+        ByteBuffer value = readAt(channel, valuePos, Math.min(valueLength, 4096));
+        byte[] bytes = new byte[value.remaining()];
+        value.get(bytes);
+        String text = clean(new String(bytes, StandardCharsets.UTF_8));
+        switch (key) {
+            case "©nam":
+                if (tags.title == null) tags.title = text;
+                break;
+            case "©ART":
+                if (tags.artist == null) tags.artist = text;
+                break;
+            case "©alb":
+                if (tags.album == null) tags.album = text;
+                break;
+            default:
+                if (tags.albumArtist == null) tags.albumArtist = text;
+                break;
+        }
+    }
+
+    // ---- Đọc file ----
+
+    /**
+     * Đọc tối đa {@code length} byte ở {@code position} vào bộ đệm dùng chung (big-endian);
+     * kết quả có position 0 và limit là số byte đọc được. Bị ghi đè ở lần đọc sau.
+     */
+    private ByteBuffer readAt(FileChannel channel, long position, int length) throws IOException {
+        if (buffer.capacity() < length) {
+            buffer = ByteBuffer.allocate(Math.max(length, buffer.capacity() * 2));
+        }
+        ByteBuffer b = buffer;
+        b.clear();
+        b.order(ByteOrder.BIG_ENDIAN);
+        b.limit(Math.max(0, length));
+        while (b.hasRemaining()) {
+            int n = channel.read(b, position + b.position());
+            if (n < 0) break;
+        }
+        b.flip();
+        return b;
+    }
+
+    private static boolean startsWith(ByteBuffer b, int offset, String prefix) {
+        if (offset < 0 || offset + prefix.length() > b.limit()) return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if ((b.get(offset + i) & 0xFF) != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static String ascii(ByteBuffer b, int offset, int length) {
+        char[] chars = new char[Math.max(0, Math.min(length, b.limit() - offset))];
+        for (int i = 0; i < chars.length; i++) chars[i] = (char) (b.get(offset + i) & 0xFF);
+        return new String(chars);
+    }
+
+    // Trường ID3v1: độ dài cố định, kết thúc bằng 0 hoặc khoảng trắng
+    private static String latin1(ByteBuffer b, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && b.get(end) != 0) end++;
+        return clean(ascii(b, offset, end - offset));
+    }
+
+    private static String clean(String value) {
+        if (value == null) return null;
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package vn.edu.fpt.musicplayer;
+
+import java.io.File;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Đọc thẻ của nhiều file song song trên một {@link ForkJoinPool}: dãy file được chia đôi dần tới
+ * khi mỗi phần đủ nhỏ, các luồng rảnh lấy bớt phần của luồng bận (work stealing), nên vài file
+ * chậm (thẻ lớn, thẻ hỏng, bộ nhớ chậm) không giữ chân cả lượt.
+ * Mỗi luồng dùng lại một {@link TagReader}.
+ */
+public final class TagScan extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private static final int LEAF_SIZE = 8;
+    private static final ThreadLocal<TagReader> READERS = new ThreadLocal<TagReader>() {
+        @Override
+        protected TagReader initialValue() {
+            return new TagReader();
+        }
+    };
+
+    private final String[] paths;
+    private final TagReader.Tags[] results;
+    private final int from;
+    private final int to;
+
+    private TagScan(String[] paths, TagReader.Tags[] results, int from, int to) {
+        this.paths = paths;
+        this.results = results;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Thẻ của từng file theo cùng thứ tự; phần tử null nếu không đọc được hoặc không nhận ra định dạng.
+     */
+    public static TagReader.Tags[] run(ForkJoinPool pool, String[] paths) {
+        TagReader.Tags[] results = new TagReader.Tags[paths.length];
+        if (paths.length > 0) pool.invoke(new TagScan(paths, results, 0, paths.length));
+        return results;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= LEAF_SIZE) {
+            TagReader reader = READERS.get();
+            for (int i = from; i < to; i++) {
+                results[i] = readQuietly(reader, paths[i]);
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        invokeAll(new TagScan(paths, results, from, middle), new TagScan(paths, results, middle, to));
+    }
+
+    // File hỏng, mất hoặc không có quyền đọc chỉ cho ra null, không dừng cả lượt
+    private static TagReader.Tags readQuietly(TagReader reader, String path) {
+        if (path == null) return null;
+        try {
+            return reader.read(new File(path));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
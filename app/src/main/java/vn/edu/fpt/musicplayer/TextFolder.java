@@ -0,0 +1,55 @@
+package vn.edu.fpt.musicplayer;
+
+import java.text.Normalizer;
+
+/**
+ * Chuẩn hoá chữ để tìm kiếm: chữ thường, bỏ dấu (kể cả dấu tiếng Việt, "đ" thành "d").
+ * Dùng bảng tra dựng sẵn nên gập từng ký tự không cấp phát bộ nhớ.
+ */
+public final class TextFolder {
+    // Ký tự bị bỏ qua khi gập (dấu kết hợp đứng riêng)
+    public static final char SKIP = 0;
+    private static final int TABLE_SIZE = 0x2000;
+    private static final char[] TABLE = new char[TABLE_SIZE];
+
+    static {
+        StringBuilder one = new StringBuilder(1);
+        for (int c = 0; c < TABLE_SIZE; c++) {
+            if (c >= 0x0300 && c <= 0x036F) {
+                TABLE[c] = SKIP;
+                continue;
+            }
+            one.setLength(0);
+            one.append((char) c);
+            String decomposed = Normalizer.normalize(one, Normalizer.Form.NFD);
+            TABLE[c] = Character.toLowerCase(decomposed.charAt(0));
+        }
+        TABLE['đ'] = 'd';
+        TABLE['Đ'] = 'd';
+    }
+
+    private TextFolder() {
+    }
+
+    public static char fold(char c) {
+        return c < TABLE_SIZE ? TABLE[c] : Character.toLowerCase(c);
+    }
+
+    /**
+     * Gập {@code text} vào {@code out} từ vị trí {@code offset}, trả về vị trí kết thúc.
+     * {@code out} phải còn ít nhất {@code text.length()} chỗ trống.
+     */
+    public static int fold(CharSequence text, char[] out, int offset) {
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char folded = fold(text.charAt(i));
+            if (folded != SKIP) out[offset++] = folded;
+        }
+        return offset;
+    }
+
+    public static String fold(CharSequence text) {
+        char[] out = new char[text.length()];
+        return new String(out, 0, fold(text, out, 0));
+    }
+}
@@ -0,0 +1,54 @@
+package vn.edu.fpt.musicplayer;
+
+/**
+ * Định dạng thời gian "mm:ss" vào một mảng char dùng lại, không tạo String mới.
+ * Chỉ định dạng lại khi số giây thay đổi, để nơi gọi biết có cần cập nhật TextView hay không.
+ */
+public final class TimeFormatter {
+    // Đủ cho số phút lớn nhất của long
+    private final char[] chars = new char[24];
+    private int length;
+    private long seconds = -1;
+
+    /**
+     * @return true nếu nội dung thay đổi
+     */
+    public boolean update(long seconds) {
+        if (seconds < 0) seconds = 0;
+        if (seconds == this.seconds) return false;
+        this.seconds = seconds;
+        length = format(seconds, chars);
+        return true;
+    }
+
+    // Mảng được dùng lại ở lần update sau
+    public char[] chars() {
+        return chars;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+
+    // Giống String.format("%02d:%02d", phút, giây); trả về số ký tự đã ghi
+    static int format(long seconds, char[] out) {
+        long minutes = seconds / 60;
+        int secs = (int) (seconds % 60);
+        int digits = 2;
+        for (long m = minutes / 100; m > 0; m /= 10) digits++;
+        int pos = digits;
+        for (int i = 0; i < digits; i++) {
+            out[--pos] = (char) ('0' + minutes % 10);
+            minutes /= 10;
+        }
+        out[digits] = ':';
+        out[digits + 1] = (char) ('0' + secs / 10);
+        out[digits + 2] = (char) ('0' + secs % 10);
+        return digits + 3;
+    }
+}
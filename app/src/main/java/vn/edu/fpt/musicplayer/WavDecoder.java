@@ -0,0 +1,95 @@
+package vn.edu.fpt.musicplayer;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Đọc file WAV PCM 16-bit thẳng vào {@link PcmSink}, không cần MediaCodec.
+ */
+public final class WavDecoder {
+    private static final int BUFFER_SAMPLES = 4096;
+
+    private WavDecoder() {
+    }
+
+    public static void decode(InputStream input, PcmSink sink) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        if (readTag(in) != tag("RIFF")) throw new IOException("Not a RIFF file");
+        readIntLE(in);
+        if (readTag(in) != tag("WAVE")) throw new IOException("Not a WAVE file");
+
+        int channels = 0;
+        int sampleRate = 0;
+        while (true) {
+            int chunk = readTag(in);
+            long size = readIntLE(in) & 0xFFFFFFFFL;
+            if (chunk == tag("fmt ")) {
+                int format = readShortLE(in);
+                channels = readShortLE(in);
+                sampleRate = readIntLE(in);
+                in.skipBytes(6);
+                int bits = readShortLE(in);
+                if (format != 1 || bits != 16) throw new IOException("Only PCM 16-bit is supported");
+                skipFully(in, size - 16 + (size & 1));
+            } else if (chunk == tag("data")) {
+                if (channels == 0) throw new IOException("Missing fmt chunk");
+                sink.onFormat(sampleRate, channels, size / (2L * channels));
+                readSamples(in, size / 2, sink);
+                return;
+            } else {
+                skipFully(in, size + (size & 1));
+            }
+        }
+    }
+
+    private static void readSamples(DataInputStream in, long total, PcmSink sink) throws IOException {
+        byte[] bytes = new byte[BUFFER_SAMPLES * 2];
+        short[] samples = new short[BUFFER_SAMPLES];
+        long remaining = total;
+        while (remaining > 0) {
+            int count = (int) Math.min(BUFFER_SAMPLES, remaining);
+            int read = 0;
+            while (read < count * 2) {
+                int n = in.read(bytes, read, count * 2 - read);
+                if (n < 0) break;
+                read += n;
+            }
+            count = read / 2;
+            if (count == 0) return;
+            for (int i = 0; i < count; i++) {
+                samples[i] = (short) ((bytes[2 * i] & 0xFF) | (bytes[2 * i + 1] << 8));
+            }
+            sink.onSamples(samples, count);
+            remaining -= count;
+        }
+    }
+
+    private static int tag(String name) {
+        return (name.charAt(0) << 24) | (name.charAt(1) << 16) | (name.charAt(2) << 8) | name.charAt(3);
+    }
+
+    private static int readTag(DataInputStream in) throws IOException {
+        return in.readInt();
+    }
+
+    private static int readIntLE(DataInputStream in) throws IOException {
+        return Integer.reverseBytes(in.readInt());
+    }
+
+    private static int readShortLE(DataInputStream in) throws IOException {
+        return Short.reverseBytes(in.readShort()) & 0xFFFF;
+    }
+
+    private static void skipFully(DataInputStream in, long count) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                if (in.read() < 0) throw new EOFException();
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+}
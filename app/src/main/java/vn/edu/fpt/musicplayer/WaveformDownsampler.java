@@ -0,0 +1,122 @@
+package vn.edu.fpt.musicplayer;
+
+import java.util.Arrays;
+
+/**
+ * Thu gọn toàn bộ PCM của một bài thành {@code bars} cột biên độ (0..100) với bộ nhớ cố định.
+ * Khi biết trước độ dài, mỗi cột ứng với đúng một đoạn bằng nhau; khi không biết,
+ * các cột được gộp đôi mỗi khi đầy nên bộ nhớ vẫn không đổi.
+ */
+public class WaveformDownsampler implements PcmSink {
+    private static final long UNKNOWN_LENGTH_FRAMES_PER_BAR = 1024;
+    private static final int MIN_HEIGHT = 2;
+
+    private final int bars;
+    private final float[] peak;
+    private final double[] sumSquares;
+    private final long[] frames;
+
+    private int channelCount = 1;
+    private long framesPerBar;
+    private long frameIndex;
+    private int channel;
+    private float framePeak;
+    private double frameSquares;
+
+    public WaveformDownsampler(int bars) {
+        if (bars <= 0) throw new IllegalArgumentException("bars must be positive");
+        this.bars = bars;
+        peak = new float[bars];
+        sumSquares = new double[bars];
+        frames = new long[bars];
+    }
+
+    @Override
+    public void onFormat(int sampleRate, int channelCount, long totalFrames) {
+        this.channelCount = Math.max(1, channelCount);
+        framesPerBar = totalFrames > 0 ? (totalFrames + bars - 1) / bars : UNKNOWN_LENGTH_FRAMES_PER_BAR;
+        frameIndex = 0;
+        channel = 0;
+        framePeak = 0;
+        frameSquares = 0;
+        Arrays.fill(peak, 0);
+        Arrays.fill(sumSquares, 0);
+        Arrays.fill(frames, 0);
+    }
+
+    @Override
+    public void onSamples(short[] samples, int count) {
+        if (framesPerBar == 0) onFormat(0, channelCount, 0);
+        for (int i = 0; i < count; i++) {
+            float value = Math.abs(samples[i] / 32768f);
+            if (value > framePeak) framePeak = value;
+            frameSquares += value * value;
+            if (++channel == channelCount) {
+                addFrame(framePeak, frameSquares / channelCount);
+                channel = 0;
+                framePeak = 0;
+                frameSquares = 0;
+            }
+        }
+    }
+
+    private void addFrame(float value, double square) {
+        int bar = (int) (frameIndex / framesPerBar);
+        while (bar >= bars) {
+            mergePairs();
+            bar = (int) (frameIndex / framesPerBar);
+        }
+        if (value > peak[bar]) peak[bar] = value;
+        sumSquares[bar] += square;
+        frames[bar]++;
+        frameIndex++;
+    }
+
+    // Gộp từng cặp cột liền kề, độ dài mỗi cột tăng gấp đôi
+    private void mergePairs() {
+        for (int i = 0; i < bars; i++) {
+            int a = 2 * i;
+            int b = a + 1;
+            float p = 0;
+            double s = 0;
+            long f = 0;
+            if (a < bars) {
+                p = peak[a];
+                s = sumSquares[a];
+                f = frames[a];
+            }
+            if (b < bars) {
+                p = Math.max(p, peak[b]);
+                s += sumSquares[b];
+                f += frames[b];
+            }
+            peak[i] = p;
+            sumSquares[i] = s;
+            frames[i] = f;
+        }
+        framesPerBar *= 2;
+    }
+
+    /**
+     * Chiều cao từng cột, chuẩn hoá theo cột lớn nhất. Nếu số cột thực tế ít hơn {@code bars}
+     * (độ dài không biết trước) thì được kéo giãn cho đủ.
+     */
+    public int[] finish() {
+        int used = framesPerBar == 0 ? 0 : (int) Math.min(bars, (frameIndex + framesPerBar - 1) / framesPerBar);
+        float[] level = new float[bars];
+        float max = 0;
+        for (int i = 0; i < bars; i++) {
+            int source = used == 0 ? -1 : (int) ((long) i * used / bars);
+            if (source >= 0 && frames[source] > 0) {
+                // Kết hợp RMS và đỉnh để cột vừa phản ánh độ lớn vừa giữ được transient
+                level[i] = (float) (0.5 * Math.sqrt(sumSquares[source] / frames[source]) + 0.5 * peak[source]);
+            }
+            max = Math.max(max, level[i]);
+        }
+        int[] heights = new int[bars];
+        for (int i = 0; i < bars; i++) {
+            heights[i] = max > 0 ? Math.max(MIN_HEIGHT, Math.round(level[i] / max * 100)) : MIN_HEIGHT;
+        }
+        return heights;
+    }
+}
@@ -0,0 +1,151 @@
+package vn.edu.fpt.musicplayer;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Dạng sóng thật của từng bài cho {@code WaveformSeekBar}. Mỗi file chỉ được giải mã một lần:
+ * kết quả được lưu trên đĩa theo id + date modified và giữ thêm trong bộ nhớ.
+ */
+public class WaveformRepository {
+    public static final int BARS = 50;
+    private static final String TAG = "Waveform";
+    private static final int MEMORY_ENTRIES = 64;
+
+    public interface Callback {
+        void onWaveform(Song song, int[] heights);
+    }
+
+    private static WaveformRepository instance;
+
+    private final File cacheDir;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(() -> {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        r.run();
+    }, "waveform"));
+    private final LruCache<Long, int[]> memory = new LruCache<>(MEMORY_ENTRIES);
+    // Các yêu cầu đang xử lý, tránh giải mã trùng cùng một bài
+    private final Map<Long, List<Callback>> pending = new HashMap<>();
+
+    public static synchronized WaveformRepository get(Context context) {
+        if (instance == null) {
+            instance = new WaveformRepository(new File(context.getApplicationContext().getCacheDir(), "waveforms"));
+        }
+        return instance;
+    }
+
+    private WaveformRepository(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    // Nếu đã có trong bộ nhớ thì callback được gọi ngay, còn lại gọi trên luồng UI
+    public void load(Song song, Callback callback) {
+        int[] cached = memory.get(song.id);
+        if (cached != null) {
+            callback.onWaveform(song, cached);
+            return;
+        }
+        request(song, callback);
+    }
+
+    // Tính trước cho các bài sắp phát để thanh sóng sẵn sàng ngay khi chuyển bài
+    public void prefetch(Song song) {
+        if (memory.get(song.id) == null) {
+            request(song, null);
+        }
+    }
+
+    private void request(Song song, Callback callback) {
+        synchronized (pending) {
+            List<Callback> callbacks = pending.get(song.id);
+            if (callbacks != null) {
+                if (callback != null) callbacks.add(callback);
+                return;
+            }
+            callbacks = new ArrayList<>();
+            if (callback != null) callbacks.add(callback);
+            pending.put(song.id, callbacks);
+        }
+        executor.execute(() -> {
+            int[] heights = compute(song);
+            if (heights != null) memory.put(song.id, heights);
+            List<Callback> callbacks;
+            synchronized (pending) {
+                callbacks = pending.remove(song.id);
+            }
+            if (heights != null && callbacks != null && !callbacks.isEmpty()) {
+                mainHandler.post(() -> {
+                    for (Callback c : callbacks) c.onWaveform(song, heights);
+                });
+            }
+        });
+    }
+
+    private int[] compute(Song song) {
+        File file = new File(cacheDir, song.id + "_" + song.dateModified + ".wf");
+        int[] heights = readCache(file);
+        if (heights != null) return heights;
+        if (song.data == null) return null;
+
+        WaveformDownsampler downsampler = new WaveformDownsampler(BARS);
+        try {
+            PcmDecoder.decode(song.data, downsampler);
+        } catch (Exception e) {
+            Log.w(TAG, "Cannot decode " + song.data, e);
+            return null;
+        }
+        heights = downsampler.finish();
+        writeCache(file, heights);
+        return heights;
+    }
+
+    private static int[] readCache(File file) {
+        if (!file.exists()) return null;
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] bytes = new byte[BARS];
+            int read = 0;
+            while (read < BARS) {
+                int n = in.read(bytes, read, BARS - read);
+                if (n < 0) return null;
+                read += n;
+            }
+            int[] heights = new int[BARS];
+            for (int i = 0; i < BARS; i++) heights[i] = bytes[i];
+            return heights;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void writeCache(File file, int[] heights) {
+        if (!cacheDir.exists() && !cacheDir.mkdirs()) return;
+        byte[] bytes = new byte[heights.length];
+        for (int i = 0; i < heights.length; i++) bytes[i] = (byte) heights[i];
+        File tmp = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            out.write(bytes);
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot write waveform cache", e);
+            return;
+        }
+        if (!tmp.renameTo(file)) tmp.delete();
+    }
+}
@@ -0,0 +1,209 @@
+package vn.edu.fpt.musicplayer;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+public class DspChainTest {
+    private static final int RATE = 48000;
+
+    // PCM 16-bit stereo: sóng sin giống nhau ở hai kênh
+    private static ByteBuffer sine(double frequency, double amplitude, int frames) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(frames * 4).order(ByteOrder.nativeOrder());
+        for (int i = 0; i < frames; i++) {
+            short value = (short) Math.round(amplitude * 32767 * Math.sin(2 * Math.PI * frequency * i / RATE));
+            buffer.putShort(value).putShort(value);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static ByteBuffer run(DspChain chain, ByteBuffer input) {
+        ByteBuffer output = ByteBuffer.allocateDirect(input.remaining()).order(ByteOrder.nativeOrder());
+        chain.process(input, output, false);
+        output.flip();
+        return output;
+    }
+
+    // RMS của kênh trái, bỏ qua phần đầu khi bộ lọc chưa ổn định
+    private static double rms(ByteBuffer pcm, int skipFrames) {
+        double sum = 0;
+        int frames = pcm.remaining() / 4;
+        for (int i = skipFrames; i < frames; i++) {
+            double sample = pcm.getShort(i * 4);
+            sum += sample * sample;
+        }
+        return Math.sqrt(sum / (frames - skipFrames));
+    }
+
+    private static double gainDb(DspChain chain, double frequency) {
+        chain.configure(RATE, 2);
+        ByteBuffer input = sine(frequency, 0.25, RATE);
+        double before = rms(input, RATE / 4);
+        return 20 * Math.log10(rms(run(chain, input), RATE / 4) / before);
+    }
+
+    @Test
+    public void flatChainIsBitExact() {
+        DspChain chain = new DspChain();
+        chain.configure(RATE, 2);
+        ByteBuffer input = sine(440, 0.9, 4800);
+        ByteBuffer output = run(chain, input.duplicate().order(ByteOrder.nativeOrder()));
+        assertEquals(input, output);
+    }
+
+    @Test
+    public void bandBoostsItsCenterFrequencyOnly() {
+        DspChain chain = new DspChain();
+        chain.equalizer().setGain(2, 6); // 910 Hz
+        assertEquals(6, gainDb(chain, 910), 0.05);
+        assertEquals(0, gainDb(chain, 60), 0.2);
+        assertEquals(0, gainDb(chain, 14000), 0.2);
+
+        chain.equalizer().setGain(2, 0);
+        chain.equalizer().setGain(0, -9); // 60 Hz
+        assertEquals(-9, gainDb(chain, 60), 0.1);
+        assertEquals(0, gainDb(chain, 3600), 0.2);
+    }
+
+    @Test
+    public void gainIsClampedToRange() {
+        DspChain chain = new DspChain();
+        chain.equalizer().setGain(3, 40);
+        assertEquals(Equalizer.MAX_GAIN_DB, chain.equalizer().getGain(3), 0);
+        assertEquals(Equalizer.MAX_GAIN_DB, gainDb(chain, 3600), 0.1);
+    }
+
+    @Test
+    public void fadeOutInDipsToSilenceAndRecovers() {
+        FadeEnvelope fade = new FadeEnvelope();
+        fade.configure(1000); // 1 khung mỗi ms
+        fade.fadeOutIn(100, 200);
+        float[] gains = new float[400];
+        for (int i = 0; i < gains.length; i++) gains[i] = fade.next();
+
+        assertEquals(FadeEnvelope.gain(0.5f), gains[49], 0.02);
+        assertEquals(0f, gains[99], 1e-6);
+        for (int i = 1; i < 100; i++) assertTrue(gains[i] <= gains[i - 1]);
+        for (int i = 101; i < 300; i++) assertTrue(gains[i] >= gains[i - 1]);
+        assertEquals(1f, gains[299], 1e-6);
+        assertTrue(fade.isUnity());
+        // Equal-power: ở giữa chừng, hệ số ~0.707 chứ không phải 0.5
+        assertEquals(Math.sqrt(0.5), FadeEnvelope.gain(0.5f), 1e-6);
+    }
+
+    @Test
+    public void fadeAppliesToPcm() {
+        DspChain chain = new DspChain();
+        chain.configure(RATE, 2);
+        chain.fade().fadeTo(0f, 10);
+        ByteBuffer output = run(chain, sine(440, 0.5, RATE / 10));
+        // Sau 10 ms thì im lặng hẳn
+        assertEquals(0, rms(output, RATE / 100 + 1), 0);
+        chain.fade().set(1f);
+        ByteBuffer input = sine(440, 0.5, 4800);
+        assertEquals(input, run(chain, input.duplicate().order(ByteOrder.nativeOrder())));
+    }
+
+    // Xử lý input theo từng bộ đệm 10 ms như AudioSink, báo thời điểm của mỗi bộ đệm; trả về hệ số từng khung
+    private static float[] runTimed(DspChain chain, int frames, long startUs) {
+        short level = 16000;
+        int bufferFrames = RATE / 100;
+        float[] gains = new float[frames];
+        ByteBuffer input = ByteBuffer.allocateDirect(bufferFrames * 4).order(ByteOrder.nativeOrder());
+        ByteBuffer output = ByteBuffer.allocateDirect(bufferFrames * 4).order(ByteOrder.nativeOrder());
+        for (int start = 0; start < frames; start += bufferFrames) {
+            input.clear();
+            for (int i = 0; i < bufferFrames; i++) input.putShort(level).putShort(level);
+            input.flip();
+            output.clear();
+            chain.setStreamTime(startUs + start * 1_000_000L / RATE);
+            chain.process(input, output, false);
+            for (int i = 0; i < bufferFrames && start + i < frames; i++) {
+                gains[start + i] = output.getShort(i * 4) / (float) level;
+            }
+        }
+        return gains;
+    }
+
+    @Test
+    public void scheduledFadeReachesSilenceAtTrackBoundary() {
+        DspChain chain = new DspChain();
+        chain.configure(RATE, 2);
+        // Lệnh tới khi bộ xử lý mới ở 0 s; điểm nối ở 1 s, fade 200 ms mỗi phía
+        chain.fade().fadeOutInAt(1_000_000, 200, 200);
+        float[] gains = runTimed(chain, RATE / 2, 0);
+        for (float gain : gains) assertEquals(1f, gain, 0);
+
+        // Lệnh hẹn lại giữa chừng (ví dụ sau khi tiếp tục phát) vẫn chạm 0 đúng chỗ, không nhảy mức
+        float[] before = runTimed(chain, RATE * 4 / 10, 500_000);
+        chain.fade().fadeOutInAt(1_000_000, 200, 200);
+        float[] after = runTimed(chain, RATE * 3 / 10, 900_000);
+        float[] all = new float[RATE * 7 / 10];
+        System.arraycopy(before, 0, all, 0, before.length);
+        System.arraycopy(after, 0, all, before.length, after.length);
+
+        int boundary = RATE / 2; // 1 s tính từ 500 ms
+        int fadeFrames = RATE / 5;
+        assertEquals(1f, all[boundary - fadeFrames - 1], 0);
+        assertTrue(all[boundary - fadeFrames / 2] > 0.5f && all[boundary - fadeFrames / 2] < 1f);
+        for (int i = boundary - fadeFrames + 1; i < boundary; i++) {
+            assertTrue("frame " + i, all[i] <= all[i - 1]);
+            assertTrue("frame " + i, all[i - 1] - all[i] < 0.01f);
+        }
+        assertEquals(0f, all[boundary - 1], 0);
+        // Bài kế tiếp to dần lại từ điểm nối
+        assertTrue(all[boundary + fadeFrames / 2] > 0.5f && all[boundary + fadeFrames / 2] < 1f);
+        for (int i = boundary + 1; i < boundary + fadeFrames; i++) assertTrue("frame " + i, all[i] >= all[i - 1]);
+
+        // Hẹn crossfade cho bài kế tiếp lúc đang to dần không làm dừng phần to dần
+        chain.fade().fadeOutInAt(5_000_000, 200, 200);
+        float[] later = runTimed(chain, RATE / 2, 1_200_000);
+        for (float gain : later) assertEquals(1f, gain, 0);
+    }
+
+    @Test
+    public void lateOrCancelledScheduleLeavesAudioAlone() {
+        DspChain chain = new DspChain();
+        chain.configure(RATE, 2);
+        // Điểm nối đã đi qua trong dòng PCM
+        chain.fade().fadeOutInAt(1_000_000, 200, 200);
+        for (float gain : runTimed(chain, RATE / 10, 1_100_000)) assertEquals(1f, gain, 0);
+        // Tua làm thời điểm đã hẹn mất nghĩa
+        chain.fade().fadeOutInAt(2_000_000, 200, 200);
+        runTimed(chain, RATE / 10, 1_500_000);
+        chain.clearStreamTime();
+        for (float gain : runTimed(chain, RATE, 1_700_000)) assertEquals(1f, gain, 0);
+    }
+
+    @Test
+    public void processingDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        DspChain chain = new DspChain();
+        chain.configure(RATE, 2);
+        for (int band = 0; band < Equalizer.BAND_COUNT; band++) chain.equalizer().setGain(band, band - 2);
+        ByteBuffer input = sine(1000, 0.5, 1024);
+        ByteBuffer output = ByteBuffer.allocateDirect(input.capacity()).order(ByteOrder.nativeOrder());
+        chain.fade().fadeOutIn(5_000, 5_000);
+        // Khởi động cho JIT trước khi đo
+        for (int i = 0; i < 2000; i++) {
+            input.rewind();
+            output.clear();
+            chain.process(input, output, false);
+        }
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 2000; i++) {
+            input.rewind();
+            output.clear();
+            chain.process(input, output, false);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+}
@@ -0,0 +1,105 @@
+package vn.edu.fpt.musicplayer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LibraryGroupingTest {
+    private static final long NOW = 1_700_000_000L;
+    private static final long DAY = 24 * 3600L;
+
+    private static Song song(long id, String title, String artist, long artistId,
+                             String album, long albumId, long dateAdded) {
+        return new Song(id, title, artist, "/music/" + id + ".mp3", albumId, 0, 0, album, artistId, dateAdded);
+    }
+
+    private final List<Song> songs = Arrays.asList(
+            song(1, "Lạc Trôi", "Sơn Tùng M-TP", 10, "Lạc Trôi", 100, NOW - 3600),
+            song(2, "Chạy Ngay Đi", "Sơn Tùng M-TP", 10, "Chạy Ngay Đi", 101, NOW - 3 * DAY),
+            song(3, "Âm Thầm Bên Em", "Sơn Tùng M-TP", 10, "m-tp M-TP", 102, NOW - 40 * DAY),
+            song(4, "Hello", "Adele", 20, "25", 200, NOW - 10 * DAY),
+            song(5, "Send My Love", "Adele", 20, "25", 200, NOW - 10 * DAY),
+            song(6, "1999", null, 0, null, 0, NOW - 2 * DAY));
+
+    private static LibraryStore store(List<Song> songs) {
+        LibraryStore.Builder builder = new LibraryStore.Builder();
+        for (Song song : songs) builder.add(song);
+        return builder.build();
+    }
+
+    private static LibraryGrouping build(List<Song> songs) {
+        return LibraryGrouping.build(store(songs), NOW);
+    }
+
+    private static List<String> titles(List<Song> source, LibraryGrouping.Grouping grouping) {
+        List<String> titles = new ArrayList<>();
+        for (int row : grouping.rows()) titles.add(source.get(row).title);
+        return titles;
+    }
+
+    private static List<String> labels(LibraryGrouping.Grouping grouping) {
+        List<String> labels = new ArrayList<>();
+        for (int g = 0; g < grouping.groupCount(); g++) labels.add(grouping.groupLabel(g));
+        return labels;
+    }
+
+    @Test
+    public void titleModeGroupsByFoldedInitial() {
+        LibraryGrouping.Grouping grouping = build(songs).get(LibraryGrouping.Mode.TITLE);
+        assertEquals(Arrays.asList("1999", "Âm Thầm Bên Em", "Chạy Ngay Đi", "Hello", "Lạc Trôi", "Send My Love"),
+                titles(songs, grouping));
+        assertEquals(Arrays.asList("#", "A", "C", "H", "L", "S"), labels(grouping));
+    }
+
+    @Test
+    public void artistModeSortsByArtistThenTitle() {
+        LibraryGrouping.Grouping grouping = build(songs).get(LibraryGrouping.Mode.ARTIST);
+        assertEquals(Arrays.asList("1999", "Hello", "Send My Love", "Âm Thầm Bên Em", "Chạy Ngay Đi", "Lạc Trôi"),
+                titles(songs, grouping));
+        assertEquals(Arrays.asList(LibraryGrouping.UNKNOWN_LABEL, "Adele", "Sơn Tùng M-TP"), labels(grouping));
+        assertEquals(3, grouping.groupStart(2));
+        assertEquals(6, grouping.groupStart(3));
+    }
+
+    @Test
+    public void albumModeKeepsAlbumsWithSameNameApart() {
+        List<Song> library = new ArrayList<>(songs);
+        library.add(song(7, "Greatest Hit", "Other", 30, "25", 300, NOW));
+        LibraryGrouping.Grouping grouping = build(library).get(LibraryGrouping.Mode.ALBUM);
+        assertEquals(Arrays.asList(LibraryGrouping.UNKNOWN_LABEL, "25", "25", "Chạy Ngay Đi", "Lạc Trôi", "m-tp M-TP"),
+                labels(grouping));
+        assertEquals(Arrays.asList("1999", "Hello", "Send My Love", "Greatest Hit", "Chạy Ngay Đi", "Lạc Trôi",
+                "Âm Thầm Bên Em"), titles(library, grouping));
+    }
+
+    @Test
+    public void recentModeBucketsByAge() {
+        LibraryGrouping.Grouping grouping = build(songs).get(LibraryGrouping.Mode.RECENT);
+        assertEquals(Arrays.asList("Lạc Trôi", "1999", "Chạy Ngay Đi", "Hello", "Send My Love", "Âm Thầm Bên Em"),
+                titles(songs, grouping));
+        assertEquals(Arrays.asList("Today", "This week", "This month", "Earlier"), labels(grouping));
+    }
+
+    @Test
+    public void groupOfPositionUsesGroupStarts() {
+        LibraryGrouping.Grouping grouping = build(songs).get(LibraryGrouping.Mode.ARTIST);
+        int[] expectedGroups = {0, 1, 1, 2, 2, 2};
+        for (int p = 0; p < grouping.size(); p++) {
+            assertEquals(expectedGroups[p], grouping.groupOf(p));
+            assertEquals(p == 0 || p == 1 || p == 3, grouping.isGroupStart(p));
+        }
+    }
+
+    @Test
+    public void emptyLibraryHasNoGroups() {
+        LibraryGrouping grouping = build(new ArrayList<>());
+        for (LibraryGrouping.Mode mode : LibraryGrouping.Mode.values()) {
+            assertEquals(0, grouping.get(mode).size());
+            assertEquals(0, grouping.get(mode).groupCount());
+        }
+    }
+}
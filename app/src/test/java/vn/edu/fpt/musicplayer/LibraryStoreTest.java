@@ -0,0 +1,140 @@
+package vn.edu.fpt.musicplayer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LibraryStoreTest {
+    private static final String[] ARTISTS = {"Sơn Tùng M-TP", "Mỹ Tâm", "Hồ Ngọc Hà", "Đen Vâu", "Adele", "Coldplay"};
+    private static final String[] WORDS = {"Em", "Anh", "Yêu", "Người", "Mưa", "Nắng", "Đêm", "Love", "Night", "Dream"};
+
+    // Khoảng 10 bài mỗi album, mỗi album một thư mục; mỗi chuỗi là một object riêng, giống như đọc từ Cursor
+    static List<Song> songs(int count, long seed) {
+        Random random = new Random(seed);
+        List<Song> songs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int album = random.nextInt(count / 10 + 1);
+            String artist = new String(ARTISTS[album % ARTISTS.length]);
+            StringBuilder title = new StringBuilder();
+            for (int w = 0; w < 3; w++) title.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            title.append(i);
+            String path = "/storage/emulated/0/Music/" + artist + "/Album " + album + "/" + title + ".mp3";
+            songs.add(new Song(1000 + i, title.toString(), artist, path, album,
+                    180_000 + i, 1_700_000_000L + i, "Album " + album, artist.length(), 1_600_000_000L + i));
+        }
+        return songs;
+    }
+
+    static LibraryStore store(List<Song> songs) {
+        LibraryStore.Builder builder = new LibraryStore.Builder();
+        for (Song song : songs) builder.add(song);
+        return builder.trimToSize().build();
+    }
+
+    @Test
+    public void rowsReadBackEveryField() {
+        List<Song> songs = songs(500, 1);
+        songs.add(new Song(99_999, null, null, null, 0));
+        songs.add(new Song(99_998, "No dir", "A", "file.mp3", 0));
+        LibraryStore store = store(songs);
+        assertEquals(songs.size(), store.size());
+        for (int row = 0; row < songs.size(); row++) {
+            Song expected = songs.get(row);
+            Song actual = store.toSong(row);
+            assertEquals(expected.id, actual.id);
+            assertEquals(expected.title != null ? expected.title : "", actual.title);
+            assertEquals(expected.title != null ? expected.title.length() : 0, store.titleLength(row));
+            assertEquals(expected.artist, actual.artist);
+            assertEquals(expected.album, actual.album);
+            assertEquals(expected.data, actual.data);
+            assertEquals(expected.albumId, actual.albumId);
+            assertEquals(expected.artistId, actual.artistId);
+            assertEquals(expected.duration, actual.duration);
+            assertEquals(expected.dateModified, actual.dateModified);
+            assertEquals(expected.dateAdded, actual.dateAdded);
+            assertEquals(row, store.indexOf(expected.id));
+        }
+        assertEquals(-1, store.indexOf(-5));
+    }
+
+    @Test
+    public void poolsSharedStrings() {
+        LibraryStore store = store(songs(1000, 2));
+        for (int row = 1; row < store.size(); row++) {
+            if (store.artist(row).equals(store.artist(0))) {
+                assertSame(store.artist(0), store.artist(row));
+            }
+        }
+    }
+
+    @Test
+    public void earlierSnapshotsAreUnaffectedByLaterRows() {
+        List<Song> songs = songs(3000, 3);
+        LibraryStore.Builder builder = new LibraryStore.Builder();
+        for (int i = 0; i < 10; i++) builder.add(songs.get(i));
+        LibraryStore first = builder.build();
+        for (int i = 10; i < songs.size(); i++) builder.add(songs.get(i));
+        LibraryStore all = builder.build();
+
+        assertEquals(10, first.size());
+        assertEquals(songs.size(), all.size());
+        for (int row = 0; row < 10; row++) {
+            assertEquals(songs.get(row).title, first.title(row));
+            assertEquals(songs.get(row).data, first.path(row));
+            assertTrue(first.sameContent(row, all, row));
+        }
+        assertEquals(-1, first.indexOf(songs.get(20).id));
+        try {
+            first.id(10);
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+    }
+
+    @Test
+    public void sameContentDetectsChanges() {
+        Song a = new Song(1, "Title", "Artist", "/music/a.mp3", 5, 100, 200, "Album", 3, 300);
+        Song renamed = new Song(1, "Title 2", "Artist", "/music/a.mp3", 5, 100, 200, "Album", 3, 300);
+        Song moved = new Song(1, "Title", "Artist", "/other/a.mp3", 5, 100, 200, "Album", 3, 300);
+        LibraryStore store = store(java.util.Arrays.asList(a, renamed, moved, a));
+        assertTrue(store.sameContent(0, store, 3));
+        assertFalse(store.sameContent(0, store, 1));
+        assertFalse(store.sameContent(0, store, 2));
+    }
+
+    @Test
+    public void usesFarLessHeapThanSongList() {
+        int tracks = 100_000;
+        long baseline = usedHeap();
+        List<Song> list = songs(tracks, 4);
+        long listBytes = usedHeap() - baseline;
+
+        LibraryStore store = store(list);
+        list = null;
+        long storeBytes = usedHeap() - baseline;
+
+        System.out.printf("Heap per track: List<Song> %d B, LibraryStore %d B%n",
+                listBytes / tracks, storeBytes / tracks);
+        assertEquals(tracks, store.size());
+        assertTrue("store " + storeBytes + " vs list " + listBytes, storeBytes < listBytes / 2);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
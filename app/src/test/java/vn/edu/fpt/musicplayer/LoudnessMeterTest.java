@@ -0,0 +1,96 @@
+package vn.edu.fpt.musicplayer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LoudnessMeterTest {
+    // Ghi một đoạn sóng sin (cùng một tín hiệu ở mọi kênh) vào meter theo từng khối nhỏ
+    private static void sine(LoudnessMeter meter, int sampleRate, int channels, double frequency,
+                             double amplitude, double seconds) {
+        short[] buffer = new short[1000 * channels];
+        long frames = Math.round(seconds * sampleRate);
+        int count = 0;
+        for (long frame = 0; frame < frames; frame++) {
+            short value = (short) Math.round(amplitude * 32767 * Math.sin(2 * Math.PI * frequency * frame / sampleRate));
+            for (int c = 0; c < channels; c++) buffer[count++] = value;
+            if (count == buffer.length) {
+                meter.onSamples(buffer, count);
+                count = 0;
+            }
+        }
+        meter.onSamples(buffer, count);
+    }
+
+    @Test
+    public void fullScaleSineMatchesReference() {
+        // EBU Tech 3341: sin 997 Hz ở cả hai kênh có độ to (LUFS) bằng mức dBFS; một kênh thì thấp hơn 3.01 LU
+        for (int rate : new int[]{44100, 48000}) {
+            LoudnessMeter meter = new LoudnessMeter();
+            meter.onFormat(rate, 2, 0);
+            sine(meter, rate, 2, 997, 1.0, 5);
+            assertEquals("rate " + rate, 0, meter.integratedLoudness(), 0.1);
+            assertEquals(1.0, meter.peak(), 0.001);
+
+            meter.onFormat(rate, 1, 0);
+            sine(meter, rate, 1, 997, 1.0, 5);
+            assertEquals("rate " + rate, -3.01, meter.integratedLoudness(), 0.1);
+        }
+    }
+
+    @Test
+    public void loudnessFollowsAmplitude() {
+        LoudnessMeter meter = new LoudnessMeter();
+        meter.onFormat(48000, 2, 0);
+        sine(meter, 48000, 2, 997, 0.1, 5);
+        assertEquals(-20, meter.integratedLoudness(), 0.1);
+        assertEquals(0.1, meter.peak(), 0.001);
+    }
+
+    @Test
+    public void gatesIgnoreSilenceAndQuietPassages() {
+        LoudnessMeter meter = new LoudnessMeter();
+        meter.onFormat(48000, 2, 0);
+        sine(meter, 48000, 2, 997, 0.5, 10);
+        sine(meter, 48000, 2, 997, 0, 10);
+        // Thấp hơn 30 dB: qua cổng tuyệt đối nhưng bị cổng tương đối loại
+        sine(meter, 48000, 2, 997, 0.5 / 31.6, 10);
+        assertEquals(-6.02, meter.integratedLoudness(), 0.15);
+    }
+
+    @Test
+    public void silenceAndShortInputHaveNoLoudness() {
+        LoudnessMeter meter = new LoudnessMeter();
+        meter.onFormat(44100, 1, 0);
+        sine(meter, 44100, 1, 440, 0, 3);
+        assertEquals(Double.NEGATIVE_INFINITY, meter.integratedLoudness(), 0);
+
+        meter.onFormat(44100, 1, 0);
+        sine(meter, 44100, 1, 440, 1, 0.3);
+        assertEquals(Double.NEGATIVE_INFINITY, meter.integratedLoudness(), 0);
+        assertEquals(1f, LoudnessMeter.normalizationGain(meter.integratedLoudness(), meter.peak()), 0);
+    }
+
+    @Test
+    public void reusedMeterStartsFresh() {
+        LoudnessMeter meter = new LoudnessMeter();
+        meter.onFormat(48000, 2, 0);
+        sine(meter, 48000, 2, 997, 1.0, 3);
+        meter.onFormat(48000, 2, 0);
+        sine(meter, 48000, 2, 997, 0.1, 3);
+        assertEquals(-20, meter.integratedLoudness(), 0.1);
+        assertEquals(0.1, meter.peak(), 0.001);
+    }
+
+    @Test
+    public void normalizationGainIsLimitedByPeakAndMaxBoost() {
+        // -23 LUFS cần +5 dB
+        assertEquals(Math.pow(10, 5 / 20.0), LoudnessMeter.normalizationGain(-23, 0.1f), 1e-4);
+        // -8 LUFS cần -10 dB
+        assertEquals(Math.pow(10, -10 / 20.0), LoudnessMeter.normalizationGain(-8, 1f), 1e-4);
+        // Đỉnh 0.8 chỉ cho tăng tối đa 1.25 lần
+        assertEquals(1.25, LoudnessMeter.normalizationGain(-30, 0.8f), 1e-4);
+        // Tăng tối đa 12 dB
+        assertEquals(Math.pow(10, 12 / 20.0), LoudnessMeter.normalizationGain(-60, 0.01f), 1e-4);
+    }
+}
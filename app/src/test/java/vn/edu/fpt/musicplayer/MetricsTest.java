@@ -0,0 +1,87 @@
+package vn.edu.fpt.musicplayer;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MetricsTest {
+    @Test
+    public void bucketsAreContiguousAndTight() {
+        int previous = -1;
+        for (long value = 0; value < 100_000; value++) {
+            int bucket = Metrics.Histogram.bucketOf(value);
+            assertTrue(bucket == previous || bucket == previous + 1);
+            previous = bucket;
+            long mid = Metrics.Histogram.midpoint(bucket);
+            assertTrue("value " + value + " mid " + mid, Math.abs(mid - value) <= Math.max(1, value / 14));
+        }
+        assertTrue(Metrics.Histogram.bucketOf(Long.MAX_VALUE) < 64 * Metrics.Histogram.SUB_BUCKETS);
+    }
+
+    @Test
+    public void percentilesAreWithinBucketError() {
+        Metrics.Histogram histogram = Metrics.get().histogram("test.uniform", "ms");
+        Random random = new Random(1);
+        for (int i = 0; i < 100_000; i++) histogram.record(random.nextInt(10_000));
+        assertEquals(100_000, histogram.count());
+        assertEquals(5000, histogram.percentile(0.5), 5000 * 0.07);
+        assertEquals(9000, histogram.percentile(0.9), 9000 * 0.07);
+        assertEquals(9900, histogram.percentile(0.99), 9900 * 0.07);
+        assertEquals(5000, histogram.mean(), 50);
+        assertTrue(histogram.max() < 10_000);
+    }
+
+    @Test
+    public void recentKeepsLatestValuesInOrder() {
+        Metrics.Histogram histogram = Metrics.get().histogram("test.recent", "ms");
+        for (int i = 1; i <= 3; i++) histogram.record(i);
+        assertArrayEquals(new long[]{1, 2, 3}, histogram.recent());
+        for (int i = 4; i <= 200; i++) histogram.record(i);
+        long[] recent = histogram.recent();
+        assertEquals(Metrics.Histogram.RECENT, recent.length);
+        assertEquals(200 - Metrics.Histogram.RECENT + 1, recent[0]);
+        assertEquals(200, recent[recent.length - 1]);
+    }
+
+    @Test
+    public void spansAreSharedByNameAndIgnoreStopWithoutStart() throws Exception {
+        Metrics.Span span = Metrics.get().span("test.span");
+        assertSame(span, Metrics.get().span("test.span"));
+        assertFalse(span.stop());
+        span.start();
+        Thread.sleep(5);
+        assertTrue(span.stop());
+        assertFalse(span.stop());
+        Metrics.Histogram histogram = Metrics.get().histogram("test.span", "us");
+        assertEquals(1, histogram.count());
+        assertTrue(histogram.max() >= 5000);
+    }
+
+    @Test
+    public void countersAddUpAcrossThreads() throws Exception {
+        Metrics.Counter counter = Metrics.get().counter("test.counter");
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) counter.increment();
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+        assertEquals(40_000, counter.get());
+        assertSame(counter, Metrics.get().counter("test.counter"));
+    }
+
+    @Test
+    public void dumpListsEveryMetric() {
+        Metrics.get().counter("test.dump.counter").add(7);
+        Metrics.get().histogram("test.dump.histogram", "ms").record(42);
+        StringBuilder out = new StringBuilder();
+        Metrics.get().dump(out);
+        String text = out.toString();
+        assertTrue(text, text.contains("counter test.dump.counter 7\n"));
+        assertTrue(text, text.contains("histogram test.dump.histogram count=1 mean=42.0 p50=42 p90=42 p99=42 max=42 ms recent=[42]"));
+    }
+}
@@ -0,0 +1,84 @@
+package vn.edu.fpt.musicplayer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PlayEventBufferTest {
+    @Test
+    public void drainsInOrderInBatches() {
+        PlayEventBuffer buffer = new PlayEventBuffer(16);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i + 1, buffer.add(i, PlayEventBuffer.TYPE_PLAY, 1000 + i, i * 10));
+        }
+        PlayEventBuffer.Batch batch = new PlayEventBuffer.Batch(4);
+        int seen = 0;
+        int drained;
+        while ((drained = buffer.drainTo(batch)) > 0) {
+            for (int i = 0; i < drained; i++, seen++) {
+                assertEquals(seen, batch.songId(i));
+                assertEquals(PlayEventBuffer.TYPE_PLAY, batch.type(i));
+                assertEquals(1000 + seen, batch.time(i));
+                assertEquals(seen * 10, batch.value(i));
+            }
+        }
+        assertEquals(10, seen);
+        assertEquals(0, buffer.size());
+        assertEquals(0, batch.size());
+    }
+
+    @Test
+    public void wrapsAroundAfterDraining() {
+        PlayEventBuffer buffer = new PlayEventBuffer(4);
+        PlayEventBuffer.Batch batch = new PlayEventBuffer.Batch(4);
+        for (int round = 0; round < 5; round++) {
+            buffer.add(round, PlayEventBuffer.TYPE_PLAY, 0, 0);
+            buffer.add(round, PlayEventBuffer.TYPE_END, 0, 500);
+            buffer.add(round, PlayEventBuffer.TYPE_SKIP, 0, 20);
+            assertEquals(3, buffer.drainTo(batch));
+            assertEquals(PlayEventBuffer.TYPE_END, batch.type(1));
+            assertEquals(20, batch.value(2));
+            assertEquals(round, batch.songId(2));
+        }
+        assertEquals(0, buffer.dropped());
+    }
+
+    @Test
+    public void overwritesOldestWhenFull() {
+        PlayEventBuffer buffer = new PlayEventBuffer(3);
+        for (int i = 0; i < 5; i++) {
+            buffer.add(i, PlayEventBuffer.TYPE_PLAY, 0, 0);
+        }
+        assertEquals(3, buffer.size());
+        assertEquals(2, buffer.dropped());
+        PlayEventBuffer.Batch batch = new PlayEventBuffer.Batch(8);
+        assertEquals(3, buffer.drainTo(batch));
+        assertEquals(2, batch.songId(0));
+        assertEquals(4, batch.songId(2));
+    }
+
+    @Test
+    public void concurrentProducersLoseNothing() throws Exception {
+        PlayEventBuffer buffer = new PlayEventBuffer(1 << 16);
+        Thread[] producers = new Thread[4];
+        for (int t = 0; t < producers.length; t++) {
+            final int id = t;
+            producers[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) buffer.add(id, PlayEventBuffer.TYPE_PLAY, i, 1);
+            });
+            producers[t].start();
+        }
+        PlayEventBuffer.Batch batch = new PlayEventBuffer.Batch(64);
+        long total = 0;
+        boolean running = true;
+        while (running) {
+            running = false;
+            for (Thread producer : producers) running |= producer.isAlive();
+            int drained;
+            while ((drained = buffer.drainTo(batch)) > 0) {
+                for (int i = 0; i < drained; i++) total += batch.value(i);
+            }
+        }
+        assertEquals(40_000, total);
+    }
+}
@@ -0,0 +1,174 @@
+package vn.edu.fpt.musicplayer;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PlaybackQueueTest {
+    private static final int LARGE = 100_000;
+
+    private static long[] ids(int size) {
+        long[] ids = new long[size];
+        for (int i = 0; i < size; i++) ids[i] = 1000L + i * 7L;
+        return ids;
+    }
+
+    @Test
+    public void unshuffledOrderIsOriginal() {
+        long[] ids = ids(10);
+        PlaybackQueue queue = new PlaybackQueue(ids, new Random(1));
+        queue.playOriginal(4);
+        assertEquals(4, queue.getPosition());
+        assertEquals(ids[4], queue.getCurrentId());
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(ids[i], queue.idAt(i));
+            assertEquals(i, queue.positionOf(i));
+        }
+    }
+
+    @Test
+    public void shuffleIsPermutationWithCurrentAtHead() {
+        long[] ids = ids(LARGE);
+        PlaybackQueue queue = new PlaybackQueue(ids, new Random(2));
+        queue.playOriginal(12_345);
+        queue.setShuffled(true);
+
+        assertEquals(0, queue.getPosition());
+        assertEquals(ids[12_345], queue.getCurrentId());
+        boolean[] seen = new boolean[LARGE];
+        int displaced = 0;
+        for (int p = 0; p < LARGE; p++) {
+            int index = queue.originalIndexAt(p);
+            assertFalse("duplicate at " + p, seen[index]);
+            seen[index] = true;
+            assertEquals(ids[index], queue.idAt(p));
+            if (index != p) displaced++;
+        }
+        assertTrue(displaced > LARGE * 9 / 10);
+        // Nghịch đảo khớp với hoán vị
+        for (int index = 0; index < LARGE; index++) {
+            assertEquals(index, queue.originalIndexAt(queue.positionOf(index)));
+        }
+    }
+
+    @Test
+    public void shuffleIsLazy() {
+        CountingRandom random = new CountingRandom();
+        PlaybackQueue queue = new PlaybackQueue(ids(LARGE), random);
+        queue.setShuffled(true);
+        for (int p = 0; p <= 10; p++) queue.idAt(p);
+        assertEquals(10, random.calls);
+        // Đọc lại không trộn thêm
+        queue.idAt(5);
+        assertEquals(10, random.calls);
+    }
+
+    @Test
+    public void togglingKeepsCurrentTrack() {
+        long[] ids = ids(LARGE);
+        PlaybackQueue queue = new PlaybackQueue(ids, new Random(3));
+        queue.playOriginal(500);
+        for (int round = 0; round < 200; round++) {
+            queue.setShuffled(true);
+            long current = queue.getCurrentId();
+            // Đi tiếp vài bài theo thứ tự trộn rồi tắt trộn
+            queue.setPosition(1 + round % 50);
+            long playing = queue.getCurrentId();
+            assertNotEquals(current, playing);
+            queue.setShuffled(false);
+            assertEquals(playing, queue.getCurrentId());
+            assertEquals(playing, ids[queue.getPosition()]);
+        }
+    }
+
+    @Test
+    public void reshuffleResetsPreviousPermutation() {
+        long[] ids = ids(LARGE);
+        PlaybackQueue queue = new PlaybackQueue(ids, new Random(4));
+        queue.setShuffled(true);
+        for (int p = 0; p < LARGE; p++) queue.idAt(p); // trộn hết
+        queue.setShuffled(false);
+        queue.playOriginal(77);
+        queue.setShuffled(true);
+        assertEquals(ids[77], queue.getCurrentId());
+
+        boolean[] seen = new boolean[LARGE];
+        for (int p = 0; p < LARGE; p++) {
+            int index = queue.originalIndexAt(p);
+            assertFalse(seen[index]);
+            seen[index] = true;
+        }
+    }
+
+    @Test
+    public void playOriginalWhileShuffledRestartsShuffleFromThatTrack() {
+        long[] ids = ids(1000);
+        PlaybackQueue queue = new PlaybackQueue(ids, new Random(5));
+        queue.setShuffled(true);
+        queue.setPosition(10);
+        queue.playOriginal(999);
+        assertEquals(0, queue.getPosition());
+        assertEquals(ids[999], queue.getCurrentId());
+        assertEquals(0, queue.positionOf(999));
+    }
+
+    @Test
+    public void shuffleIsUniform() {
+        // Với 4 bài và bài đầu cố định, 6 thứ tự còn lại phải xuất hiện gần đều nhau
+        long[] ids = ids(4);
+        PlaybackQueue queue = new PlaybackQueue(ids, new Random(6));
+        int[] counts = new int[64];
+        int trials = 60_000;
+        for (int t = 0; t < trials; t++) {
+            queue.setShuffled(false);
+            queue.playOriginal(0);
+            queue.setShuffled(true);
+            int key = queue.originalIndexAt(1) * 16 + queue.originalIndexAt(2) * 4 + queue.originalIndexAt(3);
+            counts[key]++;
+        }
+        int orders = 0;
+        for (int count : counts) {
+            if (count == 0) continue;
+            orders++;
+            assertEquals(trials / 6.0, count, trials / 6.0 * 0.05);
+        }
+        assertEquals(6, orders);
+    }
+
+    @Test
+    public void toggleCostDoesNotDependOnQueueSize() {
+        // Bật lại chỉ trộn tới vị trí được đọc, không trộn lại cả hàng đợi; thời gian đo ở
+        // PlaybackQueueBenchmark.toggleShuffle
+        CountingRandom random = new CountingRandom();
+        PlaybackQueue queue = new PlaybackQueue(ids(LARGE), random);
+        queue.setShuffled(true);
+        for (int i = 0; i < 1000; i++) {
+            queue.setShuffled(false);
+            queue.setShuffled(true);
+            queue.idAt(1);
+        }
+        assertEquals(1000, random.calls);
+    }
+
+    @Test
+    public void emptyQueueIgnoresShuffle() {
+        PlaybackQueue queue = new PlaybackQueue(new long[0]);
+        queue.setShuffled(true);
+        assertTrue(queue.isShuffled());
+        assertEquals(0, queue.size());
+    }
+
+    private static class CountingRandom extends Random {
+        private static final long serialVersionUID = 1L;
+
+        int calls;
+
+        @Override
+        public int nextInt(int bound) {
+            calls++;
+            return super.nextInt(bound);
+        }
+    }
+}
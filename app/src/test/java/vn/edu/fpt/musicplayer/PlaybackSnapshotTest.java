@@ -0,0 +1,91 @@
+package vn.edu.fpt.musicplayer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PlaybackSnapshotTest {
+    private static PlaybackSnapshot roundTrip(PlaybackSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        snapshot.writeTo(out);
+        byte[] bytes = out.toByteArray();
+        return PlaybackSnapshot.readFrom(new ByteArrayInputStream(bytes), bytes.length);
+    }
+
+    @Test
+    public void roundTripsAllFields() throws IOException {
+        long[] queue = {42, 7, 1_000_000_000_123L, 8, 8, 0};
+        PlaybackSnapshot restored = roundTrip(new PlaybackSnapshot(queue, 2, 123_456, true, false,
+                "/storage/emulated/0/Music/Sơn Tùng - Lạc Trôi.mp3"));
+        assertArrayEquals(queue, restored.queue);
+        assertEquals(2, restored.currentIndex);
+        assertEquals(1_000_000_000_123L, restored.currentId());
+        assertEquals(123_456, restored.positionMs);
+        assertTrue(restored.shuffle);
+        assertFalse(restored.repeat);
+        assertEquals("/storage/emulated/0/Music/Sơn Tùng - Lạc Trôi.mp3", restored.currentPath);
+    }
+
+    @Test
+    public void missingPathStaysNull() throws IOException {
+        PlaybackSnapshot restored = roundTrip(new PlaybackSnapshot(new long[]{1}, 0, 0, false, true, null));
+        assertNull(restored.currentPath);
+        assertTrue(restored.repeat);
+    }
+
+    @Test
+    public void sortedQueueIsCompact() throws IOException {
+        // Id MediaStore của cùng thư viện thường gần nhau: 10k bài chỉ tốn khoảng 1 byte/bài
+        long[] queue = new long[10_000];
+        Random random = new Random(1);
+        long id = 1000;
+        for (int i = 0; i < queue.length; i++) {
+            id += 1 + random.nextInt(20);
+            queue[i] = id;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new PlaybackSnapshot(queue, 5000, 60_000, false, false, "/a.mp3").writeTo(out);
+        assertTrue("size " + out.size(), out.size() < queue.length + 64);
+        assertArrayEquals(queue, PlaybackSnapshot.readFrom(new ByteArrayInputStream(out.toByteArray())).queue);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsGarbage() throws IOException {
+        PlaybackSnapshot.readFrom(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6}));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedFile() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new PlaybackSnapshot(new long[]{1, 2, 3}, 1, 10, false, false, "/a.mp3").writeTo(out);
+        byte[] bytes = out.toByteArray();
+        PlaybackSnapshot.readFrom(new ByteArrayInputStream(bytes, 0, bytes.length - 4));
+    }
+
+    @Test
+    public void rejectsQueueSizeLargerThanFile() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new PlaybackSnapshot(new long[]{1, 2, 3}, 1, 10, false, false, "/a.mp3").writeTo(out);
+        byte[] bytes = out.toByteArray();
+        // Số bài (byte thứ 7) bị hỏng thành 100: tệp không đủ chỗ cho ngần ấy id
+        bytes[6] = 100;
+        try {
+            PlaybackSnapshot.readFrom(new ByteArrayInputStream(bytes), bytes.length);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Bad queue size"));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsHugeQueueSizeWithoutLength() throws IOException {
+        // Số bài 2^31 - 9 ngay sau phần đầu: phải báo lỗi thay vì cấp phát 16 GB
+        byte[] bytes = {0x50, 0x42, 0x53, 0x31, 1, 0, (byte) 0xF7, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 2, 2};
+        PlaybackSnapshot.readFrom(new ByteArrayInputStream(bytes));
+    }
+}
@@ -0,0 +1,129 @@
+package vn.edu.fpt.musicplayer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SearchIndexTest {
+    private static final String[] WORDS = {
+            "Em", "Anh", "Yêu", "Người", "Tình", "Mưa", "Nắng", "Đêm", "Ngày", "Xa", "Về", "Nhớ",
+            "Trái Tim", "Con Đường", "Mùa Thu", "Hà Nội", "Sài Gòn", "Love", "Night", "Dream",
+            "Cô Đơn", "Hạnh Phúc", "Chờ", "Đợi", "Mãi", "Bên", "Ta", "Lạc", "Trôi", "Ơi"};
+    private static final String[] ARTISTS = {
+            "Sơn Tùng M-TP", "Mỹ Tâm", "Hồ Ngọc Hà", "Đen Vâu", "Hoàng Thùy Linh", "Vũ", "Bích Phương",
+            "Noo Phước Thịnh", "Đức Phúc", "Min", "Erik", "Taylor Swift", "Adele", "Coldplay"};
+
+    // Cặp (tên bài, nghệ sĩ) ngẫu nhiên; số đo tốc độ nằm ở SearchBenchmark trong module benchmark
+    private static List<String[]> library(int size, Random random) {
+        List<String[]> docs = new ArrayList<>(size);
+        StringBuilder title = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            title.setLength(0);
+            int words = 2 + random.nextInt(4);
+            for (int w = 0; w < words; w++) {
+                if (w > 0) title.append(' ');
+                title.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            title.append(' ').append(i);
+            docs.add(new String[]{title.toString(), ARTISTS[random.nextInt(ARTISTS.length)]});
+        }
+        return docs;
+    }
+
+    @Test
+    public void foldsVietnameseDiacritics() {
+        assertEquals("duong toi cho em ve", TextFolder.fold("Đường Tôi Chở Em Về"));
+        assertEquals("son tung m-tp", TextFolder.fold("Sơn Tùng M-TP"));
+        // Chuỗi đã tách dấu (NFD) cho cùng kết quả
+        assertEquals("tien", TextFolder.fold("tie\u0302\u0301n"));
+        assertEquals("tien", TextFolder.fold("tiến"));
+    }
+
+    @Test
+    public void matchesEveryTokenAsSubstring() {
+        SearchIndex index = new SearchIndex();
+        index.add("Lạc Trôi", "Sơn Tùng M-TP");
+        index.add("Chạy Ngay Đi", "Sơn Tùng M-TP");
+        index.add("Hello", "Adele");
+        int[] results = new int[10];
+
+        assertEquals(2, index.search("son tung", results));
+        assertEquals(1, index.search("TUNG lac", results));
+        assertEquals(0, results[0]);
+        assertEquals(1, index.search("chay di", results));
+        assertEquals(1, results[0]);
+        assertEquals(1, index.search("ell", results));
+        assertEquals(2, results[0]);
+        // Từ ngắn chỉ khớp ở đầu từ: "el" không khớp "Hello" nhưng "ad" khớp "Adele"
+        assertEquals(0, index.search("el", results));
+        assertEquals(1, index.search("ad", results));
+        assertEquals(2, index.search("m", results));
+        assertEquals(0, index.search("xyz", results));
+        assertEquals(0, index.search("   ", results));
+    }
+
+    @Test
+    public void doesNotMatchAcrossTitleAndArtist() {
+        SearchIndex index = new SearchIndex();
+        index.add("Abc", "Def");
+        assertEquals(0, index.search("cde", new int[1]));
+    }
+
+    @Test
+    public void agreesWithLinearScan() {
+        List<String[]> docs = library(5000, new Random(7));
+        SearchIndex index = new SearchIndex();
+        for (String[] doc : docs) {
+            index.add(doc[0], doc[1]);
+        }
+        int[] results = new int[docs.size()];
+        String[] queries = {"a", "e", "m", "em", "th", "1", "42", "yeu", "tinh yeu", "me", "nguoi ta", "ho ngoc", "mua", "anh em"};
+        for (String query : queries) {
+            int count = index.search(query, results);
+            List<Integer> expected = new ArrayList<>();
+            for (int d = 0; d < docs.size(); d++) {
+                if (linearMatch(docs.get(d), query)) expected.add(d);
+            }
+            assertEquals(query, expected.size(), count);
+            for (int i = 0; i < count; i++) {
+                assertEquals(query, (int) expected.get(i), results[i]);
+            }
+        }
+    }
+
+    @Test
+    public void limitsResultsToBuffer() {
+        SearchIndex index = new SearchIndex();
+        for (int i = 0; i < 10; i++) {
+            index.add("Song " + i, "Artist");
+        }
+        int[] results = new int[3];
+        assertEquals(3, index.search("song", results));
+        assertArrayEquals(new int[]{0, 1, 2}, results);
+    }
+
+    private static boolean linearMatch(String[] doc, String query) {
+        String title = TextFolder.fold(doc[0]);
+        String artist = TextFolder.fold(doc[1]);
+        for (String token : TextFolder.fold(query).trim().split("\\s+")) {
+            if (token.length() < 3) {
+                // Từ ngắn chỉ khớp ở đầu một từ
+                if (!startsWord(title, token) && !startsWord(artist, token)) return false;
+            } else if (!title.contains(token) && !artist.contains(token)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWord(String text, String token) {
+        for (String word : text.split("[^\\p{L}\\p{N}]+")) {
+            if (word.startsWith(token)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,302 @@
+package vn.edu.fpt.musicplayer;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SmartPlaylistTest {
+    private static final long DAY_MS = 24 * 3600 * 1000L;
+    private static final long NOW = 1_700_000_000_000L;
+    private static final String[] ARTISTS = {"Sơn Tùng M-TP", "Mỹ Tâm", "Đen Vâu", "Vũ", null, "<unknown>"};
+    private static final String[] ALBUMS = {"Sky Tour", "Tâm 9", "Show của Đen", null};
+
+    private static Song song(long id, String title, String artist, String album, long durationMs, long addedDaysAgo) {
+        long added = (NOW - addedDaysAgo * DAY_MS) / 1000;
+        return new Song(id, title, artist, "/music/" + id + ".mp3", id % 7, durationMs, added, album, id % 5, added);
+    }
+
+    private static LibraryStore library(int size, Random random) {
+        LibraryStore.Builder builder = new LibraryStore.Builder();
+        for (int i = 0; i < size; i++) {
+            builder.add(song(i + 1, "Bài " + random.nextInt(size), ARTISTS[random.nextInt(ARTISTS.length)],
+                    ALBUMS[random.nextInt(ALBUMS.length)], random.nextInt(400_000), random.nextInt(120)));
+        }
+        return builder.build();
+    }
+
+    private static PlayStatsTable stats(LibraryStore store, Random random) {
+        PlayStatsTable stats = new PlayStatsTable();
+        for (int row = 0; row < store.size(); row++) {
+            if (random.nextInt(3) == 0) {
+                stats.put(store.id(row), 1 + random.nextInt(20), random.nextInt(5),
+                        NOW - random.nextInt(30) * DAY_MS - random.nextInt(1000));
+            }
+        }
+        return stats;
+    }
+
+    // Kết quả tính lại từ đầu, để so với kết quả tính tăng dần
+    private static int[] fresh(SmartPlaylist playlist, LibraryStore store, PlayStatsTable stats, long now,
+                               LibraryGrouping grouping) {
+        SmartPlaylistEvaluator evaluator = new SmartPlaylistEvaluator(playlist);
+        evaluator.update(store, stats, now);
+        return evaluator.rows(grouping);
+    }
+
+    @Test
+    public void parsesAndPrintsCanonicalRule() {
+        SmartPlaylist playlist = SmartPlaylist.parse(
+                "Artist contains \"Sơn Tùng\" AND added within 30d and not played<=1w sort by added DESC limit 200");
+        String canonical = "artist contains \"Sơn Tùng\" and added within 30d and not played within 1w"
+                + " sort added desc limit 200";
+        assertEquals(canonical, playlist.toString());
+        assertEquals(playlist, SmartPlaylist.parse(canonical));
+        assertEquals(200, playlist.limit());
+
+        assertEquals("title is \"Em của ngày hôm qua\" and duration > 90s",
+                SmartPlaylist.parse("title = Em của ngày hôm qua and duration>90s").toString());
+        assertEquals("album starts \"Tâm\"", SmartPlaylist.parse("album starts with Tâm").toString());
+        assertEquals("sort plays desc limit 25", SmartPlaylist.parse("sort plays desc limit 25").toString());
+        assertEquals("", SmartPlaylist.parse("  ").toString());
+    }
+
+    @Test
+    public void rejectsBadRulesWithPosition() {
+        String[] bad = {"artist", "artist like x", "plays > many", "added within 30", "added = 3d",
+                "title contains \"open", "limit 0", "genre is pop", "plays > 1 or skips > 1", "duration > 3x"};
+        for (String rule : bad) {
+            try {
+                SmartPlaylist.parse(rule);
+                fail(rule);
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("position"));
+            }
+        }
+    }
+
+    @Test
+    public void evaluatesConditions() {
+        LibraryStore store = new LibraryStore.Builder()
+                .add(song(1, "Lạc trôi", "Sơn Tùng M-TP", "Single", 230_000, 2))
+                .add(song(2, "Nơi này có anh", "Sơn Tùng M-TP", "Single", 260_000, 60))
+                .add(song(3, "Ước gì", "Mỹ Tâm", "Tâm 9", 200_000, 1))
+                .add(song(4, "Bài này chill phết", "Đen Vâu", null, 80_000, 10))
+                .build();
+        PlayStatsTable stats = new PlayStatsTable();
+        stats.put(1, 10, 0, NOW - 2 * DAY_MS);
+        stats.put(3, 3, 2, NOW - 20 * DAY_MS);
+
+        assertEquals("[0, 1]", matching("artist contains son tung", store, stats));
+        assertEquals("[0, 2, 3]", matching("added within 30d", store, stats));
+        assertEquals("[1, 2, 3]", matching("not played within 7d", store, stats));
+        assertEquals("[1, 3]", matching("played > 7d and skips < 1", store, stats));
+        assertEquals("[2]", matching("title is \"UOC GI\"", store, stats));
+        assertEquals("[0, 1]", matching("duration >= 3m50s", store, stats));
+        assertEquals("[3]", matching("album is \"\"", store, stats));
+        assertEquals("[0, 2]", matching("plays > 0 and path starts /music", store, stats));
+        assertEquals("[2]", matching("artist contains Son Tung and added within 30d and not played within 7d"
+                .replace("Son Tung", "tam"), store, stats));
+    }
+
+    private static String matching(String rule, LibraryStore store, PlayStatsTable stats) {
+        SmartPlaylistEvaluator evaluator = new SmartPlaylistEvaluator(SmartPlaylist.parse(rule));
+        evaluator.update(store, stats, NOW);
+        int[] rows = new int[evaluator.matchCount()];
+        int n = 0;
+        for (int row = 0; row < store.size(); row++) {
+            if (evaluator.matches(row)) rows[n++] = row;
+        }
+        return Arrays.toString(rows);
+    }
+
+    @Test
+    public void ordersByGroupingAndLimits() {
+        Random random = new Random(3);
+        LibraryStore store = library(500, random);
+        PlayStatsTable stats = stats(store, random);
+        LibraryGrouping grouping = LibraryGrouping.build(store, NOW / 1000);
+
+        SmartPlaylistEvaluator evaluator = new SmartPlaylistEvaluator(SmartPlaylist.parse("plays > 2 limit 40"));
+        evaluator.update(store, stats, NOW);
+        int[] rows = evaluator.rows(grouping);
+        assertEquals(40, rows.length);
+        // Thứ tự tên bài, giống hệt khi tự sắp xếp
+        assertArrayEquals(evaluator.rows(null), rows);
+
+        evaluator = new SmartPlaylistEvaluator(SmartPlaylist.parse("added within 60d sort added asc"));
+        evaluator.update(store, stats, NOW);
+        rows = evaluator.rows(grouping);
+        assertEquals(evaluator.matchCount(), rows.length);
+        for (int i = 1; i < rows.length; i++) {
+            assertTrue(store.dateAdded(rows[i - 1]) <= store.dateAdded(rows[i]));
+        }
+
+        evaluator = new SmartPlaylistEvaluator(SmartPlaylist.parse("sort plays desc limit 10"));
+        evaluator.update(store, stats, NOW);
+        rows = evaluator.rows(grouping);
+        assertEquals(10, rows.length);
+        for (int i = 1; i < rows.length; i++) {
+            assertTrue(stats.playCount(store.id(rows[i - 1])) >= stats.playCount(store.id(rows[i])));
+        }
+    }
+
+    @Test
+    public void readsHistoryIndexOnlyForBareHistorySort() {
+        assertEquals(SmartPlaylist.Field.PLAYS, SmartPlaylist.parse("sort plays desc limit 25").historyTop());
+        assertEquals(SmartPlaylist.Field.PLAYED, SmartPlaylist.parse("sort played desc limit 25").historyTop());
+        assertNull(SmartPlaylist.parse("sort plays desc").historyTop());
+        assertNull(SmartPlaylist.parse("sort played asc limit 25").historyTop());
+        assertNull(SmartPlaylist.parse("sort skips desc limit 25").historyTop());
+        assertNull(SmartPlaylist.parse("plays > 2 sort plays desc limit 25").historyTop());
+
+        // Cùng thứ tự với index (play_count DESC, last_played DESC) để hai cách cho cùng kết quả
+        LibraryStore store = new LibraryStore.Builder()
+                .add(song(1, "Một", "Vũ", "Single", 200_000, 10))
+                .add(song(2, "Hai", "Vũ", "Single", 200_000, 10))
+                .add(song(3, "Ba", "Vũ", "Single", 200_000, 10))
+                .build();
+        PlayStatsTable stats = new PlayStatsTable();
+        stats.put(1, 5, 0, NOW - 3 * DAY_MS);
+        stats.put(2, 5, 0, NOW - DAY_MS);
+        stats.put(3, 9, 0, NOW - 9 * DAY_MS);
+        assertArrayEquals(new int[]{2, 1, 0}, fresh(SmartPlaylist.parse("sort plays desc limit 3"), store, stats, NOW, null));
+    }
+
+    @Test
+    public void ignoresGroupingOfAnotherLibrary() {
+        Random random = new Random(4);
+        LibraryStore store = library(300, random);
+        PlayStatsTable stats = stats(store, random);
+        // Cùng số dòng nhưng là bản khác (ví dụ cách xem còn của lần tải trước): thứ tự dòng khác hẳn
+        LibraryStore other = library(300, new Random(40));
+        LibraryGrouping stale = LibraryGrouping.build(other, NOW / 1000);
+
+        SmartPlaylistEvaluator evaluator = new SmartPlaylistEvaluator(SmartPlaylist.parse("plays > 2"));
+        evaluator.update(store, stats, NOW);
+        assertArrayEquals(evaluator.rows(null), evaluator.rows(stale));
+        assertArrayEquals(evaluator.rows(null), evaluator.rows(LibraryGrouping.build(store, NOW / 1000)));
+    }
+
+    @Test
+    public void historyChangeReevaluatesOnlyChangedSongs() {
+        Random random = new Random(5);
+        LibraryStore store = library(2000, random);
+        PlayStatsTable stats = stats(store, random);
+        SmartPlaylist playlist = SmartPlaylist.parse("not played within 7d and plays >= 3");
+        SmartPlaylistEvaluator evaluator = new SmartPlaylistEvaluator(playlist);
+        evaluator.update(store, stats, NOW);
+        assertEquals(2000, evaluator.lastEvaluated());
+
+        for (long id = 1; id <= 30; id++) {
+            stats.put(id, stats.playCount(id) + 1, 0, NOW - DAY_MS);
+            evaluator.historyChanged(id);
+        }
+        evaluator.update(store, stats, NOW);
+        assertTrue(evaluator.lastEvaluated() <= 30);
+        assertArrayEquals(fresh(playlist, store, stats, NOW, null), evaluator.rows(null));
+    }
+
+    @Test
+    public void libraryChangeReevaluatesOnlyChangedRows() {
+        Random random = new Random(7);
+        LibraryStore store = library(1000, random);
+        PlayStatsTable stats = stats(store, random);
+        SmartPlaylist playlist = SmartPlaylist.parse("artist contains tung and duration > 1m");
+        SmartPlaylistEvaluator evaluator = new SmartPlaylistEvaluator(playlist);
+        evaluator.update(store, stats, NOW);
+
+        // Bỏ dòng đầu, sửa một dòng, thêm hai bài mới; thứ tự các dòng còn lại bị dịch đi
+        LibraryStore.Builder builder = new LibraryStore.Builder();
+        for (int row = 1; row < store.size(); row++) {
+            Song song = store.toSong(row);
+            if (row == 500) song.artist = "Sơn Tùng M-TP";
+            builder.add(song);
+        }
+        builder.add(song(5000, "Mới", "Sơn Tùng M-TP", "Single", 200_000, 0));
+        builder.add(song(5001, "Mới 2", "Vũ", "Single", 200_000, 0));
+        LibraryStore next = builder.build();
+
+        evaluator.update(next, stats, NOW);
+        assertEquals(3, evaluator.lastEvaluated());
+        assertArrayEquals(fresh(playlist, next, stats, NOW, null), evaluator.rows(null));
+
+        // Biết trước id đã đổi (kể cả bài bị xoá): chỉ các bài đó được tính lại, không so nội dung
+        SmartPlaylistEvaluator known = new SmartPlaylistEvaluator(playlist);
+        known.update(store, stats, NOW);
+        long[] changedIds = {store.id(0), store.id(500), 5000, 5001};
+        Arrays.sort(changedIds);
+        known.update(next, changedIds, stats, NOW);
+        assertEquals(3, known.lastEvaluated());
+        assertArrayEquals(fresh(playlist, next, stats, NOW, null), known.rows(null));
+    }
+
+    @Test
+    public void timeConditionsExpireOnSchedule() {
+        Random random = new Random(11);
+        LibraryStore store = library(3000, random);
+        PlayStatsTable stats = stats(store, random);
+        SmartPlaylist playlist = SmartPlaylist.parse("added within 30d and not played within 3d");
+        SmartPlaylistEvaluator evaluator = new SmartPlaylistEvaluator(playlist);
+        evaluator.update(store, stats, NOW);
+
+        for (long later = NOW + DAY_MS / 3; later < NOW + 40 * DAY_MS; later += DAY_MS / 3) {
+            evaluator.update(store, stats, later);
+            // Chỉ các bài có mốc nằm trong khoảng vừa trôi qua được tính lại
+            assertTrue(evaluator.lastEvaluated() < store.size() / 4);
+            assertArrayEquals("at " + later, fresh(playlist, store, stats, later, null), evaluator.rows(null));
+        }
+        assertEquals(0, evaluator.matchCount());
+    }
+
+    @Test
+    public void movedDeadlinesDoNotReevaluate() {
+        LibraryStore store = new LibraryStore.Builder().add(song(1, "Một", "Vũ", "Single", 200_000, 10)).build();
+        PlayStatsTable stats = new PlayStatsTable();
+        stats.put(1, 1, 0, NOW - 2 * DAY_MS);
+        SmartPlaylist playlist = SmartPlaylist.parse("played within 3d and added within 30d");
+        SmartPlaylistEvaluator evaluator = new SmartPlaylistEvaluator(playlist);
+        evaluator.update(store, stats, NOW);
+
+        // Mỗi lần nghe lại dời mốc hết hạn đi
+        for (int i = 1; i <= 5; i++) {
+            stats.put(1, 1 + i, 0, NOW + i * 1000);
+            evaluator.historyChanged(1);
+            evaluator.update(store, stats, NOW + i * 1000);
+        }
+        // Đã qua các mốc cũ (sau 1 ngày, và 3 ngày sau các lần nghe trước) nhưng chưa tới mốc hiện tại
+        evaluator.update(store, stats, NOW + 3 * DAY_MS + 4500);
+        assertEquals(0, evaluator.lastEvaluated());
+        assertEquals(1, evaluator.matchCount());
+        evaluator.update(store, stats, NOW + 3 * DAY_MS + 6000);
+        assertEquals(1, evaluator.lastEvaluated());
+        assertEquals(0, evaluator.matchCount());
+    }
+
+    // Thời gian mở và cập nhật đo ở SmartPlaylistBenchmark
+    @Test
+    public void updatesLargeLibraryIncrementally() {
+        Random random = new Random(42);
+        LibraryStore store = library(50_000, random);
+        PlayStatsTable stats = stats(store, random);
+        LibraryGrouping grouping = LibraryGrouping.build(store, NOW / 1000);
+        SmartPlaylist playlist = SmartPlaylist.parse(
+                "artist contains \"son tung\" and added within 30d and not played within 7d sort added desc limit 200");
+
+        SmartPlaylistEvaluator evaluator = new SmartPlaylistEvaluator(playlist);
+        evaluator.update(store, stats, NOW);
+        int[] rows = evaluator.rows(grouping);
+        assertEquals(Math.min(200, evaluator.matchCount()), rows.length);
+
+        for (long id = 1; id <= 20; id++) {
+            stats.put(id, 1, 0, NOW);
+            evaluator.historyChanged(id);
+        }
+        evaluator.update(store, stats, NOW);
+        rows = evaluator.rows(grouping);
+        assertTrue(evaluator.lastEvaluated() < 100);
+        assertArrayEquals(fresh(playlist, store, stats, NOW, grouping), rows);
+    }
+}
@@ -0,0 +1,187 @@
+package vn.edu.fpt.musicplayer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class SongLoaderTest {
+    private static final Executor DIRECT = Runnable::run;
+
+    @Test
+    public void deliversRowsInPages() {
+        FakeSongCursor cursor = new FakeSongCursor(75);
+        RecordingCallback callback = new RecordingCallback();
+
+        new SongLoader(DIRECT, DIRECT, 10, 30).load(() -> cursor, callback);
+
+        assertEquals(4, callback.pages.size());
+        assertEquals(10, callback.pages.get(0).size());
+        assertEquals(30, callback.pages.get(1).size());
+        assertEquals(30, callback.pages.get(2).size());
+        assertEquals(5, callback.pages.get(3).size());
+        assertEquals(75, callback.total);
+        assertTrue(cursor.closed);
+    }
+
+    @Test
+    public void mapsEveryColumnInOrder() {
+        RecordingCallback callback = new RecordingCallback();
+
+        new SongLoader(DIRECT, DIRECT, 4, 4).load(() -> new FakeSongCursor(9), callback);
+
+        List<Song> songs = callback.all();
+        assertEquals(9, songs.size());
+        for (int i = 0; i < songs.size(); i++) {
+            Song song = songs.get(i);
+            assertEquals(i, song.id);
+            assertEquals("Title " + i, song.title);
+            assertEquals("Artist " + i, song.artist);
+            assertEquals("/music/" + i + ".mp3", song.data);
+            assertEquals(100 + i, song.albumId);
+            assertEquals(1000L * i, song.duration);
+            assertEquals(1_700_000_000L + i, song.dateModified);
+        }
+    }
+
+    @Test
+    public void nullCursorCompletesEmpty() {
+        RecordingCallback callback = new RecordingCallback();
+
+        new SongLoader(DIRECT, DIRECT).load(() -> null, callback);
+
+        assertTrue(callback.pages.isEmpty());
+        assertEquals(0, callback.total);
+        assertNull(callback.error);
+    }
+
+    @Test
+    public void errorIsReportedAndCursorClosed() {
+        FakeSongCursor cursor = new FakeSongCursor(10);
+        cursor.failAt = 3;
+        RecordingCallback callback = new RecordingCallback();
+
+        new SongLoader(DIRECT, DIRECT, 2, 2).load(() -> cursor, callback);
+
+        assertNotNull(callback.error);
+        assertEquals(-1, callback.total);
+        assertTrue(cursor.closed);
+    }
+
+    @Test
+    public void cancelledLoadDeliversNothing() {
+        List<Runnable> pending = new ArrayList<>();
+        RecordingCallback callback = new RecordingCallback();
+        SongLoader loader = new SongLoader(DIRECT, pending::add, 5, 5);
+
+        loader.load(() -> new FakeSongCursor(20), callback);
+        loader.cancel();
+        for (Runnable r : pending) r.run();
+
+        assertTrue(callback.pages.isEmpty());
+        assertEquals(-1, callback.total);
+    }
+
+    private static class RecordingCallback implements SongLoader.Callback {
+        final List<List<Song>> pages = new ArrayList<>();
+        int total = -1;
+        Exception error;
+
+        @Override
+        public void onPage(List<Song> page) {
+            pages.add(page);
+        }
+
+        @Override
+        public void onComplete(int total) {
+            this.total = total;
+        }
+
+        @Override
+        public void onError(Exception e) {
+            error = e;
+        }
+
+        List<Song> all() {
+            List<Song> songs = new ArrayList<>();
+            for (List<Song> page : pages) songs.addAll(page);
+            return songs;
+        }
+    }
+
+    private static class FakeSongCursor implements SongCursor {
+        private final int count;
+        private int position = -1;
+        int failAt = -1;
+        boolean closed;
+
+        FakeSongCursor(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public boolean moveToNext() {
+            position++;
+            if (position == failAt) throw new IllegalStateException("Broken row " + position);
+            return position < count;
+        }
+
+        @Override
+        public long getId() {
+            return position;
+        }
+
+        @Override
+        public String getTitle() {
+            return "Title " + position;
+        }
+
+        @Override
+        public String getArtist() {
+            return "Artist " + position;
+        }
+
+        @Override
+        public String getData() {
+            return "/music/" + position + ".mp3";
+        }
+
+        @Override
+        public long getAlbumId() {
+            return 100 + position;
+        }
+
+        @Override
+        public long getDuration() {
+            return 1000L * position;
+        }
+
+        @Override
+        public long getDateModified() {
+            return 1_700_000_000L + position;
+        }
+
+        @Override
+        public String getAlbum() {
+            return "Album " + position;
+        }
+
+        @Override
+        public long getArtistId() {
+            return 200 + position;
+        }
+
+        @Override
+        public long getDateAdded() {
+            return 1_600_000_000L + position;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package vn.edu.fpt.musicplayer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class StartupPipelineTest {
+    private static final Executor DIRECT = Runnable::run;
+
+    @Test
+    public void runsTasksAfterTheirDependencies() {
+        List<String> order = new ArrayList<>();
+        StartupPipeline pipeline = new StartupPipeline.Builder(System.nanoTime())
+                .add("list", () -> order.add("list"), "index", "codec")
+                .add("index", () -> order.add("index"))
+                .add("codec", () -> order.add("codec"))
+                .add("thumbs", () -> order.add("thumbs"), "list")
+                .build();
+
+        pipeline.start(DIRECT, DIRECT);
+
+        assertEquals(4, order.size());
+        assertTrue(order.indexOf("list") > order.indexOf("index"));
+        assertTrue(order.indexOf("list") > order.indexOf("codec"));
+        assertEquals("thumbs", order.get(3));
+        assertTrue(pipeline.succeeded("thumbs"));
+    }
+
+    @Test
+    public void independentTasksRunInParallel() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        CountDownLatch done = new CountDownLatch(1);
+        StartupPipeline.Task waitForOther = () -> {
+            bothRunning.countDown();
+            if (!bothRunning.await(5, TimeUnit.SECONDS)) throw new AssertionError("Not parallel");
+        };
+        StartupPipeline pipeline = new StartupPipeline.Builder(System.nanoTime())
+                .add("a", waitForOther)
+                .add("b", waitForOther)
+                .add("join", () -> { }, "a", "b")
+                .build();
+        pipeline.whenDone("join", DIRECT, done::countDown);
+
+        pipeline.start(pool, DIRECT);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(pipeline.succeeded("a"));
+        assertTrue(pipeline.succeeded("b"));
+        assertTrue(pipeline.succeeded("join"));
+        pool.shutdown();
+    }
+
+    @Test
+    public void failureSkipsDependentsOnly() {
+        List<String> ran = new ArrayList<>();
+        List<String> notified = new ArrayList<>();
+        StartupPipeline pipeline = new StartupPipeline.Builder(System.nanoTime())
+                .add("index", () -> {
+                    throw new IllegalStateException("disk full");
+                })
+                .add("list", () -> ran.add("list"), "index")
+                .add("thumbs", () -> ran.add("thumbs"), "list")
+                .add("codec", () -> ran.add("codec"))
+                .build();
+        pipeline.whenDone("thumbs", DIRECT, () -> notified.add("thumbs"));
+
+        pipeline.start(DIRECT, DIRECT);
+
+        assertEquals(Collections.singletonList("codec"), ran);
+        assertEquals(Collections.singletonList("thumbs"), notified);
+        assertTrue(pipeline.isDone("list"));
+        assertFalse(pipeline.succeeded("index"));
+        assertFalse(pipeline.succeeded("list"));
+        assertTrue(pipeline.succeeded("codec"));
+
+        StringBuilder timeline = new StringBuilder();
+        pipeline.timeline(timeline);
+        assertTrue(timeline.toString().contains("disk full"));
+        assertTrue(timeline.toString().contains("skipped"));
+    }
+
+    @Test
+    public void whenDoneAfterFinishRunsImmediately() {
+        StartupPipeline pipeline = new StartupPipeline.Builder(System.nanoTime())
+                .add("index", () -> { })
+                .build();
+        pipeline.start(DIRECT, DIRECT);
+
+        boolean[] called = new boolean[1];
+        pipeline.whenDone("index", DIRECT, () -> called[0] = true);
+
+        assertTrue(called[0]);
+    }
+
+    @Test
+    public void mainTasksUseTheMainExecutor() {
+        List<String> mainRuns = new ArrayList<>();
+        Executor main = r -> {
+            mainRuns.add("main");
+            r.run();
+        };
+        StartupPipeline pipeline = new StartupPipeline.Builder(System.nanoTime())
+                .add("index", () -> { })
+                .addOnMain("ui", () -> { }, "index")
+                .build();
+
+        pipeline.start(DIRECT, main);
+
+        assertEquals(1, mainRuns.size());
+        assertTrue(pipeline.succeeded("ui"));
+    }
+
+    @Test
+    public void rejectsUnknownDependenciesAndCycles() {
+        try {
+            new StartupPipeline.Builder(0).add("a", () -> { }, "missing").build();
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("missing"));
+        }
+        try {
+            new StartupPipeline.Builder(0)
+                    .add("root", () -> { })
+                    .add("a", () -> { }, "root", "b")
+                    .add("b", () -> { }, "a")
+                    .build();
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("cycle"));
+        }
+    }
+
+    @Test
+    public void marksAreRecordedOnce() {
+        StartupPipeline pipeline = new StartupPipeline.Builder(System.nanoTime() - 5_000_000L).build();
+
+        long first = pipeline.mark("list_shown");
+
+        assertTrue(first >= 5_000_000L);
+        assertEquals(-1, pipeline.mark("list_shown"));
+        StringBuilder timeline = new StringBuilder();
+        pipeline.timeline(timeline);
+        assertTrue(timeline.toString().contains("mark list_shown"));
+    }
+}
@@ -0,0 +1,289 @@
+package vn.edu.fpt.musicplayer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Sinh file nhạc mẫu cho {@link TagReaderTest}, {@link TagScanTest} và TagScanBenchmark (module
+ * benchmark): chỉ có phần thẻ và vài khung/trang âm thanh giả,
+ * đúng cấu trúc từng định dạng, để không phải lưu file nhị phân trong repo.
+ */
+final class TagFixtures {
+    // "Ảnh" bìa: phần đầu của một JPEG, đủ để kiểm tra vị trí đọc ra
+    static final byte[] ARTWORK = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 1, 2, 3, 4, 5, 6, 7, 8,
+            (byte) 0xFF, 0, (byte) 0xFF, (byte) 0xD9};
+
+    private TagFixtures() {
+    }
+
+    static void write(File file, byte[] data) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+    }
+
+    // ---- MP3 / ID3 ----
+
+    // Khung MPEG-1 layer III 128 kbps 44.1 kHz stereo, dài 417 byte
+    static final int MP3_HEADER = 0xFFFB9000;
+    static final int MP3_FRAME = 417;
+
+    static byte[] mp3Frames(int count, int xingFrames) {
+        ByteBuffer b = ByteBuffer.allocate(count * MP3_FRAME);
+        for (int i = 0; i < count; i++) {
+            b.putInt(i * MP3_FRAME, MP3_HEADER);
+        }
+        if (xingFrames > 0) {
+            int xing = 4 + 32;
+            b.put(xing, (byte) 'X').put(xing + 1, (byte) 'i').put(xing + 2, (byte) 'n').put(xing + 3, (byte) 'g');
+            b.putInt(xing + 4, 1);
+            b.putInt(xing + 8, xingFrames);
+        }
+        return b.array();
+    }
+
+    static byte[] id3Text(int version, String id, int encoding, String value) {
+        byte[] text;
+        switch (encoding) {
+            case 1:
+                text = concat(new byte[]{(byte) 0xFF, (byte) 0xFE}, value.getBytes(StandardCharsets.UTF_16LE));
+                break;
+            case 3:
+                text = value.getBytes(StandardCharsets.UTF_8);
+                break;
+            default:
+                text = value.getBytes(StandardCharsets.ISO_8859_1);
+                break;
+        }
+        return id3Frame(version, id, 0, concat(new byte[]{(byte) encoding}, text));
+    }
+
+    static byte[] id3Picture(int version, int type, byte[] image) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(1); // UTF-16, để kiểm tra mô tả kết thúc bằng hai byte 0
+        if (version == 2) {
+            body.write('J');
+            body.write('P');
+            body.write('G');
+        } else {
+            writeBytes(body, "image/jpeg".getBytes(StandardCharsets.ISO_8859_1));
+            body.write(0);
+        }
+        body.write(type);
+        writeBytes(body, new byte[]{(byte) 0xFF, (byte) 0xFE, 'C', 0, 0, 0});
+        writeBytes(body, image);
+        return id3Frame(version, version == 2 ? "PIC" : "APIC", 0, body.toByteArray());
+    }
+
+    static byte[] id3Frame(int version, String id, int formatFlags, byte[] body) {
+        ByteBuffer b;
+        if (version == 2) {
+            b = ByteBuffer.allocate(6 + body.length);
+            b.put(id.getBytes(StandardCharsets.ISO_8859_1));
+            b.put((byte) (body.length >> 16)).put((byte) (body.length >> 8)).put((byte) body.length);
+        } else {
+            b = ByteBuffer.allocate(10 + body.length);
+            b.put(id.getBytes(StandardCharsets.ISO_8859_1));
+            b.putInt(version == 4 ? syncsafe(body.length) : body.length);
+            b.put((byte) 0).put((byte) formatFlags);
+        }
+        b.put(body);
+        return b.array();
+    }
+
+    static byte[] id3Tag(int version, int flags, int padding, byte[]... frames) {
+        byte[] body = concat(frames);
+        body = Arrays.copyOf(body, body.length + padding);
+        ByteBuffer b = ByteBuffer.allocate(10 + body.length);
+        b.put(new byte[]{'I', 'D', '3', (byte) version, 0, (byte) flags});
+        b.putInt(syncsafe(body.length));
+        b.put(body);
+        return b.array();
+    }
+
+    static byte[] id3v1(String title, String artist, String album) {
+        byte[] tag = new byte[128];
+        tag[0] = 'T';
+        tag[1] = 'A';
+        tag[2] = 'G';
+        copyLatin1(title, tag, 3);
+        copyLatin1(artist, tag, 33);
+        copyLatin1(album, tag, 63);
+        return tag;
+    }
+
+    // Chèn byte 0 sau mỗi 0xFF
+    static byte[] unsync(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte value : data) {
+            out.write(value);
+            if ((value & 0xFF) == 0xFF) out.write(0);
+        }
+        return out.toByteArray();
+    }
+
+    // ---- FLAC ----
+
+    static byte[] flac(int sampleRate, long samples, String[] comments, byte[] picture) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeBytes(out, "fLaC".getBytes(StandardCharsets.ISO_8859_1));
+        ByteBuffer info = ByteBuffer.allocate(34);
+        info.putShort(0, (short) 4096).putShort(2, (short) 4096);
+        info.put(10, (byte) (sampleRate >> 12));
+        info.put(11, (byte) (sampleRate >> 4));
+        info.put(12, (byte) (((sampleRate & 0xF) << 4) | (1 << 1))); // 2 kênh
+        info.put(13, (byte) ((15 << 4) | ((samples >> 32) & 0xF))); // 16 bit
+        info.putInt(14, (int) samples);
+        flacBlock(out, 0, false, info.array());
+        flacBlock(out, 4, false, vorbisComment(comments));
+        if (picture != null) {
+            byte[] mime = "image/jpeg".getBytes(StandardCharsets.ISO_8859_1);
+            ByteBuffer block = ByteBuffer.allocate(32 + mime.length + picture.length);
+            block.putInt(3).putInt(mime.length).put(mime).putInt(0);
+            block.putInt(500).putInt(500).putInt(24).putInt(0).putInt(picture.length).put(picture);
+            flacBlock(out, 6, false, block.array());
+        }
+        flacBlock(out, 1, true, new byte[64]); // phần đệm
+        writeBytes(out, new byte[]{(byte) 0xFF, (byte) 0xF8, 0, 0});
+        return out.toByteArray();
+    }
+
+    private static void flacBlock(ByteArrayOutputStream out, int type, boolean last, byte[] body) {
+        out.write((last ? 0x80 : 0) | type);
+        out.write(body.length >> 16);
+        out.write(body.length >> 8);
+        out.write(body.length);
+        writeBytes(out, body);
+    }
+
+    static byte[] vorbisComment(String[] comments) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] vendor = "fixture".getBytes(StandardCharsets.UTF_8);
+        writeBytes(out, littleEndian(vendor.length));
+        writeBytes(out, vendor);
+        writeBytes(out, littleEndian(comments.length));
+        for (String comment : comments) {
+            byte[] bytes = comment.getBytes(StandardCharsets.UTF_8);
+            writeBytes(out, littleEndian(bytes.length));
+            writeBytes(out, bytes);
+        }
+        return out.toByteArray();
+    }
+
+    // ---- Ogg ----
+
+    static byte[] oggVorbis(int sampleRate, long lastGranule, String[] comments, int commentPadding) {
+        ByteBuffer id = ByteBuffer.allocate(30).order(ByteOrder.LITTLE_ENDIAN);
+        id.put((byte) 1).put("vorbis".getBytes(StandardCharsets.ISO_8859_1)).putInt(0).put((byte) 2).putInt(sampleRate);
+        byte[] comment = concat(new byte[]{3}, "vorbis".getBytes(StandardCharsets.ISO_8859_1),
+                vorbisComment(comments), new byte[]{1}, new byte[commentPadding]);
+        return ogg(id.array(), comment, lastGranule);
+    }
+
+    static byte[] oggOpus(int preSkip, long lastGranule, String[] comments) {
+        ByteBuffer id = ByteBuffer.allocate(19).order(ByteOrder.LITTLE_ENDIAN);
+        id.put("OpusHead".getBytes(StandardCharsets.ISO_8859_1)).put((byte) 1).put((byte) 2)
+                .putShort((short) preSkip).putInt(48000).putShort((short) 0).put((byte) 0);
+        byte[] comment = concat("OpusTags".getBytes(StandardCharsets.ISO_8859_1), vorbisComment(comments));
+        return ogg(id.array(), comment, lastGranule);
+    }
+
+    // Trang 1: gói định danh; các trang sau: gói comment (chia trang nếu dài); trang cuối: âm thanh
+    private static byte[] ogg(byte[] idPacket, byte[] commentPacket, long lastGranule) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int sequence = 0;
+        oggPage(out, sequence++, 0, idPacket, 0, idPacket.length, true);
+        int maxPage = 255 * 255;
+        for (int offset = 0; offset < commentPacket.length; offset += maxPage) {
+            int length = Math.min(maxPage, commentPacket.length - offset);
+            boolean ends = offset + length == commentPacket.length;
+            oggPage(out, sequence++, 0, commentPacket, offset, length, ends);
+        }
+        byte[] audio = new byte[100];
+        oggPage(out, sequence++, lastGranule / 2, audio, 0, audio.length, true);
+        oggPage(out, sequence, lastGranule, audio, 0, audio.length, true);
+        return out.toByteArray();
+    }
+
+    private static void oggPage(ByteArrayOutputStream out, int sequence, long granule, byte[] data, int offset,
+                                int length, boolean endsPacket) {
+        int segments = length / 255 + (endsPacket ? 1 : 0);
+        ByteBuffer header = ByteBuffer.allocate(27 + segments).order(ByteOrder.LITTLE_ENDIAN);
+        header.put("OggS".getBytes(StandardCharsets.ISO_8859_1)).put((byte) 0).put((byte) 0)
+                .putLong(granule).putInt(0x1234).putInt(sequence).putInt(0).put((byte) segments);
+        for (int i = 0; i < length / 255; i++) header.put((byte) 255);
+        if (endsPacket) header.put((byte) (length % 255));
+        writeBytes(out, header.array());
+        out.write(data, offset, length);
+    }
+
+    // ---- MP4 ----
+
+    // mdat đứng trước moov, như file ghi từ điện thoại
+    static byte[] mp4(long timescale, long duration, String title, String artist, String album, byte[] cover) {
+        byte[] ftyp = atom("ftyp", concat("M4A ".getBytes(StandardCharsets.ISO_8859_1), new byte[4],
+                "isomM4A ".getBytes(StandardCharsets.ISO_8859_1)));
+        byte[] mdat = atom("mdat", new byte[2000]);
+        ByteBuffer mvhd = ByteBuffer.allocate(100);
+        mvhd.putInt(0).putInt(0).putInt(0).putInt((int) timescale).putInt((int) duration);
+        byte[] ilst = atom("ilst", concat(
+                item("©nam", 1, title.getBytes(StandardCharsets.UTF_8)),
+                item("©ART", 1, artist.getBytes(StandardCharsets.UTF_8)),
+                item("©alb", 1, album.getBytes(StandardCharsets.UTF_8)),
+                item("covr", 13, cover)));
+        byte[] hdlr = atom("hdlr", new byte[25]);
+        byte[] meta = atom("meta", concat(new byte[4], hdlr, ilst));
+        byte[] moov = atom("moov", concat(atom("mvhd", mvhd.array()), atom("trak", new byte[40]),
+                atom("udta", meta)));
+        return concat(ftyp, mdat, moov);
+    }
+
+    private static byte[] item(String key, int type, byte[] value) {
+        ByteBuffer data = ByteBuffer.allocate(8 + value.length);
+        data.putInt(type).putInt(0).put(value);
+        return atom(key, atom("data", data.array()));
+    }
+
+    static byte[] atom(String type, byte[] body) {
+        ByteBuffer b = ByteBuffer.allocate(8 + body.length);
+        b.putInt(8 + body.length).put(type.getBytes(StandardCharsets.ISO_8859_1)).put(body);
+        return b.array();
+    }
+
+    // METADATA_BLOCK_PICTURE của Vorbis comment (base64) không được đọc, chỉ để làm gói comment dài
+    static String largePictureComment(int size) {
+        return "METADATA_BLOCK_PICTURE=" + Base64.getEncoder().encodeToString(new byte[size]);
+    }
+
+    // ---- Tiện ích ----
+
+    static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) writeBytes(out, part);
+        return out.toByteArray();
+    }
+
+    private static void writeBytes(ByteArrayOutputStream out, byte[] data) {
+        out.write(data, 0, data.length);
+    }
+
+    private static byte[] littleEndian(int value) {
+        return ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(value).array();
+    }
+
+    private static void copyLatin1(String value, byte[] target, int offset) {
+        byte[] bytes = value.getBytes(StandardCharsets.ISO_8859_1);
+        System.arraycopy(bytes, 0, target, offset, Math.min(30, bytes.length));
+    }
+
+    private static int syncsafe(int value) {
+        return (value & 0x7F) | ((value >> 7) & 0x7F) << 8 | ((value >> 14) & 0x7F) << 16 | ((value >> 21) & 0x7F) << 24;
+    }
+}
@@ -0,0 +1,268 @@
+package vn.edu.fpt.musicplayer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+import static vn.edu.fpt.musicplayer.TagFixtures.*;
+
+public class TagReaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final TagReader reader = new TagReader();
+
+    @Test
+    public void readsId3v23WithUtf16TextXingDurationAndArtwork() throws IOException {
+        byte[] tag = id3Tag(3, 0, 256,
+                id3Text(3, "TIT2", 1, "Nơi này có anh"),
+                id3Text(3, "TPE1", 1, "Sơn Tùng M-TP"),
+                id3Text(3, "TALB", 0, "m-tp M-TP"),
+                id3Picture(3, 3, ARTWORK));
+        File file = fixture("a.mp3", concat(tag, mp3Frames(10, 7000)));
+
+        TagReader.Tags tags = reader.read(file);
+
+        assertEquals("mp3", tags.format);
+        assertEquals("Nơi này có anh", tags.title);
+        assertEquals("Sơn Tùng M-TP", tags.artist);
+        assertEquals("m-tp M-TP", tags.album);
+        // 7000 khung x 1152 mẫu / 44100 Hz
+        assertEquals(7000L * 1152 * 1000 / 44100, tags.durationMs);
+        assertArtwork(file, tags, "image/jpeg");
+    }
+
+    @Test
+    public void readsId3v24Utf8WithLengthFrameAndUnsyncPicture() throws IOException {
+        byte[] unsyncPicture = id3Frame(4, "APIC", 0x02, unsync(
+                Arrays.copyOfRange(id3Picture(4, 3, ARTWORK), 10, id3Picture(4, 3, ARTWORK).length)));
+        byte[] tag = id3Tag(4, 0, 0,
+                id3Text(4, "TIT2", 3, "Hà Nội mùa thu"),
+                id3Text(4, "TPE2", 3, "Various Artists"),
+                id3Text(4, "TLEN", 0, "215000"),
+                unsyncPicture);
+        File file = fixture("b.mp3", concat(tag, mp3Frames(4, 0)));
+
+        TagReader.Tags tags = reader.read(file);
+
+        assertEquals("Hà Nội mùa thu", tags.title);
+        assertNull(tags.artist);
+        assertEquals("Various Artists", tags.albumArtist);
+        assertEquals(215000, tags.durationMs);
+        // Ảnh bị unsync không nằm liền trong file nên không được trỏ tới
+        assertFalse(tags.hasArtwork());
+    }
+
+    @Test
+    public void readsId3v22AndWholeTagUnsync() throws IOException {
+        byte[] v22 = id3Tag(2, 0, 0, id3Text(2, "TT2", 0, "Old tag"), id3Text(2, "TP1", 0, "Old artist"),
+                id3Picture(2, 0, ARTWORK));
+        File old = fixture("c.mp3", concat(v22, mp3Frames(4, 0)));
+        TagReader.Tags tags = reader.read(old);
+        assertEquals("Old tag", tags.title);
+        assertEquals("Old artist", tags.artist);
+        assertArtwork(old, tags, "image/jpeg");
+
+        // Cờ unsync cả thẻ (v2.3): các frame phải được đọc sau khi bỏ byte chèn
+        byte[] frames = concat(id3Text(3, "TIT2", 1, "ÿ Unsync ÿ"), id3Text(3, "TPE1", 0, "Artist"));
+        byte[] body = unsync(frames);
+        byte[] header = {'I', 'D', '3', 3, 0, (byte) 0x80, 0, 0, (byte) (body.length >> 7), (byte) (body.length & 0x7F)};
+        File unsynced = fixture("d.mp3", concat(header, body, mp3Frames(4, 0)));
+        tags = reader.read(unsynced);
+        assertEquals("ÿ Unsync ÿ", tags.title);
+        assertEquals("Artist", tags.artist);
+    }
+
+    @Test
+    public void fallsBackToId3v1AndConstantBitrateDuration() throws IOException {
+        int frames = 1000;
+        File file = fixture("e.mp3", concat(new byte[]{0, 0, 0}, mp3Frames(frames, 0),
+                id3v1("Title v1", "Artist v1", "Album v1")));
+
+        TagReader.Tags tags = reader.read(file);
+
+        assertNull("không có ID3v2 và không bắt đầu bằng khung MPEG", tags);
+
+        file = fixture("f.mp3", concat(mp3Frames(frames, 0), id3v1("Title v1", "Artist v1", "Album v1")));
+        tags = reader.read(file);
+        assertEquals("Title v1", tags.title);
+        assertEquals("Artist v1", tags.artist);
+        assertEquals("Album v1", tags.album);
+        // 128 kbps: byte * 8 / 128000
+        assertEquals((long) frames * MP3_FRAME * 8 * 1000 / 128000, tags.durationMs);
+    }
+
+    @Test
+    public void readsFlacStreamInfoCommentsAndPicture() throws IOException {
+        File file = fixture("g.flac", flac(44100, 44100L * 245,
+                new String[]{"title=Mưa hồng", "ARTIST=Trịnh Công Sơn", "Album=Tuyển tập", "ALBUMARTIST=TCS"},
+                ARTWORK));
+
+        TagReader.Tags tags = reader.read(file);
+
+        assertEquals("flac", tags.format);
+        assertEquals("Mưa hồng", tags.title);
+        assertEquals("Trịnh Công Sơn", tags.artist);
+        assertEquals("Tuyển tập", tags.album);
+        assertEquals("TCS", tags.albumArtist);
+        assertEquals(245_000, tags.durationMs);
+        assertArtwork(file, tags, "image/jpeg");
+    }
+
+    @Test
+    public void readsFlacBehindId3Tag() throws IOException {
+        byte[] id3 = id3Tag(3, 0, 10, id3Text(3, "TIT2", 0, "From ID3"));
+        File file = fixture("h.flac", concat(id3, flac(48000, 48000L * 10, new String[]{"ARTIST=From FLAC"}, null)));
+
+        TagReader.Tags tags = reader.read(file);
+
+        assertEquals("flac", tags.format);
+        assertEquals("From ID3", tags.title);
+        assertEquals("From FLAC", tags.artist);
+        assertEquals(10_000, tags.durationMs);
+    }
+
+    @Test
+    public void readsOggVorbisCommentSpanningPages() throws IOException {
+        // Gói comment dài hơn một trang (ảnh nhúng dạng base64 đứng trước các thẻ)
+        File file = fixture("i.ogg", oggVorbis(44100, 44100L * 200,
+                new String[]{largePictureComment(80_000), "TITLE=Bống bống bang bang", "ARTIST=365"}, 0));
+
+        TagReader.Tags tags = reader.read(file);
+
+        assertEquals("vorbis", tags.format);
+        assertEquals("Bống bống bang bang", tags.title);
+        assertEquals("365", tags.artist);
+        assertEquals(200_000, tags.durationMs);
+    }
+
+    @Test
+    public void readsOpusWithPreSkip() throws IOException {
+        File file = fixture("j.opus", oggOpus(312, 312 + 48000L * 90, new String[]{"TITLE=Opus", "ALBUM=Codec"}));
+
+        TagReader.Tags tags = reader.read(file);
+
+        assertEquals("opus", tags.format);
+        assertEquals("Opus", tags.title);
+        assertEquals("Codec", tags.album);
+        assertEquals(90_000, tags.durationMs);
+    }
+
+    @Test
+    public void readsMp4WithMoovAfterMdat() throws IOException {
+        File file = fixture("k.m4a", mp4(44100, 44100L * 183, "Lạc trôi", "Sơn Tùng", "Single", ARTWORK));
+
+        TagReader.Tags tags = reader.read(file);
+
+        assertEquals("mp4", tags.format);
+        assertEquals("Lạc trôi", tags.title);
+        assertEquals("Sơn Tùng", tags.artist);
+        assertEquals("Single", tags.album);
+        assertEquals(183_000, tags.durationMs);
+        assertArtwork(file, tags, "image/jpeg");
+    }
+
+    @Test
+    public void unknownTruncatedAndCorruptFilesDoNotThrow() throws IOException {
+        assertNull(reader.read(fixture("l.txt", "just some text".getBytes())));
+        assertNull(reader.read(fixture("m.bin", new byte[0])));
+
+        byte[] flac = flac(44100, 44100, new String[]{"TITLE=Cut"}, ARTWORK);
+        byte[] mp4 = mp4(1000, 5000, "Cut", "Cut", "Cut", ARTWORK);
+        byte[] mp3 = concat(id3Tag(3, 0, 0, id3Text(3, "TIT2", 0, "Cut"), id3Picture(3, 3, ARTWORK)), mp3Frames(3, 0));
+        byte[] ogg = oggVorbis(44100, 44100, new String[]{"TITLE=Cut"}, 0);
+        Random random = new Random(42);
+        for (byte[] source : new byte[][]{flac, mp4, mp3, ogg}) {
+            for (int cut = 4; cut < source.length; cut += 1 + cut / 4) {
+                reader.read(fixture("cut", Arrays.copyOf(source, cut)));
+            }
+            for (int round = 0; round < 50; round++) {
+                byte[] corrupt = source.clone();
+                for (int i = 0; i < 8; i++) corrupt[4 + random.nextInt(corrupt.length - 4)] = (byte) random.nextInt();
+                reader.read(fixture("corrupt", corrupt));
+            }
+        }
+    }
+
+    @Test
+    public void repairFillsOnlyMissingFields() {
+        TagReader.Tags tags = new TagReader.Tags();
+        tags.title = "Tag title";
+        tags.albumArtist = "Tag album artist";
+        tags.album = "Tag album";
+        tags.durationMs = 180_000;
+
+        Song unknown = new Song(1, "File title", "<unknown>", "/a.mp3", 7, 0, 100, null, 3, 50);
+        Song repaired = tags.repair(unknown);
+        assertEquals("File title", repaired.title);
+        assertEquals("Tag album artist", repaired.artist);
+        assertEquals("Tag album", repaired.album);
+        assertEquals(180_000, repaired.duration);
+        assertEquals(unknown.id, repaired.id);
+        assertEquals(unknown.dateModified, repaired.dateModified);
+        assertEquals("<unknown>", unknown.artist);
+
+        Song complete = new Song(2, "T", "A", "/b.mp3", 7, 1000, 100, "Al", 3, 50);
+        assertNull(tags.repair(complete));
+    }
+
+    @Test
+    public void parallelScanMatchesSequentialReads() throws IOException {
+        String[] paths = new String[200];
+        for (int i = 0; i < paths.length; i++) {
+            byte[] data;
+            switch (i % 4) {
+                case 0:
+                    data = concat(id3Tag(3, 0, 0, id3Text(3, "TIT2", 0, "Song " + i)), mp3Frames(2, 0));
+                    break;
+                case 1:
+                    data = flac(44100, 44100, new String[]{"TITLE=Song " + i}, null);
+                    break;
+                case 2:
+                    data = mp4(1000, 1000, "Song " + i, "A", "B", ARTWORK);
+                    break;
+                default:
+                    data = "not audio".getBytes();
+                    break;
+            }
+            paths[i] = fixture("scan" + i, data).getPath();
+        }
+        paths[5] = new File(folder.getRoot(), "missing.mp3").getPath();
+
+        TagReader.Tags[] results = TagScan.run(new ForkJoinPool(4), paths);
+
+        for (int i = 0; i < paths.length; i++) {
+            if (i % 4 == 3 || i == 5) {
+                assertNull(results[i]);
+            } else {
+                assertEquals("Song " + i, results[i].title);
+            }
+        }
+    }
+
+    private File fixture(String name, byte[] data) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        write(file, data);
+        return file;
+    }
+
+    private static void assertArtwork(File file, TagReader.Tags tags, String mime) throws IOException {
+        assertTrue(tags.hasArtwork());
+        assertEquals(mime, tags.artworkMime);
+        assertEquals(ARTWORK.length, tags.artworkLength);
+        byte[] read = new byte[tags.artworkLength];
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            in.seek(tags.artworkOffset);
+            in.readFully(read);
+        }
+        assertArrayEquals(ARTWORK, read);
+    }
+}
@@ -0,0 +1,80 @@
+package vn.edu.fpt.musicplayer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+import static vn.edu.fpt.musicplayer.TagFixtures.*;
+
+/**
+ * Lượt đọc song song trả đúng thẻ của từng file theo thứ tự đầu vào. Tốc độ được đo ở
+ * TagScanBenchmark trong module benchmark.
+ */
+public class TagScanTest {
+    private static final int FILES = 100;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void resultsFollowInputOrder() throws IOException {
+        String[] paths = new String[FILES];
+        for (int i = 0; i < FILES; i++) {
+            byte[] data;
+            switch (i % 3) {
+                case 0:
+                    data = concat(id3Tag(3, 0, 1024,
+                            id3Text(3, "TIT2", 1, "Bài hát " + i),
+                            id3Text(3, "TPE1", 1, "Ca sĩ " + i % 50),
+                            id3Picture(3, 3, ARTWORK)), mp3Frames(10, 9000));
+                    break;
+                case 1:
+                    data = flac(44100, 44100L * 240, new String[]{"TITLE=Bài hát " + i}, ARTWORK);
+                    break;
+                default:
+                    data = mp4(44100, 44100L * 240, "Bài hát " + i, "Ca sĩ", "Album", ARTWORK);
+                    break;
+            }
+            File file = folder.newFile("track" + i);
+            write(file, data);
+            paths[i] = file.getPath();
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            TagReader.Tags[] results = TagScan.run(pool, paths);
+            assertEquals(FILES, results.length);
+            for (int i = 0; i < FILES; i++) {
+                assertEquals("Bài hát " + i, results[i].title);
+                assertTrue(results[i].hasArtwork());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void unreadableFilesGiveNull() throws IOException {
+        File song = folder.newFile("song.flac");
+        write(song, flac(44100, 44100L * 240, new String[]{"TITLE=Bài hát"}, null));
+        File garbage = folder.newFile("garbage");
+        write(garbage, new byte[]{1, 2, 3});
+        String[] paths = {new File(folder.getRoot(), "missing").getPath(), song.getPath(), null, garbage.getPath()};
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            TagReader.Tags[] results = TagScan.run(pool, paths);
+            assertNull(results[0]);
+            assertEquals("Bài hát", results[1].title);
+            assertNull(results[2]);
+            assertNull(results[3]);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package vn.edu.fpt.musicplayer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TimeFormatterTest {
+    @Test
+    public void matchesStringFormat() {
+        TimeFormatter formatter = new TimeFormatter();
+        for (long seconds = 0; seconds < 200 * 60; seconds += 7) {
+            assertTrue(formatter.update(seconds));
+            assertEquals(String.format("%02d:%02d", seconds / 60, seconds % 60), formatter.toString());
+        }
+        formatter.update(12_345_678L);
+        assertEquals(String.format("%02d:%02d", 12_345_678L / 60, 12_345_678L % 60), formatter.toString());
+    }
+
+    @Test
+    public void reportsOnlyChanges() {
+        TimeFormatter formatter = new TimeFormatter();
+        assertTrue(formatter.update(61));
+        char[] buffer = formatter.chars();
+        assertFalse(formatter.update(61));
+        assertTrue(formatter.update(62));
+        assertSame(buffer, formatter.chars());
+        assertEquals("01:02", formatter.toString());
+    }
+
+    @Test
+    public void clampsNegativeToZero() {
+        TimeFormatter formatter = new TimeFormatter();
+        formatter.update(-5);
+        assertEquals("00:00", formatter.toString());
+    }
+}
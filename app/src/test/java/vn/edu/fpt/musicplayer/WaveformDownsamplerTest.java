@@ -0,0 +1,113 @@
+package vn.edu.fpt.musicplayer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+public class WaveformDownsamplerTest {
+    private static final int SAMPLE_RATE = 8000;
+
+    @Test
+    public void silenceThenToneFromWav() throws IOException {
+        short[] pcm = new short[SAMPLE_RATE * 4];
+        for (int i = SAMPLE_RATE * 2; i < pcm.length; i++) {
+            pcm[i] = (short) (Math.sin(2 * Math.PI * 440 * i / SAMPLE_RATE) * 20000);
+        }
+
+        WaveformDownsampler downsampler = new WaveformDownsampler(10);
+        WavDecoder.decode(new ByteArrayInputStream(wav(pcm, 1, true)), downsampler);
+        int[] heights = downsampler.finish();
+
+        assertEquals(10, heights.length);
+        for (int i = 0; i < 5; i++) assertTrue("bar " + i, heights[i] <= 2);
+        for (int i = 5; i < 10; i++) assertTrue("bar " + i, heights[i] >= 95);
+    }
+
+    @Test
+    public void rampIsMonotonic() throws IOException {
+        short[] pcm = new short[SAMPLE_RATE * 2 * 2];
+        for (int frame = 0; frame < pcm.length / 2; frame++) {
+            short value = (short) (frame * 30000L / (pcm.length / 2));
+            pcm[2 * frame] = value;
+            pcm[2 * frame + 1] = (short) -value;
+        }
+
+        WaveformDownsampler downsampler = new WaveformDownsampler(20);
+        WavDecoder.decode(new ByteArrayInputStream(wav(pcm, 2, false)), downsampler);
+        int[] heights = downsampler.finish();
+
+        for (int i = 1; i < heights.length; i++) {
+            assertTrue("bar " + i, heights[i] >= heights[i - 1]);
+        }
+        assertEquals(100, heights[heights.length - 1]);
+    }
+
+    @Test
+    public void unknownLengthMatchesKnownLength() {
+        short[] pcm = new short[100_000];
+        for (int i = 0; i < pcm.length; i++) {
+            pcm[i] = (short) ((i / 5000) % 2 == 0 ? 1000 : 16000);
+        }
+
+        WaveformDownsampler known = new WaveformDownsampler(8);
+        known.onFormat(SAMPLE_RATE, 1, pcm.length);
+        feed(known, pcm);
+        WaveformDownsampler unknown = new WaveformDownsampler(8);
+        unknown.onFormat(SAMPLE_RATE, 1, 0);
+        feed(unknown, pcm);
+
+        int[] a = known.finish();
+        int[] b = unknown.finish();
+        int max = 0;
+        for (int i = 0; i < a.length; i++) max = Math.max(max, Math.abs(a[i] - b[i]));
+        assertTrue("max difference " + max, max <= 30);
+        assertEquals(8, b.length);
+    }
+
+    @Test
+    public void emptyInputGivesFlatBars() {
+        WaveformDownsampler downsampler = new WaveformDownsampler(5);
+        downsampler.onFormat(SAMPLE_RATE, 2, 0);
+        assertArrayEquals(new int[]{2, 2, 2, 2, 2}, downsampler.finish());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsNonWav() throws IOException {
+        WavDecoder.decode(new ByteArrayInputStream(new byte[64]), new WaveformDownsampler(5));
+    }
+
+    private static void feed(WaveformDownsampler downsampler, short[] pcm) {
+        short[] buffer = new short[777];
+        for (int offset = 0; offset < pcm.length; offset += buffer.length) {
+            int count = Math.min(buffer.length, pcm.length - offset);
+            System.arraycopy(pcm, offset, buffer, 0, count);
+            downsampler.onSamples(buffer, count);
+        }
+    }
+
+    // WAV PCM 16-bit; có thể chèn thêm chunk LIST trước data như nhiều file thực tế
+    static byte[] wav(short[] pcm, int channels, boolean withListChunk) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] list = "LIST\u0006\u0000\u0000\u0000INFOab".getBytes();
+        int dataSize = pcm.length * 2;
+        int riffSize = 4 + 24 + (withListChunk ? list.length : 0) + 8 + dataSize;
+        ByteBuffer header = ByteBuffer.allocate(12 + 24).order(ByteOrder.LITTLE_ENDIAN);
+        header.put("RIFF".getBytes()).putInt(riffSize).put("WAVE".getBytes());
+        header.put("fmt ".getBytes()).putInt(16).putShort((short) 1).putShort((short) channels)
+                .putInt(SAMPLE_RATE).putInt(SAMPLE_RATE * channels * 2)
+                .putShort((short) (channels * 2)).putShort((short) 16);
+        out.write(header.array(), 0, header.position());
+        if (withListChunk) out.write(list, 0, list.length);
+        ByteBuffer data = ByteBuffer.allocate(8 + dataSize).order(ByteOrder.LITTLE_ENDIAN);
+        data.put("data".getBytes()).putInt(dataSize);
+        for (short s : pcm) data.putShort(s);
+        out.write(data.array(), 0, data.position());
+        return out.toByteArray();
+    }
+}
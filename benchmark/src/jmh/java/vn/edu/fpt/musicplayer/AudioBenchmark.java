@@ -0,0 +1,64 @@
+package vn.edu.fpt.musicplayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Xử lý âm thanh trên luồng phát cho một bộ đệm 4096 khung stereo 16-bit: chuỗi DSP khi EQ phẳng
+ * (chỉ chép), khi bật đủ 5 dải, và đo độ to của cùng lượng mẫu.
+ */
+@State(Scope.Thread)
+public class AudioBenchmark {
+    private static final int SAMPLE_RATE = 44100;
+    private static final int CHANNELS = 2;
+    private static final int FRAMES = 4096;
+
+    private short[] samples;
+    private ByteBuffer input;
+    private ByteBuffer output;
+    private final DspChain flat = new DspChain();
+    private final DspChain equalized = new DspChain();
+    private final LoudnessMeter meter = new LoudnessMeter();
+
+    @Setup
+    public void setUp() {
+        samples = BenchmarkData.pcm(FRAMES, CHANNELS, SAMPLE_RATE);
+        input = ByteBuffer.allocateDirect(samples.length * 2).order(ByteOrder.nativeOrder());
+        input.asShortBuffer().put(samples);
+        output = ByteBuffer.allocateDirect(samples.length * 2).order(ByteOrder.nativeOrder());
+        flat.configure(SAMPLE_RATE, CHANNELS);
+        for (int band = 0; band < Equalizer.BAND_COUNT; band++) {
+            equalized.equalizer().setGain(band, band % 2 == 0 ? 6 : -4);
+        }
+        equalized.configure(SAMPLE_RATE, CHANNELS);
+        meter.onFormat(SAMPLE_RATE, CHANNELS, 0);
+    }
+
+    @Benchmark
+    public ByteBuffer dspFlat() {
+        return run(flat);
+    }
+
+    @Benchmark
+    public ByteBuffer dspEqualizer() {
+        return run(equalized);
+    }
+
+    @Benchmark
+    public float loudnessMeter() {
+        meter.onSamples(samples, samples.length);
+        return meter.peak();
+    }
+
+    private ByteBuffer run(DspChain chain) {
+        input.clear();
+        output.clear();
+        chain.process(input, output, false);
+        return output;
+    }
+}
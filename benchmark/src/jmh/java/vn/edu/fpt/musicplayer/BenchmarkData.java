@@ -0,0 +1,148 @@
+package vn.edu.fpt.musicplayer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Dữ liệu giả cho các benchmark, sinh từ seed cố định để mọi lần chạy đo trên cùng một thư viện.
+ * Khoảng 10 bài mỗi album và nghệ sĩ gắn với album, giống thư viện thật.
+ */
+final class BenchmarkData {
+    static final long SEED = 42;
+
+    private static final String[] WORDS = {
+            "Em", "Anh", "Yêu", "Người", "Tình", "Mưa", "Nắng", "Đêm", "Ngày", "Xa", "Về", "Nhớ",
+            "Trái Tim", "Con Đường", "Mùa Thu", "Hà Nội", "Sài Gòn", "Love", "Night", "Dream",
+            "Cô Đơn", "Hạnh Phúc", "Chờ", "Đợi", "Mãi", "Bên", "Ta", "Lạc", "Trôi", "Ơi"};
+    private static final String[] ARTISTS = {
+            "Sơn Tùng M-TP", "Mỹ Tâm", "Hồ Ngọc Hà", "Đen Vâu", "Hoàng Thùy Linh", "Vũ", "Bích Phương",
+            "Noo Phước Thịnh", "Đức Phúc", "Min", "Erik", "Taylor Swift", "Adele", "Coldplay"};
+
+    // Các lần gõ phím khi tìm kiếm, theo thứ tự
+    static final String[] KEYSTROKES = {
+            "s", "so", "son", "son ", "son t", "son tu", "son tun", "son tung",
+            "e", "em", "em ", "em y", "em ye", "em yeu",
+            "h", "ha", "ha n", "ha no", "ha noi",
+            "d", "de", "den", "den v", "den va", "den vau",
+            "m", "mu", "mua", "mua t", "mua th", "mua thu"};
+
+    private BenchmarkData() {
+    }
+
+    static List<Song> songs(int size) {
+        Random random = new Random(SEED);
+        List<Song> songs = new ArrayList<>(size);
+        StringBuilder title = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            title.setLength(0);
+            int words = 2 + random.nextInt(4);
+            for (int w = 0; w < words; w++) {
+                if (w > 0) title.append(' ');
+                title.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            title.append(' ').append(i);
+            int album = i / 10;
+            int artist = album % ARTISTS.length;
+            songs.add(new Song(1_000_000L + i, title.toString(), ARTISTS[artist],
+                    "/storage/emulated/0/Music/" + ARTISTS[artist] + "/Album " + album + "/" + i + ".mp3",
+                    album, 120_000L + random.nextInt(240_000), 1_700_000_000L + random.nextInt(1_000_000),
+                    "Album " + album, artist, 1_700_000_000L + random.nextInt(1_000_000)));
+        }
+        return songs;
+    }
+
+    static long[] ids(List<Song> songs) {
+        long[] ids = new long[songs.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = songs.get(i).id;
+        return ids;
+    }
+
+    // PCM 16-bit xen kẽ các kênh: hai tông sin cộng nhiễu nhẹ, biên độ thay đổi chậm
+    static short[] pcm(int frames, int channelCount, int sampleRate) {
+        Random random = new Random(SEED);
+        short[] samples = new short[frames * channelCount];
+        for (int f = 0; f < frames; f++) {
+            double t = (double) f / sampleRate;
+            double envelope = 0.3 + 0.25 * Math.sin(2 * Math.PI * 0.2 * t);
+            double value = envelope * (Math.sin(2 * Math.PI * 220 * t) + 0.5 * Math.sin(2 * Math.PI * 3300 * t)) / 1.5;
+            for (int c = 0; c < channelCount; c++) {
+                double noise = (random.nextDouble() - 0.5) * 0.02;
+                samples[f * channelCount + c] = (short) Math.round((value + noise) * 32767);
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * Con trỏ đọc lại một danh sách bài như Cursor của MediaStore. Giống CursorWindow, mỗi lần đọc
+     * cột chuỗi trả về một String mới, nên chi phí tạo chuỗi khi đọc dòng cũng được tính vào.
+     */
+    static final class ListCursor implements SongCursor {
+        private final List<Song> rows;
+        private int position = -1;
+
+        ListCursor(List<Song> rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public boolean moveToNext() {
+            return ++position < rows.size();
+        }
+
+        @Override
+        public long getId() {
+            return rows.get(position).id;
+        }
+
+        @Override
+        public String getTitle() {
+            return new String(rows.get(position).title);
+        }
+
+        @Override
+        public String getArtist() {
+            return new String(rows.get(position).artist);
+        }
+
+        @Override
+        public String getData() {
+            return new String(rows.get(position).data);
+        }
+
+        @Override
+        public long getAlbumId() {
+            return rows.get(position).albumId;
+        }
+
+        @Override
+        public long getDuration() {
+            return rows.get(position).duration;
+        }
+
+        @Override
+        public long getDateModified() {
+            return rows.get(position).dateModified;
+        }
+
+        @Override
+        public String getAlbum() {
+            return new String(rows.get(position).album);
+        }
+
+        @Override
+        public long getArtistId() {
+            return rows.get(position).artistId;
+        }
+
+        @Override
+        public long getDateAdded() {
+            return rows.get(position).dateAdded;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
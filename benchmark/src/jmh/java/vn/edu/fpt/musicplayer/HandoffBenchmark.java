@@ -0,0 +1,116 @@
+package vn.edu.fpt.musicplayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chi phí chuyển hàng đợi sang màn hình phát. Cách cũ gửi {@code ArrayList<Song>} qua Intent:
+ * Parcel không chạy được trên JVM nên được mô phỏng bằng cách ghi đúng các trường như
+ * {@link Song#writeToParcel} (chuỗi UTF-16 có độ dài, căn 4 byte) rồi đọc lại thành Song mới.
+ * Cách hiện tại chỉ đăng ký mảng id vào {@link PlaybackQueueRepository}; kèm theo là chi phí
+ * ghi/đọc {@link PlaybackSnapshot} khi lưu trạng thái phát.
+ */
+@State(Scope.Benchmark)
+public class HandoffBenchmark {
+    @Param({"1000", "20000"})
+    public int size;
+
+    private List<Song> songs;
+    private ByteBuffer parcel;
+    private PlaybackSnapshot snapshot;
+    private byte[] snapshotBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        songs = BenchmarkData.songs(size);
+        parcel = ByteBuffer.allocate(size * 512).order(ByteOrder.nativeOrder());
+        snapshot = new PlaybackSnapshot(BenchmarkData.ids(songs), size / 2, 95_000L, true, false,
+                songs.get(size / 2).data);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        snapshot.writeTo(out);
+        snapshotBytes = out.toByteArray();
+    }
+
+    @Benchmark
+    public List<Song> parcelSongList() {
+        ByteBuffer p = parcel;
+        p.clear();
+        p.putInt(songs.size());
+        for (Song song : songs) {
+            p.putLong(song.id);
+            writeString(p, song.title);
+            writeString(p, song.artist);
+            writeString(p, song.data);
+            p.putLong(song.albumId);
+            p.putLong(song.duration);
+            p.putLong(song.dateModified);
+            writeString(p, song.album);
+            p.putLong(song.artistId);
+            p.putLong(song.dateAdded);
+        }
+        p.flip();
+        int count = p.getInt();
+        List<Song> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long id = p.getLong();
+            String title = readString(p);
+            String artist = readString(p);
+            String data = readString(p);
+            long albumId = p.getLong();
+            long duration = p.getLong();
+            long dateModified = p.getLong();
+            String album = readString(p);
+            result.add(new Song(id, title, artist, data, albumId, duration, dateModified,
+                    album, p.getLong(), p.getLong()));
+        }
+        return result;
+    }
+
+    // Màn hình danh sách tạo mảng id rồi đăng ký; màn hình phát lấy lại theo handle
+    @Benchmark
+    public long[] idsHandle() {
+        long[] ids = BenchmarkData.ids(songs);
+        int handle = PlaybackQueueRepository.get().create(ids);
+        return PlaybackQueueRepository.get().get(handle);
+    }
+
+    @Benchmark
+    public PlaybackSnapshot snapshotRoundTrip() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(snapshotBytes.length);
+        snapshot.writeTo(out);
+        return PlaybackSnapshot.readFrom(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    // Như Parcel.writeString: độ dài (-1 nếu null), các ký tự UTF-16 và ký tự kết thúc, căn 4 byte
+    private static void writeString(ByteBuffer p, String value) {
+        if (value == null) {
+            p.putInt(-1);
+            return;
+        }
+        int length = value.length();
+        p.putInt(length);
+        for (int i = 0; i < length; i++) p.putChar(value.charAt(i));
+        p.putChar('\0');
+        if (((length + 1) & 1) != 0) p.putChar('\0');
+    }
+
+    private static String readString(ByteBuffer p) {
+        int length = p.getInt();
+        if (length < 0) return null;
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) chars[i] = p.getChar();
+        p.position(p.position() + ((length + 2) & ~1) * 2 - length * 2);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,56 @@
+package vn.edu.fpt.musicplayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Đọc các dòng thư viện thành model: danh sách {@link Song} như getSongs() trước đây, so với
+ * chép vào {@link LibraryStore} theo cột như bây giờ; kèm chi phí dựng các cách nhóm.
+ */
+@State(Scope.Benchmark)
+public class LibraryBenchmark {
+    @Param({"1000", "20000"})
+    public int size;
+
+    private List<Song> rows;
+    private LibraryStore store;
+
+    @Setup
+    public void setUp() {
+        rows = BenchmarkData.songs(size);
+        store = loadStore();
+    }
+
+    @Benchmark
+    public List<Song> rowsToSongList() {
+        List<Song> songs = new ArrayList<>();
+        try (SongCursor cursor = new BenchmarkData.ListCursor(rows)) {
+            while (cursor.moveToNext()) songs.add(Song.from(cursor));
+        }
+        return songs;
+    }
+
+    @Benchmark
+    public LibraryStore rowsToStore() {
+        return loadStore();
+    }
+
+    @Benchmark
+    public LibraryGrouping grouping() {
+        return LibraryGrouping.build(store, 1_701_000_000L);
+    }
+
+    private LibraryStore loadStore() {
+        LibraryStore.Builder builder = new LibraryStore.Builder();
+        try (SongCursor cursor = new BenchmarkData.ListCursor(rows)) {
+            while (cursor.moveToNext()) builder.add(Song.from(cursor));
+        }
+        return builder.trimToSize().build();
+    }
+}
@@ -0,0 +1,33 @@
+package vn.edu.fpt.musicplayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Chi phí ghi một số đo, để chắc rằng việc đo không làm chậm chính đường đi được đo.
+ * Bản nhiều luồng cho thấy tranh chấp khi luồng UI và luồng phát cùng ghi.
+ */
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+    private final Metrics.Counter counter = Metrics.get().counter("benchmark.counter");
+    private final Metrics.Histogram histogram = Metrics.get().histogram("benchmark.histogram", "us");
+    private long value;
+
+    @Benchmark
+    public void counterIncrement() {
+        counter.increment();
+    }
+
+    @Benchmark
+    public void histogramRecord() {
+        histogram.record(value++ & 0xFFFF);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void histogramRecordContended() {
+        histogram.record(System.nanoTime() & 0xFFFF);
+    }
+}
@@ -0,0 +1,74 @@
+package vn.edu.fpt.musicplayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Các thao tác hàng đợi của màn hình phát: bài kế, bài trước (có và không trộn), bật/tắt trộn
+ * và chọn một bài khi đang trộn. Mỗi lần gọi là một thao tác của người dùng.
+ */
+@State(Scope.Thread)
+public class PlaybackQueueBenchmark {
+    // toggleShuffle phải gần như không đổi giữa các cỡ
+    @Param({"1000", "20000", "100000"})
+    public int size;
+
+    private PlaybackQueue queue;
+    private PlaybackQueue shuffledQueue;
+    private int pick;
+
+    @Setup
+    public void setUp() {
+        long[] ids = new long[size];
+        for (int i = 0; i < size; i++) ids[i] = 1_000_000L + i;
+        queue = new PlaybackQueue(ids, new Random(BenchmarkData.SEED));
+        shuffledQueue = new PlaybackQueue(ids.clone(), new Random(BenchmarkData.SEED));
+        shuffledQueue.setShuffled(true);
+    }
+
+    @Benchmark
+    public long next() {
+        return step(queue, 1);
+    }
+
+    @Benchmark
+    public long previous() {
+        return step(queue, -1);
+    }
+
+    @Benchmark
+    public long nextShuffled() {
+        return step(shuffledQueue, 1);
+    }
+
+    @Benchmark
+    public long previousShuffled() {
+        return step(shuffledQueue, -1);
+    }
+
+    @Benchmark
+    public long toggleShuffle() {
+        queue.setShuffled(true);
+        long id = queue.idAt((queue.getPosition() + 1) % size);
+        queue.setShuffled(false);
+        return id;
+    }
+
+    @Benchmark
+    public long playOriginalShuffled() {
+        pick = (pick + 7919) % size;
+        shuffledQueue.playOriginal(pick);
+        return shuffledQueue.getCurrentId();
+    }
+
+    private static long step(PlaybackQueue queue, int delta) {
+        int size = queue.size();
+        queue.setPosition((queue.getPosition() + delta + size) % size);
+        return queue.getCurrentId();
+    }
+}
@@ -0,0 +1,49 @@
+package vn.edu.fpt.musicplayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+
+/**
+ * Tìm kiếm trên {@link SearchIndex}: mỗi lần gọi là một lần gõ phím (lần lượt theo
+ * {@link BenchmarkData#KEYSTROKES}), cùng với chi phí dựng chỉ mục cho cả thư viện.
+ */
+@State(Scope.Thread)
+public class SearchBenchmark {
+    @Param({"1000", "50000"})
+    public int size;
+
+    private List<Song> songs;
+    private SearchIndex index;
+    private int[] results;
+    private int keystroke;
+
+    @Setup
+    public void setUp() {
+        songs = BenchmarkData.songs(size);
+        index = buildIndex();
+        results = new int[size];
+    }
+
+    @Benchmark
+    public int keystroke() {
+        String query = BenchmarkData.KEYSTROKES[keystroke];
+        keystroke = (keystroke + 1) % BenchmarkData.KEYSTROKES.length;
+        return index.search(query, results);
+    }
+
+    @Benchmark
+    public SearchIndex build() {
+        return buildIndex();
+    }
+
+    private SearchIndex buildIndex() {
+        SearchIndex index = new SearchIndex();
+        for (Song song : songs) index.add(song.title, song.artist);
+        return index;
+    }
+}
@@ -0,0 +1,68 @@
+package vn.edu.fpt.musicplayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * Mở một danh sách phát theo luật lần đầu (lọc cả thư viện rồi lấy 200 dòng theo cách xem có sẵn),
+ * và cập nhật lại sau một lô lịch sử nghe 20 bài. Mục tiêu: mở thư viện 50.000 bài dưới 200 ms
+ * trên máy thật.
+ */
+@State(Scope.Benchmark)
+public class SmartPlaylistBenchmark {
+    private static final long NOW = 1_701_000_000_000L;
+    private static final long DAY_MS = 24 * 3600 * 1000L;
+    private static final SmartPlaylist PLAYLIST = SmartPlaylist.parse(
+            "artist contains \"son tung\" and added within 30d and not played within 7d sort added desc limit 200");
+
+    @Param({"20000", "50000"})
+    public int size;
+
+    private LibraryStore store;
+    private LibraryGrouping grouping;
+    private PlayStatsTable stats;
+    private SmartPlaylistEvaluator opened;
+    private int round;
+
+    @Setup
+    public void setUp() {
+        LibraryStore.Builder builder = new LibraryStore.Builder();
+        for (Song song : BenchmarkData.songs(size)) builder.add(song);
+        store = builder.trimToSize().build();
+        grouping = LibraryGrouping.build(store, NOW / 1000);
+        Random random = new Random(BenchmarkData.SEED);
+        stats = new PlayStatsTable();
+        for (int row = 0; row < store.size(); row++) {
+            if (random.nextInt(3) == 0) {
+                stats.put(store.id(row), 1 + random.nextInt(20), random.nextInt(5),
+                        NOW - random.nextInt(30) * DAY_MS);
+            }
+        }
+        opened = new SmartPlaylistEvaluator(PLAYLIST);
+        opened.update(store, stats, NOW);
+    }
+
+    @Benchmark
+    public int[] open() {
+        SmartPlaylistEvaluator evaluator = new SmartPlaylistEvaluator(PLAYLIST);
+        evaluator.update(store, stats, NOW);
+        return evaluator.rows(grouping);
+    }
+
+    @Benchmark
+    public int[] historyUpdate() {
+        round++;
+        for (int row = 0; row < 20; row++) {
+            long id = store.id((round * 20 + row) % store.size());
+            stats.put(id, round, 0, NOW - (round % 14) * DAY_MS);
+            opened.historyChanged(id);
+        }
+        opened.update(store, stats, NOW);
+        return opened.rows(grouping);
+    }
+}
@@ -0,0 +1,82 @@
+package vn.edu.fpt.musicplayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.concurrent.ForkJoinPool;
+
+import static vn.edu.fpt.musicplayer.TagFixtures.*;
+
+/**
+ * Một lượt {@link TagScan} trên 2000 file cỡ bài hát thật (4 MB, phần âm thanh để trống nên file
+ * thưa, không tốn đĩa), chia đều MP3/ID3 có ảnh bìa, FLAC và MP4. File được ghi một lần trong setup
+ * nên bộ nhớ đệm trang đã nóng; trên máy thật lượt đầu chậm hơn. Mục tiêu cho lượt đầu: từ 300
+ * file/s trở lên, tức thư viện 3000 bài xong trong khoảng 10 giây ở nền.
+ */
+@State(Scope.Benchmark)
+public class TagScanBenchmark {
+    private static final int FILES = 2000;
+    private static final long FILE_SIZE = 4L << 20;
+
+    // Số luồng tối đa của MetadataEnricher, và một luồng để so
+    @Param({"1", "4"})
+    public int threads;
+
+    private File folder;
+    private String[] paths;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("tagscan").toFile();
+        paths = new String[FILES];
+        for (int i = 0; i < FILES; i++) {
+            byte[] data;
+            switch (i % 3) {
+                case 0:
+                    data = concat(id3Tag(3, 0, 1024,
+                            id3Text(3, "TIT2", 1, "Bài hát " + i),
+                            id3Text(3, "TPE1", 1, "Ca sĩ " + i % 50),
+                            id3Text(3, "TALB", 1, "Album " + i % 200),
+                            id3Picture(3, 3, new byte[60_000])), mp3Frames(10, 9000));
+                    break;
+                case 1:
+                    data = flac(44100, 44100L * 240,
+                            new String[]{"TITLE=Bài hát " + i, "ARTIST=Ca sĩ", "ALBUM=Album"}, new byte[60_000]);
+                    break;
+                default:
+                    data = mp4(44100, 44100L * 240, "Bài hát " + i, "Ca sĩ", "Album", new byte[60_000]);
+                    break;
+            }
+            File file = new File(folder, "track" + i);
+            write(file, data);
+            try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+                out.setLength(Math.max(FILE_SIZE, data.length));
+            }
+            paths[i] = file.getPath();
+        }
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+        for (String path : paths) {
+            if (path != null) new File(path).delete();
+        }
+        folder.delete();
+    }
+
+    @Benchmark
+    public TagReader.Tags[] scan() {
+        return TagScan.run(pool, paths);
+    }
+}
@@ -0,0 +1,39 @@
+package vn.edu.fpt.musicplayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Locale;
+
+/**
+ * formatTime() cũ dùng String.format mỗi lần cập nhật; {@link TimeFormatter} ghi vào mảng char
+ * dùng lại và bỏ qua khi số giây không đổi (phần lớn các lần cập nhật tiến trình).
+ */
+@State(Scope.Thread)
+public class TimeFormatterBenchmark {
+    private final TimeFormatter formatter = new TimeFormatter();
+    private long seconds;
+
+    @Benchmark
+    public String stringFormat() {
+        long value = nextSeconds();
+        return String.format(Locale.getDefault(), "%02d:%02d", value / 60, value % 60);
+    }
+
+    @Benchmark
+    public int formatterChanged() {
+        formatter.update(nextSeconds());
+        return formatter.length();
+    }
+
+    @Benchmark
+    public boolean formatterUnchanged() {
+        return formatter.update(seconds);
+    }
+
+    private long nextSeconds() {
+        seconds = (seconds + 1) % 6000;
+        return seconds;
+    }
+}
@@ -0,0 +1,40 @@
+package vn.edu.fpt.musicplayer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Thu gọn PCM của một bài 3 phút (44.1 kHz, stereo) thành các cột sóng âm, đưa vào theo từng
+ * khối như bộ giải mã. Chỉ đo phần tính toán, không gồm giải mã.
+ */
+@State(Scope.Thread)
+public class WaveformBenchmark {
+    private static final int SAMPLE_RATE = 44100;
+    private static final int CHANNELS = 2;
+    private static final int FRAMES = SAMPLE_RATE * 180;
+    private static final int CHUNK = 4096;
+    // Bằng WaveformRepository.BARS (lớp đó phụ thuộc Android nên không có ở đây)
+    private static final int BARS = 50;
+
+    private short[] pcm;
+    private final short[] chunk = new short[CHUNK];
+    private final WaveformDownsampler downsampler = new WaveformDownsampler(BARS);
+
+    @Setup
+    public void setUp() {
+        pcm = BenchmarkData.pcm(FRAMES, CHANNELS, SAMPLE_RATE);
+    }
+
+    @Benchmark
+    public int[] downsampleTrack() {
+        downsampler.onFormat(SAMPLE_RATE, CHANNELS, FRAMES);
+        for (int offset = 0; offset < pcm.length; offset += CHUNK) {
+            int count = Math.min(CHUNK, pcm.length - offset);
+            System.arraycopy(pcm, offset, chunk, 0, count);
+            downsampler.onSamples(chunk, count);
+        }
+        return downsampler.finish();
+    }
+}